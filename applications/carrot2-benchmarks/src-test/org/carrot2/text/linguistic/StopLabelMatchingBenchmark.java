@@ -0,0 +1,164 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.linguistic;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
+import org.carrot2.core.test.SampleDocumentData;
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.resource.ResourceLookup;
+import org.carrot2.util.resource.ResourceLookup.Location;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.ObjectHashSet;
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+/**
+ * Compares stop label matching with {@link DefaultLexicalData} against a single union
+ * {@link Pattern}, using the stop labels shipped for all languages merged (the default
+ * with resource merging) and for English alone. Labels are word n-grams of sample
+ * documents.
+ */
+@BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5)
+public class StopLabelMatchingBenchmark extends AbstractBenchmark
+{
+    static final int internalRounds = 20;
+
+    static ArrayList<String> labels;
+
+    static Pattern mergedPattern;
+    static DefaultLexicalData mergedData;
+
+    static Pattern englishPattern;
+    static DefaultLexicalData englishData;
+
+    /** Prevents the JIT from eliminating the matching loops. */
+    static volatile int matches;
+
+    @BeforeClass
+    public static void prepare() throws Exception
+    {
+        final ResourceLookup lookup = new ResourceLookup(Location.CONTEXT_CLASS_LOADER);
+        final ArrayList<Pattern> merged = Lists.newArrayList();
+        ArrayList<Pattern> english = null;
+        for (LanguageCode language : LanguageCode.values())
+        {
+            final ArrayList<Pattern> patterns = Lists.newArrayList();
+            for (String regex : DefaultLexicalDataFactory.load(lookup.getFirst("stoplabels."
+                + language.getIsoCode())))
+            {
+                patterns.add(Pattern.compile(regex));
+            }
+            merged.addAll(patterns);
+            if (language == LanguageCode.ENGLISH)
+            {
+                english = patterns;
+            }
+        }
+
+        mergedPattern = union(merged);
+        mergedData = new DefaultLexicalData(new ObjectHashSet<MutableCharArray>(), merged);
+        englishPattern = union(english);
+        englishData = new DefaultLexicalData(new ObjectHashSet<MutableCharArray>(), english);
+
+        labels = Lists.newArrayList();
+        for (Document document : SampleDocumentData.DOCUMENTS_DATA_MINING)
+        {
+            for (String field : new String [] { document.getTitle(), document.getSummary() })
+            {
+                if (field == null)
+                {
+                    continue;
+                }
+
+                final String [] words = field.split("[\\s\\p{Punct}]+");
+                for (int i = 0; i < words.length; i++)
+                {
+                    final StringBuilder label = new StringBuilder();
+                    for (int j = i; j < Math.min(words.length, i + 4); j++)
+                    {
+                        if (j > i) label.append(' ');
+                        label.append(words[j]);
+                        labels.add(label.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mergedPattern()
+    {
+        match(mergedPattern);
+    }
+
+    @Test
+    public void mergedAutomaton()
+    {
+        match(mergedData);
+    }
+
+    @Test
+    public void englishPattern()
+    {
+        match(englishPattern);
+    }
+
+    @Test
+    public void englishAutomaton()
+    {
+        match(englishData);
+    }
+
+    private static void match(Pattern pattern)
+    {
+        int count = 0;
+        for (int round = 0; round < internalRounds; round++)
+        {
+            for (String label : labels)
+            {
+                if (pattern.matcher(label).matches()) count++;
+            }
+        }
+        matches = count;
+    }
+
+    private static void match(ILexicalData data)
+    {
+        int count = 0;
+        for (int round = 0; round < internalRounds; round++)
+        {
+            for (String label : labels)
+            {
+                if (data.isStopLabel(label)) count++;
+            }
+        }
+        matches = count;
+    }
+
+    private static Pattern union(ArrayList<Pattern> patterns)
+    {
+        final StringBuilder union = new StringBuilder();
+        for (Pattern pattern : patterns)
+        {
+            union.append(union.length() > 0 ? "|(" : "(").append(pattern).append(")");
+        }
+        return Pattern.compile(union.toString());
+    }
+}
@@ -39,6 +39,48 @@ class DcsConfig
     @Attribute(name = "cache-clusters", required = false)
     boolean cacheClusters = false;
 
+    /**
+     * Estimated size of cached document source results, in bytes. If 0, document
+     * source and clustering results share the default cache bounded by the number of
+     * entries.
+     */
+    @Attribute(name = "cache-documents-max-bytes", required = false)
+    long cacheDocumentsMaxBytes = 0;
+
+    /**
+     * Estimated size of cached clustering results, in bytes. If 0, document source and
+     * clustering results share the default cache bounded by the number of entries.
+     */
+    @Attribute(name = "cache-clusters-max-bytes", required = false)
+    long cacheClustersMaxBytes = 0;
+
+    /**
+     * Time after which cached results are discarded, in seconds, 0 for never.
+     */
+    @Attribute(name = "cache-expire-after-write-seconds", required = false)
+    long cacheExpireAfterWriteSeconds = 0;
+
+    /**
+     * Time after which cached results are recomputed on the next request, in seconds, 0
+     * for never.
+     */
+    @Attribute(name = "cache-refresh-after-write-seconds", required = false)
+    long cacheRefreshAfterWriteSeconds = 0;
+
+    /**
+     * Directory to store cached results in, so that they survive restarts. If empty,
+     * results are cached in memory only. Relative paths are resolved against the
+     * working directory.
+     */
+    @Attribute(name = "cache-disk-directory", required = false)
+    String cacheDiskDirectory = null;
+
+    /**
+     * Maximum size of the results stored in {@link #cacheDiskDirectory}, in bytes.
+     */
+    @Attribute(name = "cache-disk-max-bytes", required = false)
+    long cacheDiskMaxBytes = 256 * 1024 * 1024;
+
     @Attribute(name = "xslt", required = false)
     String xslt = null;
     
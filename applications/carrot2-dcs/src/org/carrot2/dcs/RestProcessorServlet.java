@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -45,6 +46,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.FileAppender;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
+import org.carrot2.core.CacheConfiguration;
 import org.carrot2.core.Controller;
 import org.carrot2.core.ControllerFactory;
 import org.carrot2.core.Document;
@@ -276,7 +278,26 @@ public final class RestProcessorServlet extends HttpServlet
             cachedComponentClasses.add(IClusteringAlgorithm.class);
         }
 
-        controller = ControllerFactory.createCachingPooling(
+        final CacheConfiguration cacheConfiguration = new CacheConfiguration()
+            .expireAfterWrite(TimeUnit.SECONDS.toMillis(config.cacheExpireAfterWriteSeconds))
+            .refreshAfterWrite(TimeUnit.SECONDS.toMillis(config.cacheRefreshAfterWriteSeconds));
+        if (config.cacheDocumentsMaxBytes > 0)
+        {
+            cacheConfiguration.maximumBytes(IDocumentSource.class,
+                config.cacheDocumentsMaxBytes);
+        }
+        if (config.cacheClustersMaxBytes > 0)
+        {
+            cacheConfiguration.maximumBytes(IClusteringAlgorithm.class,
+                config.cacheClustersMaxBytes);
+        }
+        if (StringUtils.isNotBlank(config.cacheDiskDirectory))
+        {
+            cacheConfiguration.diskCache(new File(config.cacheDiskDirectory),
+                config.cacheDiskMaxBytes);
+        }
+
+        controller = ControllerFactory.createCachingPooling(cacheConfiguration,
             cachedComponentClasses.toArray(new Class [cachedComponentClasses.size()]));
 
         List<IResourceLocator> locators = Lists.newArrayList();
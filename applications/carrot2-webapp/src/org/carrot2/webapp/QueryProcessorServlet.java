@@ -21,6 +21,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -31,6 +32,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringUtils;
+import org.carrot2.core.CacheConfiguration;
 import org.carrot2.core.Controller;
 import org.carrot2.core.ControllerFactory;
 import org.carrot2.core.ControllerStatistics;
@@ -154,7 +156,13 @@ public class QueryProcessorServlet extends HttpServlet
         if (Boolean.getBoolean(ENABLE_CLASSPATH_LOCATOR))
             locators.add(Location.CONTEXT_CLASS_LOADER.locator);
 
-        controller = ControllerFactory.createCachingPooling(
+        final CacheConfiguration cacheConfiguration = ResultsCacheModel
+            .toCacheConfiguration(webappConfig.caches)
+            .expireAfterWrite(
+                TimeUnit.SECONDS.toMillis(webappConfig.cacheExpireAfterWriteSeconds))
+            .refreshAfterWrite(
+                TimeUnit.SECONDS.toMillis(webappConfig.cacheRefreshAfterWriteSeconds));
+        controller = ControllerFactory.createCachingPooling(cacheConfiguration,
             ResultsCacheModel.toClassArray(webappConfig.caches));
         controller.init(
             ImmutableMap.<String, Object> of(
@@ -396,6 +404,8 @@ public class QueryProcessorServlet extends HttpServlet
 
             output.write("cache.hits: " + statistics.cacheHitsTotal + "\n");
             output.write("cache.misses: " + statistics.cacheMisses + "\n");
+            output.write("cache.hits.coalesced: " + statistics.cacheHitsCoalesced + "\n");
+            output.write("cache.hits.disk: " + statistics.cacheHitsDisk + "\n");
 
             output.flush();
         }
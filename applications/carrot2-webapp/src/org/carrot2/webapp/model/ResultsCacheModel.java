@@ -14,6 +14,7 @@ package org.carrot2.webapp.model;
 
 import java.util.List;
 
+import org.carrot2.core.CacheConfiguration;
 import org.carrot2.core.IProcessingComponent;
 import org.simpleframework.xml.Attribute;
 
@@ -24,6 +25,13 @@ public class ResultsCacheModel
 {
     @Attribute
     public Class<? extends IProcessingComponent> component;
+
+    /**
+     * Estimated size of cached results of the component, in bytes. If 0, the results are
+     * kept in the default cache bounded by the number of entries.
+     */
+    @Attribute(name = "max-bytes", required = false)
+    public long maxBytes = 0;
     
     @SuppressWarnings("unchecked")
     public static Class<? extends IProcessingComponent> [] toClassArray(List<ResultsCacheModel> list)
@@ -36,4 +44,22 @@ public class ResultsCacheModel
         } 
         return result;
     }
+
+    /**
+     * Creates a cache configuration with separate byte budgets for the components that
+     * have {@link #maxBytes} specified.
+     */
+    public static CacheConfiguration toCacheConfiguration(List<ResultsCacheModel> list)
+    {
+        final CacheConfiguration configuration = new CacheConfiguration();
+        for (ResultsCacheModel resultsCacheModel : list)
+        {
+            if (resultsCacheModel.maxBytes > 0)
+            {
+                configuration.maximumBytes(resultsCacheModel.component,
+                    resultsCacheModel.maxBytes);
+            }
+        }
+        return configuration;
+    }
 }
@@ -77,6 +77,14 @@ public class WebappConfig
 
     @ElementList(entry = "cache", required = false)
     public ArrayList<ResultsCacheModel> caches = Lists.newArrayList();
+
+    /** Time after which cached results are discarded, in seconds, 0 for never. */
+    @Attribute(name = "cache-expire-after-write-seconds", required = false)
+    public long cacheExpireAfterWriteSeconds = 0;
+
+    /** Time after which cached results are recomputed on next request, 0 for never. */
+    @Attribute(name = "cache-refresh-after-write-seconds", required = false)
+    public long cacheRefreshAfterWriteSeconds = 0;
     
     @Attribute(name = "skins-folder")
     public String skinsFolder;
@@ -79,4 +79,36 @@ public class BisectingKMeansClusteringAlgorithmTest extends
 
         assertThat(clusterNames).contains("English", "Italian", "French", "Spanish", "German");
     }
+
+    @Test
+    public void testParallelSplits()
+    {
+        BisectingKMeansClusteringAlgorithmDescriptor.attributeBuilder(processingAttributes)
+            .clusterCount(40).useDimensionalityReduction(randomBoolean());
+        final List<Cluster> serial = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        BisectingKMeansClusteringAlgorithmDescriptor.attributeBuilder(initAttributes)
+            .splitThreads(4);
+        final List<Cluster> parallel = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        Carrot2CoreAssertions.assertThatClusters(parallel).isEquivalentTo(serial);
+    }
+
+    @Test
+    public void testSeededRandomAssignment()
+    {
+        BisectingKMeansClusteringAlgorithmDescriptor.attributeBuilder(processingAttributes)
+            .clusterCount(40).useInitialRandomAssignment(true).randomSeed(7);
+        final List<Cluster> serial = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        BisectingKMeansClusteringAlgorithmDescriptor.attributeBuilder(initAttributes)
+            .splitThreads(4);
+        final List<Cluster> parallel = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        Carrot2CoreAssertions.assertThatClusters(parallel).isEquivalentTo(serial);
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.clustering.kmeans;
+
+import java.util.List;
+
+import org.carrot2.core.Cluster;
+import org.carrot2.core.Document;
+import org.carrot2.core.test.ClusteringAlgorithmTestBase;
+import org.carrot2.core.test.SampleDocumentData;
+import org.carrot2.core.test.assertions.Carrot2CoreAssertions;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import static org.junit.Assert.*;
+
+public class MiniBatchKMeansClusteringAlgorithmTest extends
+    ClusteringAlgorithmTestBase<MiniBatchKMeansClusteringAlgorithm>
+{
+    @Override
+    public Class<MiniBatchKMeansClusteringAlgorithm> getComponentClass()
+    {
+        return MiniBatchKMeansClusteringAlgorithm.class;
+    }
+
+    @Test
+    public void smokeTest()
+    {
+        final List<Document> documents = separatedDocuments();
+        MiniBatchKMeansClusteringAlgorithmDescriptor.attributeBuilder(
+            processingAttributes).labelCount(1).clusterCount(3)
+            .batchSize(randomIntBetween(1, 9))
+            .randomSeed(randomIntBetween(1, Integer.MAX_VALUE));
+        final List<Cluster> clusters = cluster(documents).getClusters();
+
+        assertNotNull(clusters);
+        assertEquals(3, clusters.size());
+        Carrot2CoreAssertions.assertThat(clusters.get(0)).hasLabel("WordA");
+        Carrot2CoreAssertions.assertThat(clusters.get(1)).hasLabel("WordB");
+        Carrot2CoreAssertions.assertThat(clusters.get(2)).hasLabel("WordC");
+        for (Cluster cluster : clusters)
+        {
+            assertEquals(3, cluster.size());
+        }
+    }
+
+    @Test
+    public void testDuplicateDocumentsNotUsedAsSeparateCentroids()
+    {
+        final List<Document> documents = Lists.newArrayList();
+        for (int i = 0; i < 15; i++)
+        {
+            documents.add(new Document("WordA . WordA"));
+        }
+        for (int i = 0; i < 3; i++)
+        {
+            documents.add(new Document("WordB . WordB"));
+        }
+
+        MiniBatchKMeansClusteringAlgorithmDescriptor.attributeBuilder(processingAttributes)
+            .labelCount(1).clusterCount(2).convergenceTolerance(0)
+            .randomSeed(randomIntBetween(1, Integer.MAX_VALUE));
+        final List<Cluster> clusters = cluster(documents).getClusters();
+
+        assertEquals(2, clusters.size());
+        Carrot2CoreAssertions.assertThat(clusters.get(0)).hasLabel("WordA");
+        assertEquals(15, clusters.get(0).size());
+        Carrot2CoreAssertions.assertThat(clusters.get(1)).hasLabel("WordB");
+        assertEquals(3, clusters.get(1).size());
+    }
+
+    @Test
+    public void testSameSeedSameClusters()
+    {
+        final int seed = randomIntBetween(1, Integer.MAX_VALUE);
+        MiniBatchKMeansClusteringAlgorithmDescriptor.attributeBuilder(processingAttributes)
+            .randomSeed(seed).batchSize(randomIntBetween(1, 200));
+        final List<Cluster> first = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+        final List<Cluster> second = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        Carrot2CoreAssertions.assertThatClusters(second).isEquivalentTo(first);
+    }
+
+    @Test
+    public void testWithoutEarlyStopping()
+    {
+        MiniBatchKMeansClusteringAlgorithmDescriptor.attributeBuilder(processingAttributes)
+            .convergenceTolerance(0).maxIterations(20).maxFeatures(50).clusterCount(5);
+        final List<Cluster> clusters = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        assertTrue(clusters.size() > 1);
+        assertTrue(clusters.size() <= 6);
+    }
+
+    @Test
+    public void testEarlyStopping()
+    {
+        // Centroids of identical documents stop moving in the first iteration. Without
+        // early stopping, this many iterations would not finish before the suite times out.
+        final List<Document> documents = separatedDocuments();
+        MiniBatchKMeansClusteringAlgorithmDescriptor.attributeBuilder(processingAttributes)
+            .labelCount(1).clusterCount(3).convergenceTolerance(0.01)
+            .maxIterations(Integer.MAX_VALUE)
+            .randomSeed(randomIntBetween(1, Integer.MAX_VALUE));
+        final List<Cluster> stopped = cluster(documents).getClusters();
+
+        MiniBatchKMeansClusteringAlgorithmDescriptor.attributeBuilder(processingAttributes)
+            .convergenceTolerance(0).maxIterations(20);
+        final List<Cluster> full = cluster(documents).getClusters();
+
+        assertEquals(3, stopped.size());
+        assertEquals(full.size(), stopped.size());
+        for (int i = 0; i < stopped.size(); i++)
+        {
+            assertEquals(full.get(i).getLabel(), stopped.get(i).getLabel());
+            assertEquals(full.get(i).getDocuments(), stopped.get(i).getDocuments());
+        }
+    }
+
+    /**
+     * Three groups of three identical documents.
+     */
+    private static List<Document> separatedDocuments()
+    {
+        final List<Document> documents = Lists.newArrayList();
+        for (int i = 0; i < 3; i++)
+        {
+            documents.add(new Document("WordA . WordA"));
+            documents.add(new Document("WordB . WordB"));
+            documents.add(new Document("WordC . WordC"));
+        }
+        return documents;
+    }
+}
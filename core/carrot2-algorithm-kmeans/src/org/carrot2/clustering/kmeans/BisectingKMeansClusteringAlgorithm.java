@@ -13,12 +13,20 @@
 package org.carrot2.clustering.kmeans;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import org.apache.commons.lang.ObjectUtils;
 import org.carrot2.core.Cluster;
 import org.carrot2.core.Document;
 import org.carrot2.core.IClusteringAlgorithm;
@@ -31,16 +39,18 @@ import org.carrot2.core.attribute.Init;
 import org.carrot2.core.attribute.Internal;
 import org.carrot2.core.attribute.Processing;
 import org.carrot2.text.analysis.ITokenizer;
-import org.carrot2.text.clustering.IMonolingualClusteringAlgorithm;
+import org.carrot2.text.clustering.IMonolingualClusteringComponent;
 import org.carrot2.text.clustering.MultilingualClustering;
 import org.carrot2.text.preprocessing.LabelFormatter;
 import org.carrot2.text.preprocessing.PreprocessingContext;
 import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
 import org.carrot2.text.preprocessing.pipeline.IPreprocessingPipeline;
 import org.carrot2.text.vsm.ReducedVectorSpaceModelContext;
+import org.carrot2.text.vsm.SparseTermDocumentMatrix;
 import org.carrot2.text.vsm.TermDocumentMatrixBuilder;
 import org.carrot2.text.vsm.TermDocumentMatrixReducer;
 import org.carrot2.text.vsm.VectorSpaceModelContext;
+import org.carrot2.util.ExceptionUtils;
 import org.carrot2.util.attribute.Attribute;
 import org.carrot2.util.attribute.AttributeLevel;
 import org.carrot2.util.attribute.Bindable;
@@ -54,9 +64,9 @@ import org.carrot2.util.attribute.Required;
 import org.carrot2.util.attribute.constraint.ImplementingClasses;
 import org.carrot2.util.attribute.constraint.IntRange;
 
+import com.carrotsearch.hppc.DoubleArrayList;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntIntHashMap;
-import com.carrotsearch.hppc.IntIntMap;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.cursors.IntIntCursor;
 import com.carrotsearch.hppc.sorting.IndirectComparator;
@@ -66,7 +76,6 @@ import org.carrot2.mahout.math.function.Functions;
 import org.carrot2.mahout.math.matrix.DoubleMatrix1D;
 import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
 import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix1D;
-import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
 import org.carrot2.shaded.guava.common.collect.Lists;
 
 
@@ -189,6 +198,20 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
     @Level(AttributeLevel.ADVANCED)
     @Label("Initial random assignment")
     public boolean useInitialRandomAssignment = false;
+
+    /**
+     * Random seed for the initial random assignment. If not 0, the initial assignment of
+     * each split depends only on the seed and the documents being split, so runs with the
+     * same seed produce the same clusters, also with parallel splits. If 0, a different
+     * assignment is made in each run.
+     */
+    @Processing
+    @Input
+    @Attribute
+    @Group(GROUP_KMEANS)
+    @Level(AttributeLevel.ADVANCED)
+    @Label("Random seed")
+    public int randomSeed = 0;
     
 
     /**
@@ -206,6 +229,22 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
      */
     public final LabelFormatter labelFormatter = new LabelFormatter();
 
+    /**
+     * Split threads. The number of threads that may be used to split clusters
+     * concurrently while clustering a single request. Clusters are split ahead of time, in
+     * the order in which they would be split by a single thread, so the clusters are the
+     * same. The value of 1 disables parallel splits.
+     */
+    @Init
+    @Processing
+    @Input
+    @Attribute
+    @IntRange(min = 1, max = 64)
+    @Label("Split threads")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(GROUP_KMEANS)
+    public int splitThreads = 1;
+
     /**
      * A helper for performing multilingual clustering.
      */
@@ -225,24 +264,41 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
     {
         // There is a tiny trick here to support multilingual clustering without
         // refactoring the whole component: we remember the original list of documents
-        // and invoke clustering for each language separately within the 
-        // IMonolingualClusteringAlgorithm implementation below. This is safe because
-        // processing components are not thread-safe by definition and 
-        // IMonolingualClusteringAlgorithm forbids concurrent execution by contract.
+        // and invoke clustering for each language separately within
+        // MONOLINGUAL_CLUSTERING below. This is safe because processing components
+        // are not thread-safe by definition and MultilingualClustering never uses one
+        // component concurrently: languages clustered concurrently get their own
+        // replicas of this component.
         final List<Document> originalDocuments = documents;
-        clusters = multilingualClustering.process(documents,
-            new IMonolingualClusteringAlgorithm()
-            {
-                public List<Cluster> process(List<Document> documents, LanguageCode language)
-                {
-                    BisectingKMeansClusteringAlgorithm.this.documents = documents;
-                    BisectingKMeansClusteringAlgorithm.this.cluster(language);
-                    return BisectingKMeansClusteringAlgorithm.this.clusters;
-                }
-            });
-        documents = originalDocuments;
+        final int languageThreads = multilingualClustering.languageClusteringThreads;
+        final ExecutorService languageExecutor = languageThreads > 1 ? getSharedExecutor(
+            languageThreads, MultilingualClustering.class) : null;
+        try
+        {
+            clusters = multilingualClustering.process(documents, this,
+                MONOLINGUAL_CLUSTERING, languageExecutor);
+        }
+        finally
+        {
+            documents = originalDocuments;
+        }
     }
 
+    /**
+     * Clusters documents in one language with this component or one of its replicas.
+     */
+    private static final IMonolingualClusteringComponent<BisectingKMeansClusteringAlgorithm> MONOLINGUAL_CLUSTERING =
+        new IMonolingualClusteringComponent<BisectingKMeansClusteringAlgorithm>()
+        {
+            public List<Cluster> process(BisectingKMeansClusteringAlgorithm kmeans,
+                List<Document> documents, LanguageCode language)
+            {
+                kmeans.documents = documents;
+                kmeans.cluster(language);
+                return kmeans.clusters;
+            }
+        };
+
     /**
      * Perform clustering for a given language.
      */
@@ -297,15 +353,24 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
                 tdMatrix = vsmContext.termDocumentMatrix;
             }
 
+            // Non-zero elements of all documents, extracted once for all splits
+            final SparseTermDocumentMatrix sparseMatrix = sparseColumns(tdMatrix);
+
             // Initial selection containing all columns, initial clustering
-            final IntArrayList columns = new IntArrayList(tdMatrix.columns());
-            for (int c = 0; c < tdMatrix.columns(); c++)
+            final IntArrayList columns = new IntArrayList(sparseMatrix.columns());
+            for (int c = 0; c < sparseMatrix.columns(); c++)
             {
                 columns.add(c);
             }
             final List<SplitResult> rawClusters = Lists.newArrayList();
-            rawClusters.addAll(split(partitionCount, tdMatrix, columns, maxIterations));
+            rawClusters.addAll(split(partitionCount, sparseMatrix, columns, maxIterations));
             Collections.sort(rawClusters, BY_SIZE_DESCENDING);
+
+            // Splits computed ahead of time, if parallel
+            final ForkJoinPool pool = splitThreads > 1 ? getSharedForkJoinPool(
+                splitThreads, BisectingKMeansClusteringAlgorithm.class) : null;
+            final Map<IntArrayList, List<SplitResult>> splits = 
+                new IdentityHashMap<IntArrayList, List<SplitResult>>();
             
             int largestIndex = 0;
             while (rawClusters.size() < clusterCount && largestIndex < rawClusters.size())
@@ -320,8 +385,13 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
                     break;
                 }
 
-                final List<SplitResult> split = split(partitionCount, tdMatrix, largest,
-                    maxIterations);
+                if (pool != null && !splits.containsKey(largest))
+                {
+                    splitAhead(pool, sparseMatrix, rawClusters, largestIndex, 
+                        clusterCount - rawClusters.size(), splits);
+                }
+                final List<SplitResult> split = pool != null ? splits.remove(largest)
+                    : split(partitionCount, sparseMatrix, largest, maxIterations);
                 if (split.size() > 1)
                 {
                     rawClusters.remove(largestIndex);
@@ -360,6 +430,56 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
         Cluster.appendOtherTopics(documents, clusters);
     }
 
+    /**
+     * Splits clusters starting at <code>from</code> (which are split next, largest first)
+     * concurrently, at most one per thread and no more than <code>limit</code>.
+     */
+    private void splitAhead(ForkJoinPool pool, final SparseTermDocumentMatrix tdMatrix,
+        List<SplitResult> rawClusters, int from, int limit,
+        Map<IntArrayList, List<SplitResult>> splits)
+    {
+        final List<IntArrayList> toSplit = Lists.newArrayList();
+        final List<Callable<List<SplitResult>>> tasks = Lists.newArrayList();
+        for (int i = from; i < rawClusters.size() 
+            && tasks.size() < Math.max(1, Math.min(limit, pool.getParallelism())); i++)
+        {
+            final IntArrayList cluster = rawClusters.get(i).indices;
+            if (cluster.size() <= partitionCount * 2)
+            {
+                break;
+            }
+            if (!splits.containsKey(cluster))
+            {
+                toSplit.add(cluster);
+                tasks.add(new Callable<List<SplitResult>>()
+                {
+                    public List<SplitResult> call()
+                    {
+                        return split(partitionCount, tdMatrix, cluster, maxIterations);
+                    }
+                });
+            }
+        }
+
+        try
+        {
+            final List<Future<List<SplitResult>>> results = pool.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++)
+            {
+                splits.put(toSplit.get(i), results.get(i).get());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException("Interrupted while splitting clusters.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw ExceptionUtils.wrapAsRuntimeException(e.getCause());
+        }
+    }
+
     private static final Comparator<SplitResult> BY_SIZE_DESCENDING = new Comparator<SplitResult>()
     {
         @Override
@@ -417,50 +537,79 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
     }
 
     /**
-     * Splits the input documents into the specified number of partitions using the
-     * standard k-means routine.
+     * Returns the non-zero elements of <code>matrix</code>, column by column.
      */
-    private List<SplitResult> split(int partitions, DoubleMatrix2D input,
-        IntArrayList columns, int iterations)
+    private static SparseTermDocumentMatrix sparseColumns(DoubleMatrix2D matrix)
     {
-        // Prepare selected matrix
-        final DoubleMatrix2D selected = input.viewSelection(null, columns.toArray())
-            .copy();
-        final IntIntMap selectedToInput = new IntIntHashMap(selected.columns());
-        for (int i = 0; i < columns.size(); i++)
+        final int rows = matrix.rows();
+        final int [] starts = new int [matrix.columns() + 1];
+        final IntArrayList nonZeroRows = new IntArrayList();
+        final DoubleArrayList nonZeroValues = new DoubleArrayList();
+        for (int column = 0; column < matrix.columns(); column++)
         {
-            selectedToInput.put(i, columns.get(i));
+            for (int k = 0; k < rows; k++)
+            {
+                final double value = matrix.getQuick(k, column);
+                if (value != 0)
+                {
+                    nonZeroRows.add(k);
+                    nonZeroValues.add(value);
+                }
+            }
+            starts[column + 1] = nonZeroRows.size();
         }
+        return new SparseTermDocumentMatrix(rows, starts, nonZeroRows.toArray(),
+            nonZeroValues.toArray());
+    }
+
+    /**
+     * Splits the input documents (<code>columns</code> of <code>input</code>) into the
+     * specified number of partitions using the standard k-means routine. Centroids and
+     * similarities are computed from the non-zero elements of the selected columns only.
+     */
+    private List<SplitResult> split(int partitions, SparseTermDocumentMatrix input,
+        IntArrayList columns, int iterations)
+    {
+        // Non-zero elements of document c are at starts[columns[c]] .. starts[columns[c] + 1]
+        final int rows = input.rows;
+        final int documentCount = columns.size();
+        final int [] documentColumns = columns.toArray();
+        final int [] starts = input.columnStarts;
+        final int [] rowIndex = input.rowIndices;
+        final double [] values = input.values;
 
         // Prepare results holders
         List<SplitResult> result = Lists.newArrayList();
         List<SplitResult> previousResult = null;
         for (int i = 0; i < partitions; i++)
         {
-            result.add(new SplitResult(new IntArrayList(selected.columns()), 0.0));
+            result.add(new SplitResult(new IntArrayList(documentCount), 0.0));
         }
         if (!useInitialRandomAssignment) {
-	        for (int i = 0; i < selected.columns(); i++) 
+	        for (int i = 0; i < documentCount; i++) 
 	        {
 	            result.get(i % partitions).indices.add(i);
 	        }
         } else {
-        	ArrayList<Integer> indices = new ArrayList<Integer>(selected.columns());
-        	for (int i = 0; i < selected.columns(); i++) {
+        	ArrayList<Integer> indices = new ArrayList<Integer>(documentCount);
+        	for (int i = 0; i < documentCount; i++) {
         		indices.add(i);
         	}
-        	Collections.shuffle(indices);
-	        for (int i = 0; i < selected.columns(); i++) 
+        	if (randomSeed != 0) {
+        	    // Depends only on the split documents, not on the order of splits
+        	    Collections.shuffle(indices, new Random(randomSeed * 31L + columns.hashCode()));
+        	} else {
+        	    Collections.shuffle(indices);
+        	}
+	        for (int i = 0; i < documentCount; i++) 
 	        {
 	            result.get(indices.get(i).intValue() % partitions).indices.add(i);
 	        }
         }
 
-        // Matrices for centroids and document-centroid similarities
-        final DoubleMatrix2D centroids = new DenseDoubleMatrix2D(selected.rows(),
-            partitions).assign(selected.viewPart(0, 0, selected.rows(), partitions));
-        final DoubleMatrix2D similarities = new DenseDoubleMatrix2D(partitions,
-            selected.columns());
+        // Centroids and document-centroid similarities
+        final double [][] centroids = new double [partitions][rows];
+        final double [][] similarities = new double [partitions][documentCount];
 
         // Run a fixed number of K-means iterations
         for (int it = 0; it < iterations; it++)
@@ -469,14 +618,19 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
             for (int i = 0; i < result.size(); i++)
             {
                 final IntArrayList cluster = result.get(i).indices;
-                for (int k = 0; k < selected.rows(); k++)
+                final double [] centroid = centroids[i];
+                Arrays.fill(centroid, 0);
+                for (int j = 0; j < cluster.size(); j++)
                 {
-                    double sum = 0;
-                    for (int j = 0; j < cluster.size(); j++)
+                    final int column = documentColumns[cluster.get(j)];
+                    for (int e = starts[column]; e < starts[column + 1]; e++)
                     {
-                        sum += selected.get(k, cluster.get(j));
+                        centroid[rowIndex[e]] += values[e];
                     }
-                    centroids.setQuick(k, i, sum / cluster.size());
+                }
+                for (int k = 0; k < rows; k++)
+                {
+                    centroid[k] /= cluster.size();
                 }
             }
 
@@ -484,22 +638,43 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
             result = Lists.newArrayList();
             for (int i = 0; i < partitions; i++)
             {
-                result.add(new SplitResult(new IntArrayList(selected.columns()), 0.0));
+                result.add(new SplitResult(new IntArrayList(documentCount), 0.0));
             }
 
             // Calculate similarity to centroids
-            centroids.zMult(selected, similarities, 1, 0, true, false);
+            for (int r = 0; r < partitions; r++)
+            {
+                final double [] centroid = centroids[r];
+                final double [] similarity = similarities[r];
+                if (previousResult.get(r).indices.isEmpty())
+                {
+                    // No centroid, no similarity
+                    Arrays.fill(similarity, Double.NaN);
+                    continue;
+                }
+
+                for (int c = 0; c < documentCount; c++)
+                {
+                    final int column = documentColumns[c];
+                    double sum = 0;
+                    for (int e = starts[column]; e < starts[column + 1]; e++)
+                    {
+                        sum += centroid[rowIndex[e]] * values[e];
+                    }
+                    similarity[c] = sum;
+                }
+            }
 
             // Assign documents to the nearest centroid
-            for (int c = 0; c < similarities.columns(); c++)
+            for (int c = 0; c < documentCount; c++)
             {
                 int maxRow = 0;
-                double max = similarities.get(0, c);
-                for (int r = 1; r < similarities.rows(); r++)
+                double max = similarities[0][c];
+                for (int r = 1; r < partitions; r++)
                 {
-                    if (max < similarities.get(r, c))
+                    if (max < similarities[r][c])
                     {
-                        max = similarities.get(r, c);
+                        max = similarities[r][c];
                         maxRow = r;
                     }
                 }
@@ -509,7 +684,7 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
                 result.get(maxRow).indices.add(c);
             }
 
-            if (ObjectUtils.equals(previousResult, result))
+            if (sameIndices(previousResult, result))
             {
                 // Unchanged result
                 break;
@@ -528,7 +703,7 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
             {
                 for (int j = 0; j < cluster.size(); j++)
                 {
-                    cluster.set(j, selectedToInput.get(cluster.get(j)));
+                    cluster.set(j, documentColumns[cluster.get(j)]);
                 }
             }
         }
@@ -536,4 +711,20 @@ public class BisectingKMeansClusteringAlgorithm extends ProcessingComponentBase
 
         return result;
     }
+
+    /**
+     * Returns <code>true</code> if both results assign the same documents to each
+     * partition.
+     */
+    private static boolean sameIndices(List<SplitResult> a, List<SplitResult> b)
+    {
+        for (int i = 0; i < a.size(); i++)
+        {
+            if (!a.get(i).indices.equals(b.get(i).indices))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,627 @@
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.clustering.kmeans;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.carrot2.core.Cluster;
+import org.carrot2.core.Document;
+import org.carrot2.core.IClusteringAlgorithm;
+import org.carrot2.core.LanguageCode;
+import org.carrot2.core.ProcessingComponentBase;
+import org.carrot2.core.ProcessingException;
+import org.carrot2.core.attribute.AttributeNames;
+import org.carrot2.core.attribute.CommonAttributes;
+import org.carrot2.core.attribute.Init;
+import org.carrot2.core.attribute.Internal;
+import org.carrot2.core.attribute.Processing;
+import org.carrot2.text.analysis.ITokenizer;
+import org.carrot2.text.clustering.IMonolingualClusteringComponent;
+import org.carrot2.text.clustering.MultilingualClustering;
+import org.carrot2.text.preprocessing.LabelFormatter;
+import org.carrot2.text.preprocessing.PreprocessingContext;
+import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
+import org.carrot2.text.preprocessing.pipeline.IPreprocessingPipeline;
+import org.carrot2.text.vsm.SparseTermDocumentMatrix;
+import org.carrot2.text.vsm.TermDocumentMatrixBuilder;
+import org.carrot2.text.vsm.VectorSpaceModelContext;
+import org.carrot2.util.attribute.Attribute;
+import org.carrot2.util.attribute.AttributeLevel;
+import org.carrot2.util.attribute.Bindable;
+import org.carrot2.util.attribute.DefaultGroups;
+import org.carrot2.util.attribute.Group;
+import org.carrot2.util.attribute.Input;
+import org.carrot2.util.attribute.Label;
+import org.carrot2.util.attribute.Level;
+import org.carrot2.util.attribute.Output;
+import org.carrot2.util.attribute.Required;
+import org.carrot2.util.attribute.constraint.DoubleRange;
+import org.carrot2.util.attribute.constraint.ImplementingClasses;
+import org.carrot2.util.attribute.constraint.IntRange;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+import com.carrotsearch.hppc.sorting.IndirectComparator;
+import com.carrotsearch.hppc.sorting.IndirectSort;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+/**
+ * Mini-batch k-means clustering, meant for large numbers of documents. Unlike
+ * {@link BisectingKMeansClusteringAlgorithm}, this algorithm does not need the dense
+ * term-document matrix: documents are stored as sparse vectors (only their non-zero
+ * weights) and the centroids are updated from small random batches of documents rather
+ * than full passes over all documents. The memory needed apart from the documents
+ * themselves is bounded by the number of clusters times the number of features.
+ * <p>
+ * Similarly to {@link BisectingKMeansClusteringAlgorithm}, this algorithm creates hard
+ * clusterings labeled with individual words.
+ * </p>
+ */
+@Bindable(prefix = "MiniBatchKMeansClusteringAlgorithm", inherit = CommonAttributes.class)
+public class MiniBatchKMeansClusteringAlgorithm extends ProcessingComponentBase implements
+    IClusteringAlgorithm
+{
+    /** {@link Group} name. */
+    private final static String GROUP_KMEANS = "K-means";
+
+    /** Centroid vectors are rescaled when their scale drops below this value. */
+    private final static double MIN_SCALE = 1e-9;
+
+    /**
+     * Documents closer than this squared distance to an initial centroid are considered
+     * identical to it.
+     */
+    private final static double MIN_SEED_DISTANCE = 1e-9;
+
+    @Processing
+    @Input
+    @Required
+    @Internal
+    @Attribute(key = AttributeNames.DOCUMENTS, inherit = true)
+    public List<Document> documents;
+
+    @Processing
+    @Output
+    @Internal
+    @Attribute(key = AttributeNames.CLUSTERS, inherit = true)
+    public List<Cluster> clusters = null;
+
+    /**
+     * The number of clusters to create. The algorithm will create at most the specified
+     * number of clusters.
+     */
+    @Processing
+    @Input
+    @Attribute
+    @IntRange(min = 2)
+    @Group(DefaultGroups.CLUSTERS)
+    @Level(AttributeLevel.BASIC)
+    @Label("Cluster count")
+    public int clusterCount = 25;
+
+    /**
+     * The maximum number of mini-batches to process. Processing may stop earlier if the
+     * centroids stop moving, see {@link #convergenceTolerance}.
+     */
+    @Processing
+    @Input
+    @Attribute
+    @IntRange(min = 1)
+    @Group(GROUP_KMEANS)
+    @Level(AttributeLevel.BASIC)
+    @Label("Maximum iterations")
+    public int maxIterations = 100;
+
+    /**
+     * Batch size. The number of documents, drawn at random, used to update the centroids
+     * in each iteration. If larger than the number of documents, the number of documents
+     * is used.
+     */
+    @Processing
+    @Input
+    @Attribute
+    @IntRange(min = 1)
+    @Group(GROUP_KMEANS)
+    @Level(AttributeLevel.BASIC)
+    @Label("Batch size")
+    public int batchSize = 1000;
+
+    /**
+     * Convergence tolerance. Processing stops when no centroid moves further than this
+     * distance in an iteration. Document vectors are normalized to unit length, so the
+     * value is relative to the length of a document vector. The value of 0 disables
+     * early stopping.
+     */
+    @Processing
+    @Input
+    @Attribute
+    @DoubleRange(min = 0, max = 1)
+    @Group(GROUP_KMEANS)
+    @Level(AttributeLevel.ADVANCED)
+    @Label("Convergence tolerance")
+    public double convergenceTolerance = 0.01;
+
+    /**
+     * Maximum number of features. The number of words with the highest weights used to
+     * represent documents. Each centroid stores a weight for each feature, so this value
+     * bounds the memory used by the centroids.
+     */
+    @Processing
+    @Input
+    @Attribute
+    @IntRange(min = 1)
+    @Group(GROUP_KMEANS)
+    @Level(AttributeLevel.ADVANCED)
+    @Label("Maximum features")
+    public int maxFeatures = 10000;
+
+    /**
+     * Label count. The minimum number of labels to return for each cluster.
+     */
+    @Processing
+    @Input
+    @Attribute
+    @IntRange(min = 1, max = 10)
+    @Group(DefaultGroups.CLUSTERS)
+    @Level(AttributeLevel.BASIC)
+    @Label("Label count")
+    public int labelCount = 3;
+
+    /**
+     * Random seed for the choice of the initial centroids and of the documents in each
+     * batch. If not 0, runs with the same seed and documents produce the same clusters.
+     * If 0, different centroids and batches are chosen in each run (like for
+     * {@link BisectingKMeansClusteringAlgorithm#randomSeed}).
+     */
+    @Processing
+    @Input
+    @Attribute
+    @Group(GROUP_KMEANS)
+    @Level(AttributeLevel.ADVANCED)
+    @Label("Random seed")
+    public int randomSeed = 1;
+
+    /**
+     * Common preprocessing tasks handler.
+     */
+    @Init
+    @Input
+    @Attribute
+    @Internal
+    @ImplementingClasses(classes = {}, strict = false)
+    @Level(AttributeLevel.ADVANCED)
+    public IPreprocessingPipeline preprocessingPipeline = new BasicPreprocessingPipeline();
+
+    /**
+     * Term-document matrix builder for the algorithm, contains bindable attributes.
+     */
+    public final TermDocumentMatrixBuilder matrixBuilder = new TermDocumentMatrixBuilder();
+
+    /**
+     * Cluster label formatter, contains bindable attributes.
+     */
+    public final LabelFormatter labelFormatter = new LabelFormatter();
+
+    /**
+     * A helper for performing multilingual clustering.
+     */
+    public final MultilingualClustering multilingualClustering = new MultilingualClustering();
+
+    @Override
+    public void process() throws ProcessingException
+    {
+        // Languages are clustered by this component or its replicas, see
+        // BisectingKMeansClusteringAlgorithm#process() for details.
+        final List<Document> originalDocuments = documents;
+        final int languageThreads = multilingualClustering.languageClusteringThreads;
+        final ExecutorService languageExecutor = languageThreads > 1 ? getSharedExecutor(
+            languageThreads, MultilingualClustering.class) : null;
+        try
+        {
+            clusters = multilingualClustering.process(documents, this,
+                MONOLINGUAL_CLUSTERING, languageExecutor);
+        }
+        finally
+        {
+            documents = originalDocuments;
+        }
+    }
+
+    /**
+     * Clusters documents in one language with this component or one of its replicas.
+     */
+    private static final IMonolingualClusteringComponent<MiniBatchKMeansClusteringAlgorithm> MONOLINGUAL_CLUSTERING =
+        new IMonolingualClusteringComponent<MiniBatchKMeansClusteringAlgorithm>()
+        {
+            public List<Cluster> process(MiniBatchKMeansClusteringAlgorithm kmeans,
+                List<Document> documents, LanguageCode language)
+            {
+                kmeans.documents = documents;
+                kmeans.cluster(language);
+                return kmeans.clusters;
+            }
+        };
+
+    /**
+     * Perform clustering for a given language.
+     */
+    protected void cluster(LanguageCode language)
+    {
+        // Preprocessing of documents
+        final PreprocessingContext preprocessingContext =
+            preprocessingPipeline.preprocess(documents, null, language);
+
+        // Add trivial AllLabels so that we can reuse the common TD matrix builder
+        final int [] stemsMfow = preprocessingContext.allStems.mostFrequentOriginalWordIndex;
+        final short [] wordsType = preprocessingContext.allWords.type;
+        final IntArrayList featureIndices = new IntArrayList(stemsMfow.length);
+        for (int i = 0; i < stemsMfow.length; i++)
+        {
+            final short flag = wordsType[stemsMfow[i]];
+            if ((flag & (ITokenizer.TF_COMMON_WORD | ITokenizer.TF_QUERY_WORD | ITokenizer.TT_NUMERIC)) == 0)
+            {
+                featureIndices.add(stemsMfow[i]);
+            }
+        }
+        preprocessingContext.allLabels.featureIndex = featureIndices.toArray();
+        preprocessingContext.allLabels.firstPhraseIndex = -1;
+
+        // Further processing only if there are words to process
+        clusters = Lists.newArrayList();
+        if (preprocessingContext.hasLabels())
+        {
+            final VectorSpaceModelContext vsmContext = new VectorSpaceModelContext(
+                preprocessingContext);
+            matrixBuilder.buildSparseTermDocumentMatrix(vsmContext, maxFeatures);
+            final SparseTermDocumentMatrix tdMatrix = vsmContext.sparseTermDocumentMatrix;
+
+            // Prepare rowIndex -> stemIndex mapping for labeling
+            final IntIntHashMap rowToStemIndex = new IntIntHashMap();
+            for (IntIntCursor c : vsmContext.stemToRowIndex)
+            {
+                rowToStemIndex.put(c.value, c.key);
+            }
+
+            final int [] nonEmpty = normalize(tdMatrix);
+            if (nonEmpty.length > 0)
+            {
+                final Centroids centroids = train(tdMatrix, nonEmpty);
+
+                // Assign all documents to the nearest centroid
+                final IntArrayList [] members = new IntArrayList [centroids.count()];
+                final double [] scores = new double [members.length];
+                for (int i = 0; i < members.length; i++)
+                {
+                    members[i] = new IntArrayList();
+                }
+                for (int d : nonEmpty)
+                {
+                    final int nearest = centroids.nearest(tdMatrix, d);
+                    members[nearest].add(d);
+                    scores[nearest] += centroids.similarity(tdMatrix, d, nearest);
+                }
+
+                final double [] weights = new double [tdMatrix.rows];
+                for (int i = 0; i < members.length; i++)
+                {
+                    if (members[i].size() > 1)
+                    {
+                        final Cluster cluster = new Cluster();
+                        cluster.addPhrases(getLabels(members[i], tdMatrix, weights,
+                            rowToStemIndex, stemsMfow,
+                            preprocessingContext.allWords.image));
+                        for (int j = 0; j < members[i].size(); j++)
+                        {
+                            cluster.addDocuments(documents.get(members[i].get(j)));
+                        }
+                        cluster.setScore(scores[i]);
+                        clusters.add(cluster);
+                    }
+                }
+            }
+        }
+
+        Collections.sort(clusters, Cluster.BY_REVERSED_SIZE_AND_LABEL_COMPARATOR);
+        Cluster.appendOtherTopics(documents, clusters);
+    }
+
+    /**
+     * Normalizes document vectors to unit length, in place. Returns the documents with at
+     * least one feature.
+     */
+    private static int [] normalize(SparseTermDocumentMatrix tdMatrix)
+    {
+        final IntArrayList nonEmpty = new IntArrayList();
+        for (int d = 0; d < tdMatrix.columns(); d++)
+        {
+            double norm = 0;
+            for (int e = tdMatrix.columnStarts[d]; e < tdMatrix.columnStarts[d + 1]; e++)
+            {
+                norm += tdMatrix.values[e] * tdMatrix.values[e];
+            }
+            if (norm > 0)
+            {
+                norm = Math.sqrt(norm);
+                for (int e = tdMatrix.columnStarts[d]; e < tdMatrix.columnStarts[d + 1]; e++)
+                {
+                    tdMatrix.values[e] /= norm;
+                }
+                nonEmpty.add(d);
+            }
+        }
+        return nonEmpty.toArray();
+    }
+
+    /**
+     * Computes centroids with mini-batch k-means, starting from centroids chosen with
+     * {@link #seeds(SparseTermDocumentMatrix, int[], int, Random)}: each iteration
+     * assigns a random batch of documents to the nearest centroids, then moves each
+     * centroid towards its documents with a learning rate decreasing with the number of
+     * documents the centroid has been assigned so far.
+     */
+    private Centroids train(SparseTermDocumentMatrix tdMatrix, int [] nonEmpty)
+    {
+        final Random random = randomSeed != 0 ? new Random(randomSeed) : new Random();
+
+        // Initial centroids: distinct document vectors
+        final IntArrayList seeds = seeds(tdMatrix, nonEmpty,
+            Math.min(clusterCount, nonEmpty.length), random);
+        final int k = seeds.size();
+        final Centroids centroids = new Centroids(k, tdMatrix.rows);
+        for (int i = 0; i < k; i++)
+        {
+            centroids.update(tdMatrix, seeds.get(i), i);
+        }
+
+        final int [] batch = new int [Math.min(batchSize, nonEmpty.length)];
+        final int [] assignments = new int [batch.length];
+        final double [] movement = new double [k];
+        for (int it = 0; it < maxIterations; it++)
+        {
+            for (int i = 0; i < batch.length; i++)
+            {
+                batch[i] = nonEmpty[random.nextInt(nonEmpty.length)];
+                assignments[i] = centroids.nearest(tdMatrix, batch[i]);
+            }
+
+            Arrays.fill(movement, 0);
+            for (int i = 0; i < batch.length; i++)
+            {
+                movement[assignments[i]] += centroids.update(tdMatrix, batch[i],
+                    assignments[i]);
+            }
+
+            double maxMovement = 0;
+            for (double m : movement)
+            {
+                maxMovement = Math.max(maxMovement, m);
+            }
+            if (maxMovement < convergenceTolerance)
+            {
+                break;
+            }
+        }
+        return centroids;
+    }
+
+    /**
+     * Chooses up to <code>count</code> documents as the initial centroids with k-means++
+     * seeding: the first document is chosen at random, each following one with the
+     * probability proportional to its squared distance from the nearest document chosen
+     * so far. Documents identical to a chosen one are never chosen, so fewer documents are
+     * returned if there are fewer distinct document vectors.
+     */
+    private static IntArrayList seeds(SparseTermDocumentMatrix tdMatrix, int [] nonEmpty,
+        int count, Random random)
+    {
+        final IntArrayList seeds = new IntArrayList(count);
+        final double [] distances = new double [nonEmpty.length];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        final double [] seed = new double [tdMatrix.rows];
+
+        int chosen = nonEmpty[random.nextInt(nonEmpty.length)];
+        while (true)
+        {
+            seeds.add(chosen);
+            if (seeds.size() == count)
+            {
+                break;
+            }
+
+            // Documents have unit length, so |d - s|^2 = 2 - 2 * d.s
+            for (int e = tdMatrix.columnStarts[chosen]; e < tdMatrix.columnStarts[chosen + 1]; e++)
+            {
+                seed[tdMatrix.rowIndices[e]] = tdMatrix.values[e];
+            }
+            double total = 0;
+            for (int i = 0; i < nonEmpty.length; i++)
+            {
+                final int d = nonEmpty[i];
+                double dot = 0;
+                for (int e = tdMatrix.columnStarts[d]; e < tdMatrix.columnStarts[d + 1]; e++)
+                {
+                    dot += seed[tdMatrix.rowIndices[e]] * tdMatrix.values[e];
+                }
+                double distance = 2 - 2 * dot;
+                if (distance < MIN_SEED_DISTANCE)
+                {
+                    distance = 0;
+                }
+                distances[i] = Math.min(distances[i], distance);
+                total += distances[i];
+            }
+            for (int e = tdMatrix.columnStarts[chosen]; e < tdMatrix.columnStarts[chosen + 1]; e++)
+            {
+                seed[tdMatrix.rowIndices[e]] = 0;
+            }
+
+            if (total == 0)
+            {
+                break;
+            }
+            double threshold = random.nextDouble() * total;
+            for (int i = 0; i < nonEmpty.length; i++)
+            {
+                if (distances[i] > 0)
+                {
+                    chosen = nonEmpty[i];
+                    threshold -= distances[i];
+                    if (threshold < 0)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Dense centroid vectors. Each centroid is stored as a vector and a scale, so that
+     * moving it towards a document only changes the elements non-zero in the document.
+     */
+    private static final class Centroids
+    {
+        /** Vectors of the centroids, to be multiplied by {@link #scales}. */
+        private final double [][] vectors;
+
+        private final double [] scales;
+
+        /** Squared lengths of the centroids. */
+        private final double [] squaredNorms;
+
+        /** The number of documents each centroid has been moved towards. */
+        private final int [] counts;
+
+        Centroids(int count, int rows)
+        {
+            this.vectors = new double [count][rows];
+            this.scales = new double [count];
+            this.squaredNorms = new double [count];
+            this.counts = new int [count];
+        }
+
+        int count()
+        {
+            return vectors.length;
+        }
+
+        /**
+         * Returns the dot product of the (normalized) document and the centroid.
+         */
+        double similarity(SparseTermDocumentMatrix tdMatrix, int document, int centroid)
+        {
+            final double [] vector = vectors[centroid];
+            double sum = 0;
+            for (int e = tdMatrix.columnStarts[document]; e < tdMatrix.columnStarts[document + 1]; e++)
+            {
+                sum += vector[tdMatrix.rowIndices[e]] * tdMatrix.values[e];
+            }
+            return sum * scales[centroid];
+        }
+
+        /**
+         * Returns the centroid nearest to the document. Documents have unit length, so
+         * the nearest centroid maximizes <code>d&middot;c - |c|&sup2;/2</code>.
+         */
+        int nearest(SparseTermDocumentMatrix tdMatrix, int document)
+        {
+            int nearest = 0;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int c = 0; c < vectors.length; c++)
+            {
+                final double value = similarity(tdMatrix, document, c) - squaredNorms[c] / 2;
+                if (value > max)
+                {
+                    max = value;
+                    nearest = c;
+                }
+            }
+            return nearest;
+        }
+
+        /**
+         * Moves the centroid towards the document with the learning rate of
+         * <code>1 / count</code>, returns the distance the centroid moved.
+         */
+        double update(SparseTermDocumentMatrix tdMatrix, int document, int centroid)
+        {
+            final double eta = 1.0 / ++counts[centroid];
+            final double similarity = similarity(tdMatrix, document, centroid);
+            final double squaredDistance = Math.max(0,
+                1 - 2 * similarity + squaredNorms[centroid]);
+
+            // c' = (1 - eta) * c + eta * d
+            final double [] vector = vectors[centroid];
+            double scale = scales[centroid] * (1 - eta);
+            if (scale < MIN_SCALE)
+            {
+                for (int r = 0; r < vector.length; r++)
+                {
+                    vector[r] *= scale;
+                }
+                scale = 1;
+            }
+            for (int e = tdMatrix.columnStarts[document]; e < tdMatrix.columnStarts[document + 1]; e++)
+            {
+                vector[tdMatrix.rowIndices[e]] += eta * tdMatrix.values[e] / scale;
+            }
+            scales[centroid] = scale;
+            squaredNorms[centroid] = (1 - eta) * (1 - eta) * squaredNorms[centroid]
+                + 2 * (1 - eta) * eta * similarity + eta * eta;
+
+            return eta * Math.sqrt(squaredDistance);
+        }
+    }
+
+    /**
+     * Returns the words with the largest total weight in the cluster's documents.
+     */
+    private List<String> getLabels(IntArrayList documents,
+        SparseTermDocumentMatrix tdMatrix, final double [] weights,
+        IntIntHashMap rowToStemIndex, int [] mostFrequentOriginalWordIndex,
+        char [][] wordImage)
+    {
+        Arrays.fill(weights, 0);
+        for (int i = 0; i < documents.size(); i++)
+        {
+            final int d = documents.get(i);
+            for (int e = tdMatrix.columnStarts[d]; e < tdMatrix.columnStarts[d + 1]; e++)
+            {
+                weights[tdMatrix.rowIndices[e]] += tdMatrix.values[e];
+            }
+        }
+
+        final int [] order = IndirectSort.mergesort(0, weights.length,
+            new IndirectComparator.DescendingDoubleComparator(weights));
+
+        final List<String> labels = Lists.newArrayListWithCapacity(labelCount);
+        for (int i = 0; i < order.length && labels.size() < labelCount
+            && weights[order[i]] > 0; i++)
+        {
+            labels.add(LabelFormatter.format(new char [] []
+            {
+                wordImage[mostFrequentOriginalWordIndex[rowToStemIndex.get(order[i])]]
+            }, new boolean []
+            {
+                false
+            }, false));
+        }
+        return labels;
+    }
+}
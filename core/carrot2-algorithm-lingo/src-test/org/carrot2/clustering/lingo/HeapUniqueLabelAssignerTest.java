@@ -0,0 +1,113 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.clustering.lingo;
+
+import java.util.Collections;
+
+import org.carrot2.core.Document;
+import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
+import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+import org.carrot2.text.preprocessing.PreprocessingContext;
+import org.carrot2.text.vsm.ReducedVectorSpaceModelContext;
+import org.carrot2.text.vsm.VectorSpaceModelContext;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link HeapUniqueLabelAssigner} against {@link UniqueLabelAssigner}.
+ */
+public class HeapUniqueLabelAssignerTest extends CarrotTestCase
+{
+    /** Feature index of the first phrase label. */
+    private static final int FIRST_PHRASE_FEATURE = 1000;
+
+    @Test
+    public void testSameAsUniqueLabelAssigner()
+    {
+        for (int round = 0; round < 200; round++)
+        {
+            final int clusters = randomIntBetween(1, 20);
+            final int stems = randomIntBetween(0, 30);
+            final int phrases = randomIntBetween(0, 30);
+            final DoubleMatrix2D stemCos = randomMatrix(stems, clusters);
+            final DoubleMatrix2D phraseCos = randomBoolean() ? randomMatrix(phrases,
+                clusters) : null;
+
+            final LingoProcessingContext expected = createContext(stems, phrases);
+            new UniqueLabelAssigner().assignLabels(expected, stemCos.copy(),
+                rowToStemIndex(stems), phraseCos != null ? phraseCos.copy() : null);
+
+            final LingoProcessingContext actual = createContext(stems, phrases);
+            new HeapUniqueLabelAssigner().assignLabels(actual, stemCos,
+                rowToStemIndex(stems), phraseCos);
+
+            assertArrayEquals(expected.clusterLabelFeatureIndex,
+                actual.clusterLabelFeatureIndex);
+            assertArrayEquals(expected.clusterLabelScore, actual.clusterLabelScore, 0);
+        }
+    }
+
+    /**
+     * Few distinct values, so that there are many ties, some of them zero or negative.
+     */
+    private DoubleMatrix2D randomMatrix(int rows, int columns)
+    {
+        final DoubleMatrix2D matrix = new DenseDoubleMatrix2D(rows, columns);
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                matrix.setQuick(r, c, randomIntBetween(-2, 5) / 5.0);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Stems and words have the same indices, phrases start at
+     * {@link #FIRST_PHRASE_FEATURE}.
+     */
+    private static LingoProcessingContext createContext(int stems, int phrases)
+    {
+        final PreprocessingContext context = new PreprocessingContext(null,
+            Collections.<Document> emptyList(), null);
+        context.allStems.mostFrequentOriginalWordIndex = new int [stems];
+        for (int i = 0; i < stems; i++)
+        {
+            context.allStems.mostFrequentOriginalWordIndex[i] = i;
+        }
+        context.allLabels.featureIndex = new int [phrases];
+        for (int i = 0; i < phrases; i++)
+        {
+            context.allLabels.featureIndex[i] = FIRST_PHRASE_FEATURE + i;
+        }
+        context.allLabels.firstPhraseIndex = 0;
+
+        return new LingoProcessingContext(new ReducedVectorSpaceModelContext(
+            new VectorSpaceModelContext(context)));
+    }
+
+    private static IntIntHashMap rowToStemIndex(int stems)
+    {
+        final IntIntHashMap rowToStemIndex = new IntIntHashMap();
+        for (int i = 0; i < stems; i++)
+        {
+            rowToStemIndex.put(i, i);
+        }
+        return rowToStemIndex;
+    }
+}
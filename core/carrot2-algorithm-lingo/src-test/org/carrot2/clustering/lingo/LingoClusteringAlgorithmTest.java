@@ -14,20 +14,26 @@ package org.carrot2.clustering.lingo;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import org.carrot2.core.Cluster;
 import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
 import org.carrot2.core.ProcessingException;
 import org.carrot2.core.attribute.AttributeNames;
 import org.carrot2.core.test.ClusteringAlgorithmTestBase;
 import org.carrot2.core.test.SampleDocumentData;
+import org.carrot2.text.clustering.MultilingualClustering;
+import org.carrot2.text.clustering.MultilingualClustering.LanguageAggregationStrategy;
 import org.carrot2.text.preprocessing.CaseNormalizer;
+import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
 import org.carrot2.util.attribute.AttributeUtils;
 import org.junit.Test;
 
 import org.carrot2.shaded.guava.common.collect.ImmutableList;
 import org.carrot2.shaded.guava.common.collect.Lists;
 
+import static org.carrot2.core.test.assertions.Carrot2CoreAssertions.assertThatClusters;
 import static org.junit.Assert.*;
 
 /**
@@ -70,6 +76,102 @@ public class LingoClusteringAlgorithmTest extends
         assertThat(clustersWithThreshold.size()).isGreaterThan(0);
     }
 
+    @Test
+    public void testParallelMatrixMultiplication()
+    {
+        final Set<String> serialLabels = collectClusterLabels(cluster(SampleDocumentData.DOCUMENTS_DATA_MINING));
+
+        initAttributes.put(AttributeUtils.getKey(LingoClusteringAlgorithm.class,
+            "matrixMultiplicationThreads"), 4);
+        final Set<String> parallelLabels = collectClusterLabels(cluster(SampleDocumentData.DOCUMENTS_DATA_MINING));
+
+        assertEquals(serialLabels, parallelLabels);
+    }
+
+    @Test
+    public void testHeapUniqueLabelAssigner()
+    {
+        processingAttributes.put(AttributeUtils.getKey(LingoClusteringAlgorithm.class,
+            "desiredClusterCountBase"), randomIntBetween(10, 50));
+        final List<Cluster> unique = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        processingAttributes.put(AttributeUtils.getKey(ClusterBuilder.class,
+            "labelAssigner"), HeapUniqueLabelAssigner.class);
+        final List<Cluster> heap = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        assertThatClusters(heap).isEquivalentTo(unique);
+    }
+
+    @Test
+    public void testCompactPreprocessingData()
+    {
+        final List<Cluster> regular = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        initAttributes.put(AttributeUtils.getKey(BasicPreprocessingPipeline.class,
+            "compactContext"), true);
+        initAttributes.put(AttributeUtils.getKey(BasicPreprocessingPipeline.class,
+            "reuseContextBuffers"), true);
+        final List<Cluster> compact = cluster(SampleDocumentData.DOCUMENTS_DATA_MINING)
+            .getClusters();
+
+        assertThatClusters(compact).isEquivalentTo(regular);
+    }
+
+    @Test
+    public void testConcurrentLanguageClustering()
+    {
+        final LanguageCode [] languages = new LanguageCode []
+        {
+            LanguageCode.ENGLISH, LanguageCode.GERMAN, LanguageCode.FRENCH
+        };
+        final List<Document> documents = Lists.newArrayList();
+        for (Document document : SampleDocumentData.DOCUMENTS_DATA_MINING)
+        {
+            documents.add(new Document(document.getTitle(), document.getSummary(),
+                document.getContentUrl(), languages[documents.size() % languages.length]));
+        }
+        processingAttributes.put(AttributeUtils.getKey(MultilingualClustering.class,
+            "languageAggregationStrategy"), LanguageAggregationStrategy.FLATTEN_NONE);
+
+        final List<Cluster> sequential = cluster(documents).getClusters();
+
+        initAttributes.put(AttributeUtils.getKey(MultilingualClustering.class,
+            "languageClusteringThreads"), 3);
+        final List<Cluster> concurrent = cluster(documents).getClusters();
+
+        assertThatClusters(concurrent).isEquivalentTo(sequential);
+    }
+
+    @Test
+    public void testConcurrentLanguageClusteringWithParallelMatrixMultiplication()
+    {
+        final LanguageCode [] languages = new LanguageCode []
+        {
+            LanguageCode.ENGLISH, LanguageCode.GERMAN
+        };
+        final List<Document> documents = Lists.newArrayList();
+        for (Document document : SampleDocumentData.DOCUMENTS_DATA_MINING)
+        {
+            documents.add(new Document(document.getTitle(), document.getSummary(),
+                document.getContentUrl(), languages[documents.size() % languages.length]));
+        }
+        processingAttributes.put(AttributeUtils.getKey(MultilingualClustering.class,
+            "languageAggregationStrategy"), LanguageAggregationStrategy.FLATTEN_NONE);
+
+        final List<Cluster> sequential = cluster(documents).getClusters();
+
+        initAttributes.put(AttributeUtils.getKey(MultilingualClustering.class,
+            "languageClusteringThreads"), 2);
+        initAttributes.put(AttributeUtils.getKey(LingoClusteringAlgorithm.class,
+            "matrixMultiplicationThreads"), 4);
+        final List<Cluster> concurrent = cluster(documents).getClusters();
+
+        assertThatClusters(concurrent).isEquivalentTo(sequential);
+    }
+
     @Test
     public void testNoLabelCandidates()
     {
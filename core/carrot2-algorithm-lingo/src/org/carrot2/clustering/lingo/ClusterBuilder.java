@@ -21,6 +21,7 @@ import org.carrot2.mahout.math.matrix.*;
 import org.carrot2.text.preprocessing.PreprocessingContext;
 import org.carrot2.text.vsm.ITermWeighting;
 import org.carrot2.text.vsm.VectorSpaceModelContext;
+import org.carrot2.util.CompressedBitSet;
 import org.carrot2.util.GraphUtils;
 import org.carrot2.util.LinearApproximation;
 import org.carrot2.util.attribute.*;
@@ -109,7 +110,7 @@ public class ClusterBuilder
     @Required
     @ImplementingClasses(classes =
     {
-        UniqueLabelAssigner.class, SimpleLabelAssigner.class
+        UniqueLabelAssigner.class, SimpleLabelAssigner.class, HeapUniqueLabelAssigner.class
     })
     @Group(DefaultGroups.LABELS)
     @Level(AttributeLevel.ADVANCED)
@@ -137,7 +138,7 @@ public class ClusterBuilder
         final int [] labelsFeatureIndex = preprocessingContext.allLabels.featureIndex;
         final int [] mostFrequentOriginalWordIndex = preprocessingContext.allStems.mostFrequentOriginalWordIndex;
         final int [][] phrasesWordIndices = preprocessingContext.allPhrases.wordIndices;
-        final BitSet [] labelsDocumentIndices = preprocessingContext.allLabels.documentIndices;
+        final CompressedBitSet [] labelsDocumentIndices = preprocessingContext.allLabels.documentIndices;
         final int wordCount = preprocessingContext.allWords.image.length;
         final int documentCount = preprocessingContext.documents.size();
 
@@ -256,7 +257,7 @@ public class ClusterBuilder
     }
 
     private double getDocumentCountPenalty(int labelIndex, int documentCount,
-        BitSet [] labelsDocumentIndices)
+        CompressedBitSet [] labelsDocumentIndices)
     {
         return documentSizeCoefficients.getValue(
             labelsDocumentIndices[labelIndex].cardinality() / (double) documentCount);
@@ -268,10 +269,11 @@ public class ClusterBuilder
     void assignDocuments(LingoProcessingContext context)
     {
         final int [] clusterLabelFeatureIndex = context.clusterLabelFeatureIndex;
-        final BitSet [] clusterDocuments = new BitSet [clusterLabelFeatureIndex.length];
+        final CompressedBitSet [] clusterDocuments =
+            new CompressedBitSet [clusterLabelFeatureIndex.length];
 
         final int [] labelsFeatureIndex = context.preprocessingContext.allLabels.featureIndex;
-        final BitSet [] documentIndices = context.preprocessingContext.allLabels.documentIndices;
+        final CompressedBitSet [] documentIndices = context.preprocessingContext.allLabels.documentIndices;
         final IntIntHashMap featureValueToIndex = new IntIntHashMap();
 
         for (int i = 0; i < labelsFeatureIndex.length; i++)
@@ -294,42 +296,25 @@ public class ClusterBuilder
      */
     void merge(LingoProcessingContext context)
     {
-        final BitSet [] clusterDocuments = context.clusterDocuments;
+        final CompressedBitSet [] clusterDocuments = context.clusterDocuments;
         final int [] clusterLabelFeatureIndex = context.clusterLabelFeatureIndex;
         final double [] clusterLabelScore = context.clusterLabelScore;
 
         final List<IntArrayList> mergedClusters = GraphUtils.findCoherentSubgraphs(
             clusterDocuments.length, new GraphUtils.IArcPredicate()
             {
-                private BitSet temp = new BitSet();
-
                 public boolean isArcPresent(int clusterA, int clusterB)
                 {
-                    temp.clear();
-                    int size;
-                    BitSet setA = clusterDocuments[clusterA];
-                    BitSet setB = clusterDocuments[clusterB];
+                    final CompressedBitSet setA = clusterDocuments[clusterA];
+                    final CompressedBitSet setB = clusterDocuments[clusterB];
 
                     // Suitable for flat clustering
                     // A small subgroup contained within a bigger group
                     // will give small overlap ratio. Big ratios will
                     // be produced only for balanced group sizes.
-                    if (setA.cardinality() < setB.cardinality())
-                    {
-                        // addAll == or
-                        // reiatinAll == and | intersect
-                        temp.or(setA);
-                        temp.intersect(setB);
-                        size = (int) setB.cardinality();
-                    }
-                    else
-                    {
-                        temp.or(setB);
-                        temp.intersect(setA);
-                        size = (int) setA.cardinality();
-                    }
-
-                    return temp.cardinality() / (double) size >= clusterMergingThreshold;
+                    final int size = Math.max(setA.cardinality(), setB.cardinality());
+                    final int overlap = CompressedBitSet.intersectionCount(setA, setB);
+                    return overlap / (double) size >= clusterMergingThreshold;
                 }
             }, true);
 
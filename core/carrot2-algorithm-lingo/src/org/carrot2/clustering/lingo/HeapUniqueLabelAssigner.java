@@ -0,0 +1,179 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.clustering.lingo;
+
+import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
+import org.carrot2.text.preprocessing.PreprocessingContext;
+import org.carrot2.util.attribute.Bindable;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+
+/**
+ * Assigns the same unique labels as {@link UniqueLabelAssigner}, but without scanning
+ * the whole cosine matrices for each label. All positive base vector--label similarities
+ * are put in a heap once; the largest similarity whose label and base vector have not
+ * been selected yet is then popped for each label, skipping the stale ones. Choosing the
+ * labels takes <i>O(n log n)</i> time for <i>n</i> positive similarities, rather than
+ * <i>O(k n)</i> for <i>k</i> base vectors, which makes a difference for large numbers
+ * of clusters.
+ */
+@Bindable
+public class HeapUniqueLabelAssigner implements ILabelAssigner
+{
+    public void assignLabels(LingoProcessingContext context, DoubleMatrix2D stemCos,
+        IntIntHashMap filteredRowToStemIndex, DoubleMatrix2D phraseCos)
+    {
+        final PreprocessingContext preprocessingContext = context.preprocessingContext;
+        final int firstPhraseIndex = preprocessingContext.allLabels.firstPhraseIndex;
+        final int [] labelsFeatureIndex = preprocessingContext.allLabels.featureIndex;
+        final int [] mostFrequentOriginalWordIndex = preprocessingContext.allStems.mostFrequentOriginalWordIndex;
+        final int desiredClusterCount = stemCos.columns();
+
+        // Candidates in the order in which UniqueLabelAssigner breaks ties: stems
+        // before phrases, then by row and column.
+        final IntArrayList rows = new IntArrayList();
+        final IntArrayList columns = new IntArrayList();
+        final DoubleArrayList scores = new DoubleArrayList();
+        addCandidates(stemCos, rows, columns, scores);
+        final int firstPhraseCandidate = rows.size();
+        if (phraseCos != null)
+        {
+            addCandidates(phraseCos, rows, columns, scores);
+        }
+
+        final Heap heap = new Heap(scores.buffer, rows.size());
+        final boolean [] stemUsed = new boolean [stemCos.rows()];
+        final boolean [] phraseUsed = new boolean [phraseCos != null ? phraseCos.rows() : 0];
+        final boolean [] columnUsed = new boolean [desiredClusterCount];
+
+        final IntArrayList clusterLabelFeatureIndex = new IntArrayList(
+            desiredClusterCount);
+        final DoubleArrayList clusterLabelScore = new DoubleArrayList(desiredClusterCount);
+        while (clusterLabelFeatureIndex.size() < desiredClusterCount && !heap.isEmpty())
+        {
+            final int candidate = heap.pop();
+            final int row = rows.get(candidate);
+            final int column = columns.get(candidate);
+            final boolean phrase = candidate >= firstPhraseCandidate;
+            if (columnUsed[column] || (phrase ? phraseUsed[row] : stemUsed[row]))
+            {
+                // Either the base vector or the label has already been selected
+                continue;
+            }
+
+            columnUsed[column] = true;
+            if (phrase)
+            {
+                phraseUsed[row] = true;
+                clusterLabelFeatureIndex.add(labelsFeatureIndex[row + firstPhraseIndex]);
+            }
+            else
+            {
+                stemUsed[row] = true;
+                clusterLabelFeatureIndex.add(mostFrequentOriginalWordIndex[filteredRowToStemIndex
+                    .get(row)]);
+            }
+            clusterLabelScore.add(scores.get(candidate));
+        }
+
+        context.clusterLabelFeatureIndex = clusterLabelFeatureIndex.toArray();
+        context.clusterLabelScore = clusterLabelScore.toArray();
+    }
+
+    /**
+     * Adds positive elements of the matrix, row by row.
+     */
+    private static void addCandidates(DoubleMatrix2D matrix, IntArrayList rows,
+        IntArrayList columns, DoubleArrayList scores)
+    {
+        for (int r = 0; r < matrix.rows(); r++)
+        {
+            for (int c = 0; c < matrix.columns(); c++)
+            {
+                final double value = matrix.getQuick(r, c);
+                if (value > 0)
+                {
+                    rows.add(r);
+                    columns.add(c);
+                    scores.add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * A binary heap of candidate indices, the largest score first, equal scores by the
+     * lower index first.
+     */
+    private static final class Heap
+    {
+        private final double [] scores;
+        private final int [] heap;
+        private int size;
+
+        Heap(double [] scores, int size)
+        {
+            this.scores = scores;
+            this.heap = new int [size];
+            this.size = size;
+            for (int i = 0; i < size; i++)
+            {
+                heap[i] = i;
+            }
+            for (int i = size / 2 - 1; i >= 0; i--)
+            {
+                siftDown(i);
+            }
+        }
+
+        boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        int pop()
+        {
+            final int top = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+            return top;
+        }
+
+        private void siftDown(int i)
+        {
+            final int candidate = heap[i];
+            while (2 * i + 1 < size)
+            {
+                int child = 2 * i + 1;
+                if (child + 1 < size && before(heap[child + 1], heap[child]))
+                {
+                    child++;
+                }
+                if (!before(heap[child], candidate))
+                {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = candidate;
+        }
+
+        private boolean before(int a, int b)
+        {
+            return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+        }
+    }
+}
@@ -14,6 +14,7 @@ package org.carrot2.clustering.lingo;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.carrot2.core.Cluster;
 import org.carrot2.core.Document;
@@ -26,7 +27,8 @@ import org.carrot2.core.attribute.CommonAttributes;
 import org.carrot2.core.attribute.Init;
 import org.carrot2.core.attribute.Internal;
 import org.carrot2.core.attribute.Processing;
-import org.carrot2.text.clustering.IMonolingualClusteringAlgorithm;
+import org.carrot2.matrix.ParallelMatrixMultiplication;
+import org.carrot2.text.clustering.IMonolingualClusteringComponent;
 import org.carrot2.text.clustering.MultilingualClustering;
 import org.carrot2.text.preprocessing.LabelFormatter;
 import org.carrot2.text.preprocessing.PreprocessingContext;
@@ -36,6 +38,7 @@ import org.carrot2.text.vsm.ReducedVectorSpaceModelContext;
 import org.carrot2.text.vsm.TermDocumentMatrixBuilder;
 import org.carrot2.text.vsm.TermDocumentMatrixReducer;
 import org.carrot2.text.vsm.VectorSpaceModelContext;
+import org.carrot2.util.CompressedBitSet;
 import org.carrot2.util.attribute.Attribute;
 import org.carrot2.util.attribute.AttributeLevel;
 import org.carrot2.util.attribute.Bindable;
@@ -50,7 +53,6 @@ import org.carrot2.util.attribute.constraint.DoubleRange;
 import org.carrot2.util.attribute.constraint.ImplementingClasses;
 import org.carrot2.util.attribute.constraint.IntRange;
 
-import com.carrotsearch.hppc.BitSet;
 import org.carrot2.shaded.guava.common.collect.Lists;
 
 /**
@@ -118,6 +120,22 @@ public class LingoClusteringAlgorithm extends ProcessingComponentBase implements
     @Group(DefaultGroups.CLUSTERS)
     public int desiredClusterCountBase = 30;
 
+    /**
+     * Matrix multiplication threads. The number of threads that may be used to multiply
+     * large dense matrices while clustering a single request. Products of small matrices
+     * are always computed on the calling thread. The value of 1 disables parallel
+     * multiplication.
+     */
+    @Init
+    @Processing
+    @Input
+    @Attribute
+    @IntRange(min = 1, max = 64)
+    @Label("Matrix multiplication threads")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(TermDocumentMatrixBuilder.MATRIX_MODEL)
+    public int matrixMultiplicationThreads = 1;
+
     /**
      * Common preprocessing tasks handler, contains bindable attributes.
      */
@@ -162,24 +180,54 @@ public class LingoClusteringAlgorithm extends ProcessingComponentBase implements
     {
         // There is a tiny trick here to support multilingual clustering without
         // refactoring the whole component: we remember the original list of documents
-        // and invoke clustering for each language separately within the
-        // IMonolingualClusteringAlgorithm implementation below. This is safe because
-        // processing components are not thread-safe by definition and
-        // IMonolingualClusteringAlgorithm forbids concurrent execution by contract.
+        // and invoke clustering for each language separately within
+        // MONOLINGUAL_CLUSTERING below. This is safe because processing components
+        // are not thread-safe by definition and MultilingualClustering never uses one
+        // component concurrently: languages clustered concurrently get their own
+        // replicas of this component.
         final List<Document> originalDocuments = documents;
-        clusters = multilingualClustering.process(documents,
-            new IMonolingualClusteringAlgorithm()
+        final int languageThreads = multilingualClustering.languageClusteringThreads;
+        final ExecutorService languageExecutor = languageThreads > 1 ? getSharedExecutor(
+            languageThreads, MultilingualClustering.class) : null;
+        try
+        {
+            clusters = multilingualClustering.process(documents, this,
+                MONOLINGUAL_CLUSTERING, languageExecutor);
+        }
+        finally
+        {
+            documents = originalDocuments;
+        }
+    }
+
+    /**
+     * Clusters documents in one language with this component or one of its replicas.
+     * Parallel matrix multiplication is enabled here rather than in {@link #process()}
+     * because replicas run on language clustering threads.
+     */
+    private static final IMonolingualClusteringComponent<LingoClusteringAlgorithm> MONOLINGUAL_CLUSTERING =
+        new IMonolingualClusteringComponent<LingoClusteringAlgorithm>()
+        {
+            public List<Cluster> process(LingoClusteringAlgorithm lingo,
+                List<Document> documents, LanguageCode language)
             {
-                public List<Cluster> process(List<Document> documents,
-                    LanguageCode language)
+                if (lingo.matrixMultiplicationThreads > 1)
                 {
-                    LingoClusteringAlgorithm.this.documents = documents;
-                    LingoClusteringAlgorithm.this.cluster(language);
-                    return LingoClusteringAlgorithm.this.clusters;
+                    ParallelMatrixMultiplication.enable(lingo.getSharedForkJoinPool(
+                        lingo.matrixMultiplicationThreads, LingoClusteringAlgorithm.class));
                 }
-            });
-        documents = originalDocuments;
-    }
+                try
+                {
+                    lingo.documents = documents;
+                    lingo.cluster(language);
+                    return lingo.clusters;
+                }
+                finally
+                {
+                    ParallelMatrixMultiplication.disable();
+                }
+            }
+        };
 
     /**
      * Performs the actual clustering with an assumption that all documents are written in
@@ -220,7 +268,7 @@ public class LingoClusteringAlgorithm extends ProcessingComponentBase implements
 
             // Format final clusters
             final int [] clusterLabelIndex = lingoContext.clusterLabelFeatureIndex;
-            final BitSet [] clusterDocuments = lingoContext.clusterDocuments;
+            final CompressedBitSet [] clusterDocuments = lingoContext.clusterDocuments;
             final double [] clusterLabelScore = lingoContext.clusterLabelScore;
             for (int i = 0; i < clusterLabelIndex.length; i++)
             {
@@ -238,7 +286,7 @@ public class LingoClusteringAlgorithm extends ProcessingComponentBase implements
                 cluster.setAttribute(Cluster.SCORE, clusterLabelScore[i]);
 
                 // Add documents
-                final BitSet bs = clusterDocuments[i];
+                final CompressedBitSet bs = clusterDocuments[i];
                 for (int bit = bs.nextSetBit(0); bit >= 0; bit = bs.nextSetBit(bit + 1))
                 {
                     cluster.addDocuments(documents.get(bit));
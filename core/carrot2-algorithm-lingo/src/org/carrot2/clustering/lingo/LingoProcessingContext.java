@@ -17,7 +17,7 @@ import org.carrot2.text.preprocessing.PreprocessingContext.AllLabels;
 import org.carrot2.text.vsm.ReducedVectorSpaceModelContext;
 import org.carrot2.text.vsm.VectorSpaceModelContext;
 
-import com.carrotsearch.hppc.BitSet;
+import org.carrot2.util.CompressedBitSet;
 
 /**
  * Stores intermediate data required during Lingo clustering.
@@ -40,7 +40,7 @@ public class LingoProcessingContext
     double [] clusterLabelScore;
 
     /** Documents assigned to clusters */
-    BitSet [] clusterDocuments;
+    CompressedBitSet [] clusterDocuments;
 
     LingoProcessingContext(ReducedVectorSpaceModelContext reducedVsmContext)
     {
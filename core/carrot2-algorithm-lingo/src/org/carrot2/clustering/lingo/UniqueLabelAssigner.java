@@ -27,6 +27,8 @@ import com.carrotsearch.hppc.*;
  * labels, which usually means that this assignment method will create more clusters than
  * {@link SimpleLabelAssigner}. This method is slightly slower than
  * {@link SimpleLabelAssigner}.
+ * 
+ * @see HeapUniqueLabelAssigner
  */
 @Bindable
 public class UniqueLabelAssigner implements ILabelAssigner
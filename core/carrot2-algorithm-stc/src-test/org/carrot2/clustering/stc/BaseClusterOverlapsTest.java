@@ -0,0 +1,135 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.clustering.stc;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.carrot2.util.CompressedBitSet;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link BaseClusterOverlaps} against comparing all pairs of clusters.
+ */
+public class BaseClusterOverlapsTest extends CarrotTestCase
+{
+    @Test
+    public void testMinOverlap()
+    {
+        assertEquals(1, BaseClusterOverlaps.minOverlap(10, 0f));
+        assertEquals(6, BaseClusterOverlaps.minOverlap(10, 0.5f));
+        assertEquals(7, BaseClusterOverlaps.minOverlap(10, 0.6f));
+        assertEquals(10, BaseClusterOverlaps.minOverlap(10, 0.95f));
+        assertEquals(11, BaseClusterOverlaps.minOverlap(10, 1f));
+    }
+
+    @Test
+    public void testSameAsAllPairs()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final List<ClusterCandidate> clusters = randomClusters(randomIntBetween(0, 200));
+            final float threshold = randomThreshold();
+            assertOverlaps(clusters, threshold,
+                BaseClusterOverlaps.find(clusters, threshold, null));
+        }
+    }
+
+    @Test
+    public void testParallel()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try
+        {
+            for (int round = 0; round < 5; round++)
+            {
+                final List<ClusterCandidate> clusters = randomClusters(randomIntBetween(
+                    BaseClusterOverlaps.MIN_PARALLEL_CLUSTERS, 1000));
+                final float threshold = randomThreshold();
+                assertOverlaps(clusters, threshold,
+                    BaseClusterOverlaps.find(clusters, threshold, pool));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private float randomThreshold()
+    {
+        return rarely() ? randomFrom(new Float [] { 0f, 1f }) : randomIntBetween(0, 100) / 100f;
+    }
+
+    /**
+     * Clusters of various sizes drawn from a small pool of documents, some of them
+     * subsets of others.
+     */
+    private List<ClusterCandidate> randomClusters(int count)
+    {
+        final int documents = randomIntBetween(10, 300);
+        final List<ClusterCandidate> clusters = Lists.newArrayList();
+        for (int i = 0; i < count; i++)
+        {
+            final CompressedBitSet docs;
+            if (i > 0 && randomBoolean())
+            {
+                docs = clusters.get(randomIntBetween(0, i - 1)).documents.clone();
+                for (int j = randomIntBetween(0, 3); j > 0; j--)
+                {
+                    docs.set(randomIntBetween(0, documents - 1));
+                }
+            }
+            else
+            {
+                docs = new CompressedBitSet();
+                final int from = randomIntBetween(0, documents - 1);
+                for (int j = randomIntBetween(2, 20); j > 0; j--)
+                {
+                    docs.set(Math.min(documents - 1, from + randomIntBetween(0, 30)));
+                }
+            }
+            clusters.add(new ClusterCandidate(new int [] { 0, 0 }, docs,
+                docs.cardinality(), 1));
+        }
+        return clusters;
+    }
+
+    private static void assertOverlaps(List<ClusterCandidate> clusters, float m,
+        IntArrayList [] actual)
+    {
+        assertEquals(clusters.size(), actual.length);
+        for (int i = 0; i < clusters.size(); i++)
+        {
+            final IntArrayList expected = new IntArrayList();
+            for (int j = i + 1; j < clusters.size(); j++)
+            {
+                final float a = clusters.get(i).cardinality;
+                final float b = clusters.get(j).cardinality;
+                final float c = CompressedBitSet.intersectionCount(
+                    clusters.get(i).documents, clusters.get(j).documents);
+                if (c / a > m && c / b > m)
+                {
+                    expected.add(j);
+                }
+            }
+            assertEquals(expected, actual[i]);
+        }
+    }
+}
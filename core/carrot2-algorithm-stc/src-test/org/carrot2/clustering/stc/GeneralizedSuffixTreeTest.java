@@ -40,7 +40,7 @@ public class GeneralizedSuffixTreeTest extends CarrotTestCase
             super(sb, 2);
         }
 
-        protected void visit(int state, int card, BitSet bset, IntStack edges)
+        protected void visit(int card, BitSet bset, IntStack edges)
         {
             final StringBuilder b = new StringBuilder();
             for (int i = 0; i < edges.size(); i += 2)
@@ -50,6 +50,36 @@ public class GeneralizedSuffixTreeTest extends CarrotTestCase
             nodes.add(b.toString() + "[" + card + "]");
         }
     }
+
+    /**
+     * Collects the edges' words, lengths and documents of each visited state.
+     */
+    static class EdgesGST extends GeneralizedSuffixTree.Visitor
+    {
+        public final ArrayList<String> nodes = new ArrayList<String>();
+
+        public EdgesGST(SequenceBuilder sb, int minCardinality)
+        {
+            super(sb, minCardinality);
+        }
+
+        protected void visit(int card, BitSet bset, IntStack edges)
+        {
+            final StringBuilder b = new StringBuilder();
+            for (int i = 0; i < edges.size(); i += 2)
+            {
+                b.append("(");
+                for (int j = edges.get(i); j <= edges.get(i + 1); j++)
+                    b.append(sb.input.get(j) + " ");
+                b.append(") ");
+            }
+
+            b.append("[").append(card).append("]");
+            for (int doc = bset.nextSetBit(0); doc >= 0; doc = bset.nextSetBit(doc + 1))
+                b.append(" ").append(doc);
+            nodes.add(b.toString());
+        }
+    }
     
     @Test
     public void testMultiphraseGST()
@@ -63,18 +93,12 @@ public class GeneralizedSuffixTreeTest extends CarrotTestCase
         sb.addPhrase(4, 2, 3, 5);
         sb.endDocument();
 
-        sb.buildSuffixTree();
-
-        TestGST gst = new TestGST(sb);
-        gst.visit();
-
-        Collections.sort(gst.nodes);
-        assertArrayEquals(new Object [] {
+        assertNodes(sb, new Object [] {
             "1 2 3 [2]",
             "2 3 [3]",
             "3 [3]",
             "4 [2]",
-        }, gst.nodes.toArray());        
+        });
     }
 
     /**
@@ -93,19 +117,13 @@ public class GeneralizedSuffixTreeTest extends CarrotTestCase
         sb.addPhrase(4, 2, 3, 5);
         sb.endDocument();
 
-        sb.buildSuffixTree();
-
-        TestGST gst = new TestGST(sb);
-        gst.visit();
-
-        Collections.sort(gst.nodes);
-        assertArrayEquals(new Object [] {
+        assertNodes(sb, new Object [] {
             "0 1 2 3 [2]",
             "1 2 3 [3]",
             "2 3 [4]",
             "3 [4]",
             "4 [2]",
-        }, gst.nodes.toArray());        
+        });
     }
 
     /**
@@ -117,9 +135,67 @@ public class GeneralizedSuffixTreeTest extends CarrotTestCase
         final SequenceBuilder sb = new SequenceBuilder();
         sb.endDocument();
 
-        sb.buildSuffixTree();
+        assertNodes(sb, new Object [0]);
+    }
 
+    /**
+     * The suffix array must produce the same states, split into the same edges, as the
+     * suffix tree.
+     */
+    @Test
+    public void testSuffixArrayEquivalentToSuffixTree()
+    {
+        for (int round = 0; round < 200; round++)
+        {
+            final SequenceBuilder sb = new SequenceBuilder();
+            final int words = randomIntBetween(1, 6);
+            for (int documents = randomIntBetween(0, 10); documents > 0; documents--)
+            {
+                // Some documents are empty.
+                for (int phrases = randomIntBetween(0, 3); phrases > 0; phrases--)
+                {
+                    final int [] phrase = new int [randomIntBetween(1, 8)];
+                    for (int i = 0; i < phrase.length; i++)
+                    {
+                        phrase[i] = randomIntBetween(0, words - 1);
+                    }
+                    sb.addPhrase(phrase);
+                }
+                sb.endDocument();
+            }
+
+            final int minCardinality = randomIntBetween(2, 3);
+            sb.buildSuffixTree();
+            final EdgesGST tree = new EdgesGST(sb, minCardinality);
+            tree.visit();
+
+            sb.stree = null;
+            sb.buildSuffixArray();
+            final EdgesGST array = new EdgesGST(sb, minCardinality);
+            array.visit();
+
+            Collections.sort(tree.nodes);
+            Collections.sort(array.nodes);
+            assertEquals(tree.nodes, array.nodes);
+        }
+    }
+
+    /**
+     * Checks the states visited with a suffix tree and a suffix array.
+     */
+    private static void assertNodes(SequenceBuilder sb, Object [] expected)
+    {
+        sb.buildSuffixTree();
         TestGST gst = new TestGST(sb);
         gst.visit();
+        Collections.sort(gst.nodes);
+        assertArrayEquals(expected, gst.nodes.toArray());
+
+        sb.stree = null;
+        sb.buildSuffixArray();
+        gst = new TestGST(sb);
+        gst.visit();
+        Collections.sort(gst.nodes);
+        assertArrayEquals(expected, gst.nodes.toArray());
     }
 }
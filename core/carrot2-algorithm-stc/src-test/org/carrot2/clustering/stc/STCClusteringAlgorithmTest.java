@@ -18,9 +18,12 @@ import java.util.Set;
 
 import org.carrot2.core.Cluster;
 import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
 import org.carrot2.core.ProcessingResult;
 import org.carrot2.core.test.ClusteringAlgorithmTestBase;
 import org.carrot2.core.test.SampleDocumentData;
+import org.carrot2.text.clustering.MultilingualClustering;
+import org.carrot2.text.clustering.MultilingualClustering.LanguageAggregationStrategy;
 import org.carrot2.text.preprocessing.CaseNormalizer;
 import org.carrot2.util.attribute.AttributeUtils;
 import org.junit.Test;
@@ -28,6 +31,7 @@ import org.junit.Test;
 import org.carrot2.shaded.guava.common.collect.Lists;
 import org.carrot2.shaded.guava.common.io.Resources;
 
+import static org.carrot2.core.test.assertions.Carrot2CoreAssertions.assertThatClusters;
 import static org.junit.Assert.*;
 
 /**
@@ -129,4 +133,45 @@ public class STCClusteringAlgorithmTest extends
             clusterLabels.contains("Guns") &&
             clusterLabels.contains("Gun")).isFalse();
     }
+
+    @Test
+    public void testSuffixArrayBaseClusters()
+    {
+        for (List<Document> documents : SampleDocumentData.ALL)
+        {
+            final List<Cluster> tree = cluster(documents).getClusters();
+
+            STCClusteringAlgorithmDescriptor.attributeBuilder(processingAttributes)
+                .suffixArrayBaseClusters(true);
+            final List<Cluster> array = cluster(documents).getClusters();
+            processingAttributes.clear();
+
+            assertThatClusters(array).isEquivalentTo(tree);
+        }
+    }
+
+    @Test
+    public void testConcurrentLanguageClustering()
+    {
+        final LanguageCode [] languages = new LanguageCode []
+        {
+            LanguageCode.ENGLISH, LanguageCode.GERMAN, LanguageCode.FRENCH
+        };
+        final List<Document> documents = Lists.newArrayList();
+        for (Document document : SampleDocumentData.DOCUMENTS_DATA_MINING)
+        {
+            documents.add(new Document(document.getTitle(), document.getSummary(),
+                document.getContentUrl(), languages[documents.size() % languages.length]));
+        }
+        processingAttributes.put(AttributeUtils.getKey(MultilingualClustering.class,
+            "languageAggregationStrategy"), LanguageAggregationStrategy.FLATTEN_NONE);
+
+        final List<Cluster> sequential = cluster(documents).getClusters();
+
+        initAttributes.put(AttributeUtils.getKey(MultilingualClustering.class,
+            "languageClusteringThreads"), 3);
+        final List<Cluster> concurrent = cluster(documents).getClusters();
+
+        assertThatClusters(concurrent).isEquivalentTo(sequential);
+    }
 }
@@ -0,0 +1,263 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.clustering.stc;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.carrot2.core.ProcessingException;
+import org.carrot2.util.CompressedBitSet;
+import org.carrot2.util.ExceptionUtils;
+
+import com.carrotsearch.hppc.IntArrayList;
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+/**
+ * Finds pairs of base clusters whose document sets overlap by more than a given ratio of
+ * each cluster's size, without comparing all pairs.
+ * <p>
+ * Two clusters of sizes <i>a</i> and <i>b</i> can only overlap by more than
+ * <i>m&middot;a</i> documents if they share a document among the first
+ * <i>a - t + 1</i> documents of the first cluster, <i>t</i> being the minimum
+ * overlap, and similarly for the second cluster (prefix filtering). Documents are
+ * ordered from the rarest, so these prefixes rarely intersect. Only the clusters
+ * sharing a document in their prefixes (found in an inverted index) are compared
+ * exactly.
+ * </p>
+ */
+final class BaseClusterOverlaps
+{
+    /**
+     * The minimum number of base clusters for which exact overlaps are computed on
+     * a pool, if available.
+     */
+    static final int MIN_PARALLEL_CLUSTERS = 500;
+
+    /** Document sets of the clusters. */
+    private final List<ClusterCandidate> clusters;
+
+    /** The overlap ratio to exceed. */
+    private final float threshold;
+
+    /** Start of each document's posting list in {@link #postings}. */
+    private final int [] offsets;
+
+    /** Clusters with each document in their prefix, ascending. */
+    private final int [] postings;
+
+    /** Documents in the prefix of each cluster, by rank. */
+    private final int [][] prefixes;
+
+    private BaseClusterOverlaps(List<ClusterCandidate> clusters, float threshold)
+    {
+        this.clusters = clusters;
+        this.threshold = threshold;
+
+        // Rank documents from the least frequent.
+        final int [][] documents = new int [clusters.size()][];
+        int maxDocument = -1;
+        for (int i = 0; i < documents.length; i++)
+        {
+            documents[i] = clusters.get(i).documents.toArray();
+            if (documents[i].length > 0)
+            {
+                maxDocument = Math.max(maxDocument, documents[i][documents[i].length - 1]);
+            }
+        }
+
+        final long [] frequencies = new long [maxDocument + 1];
+        for (int [] docs : documents)
+        {
+            for (int doc : docs)
+            {
+                frequencies[doc] += 1L << 32;
+            }
+        }
+        for (int doc = 0; doc < frequencies.length; doc++)
+        {
+            frequencies[doc] |= doc;
+        }
+        Arrays.sort(frequencies);
+        final int [] rank = new int [frequencies.length];
+        for (int i = 0; i < frequencies.length; i++)
+        {
+            rank[(int) frequencies[i]] = i;
+        }
+
+        // Index the prefix of each cluster.
+        this.prefixes = new int [documents.length][];
+        this.offsets = new int [rank.length + 1];
+        for (int i = 0; i < documents.length; i++)
+        {
+            final int [] ranks = documents[i];
+            for (int j = 0; j < ranks.length; j++)
+            {
+                ranks[j] = rank[ranks[j]];
+            }
+            Arrays.sort(ranks);
+
+            final int prefixLength = Math.max(0,
+                ranks.length - minOverlap(ranks.length, threshold) + 1);
+            prefixes[i] = Arrays.copyOf(ranks, prefixLength);
+            for (int r : prefixes[i])
+            {
+                offsets[r + 1]++;
+            }
+        }
+
+        for (int r = 0; r < rank.length; r++)
+        {
+            offsets[r + 1] += offsets[r];
+        }
+        this.postings = new int [offsets[rank.length]];
+        final int [] fill = Arrays.copyOf(offsets, rank.length);
+        for (int i = 0; i < prefixes.length; i++)
+        {
+            for (int r : prefixes[i])
+            {
+                postings[fill[r]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Returns, for each cluster <code>i</code>, indices <code>j &gt; i</code> (in
+     * ascending order) of clusters such that the overlap of both clusters exceeds
+     * <code>threshold</code> of the size of each. Exact overlaps are computed on the
+     * <code>pool</code> if not <code>null</code> and there are at least
+     * {@link #MIN_PARALLEL_CLUSTERS} clusters.
+     */
+    static IntArrayList [] find(List<ClusterCandidate> clusters, float threshold,
+        ForkJoinPool pool)
+    {
+        final BaseClusterOverlaps overlaps = new BaseClusterOverlaps(clusters, threshold);
+        final IntArrayList [] result = new IntArrayList [clusters.size()];
+        if (pool == null || clusters.size() < MIN_PARALLEL_CLUSTERS)
+        {
+            overlaps.find(result, 0, 1);
+            return result;
+        }
+
+        // Interleave the clusters, those with lower indices have more candidates.
+        final int chunkCount = pool.getParallelism() * 4;
+        final List<Callable<Void>> chunks = Lists.newArrayList();
+        for (int i = 0; i < chunkCount; i++)
+        {
+            final int first = i;
+            chunks.add(new Callable<Void>()
+            {
+                public Void call()
+                {
+                    overlaps.find(result, first, chunkCount);
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Void> future : pool.invokeAll(chunks))
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException("Interrupted while merging base clusters.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw ExceptionUtils.wrapAsRuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * Finds overlapping clusters of every <code>step</code>-th cluster starting at
+     * <code>first</code>.
+     */
+    private void find(IntArrayList [] result, int first, int step)
+    {
+        final int [] seen = new int [clusters.size()];
+        Arrays.fill(seen, -1);
+        for (int i = first; i < clusters.size(); i += step)
+        {
+            final IntArrayList overlapping = new IntArrayList();
+            for (int r : prefixes[i])
+            {
+                for (int k = offsets[r + 1] - 1; k >= offsets[r]; k--)
+                {
+                    final int j = postings[k];
+                    if (j <= i)
+                    {
+                        break;
+                    }
+
+                    if (seen[j] != i)
+                    {
+                        seen[j] = i;
+                        if (overlap(clusters.get(i), clusters.get(j)))
+                        {
+                            overlapping.add(j);
+                        }
+                    }
+                }
+            }
+
+            Arrays.sort(overlapping.buffer, 0, overlapping.size());
+            result[i] = overlapping;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the overlap of the clusters exceeds the threshold of
+     * the size of each cluster.
+     */
+    private boolean overlap(ClusterCandidate c1, ClusterCandidate c2)
+    {
+        final float a = c1.cardinality;
+        final float b = c2.cardinality;
+        if (Math.min(a, b) / a <= threshold || Math.min(a, b) / b <= threshold)
+        {
+            // The overlap is at most the size of the smaller cluster.
+            return false;
+        }
+
+        final float c = CompressedBitSet.intersectionCount(c1.documents, c2.documents);
+        return c / a > threshold && c / b > threshold;
+    }
+
+    /**
+     * Returns the minimum overlap exceeding the threshold of <code>size</code>, or
+     * <code>size + 1</code> if there is none.
+     */
+    static int minOverlap(int size, float threshold)
+    {
+        final float a = size;
+        int t = (int) Math.max(0, Math.min(size + 1, Math.floor(threshold * a)));
+        while (t <= size && !(t / a > threshold))
+        {
+            t++;
+        }
+        while (t > 0 && (t - 1) / a > threshold)
+        {
+            t--;
+        }
+        return t;
+    }
+}
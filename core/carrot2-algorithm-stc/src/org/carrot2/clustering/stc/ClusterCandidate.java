@@ -14,7 +14,8 @@ package org.carrot2.clustering.stc;
 
 import java.util.ArrayList;
 
-import com.carrotsearch.hppc.BitSet;
+import org.carrot2.util.CompressedBitSet;
+
 import org.carrot2.shaded.guava.common.collect.Lists;
 
 /**
@@ -30,7 +31,7 @@ final class ClusterCandidate
     /**
      * Indexes of documents this cluster covers.
      */
-    BitSet documents;
+    CompressedBitSet documents;
 
     /**
      * Pairs of integers denoting a range of indices in {@link GeneralizedSuffixTree.SequenceBuilder#input}
@@ -47,11 +48,11 @@ final class ClusterCandidate
     ClusterCandidate()
     {
         this.phrases = Lists.newArrayList();
-        this.documents = new BitSet();
+        this.documents = new CompressedBitSet();
     }
 
     /* */
-    ClusterCandidate(int [] phraseIndices, BitSet documents, int cardinality, float score)
+    ClusterCandidate(int [] phraseIndices, CompressedBitSet documents, int cardinality, float score)
     {
         assert documents.cardinality() == cardinality;
 
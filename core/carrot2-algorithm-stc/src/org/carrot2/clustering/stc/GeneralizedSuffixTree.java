@@ -20,6 +20,7 @@ import org.carrot2.text.suffixtree.ISequence;
 import org.carrot2.text.suffixtree.IntegerSequence;
 import org.carrot2.text.suffixtree.SuffixTree;
 import org.carrot2.text.suffixtree.SuffixTreeBuilder;
+import org.carrot2.text.util.SuffixArrays;
 
 import com.carrotsearch.hppc.BitSet;
 import com.carrotsearch.hppc.IntStack;
@@ -55,6 +56,16 @@ final class GeneralizedSuffixTree
          */
         public SuffixTree stree;
 
+        /**
+         * A suffix array of the input phrases, an alternative to {@link #stree}.
+         */
+        public int [] suffixArray;
+
+        /**
+         * Longest common prefixes of neighboring suffixes in {@link #suffixArray}.
+         */
+        public int [] lcp;
+
         /**
          * Callbacks for marking leaf states.
          */
@@ -66,7 +77,9 @@ final class GeneralizedSuffixTree
 
             public void next(int pos)
             {
-                if (pos == documentMarkers.get(markerIndex))
+                // Empty documents end at the same position as the previous one.
+                while (markerIndex < documentMarkers.size()
+                    && pos == documentMarkers.get(markerIndex))
                 {
                     currentDocument++;
                     markerIndex++;
@@ -120,11 +133,57 @@ final class GeneralizedSuffixTree
                 .withStateCallback(marker)
                 .build();
         }
+
+        /**
+         * Builds a suffix array and the longest common prefix array from the input
+         * phrases, which take a fraction of the memory of a suffix tree. Internal states
+         * of the suffix tree correspond to the intervals of the suffix array with a
+         * common prefix (lcp-intervals).
+         */
+        public void buildSuffixArray()
+        {
+            // Phrase separators become the lowest symbols, words follow.
+            final int separators = -(separator + 1);
+            final int [] symbols = new int [input.size()];
+            int alphabetSize = separators;
+            for (int i = 0; i < symbols.length; i++)
+            {
+                final int symbol = input.get(i);
+                symbols[i] = symbol < 0 ? -(symbol + 1) : symbol + separators;
+                alphabetSize = Math.max(alphabetSize, symbols[i] + 1);
+            }
+
+            this.suffixArray = SuffixArrays.suffixArray(symbols, alphabetSize);
+            this.lcp = SuffixArrays.lcp(symbols, suffixArray);
+        }
+
+        /**
+         * Returns the index of the document the given input position belongs to.
+         */
+        int documentAt(int position)
+        {
+            // The number of documents ending at or before the position.
+            int from = 0;
+            int to = documentMarkers.size();
+            while (from < to)
+            {
+                final int mid = (from + to) >>> 1;
+                if (documentMarkers.get(mid) <= position)
+                {
+                    from = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+            return from;
+        }
     }
 
     /**
-     * Recursive walk over the suffix tree (with additional information provided by 
-     * {@link SequenceBuilder}), extracting paths that occurred more than once.
+     * Walk over the suffix tree or the suffix array (with additional information provided
+     * by {@link SequenceBuilder}), extracting paths that occurred more than once.
      */
     static abstract class Visitor
     {
@@ -146,6 +205,7 @@ final class GeneralizedSuffixTree
         public Visitor(SequenceBuilder sb, int minCardinality)
         {
             assert minCardinality > 1;
+            assert sb.stree != null || sb.suffixArray != null;
 
             this.stree = sb.stree;
             this.sb = sb;
@@ -154,6 +214,12 @@ final class GeneralizedSuffixTree
 
         public void visit()
         {
+            if (stree == null)
+            {
+                visitIntervals();
+                return;
+            }
+
             // In a suffix tree without any documents, this will be the case. 
             if (stree.isLeaf(stree.getRootState()))
                 return;
@@ -190,12 +256,140 @@ final class GeneralizedSuffixTree
                 final int card = (int) me.cardinality();
                 if (card >= minCardinality)
                 {
-                    visit(state, card, me, edges);
+                    visit(card, me, edges);
+                }
+            }
+        }
+
+        /**
+         * Bottom-up traversal of the lcp-intervals of the suffix array. Open intervals are
+         * kept on a stack with their common prefix lengths increasing; an interval is
+         * closed at the first suffix that shares a shorter prefix and its documents are
+         * added to the parent interval.
+         */
+        private void visitIntervals()
+        {
+            final int [] sa = sb.suffixArray;
+            final int [] lcp = sb.lcp;
+            final int n = sa.length;
+            final int [] nextSmaller = nextSmaller(lcp);
+
+            // Prefix length and start of each open interval, the root at the bottom.
+            final IntStack depths = new IntStack();
+            final IntStack starts = new IntStack();
+            depths.push(0);
+            starts.push(0);
+            getBitSet(0).clear();
+
+            for (int i = 1; i <= n; i++)
+            {
+                final int depth = i < n ? lcp[i] : 0;
+                final int document = sb.documentAt(sa[i - 1]);
+                if (depth > depths.peek())
+                {
+                    // Suffix i - 1 starts a new interval.
+                    final BitSet docs = getBitSet(depths.size());
+                    docs.clear();
+                    docs.set(document);
+                    depths.push(depth);
+                    starts.push(i - 1);
+                    continue;
+                }
+
+                getBitSet(depths.size() - 1).set(document);
+                while (depth < depths.peek())
+                {
+                    final int level = depths.size() - 1;
+                    final int intervalDepth = depths.pop();
+                    final int start = starts.pop();
+                    final BitSet docs = getBitSet(level);
+
+                    final int card = (int) docs.cardinality();
+                    if (card >= minCardinality)
+                    {
+                        buildPath(sa[start], intervalDepth, depths, i, nextSmaller);
+                        visit(card, docs, edges);
+                    }
+
+                    if (depth > depths.peek())
+                    {
+                        // The parent is a new interval, its documents are already in place.
+                        depths.push(depth);
+                        starts.push(start);
+                    }
+                    else
+                    {
+                        getBitSet(level - 1).or(docs);
+                    }
                 }
             }
         }
 
-        protected abstract void visit(int state, int cardinality, BitSet documents, IntStack path);
+        /**
+         * Fills {@link #edges} with the path to an interval, split into edges the same way
+         * as in a suffix tree. Prefix lengths of the ancestor intervals are the prefix
+         * lengths of the open intervals on the left and the decreasing lcp values
+         * following <code>end</code> on the right.
+         */
+        private void buildPath(int position, int depth, IntStack openDepths, int end,
+            int [] nextSmaller)
+        {
+            final int [] lcp = sb.lcp;
+            edges.clear();
+
+            // Merge both sequences of decreasing prefix lengths, then reverse the edges.
+            int left = openDepths.size() - 1;
+            int right = end;
+            int to = depth;
+            while (to > 0)
+            {
+                final int leftDepth = openDepths.get(left);
+                final int rightDepth = right < lcp.length ? lcp[right] : 0;
+                final int from = Math.max(leftDepth, rightDepth);
+                edges.push(position + to - 1, position + from);
+                if (leftDepth == from) left--;
+                if (rightDepth == from && right < lcp.length) right = nextSmaller[right];
+                to = from;
+            }
+
+            final int [] buffer = edges.buffer;
+            for (int i = 0, j = edges.size() - 1; i < j; i++, j--)
+            {
+                final int tmp = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = tmp;
+            }
+        }
+
+        /**
+         * For each position, the next position with a smaller value (or the length
+         * of the array).
+         */
+        private static int [] nextSmaller(int [] lcp)
+        {
+            final int [] next = new int [lcp.length];
+            final IntStack stack = new IntStack();
+            for (int i = 0; i < lcp.length; i++)
+            {
+                while (!stack.isEmpty() && lcp[stack.peek()] > lcp[i])
+                {
+                    next[stack.pop()] = i;
+                }
+                stack.push(i);
+            }
+            while (!stack.isEmpty())
+            {
+                next[stack.pop()] = lcp.length;
+            }
+            return next;
+        }
+
+        /**
+         * Called for each internal state or lcp-interval occurring in at least the minimum
+         * number of documents. The <code>path</code> contains pairs of start and end
+         * (inclusive) indices of phrase fragments in {@link SequenceBuilder#input}.
+         */
+        protected abstract void visit(int cardinality, BitSet documents, IntStack path);
 
         private BitSet getBitSet(int level)
         {
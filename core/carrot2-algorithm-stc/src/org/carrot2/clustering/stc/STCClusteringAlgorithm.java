@@ -17,6 +17,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.Locale;
 import java.util.Map;
 
@@ -34,13 +36,14 @@ import org.carrot2.core.attribute.Internal;
 import org.carrot2.core.attribute.Processing;
 import org.carrot2.text.analysis.ITokenizer;
 import org.carrot2.text.analysis.TokenTypeUtils;
-import org.carrot2.text.clustering.IMonolingualClusteringAlgorithm;
+import org.carrot2.text.clustering.IMonolingualClusteringComponent;
 import org.carrot2.text.clustering.MultilingualClustering;
 import org.carrot2.text.linguistic.ILexicalData;
 import org.carrot2.text.preprocessing.LabelFormatter;
 import org.carrot2.text.preprocessing.PreprocessingContext;
 import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
 import org.carrot2.text.preprocessing.pipeline.IPreprocessingPipeline;
+import org.carrot2.util.CompressedBitSet;
 import org.carrot2.util.attribute.Attribute;
 import org.carrot2.util.attribute.AttributeLevel;
 import org.carrot2.util.attribute.Bindable;
@@ -56,7 +59,6 @@ import org.carrot2.util.attribute.constraint.ImplementingClasses;
 import org.carrot2.util.attribute.constraint.IntRange;
 
 import com.carrotsearch.hppc.BitSet;
-import com.carrotsearch.hppc.BitSetIterator;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntStack;
 import org.carrot2.shaded.guava.common.base.Predicate;
@@ -322,6 +324,38 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
     @Group(DefaultGroups.CLUSTERS)
     public boolean mergeStemEquivalentBaseClusters = true;
 
+    /**
+     * Discover base clusters using a suffix array instead of a suffix tree. Both produce
+     * identical clusters, the suffix array requires a fraction of the memory of the
+     * suffix tree. Base cluster candidates are put in the order of their phrases' words
+     * regardless of this setting, so the order of candidates with equal scores (and
+     * which of them are kept when there are more than {@link #maxBaseClusters} of them)
+     * differs from versions which used the suffix tree's order.
+     */
+    @Input
+    @Processing
+    @Attribute
+    @Label("Discover base clusters using a suffix array")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(BASE_CLUSTERS)
+    public boolean suffixArrayBaseClusters = false;
+
+    /**
+     * Base cluster merging threads. The number of threads that may be used to compute
+     * overlaps of base clusters while clustering a single request (with at least
+     * {@value BaseClusterOverlaps#MIN_PARALLEL_CLUSTERS} base clusters). The value of 1
+     * disables parallel merging.
+     */
+    @Init
+    @Processing
+    @Input
+    @Attribute
+    @IntRange(min = 1, max = 64)
+    @Label("Base cluster merging threads")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(MERGING_AND_OUTPUT)
+    public int mergeThreads = 1;
+
     /**
      * A helper for performing multilingual clustering.
      */
@@ -383,25 +417,41 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
     {
         // There is a tiny trick here to support multilingual clustering without
         // refactoring the whole component: we remember the original list of documents
-        // and invoke clustering for each language separately within the 
-        // IMonolingualClusteringAlgorithm implementation below. This is safe because
-        // processing components are not thread-safe by definition and 
-        // IMonolingualClusteringAlgorithm forbids concurrent execution by contract.
+        // and invoke clustering for each language separately within
+        // MONOLINGUAL_CLUSTERING below. This is safe because processing components
+        // are not thread-safe by definition and MultilingualClustering never uses one
+        // component concurrently: languages clustered concurrently get their own
+        // replicas of this component.
         final List<Document> originalDocuments = documents;
-        clusters = multilingualClustering.process(documents,
-            new IMonolingualClusteringAlgorithm()
-            {
-                public List<Cluster> process(List<Document> documents,
-                    LanguageCode language)
-                {
-                    STCClusteringAlgorithm.this.documents = documents;
-                    STCClusteringAlgorithm.this.cluster(language);
-                    return STCClusteringAlgorithm.this.clusters;
-                }
-            });
-        documents = originalDocuments;
+        final int languageThreads = multilingualClustering.languageClusteringThreads;
+        final ExecutorService languageExecutor = languageThreads > 1 ? getSharedExecutor(
+            languageThreads, MultilingualClustering.class) : null;
+        try
+        {
+            clusters = multilingualClustering.process(documents, this,
+                MONOLINGUAL_CLUSTERING, languageExecutor);
+        }
+        finally
+        {
+            documents = originalDocuments;
+        }
     }
 
+    /**
+     * Clusters documents in one language with this component or one of its replicas.
+     */
+    private static final IMonolingualClusteringComponent<STCClusteringAlgorithm> MONOLINGUAL_CLUSTERING =
+        new IMonolingualClusteringComponent<STCClusteringAlgorithm>()
+        {
+            public List<Cluster> process(STCClusteringAlgorithm stc,
+                List<Document> documents, LanguageCode language)
+            {
+                stc.documents = documents;
+                stc.cluster(language);
+                return stc.clusters;
+            }
+        };
+
     /**
      * Performs the actual clustering with an assumption that all documents are written in
      * one <code>language</code>.
@@ -416,7 +466,8 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
         context = preprocessingPipeline.preprocess(documents, query, language);
 
         /*
-         * Step 2: Create a generalized suffix tree from phrases in the input.
+         * Step 2: Create a generalized suffix tree (or a suffix array) from phrases 
+         * in the input.
          */
         sb = new GeneralizedSuffixTree.SequenceBuilder();
 
@@ -445,7 +496,14 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
                 sb.addPhrase(tokenIndex, s, phraseLength);
             }
         }
-        sb.buildSuffixTree();
+        if (suffixArrayBaseClusters)
+        {
+            sb.buildSuffixArray();
+        }
+        else
+        {
+            sb.buildSuffixTree();
+        }
 
         /*
          * Step 3: Find "base" clusters by looking up frequently recurring phrases in the 
@@ -490,10 +548,9 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
          */
         final List<ClusterCandidate> candidates = Lists.newArrayList();
 
-        // Walk the internal nodes of the suffix tree.
+        // Walk the internal nodes of the suffix tree (lcp-intervals of the suffix array).
         new GeneralizedSuffixTree.Visitor(sb, minBaseClusterSize) {
-            protected void visit(int state, int cardinality, 
-                BitSet documents, IntStack path)
+            protected void visit(int cardinality, BitSet documents, IntStack path)
             {
                 // Check minimum base cluster cardinality.
                 assert cardinality >= minBaseClusterSize;
@@ -521,10 +578,23 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
                 final float score = baseClusterScore(effectivePhraseLen, cardinality);
                 candidates.add(
                     new ClusterCandidate(path.toArray(), 
-                        (BitSet) documents.clone(), cardinality, score));
+                        CompressedBitSet.valueOf(documents), cardinality, score));
             }
         }.visit();
 
+        /*
+         * The order of visited states depends on the data structure, put candidates in
+         * the order of their words so that ties are resolved the same way for both.
+         */
+        Collections.sort(candidates, new Comparator<ClusterCandidate>()
+        {
+            @Override
+            public int compare(ClusterCandidate c1, ClusterCandidate c2)
+            {
+                return comparePhrases(c1.phrases.get(0), c2.phrases.get(0));
+            }
+        });
+
         /*
          * Combine all phrases that are stem-equivalent into one candidate.
          */
@@ -583,6 +653,41 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
         return candidates;
     }
 
+    /**
+     * Compares the words of two phrases (given as edge index ranges) lexicographically.
+     */
+    private int comparePhrases(int [] phrase1, int [] phrase2)
+    {
+        final int [] terms = sb.input.buffer;
+        int i = 0, j = 0;
+        int p1 = phrase1[0], p2 = phrase2[0];
+        while (true)
+        {
+            if (p1 > phrase1[i + 1])
+            {
+                i += 2;
+                if (i < phrase1.length) p1 = phrase1[i];
+            }
+            if (p2 > phrase2[j + 1])
+            {
+                j += 2;
+                if (j < phrase2.length) p2 = phrase2[j];
+            }
+
+            if (i >= phrase1.length || j >= phrase2.length)
+            {
+                return (i >= phrase1.length ? 0 : 1) - (j >= phrase2.length ? 0 : 1);
+            }
+
+            if (terms[p1] != terms[p2])
+            {
+                return terms[p1] < terms[p2] ? -1 : 1;
+            }
+            p1++;
+            p2++;
+        }
+    }
+
     /* */
     private void mergeStemEquivalentBaseClusters(SequenceBuilder sb, final List<ClusterCandidate> candidates)
     {
@@ -640,7 +745,7 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
         {
             if (cc.phrases.size() > 1)
             {
-                cc.cardinality = (int) cc.documents.cardinality();
+                cc.cardinality = cc.documents.cardinality();
                 scratch.buffer = cc.phrases.get(0);
                 scratch.elementsCount = scratch.buffer.length;
                 cc.score = baseClusterScore(
@@ -663,7 +768,7 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
     {
         /*
          * Calculate overlap between base clusters first, saving adjacency lists for
-         * each base cluster.
+         * each base cluster. Only pairs sharing rare documents are compared exactly.
          */
 
         // [i] - next neighbor or END, [i + 1] - neighbor cluster index.
@@ -672,24 +777,19 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
         neighborList.push(END);
         final int [] neighbors = new int [baseClusters.size()];
         final float m = (float) mergeThreshold;
+        final ForkJoinPool pool = mergeThreads > 1 ? getSharedForkJoinPool(mergeThreads,
+            STCClusteringAlgorithm.class) : null;
+        final IntArrayList [] overlapping = BaseClusterOverlaps.find(baseClusters, m, pool);
         for (int i = 0; i < baseClusters.size(); i++)
         {
-            for (int j = i + 1; j < baseClusters.size(); j++)
+            final int [] buffer = overlapping[i].buffer;
+            for (int k = 0; k < overlapping[i].size(); k++)
             {
-                final ClusterCandidate c1 = baseClusters.get(i);
-                final ClusterCandidate c2 = baseClusters.get(j);
-
-                final float a = c1.cardinality;
-                final float b = c2.cardinality;
-                final float c = BitSet.intersectionCount(c1.documents, c2.documents);
-
-                if (c / a > m && c / b > m)
-                {
-                    neighborList.push(neighbors[i], j);
-                    neighbors[i] = neighborList.size() - 2;
-                    neighborList.push(neighbors[j], i);
-                    neighbors[j] = neighborList.size() - 2;
-                }
+                final int j = buffer[k];
+                neighborList.push(neighbors[i], j);
+                neighbors[i] = neighborList.size() - 2;
+                neighborList.push(neighbors[j], i);
+                neighbors[j] = neighborList.size() - 2;
             }
         }
 
@@ -786,7 +886,7 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
             result.documents.or(cc.documents);
             result.score += cc.score;
         }
-        result.cardinality = (int) result.documents.cardinality();
+        result.cardinality = result.documents.cardinality();
 
         /*
          * Combine cluster labels and try to find the best description for the cluster.
@@ -1047,7 +1147,7 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
     private void postProcessing(List<ClusterCandidate> clusters)
     {
         // Adapt to Carrot2 classes, counting used documents on the way.
-        final BitSet all = new BitSet(documents.size());
+        final CompressedBitSet all = new CompressedBitSet();
         final ArrayList<Document> docs = Lists.newArrayListWithCapacity(documents.size());
         final ArrayList<String> phrases = Lists.newArrayListWithCapacity(3);
         for (ClusterCandidate c : clusters)
@@ -1085,15 +1185,14 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
     /**
      * Collect documents from a bitset.
      */
-    private List<Document> collectDocuments(List<Document> l, BitSet bitset)
+    private List<Document> collectDocuments(List<Document> l, CompressedBitSet bitset)
     {
         if (l == null)
         {
-            l = Lists.newArrayListWithCapacity((int) bitset.cardinality());
+            l = Lists.newArrayListWithCapacity(bitset.cardinality());
         }
 
-        final BitSetIterator i = bitset.iterator();
-        for (int d = i.nextSetBit(); d >= 0; d = i.nextSetBit())
+        for (int d = bitset.nextSetBit(0); d >= 0; d = bitset.nextSetBit(d + 1))
         {
             l.add(documents.get(d));
         }
@@ -1266,7 +1365,8 @@ public final class STCClusteringAlgorithm extends ProcessingComponentBase implem
 
                 // If this word occurs in more than a given fraction of the input
                 // collection don't count it.
-                final int docCount = context.allWords.tfByDocument[termIndex].length / 2; 
+                final int docCount = context.allWords.getPackedTfByDocument()
+                    .length(termIndex) / 2;
                 if (docCount < lower || docCount > upper)
                 {
                     continue;
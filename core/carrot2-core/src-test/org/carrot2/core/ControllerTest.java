@@ -12,15 +12,34 @@
 
 package org.carrot2.core;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.carrot2.core.ControllerTestsBase.ComponentWithInitParameter;
+import org.carrot2.core.ControllerTestsCaching.SlowComponent;
+import org.carrot2.core.attribute.AttributeNames;
+import org.carrot2.core.attribute.Processing;
+import org.carrot2.util.attribute.Attribute;
 import org.carrot2.util.attribute.Bindable;
+import org.carrot2.util.attribute.Input;
+import org.carrot2.util.attribute.Output;
+import org.carrot2.util.attribute.Required;
 import org.carrot2.util.tests.CarrotTestCase;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import com.carrotsearch.randomizedtesting.LifecycleScope;
 import com.carrotsearch.randomizedtesting.annotations.ThreadLeakLingering;
 import org.carrot2.shaded.guava.common.collect.ImmutableMap;
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import static org.junit.Assert.*;
 
 /**
  * Runs matrix tests on {@link Controller} in all realistic configurations.
@@ -32,11 +51,16 @@ import org.carrot2.shaded.guava.common.collect.ImmutableMap;
     ControllerTest.SimpleControllerCommonTests.class,
     ControllerTest.PoolingControllerCommonTests.class,
     ControllerTest.PoolingControllerPoolingTests.class,
+    ControllerTest.ConcurrentPoolingControllerCommonTests.class,
+    ControllerTest.ConcurrentPoolingControllerPoolingTests.class,
+    ControllerTest.BoundedConcurrentPoolingControllerPoolingTests.class,
     ControllerTest.CachingPoolingControllerCachingOffCommonTests.class,
     ControllerTest.CachingPoolingControllerCachingOffPoolingTests.class,
     ControllerTest.CachingPoolingControllerCachingOnCommonTests.class,
     ControllerTest.CachingPoolingControllerCachingOnPoolingTests.class,
     ControllerTest.CachingPoolingControllerCachingOnCachingTests.class,
+    ControllerTest.CachingPoolingControllerSizeBoundedCachingTests.class,
+    ControllerTest.CachingPoolingControllerDiskCachingTests.class,
     ControllerTest.CachingControllerCachingOffCommonTests.class,
     ControllerTest.CachingControllerCachingOnCommonTests.class,
     ControllerTest.CachingControllerCachingOnCachingTests.class
@@ -242,6 +266,34 @@ public class ControllerTest
         }
     }
 
+    public static class ConcurrentPoolingControllerCommonTests extends ControllerTestsCommon
+    {
+        @Override
+        public Controller getSimpleController()
+        {
+            return ControllerFactory.createConcurrentPooling();
+        }
+    }
+
+    public static class ConcurrentPoolingControllerPoolingTests extends ControllerTestsPooling
+    {
+        @Override
+        public Controller getPoolingController()
+        {
+            return ControllerFactory.createConcurrentPooling();
+        }
+    }
+
+    public static class BoundedConcurrentPoolingControllerPoolingTests extends
+        ControllerTestsPooling
+    {
+        @Override
+        public Controller getPoolingController()
+        {
+            return ControllerFactory.createConcurrentPooling(4, 60 * 1000);
+        }
+    }
+
     public static class CachingPoolingControllerCachingOffCommonTests extends
         ControllerTestsCommon
     {
@@ -293,6 +345,215 @@ public class ControllerTest
         }
     }
 
+    public static class CachingPoolingControllerSizeBoundedCachingTests extends
+        ControllerTestsCaching
+    {
+        @Override
+        public Controller getCachingController(
+            Class<? extends IProcessingComponent>... cachedComponentClasses)
+        {
+            return ControllerFactory.createCachingPooling(new CacheConfiguration()
+                .maximumBytes(1024 * 1024)
+                .maximumBytes(IDocumentSource.class, 1024 * 1024)
+                .expireAfterWrite(60 * 1000)
+                .refreshAfterWrite(30 * 1000), cachedComponentClasses);
+        }
+
+        @Test
+        public void testInputDocumentsCountedInAlgorithmCache()
+        {
+            DocumentsAlgorithm.processed.set(0);
+            controller = ControllerFactory.createCachingPooling(new CacheConfiguration()
+                .maximumBytes(1024 * 1024), DocumentsAlgorithm.class);
+            try
+            {
+                // Small results stay in the cache.
+                final List<Document> small = documents(10, 100);
+                for (int i = 0; i < 2; i++)
+                {
+                    controller.process(ImmutableMap.<String, Object> of(
+                        AttributeNames.DOCUMENTS, small), DocumentsAlgorithm.class);
+                }
+                assertEquals(1, DocumentsAlgorithm.processed.get());
+
+                // Clusters of documents larger than the budget do not, even though the
+                // documents are held only by the key.
+                final List<Document> large = documents(100, 10 * 1024);
+                for (int i = 0; i < 2; i++)
+                {
+                    controller.process(ImmutableMap.<String, Object> of(
+                        AttributeNames.DOCUMENTS, large), DocumentsAlgorithm.class);
+                }
+                assertEquals(3, DocumentsAlgorithm.processed.get());
+            }
+            finally
+            {
+                controller.dispose();
+                controller = null;
+            }
+        }
+
+        private static List<Document> documents(int count, int summaryLength)
+        {
+            final char [] summary = new char [summaryLength];
+            Arrays.fill(summary, 'a');
+
+            final List<Document> documents = Lists.newArrayList();
+            for (int i = 0; i < count; i++)
+            {
+                documents.add(new Document("Title " + i, new String(summary)));
+            }
+            return documents;
+        }
+
+        /**
+         * Puts all documents in one cluster.
+         */
+        @Bindable
+        public static class DocumentsAlgorithm extends ProcessingComponentBase implements
+            IClusteringAlgorithm
+        {
+            final static AtomicInteger processed = new AtomicInteger();
+
+            @Processing
+            @Input
+            @Required
+            @Attribute(key = AttributeNames.DOCUMENTS)
+            public List<Document> documents;
+
+            @Processing
+            @Output
+            @Attribute(key = AttributeNames.CLUSTERS)
+            public List<Cluster> clusters;
+
+            @Override
+            public void process() throws ProcessingException
+            {
+                processed.incrementAndGet();
+                clusters = Lists.newArrayList(new Cluster("All", documents
+                    .toArray(new Document [documents.size()])));
+            }
+        }
+
+        @Test
+        public void testRefreshInBackground() throws Exception
+        {
+            SlowComponent.processed.set(0);
+            SlowComponent.release = new CountDownLatch(0);
+            controller = ControllerFactory.createCachingPooling(new CacheConfiguration()
+                .refreshAfterWrite(1), SlowComponent.class);
+            try
+            {
+                final Map<String, Object> attributes = ImmutableMap.<String, Object> of(
+                    "slow.input", "in");
+                assertEquals("in!", controller.process(attributes, SlowComponent.class)
+                    .getAttribute("slow.output"));
+                Thread.sleep(10);
+
+                // The stale result is returned while the refresh waits for the latch.
+                SlowComponent.release = new CountDownLatch(1);
+                assertEquals("in!", controller.process(attributes, SlowComponent.class)
+                    .getAttribute("slow.output"));
+                SlowComponent.release.countDown();
+
+                while (SlowComponent.processed.get() < 2)
+                {
+                    Thread.sleep(10);
+                }
+            }
+            finally
+            {
+                SlowComponent.release.countDown();
+                controller.dispose();
+                controller = null;
+            }
+        }
+    }
+
+    public static class CachingPoolingControllerDiskCachingTests extends
+        ControllerTestsCaching
+    {
+        private File cacheDirectory;
+
+        @Override
+        public Controller getCachingController(
+            Class<? extends IProcessingComponent>... cachedComponentClasses)
+        {
+            try
+            {
+                if (cacheDirectory == null)
+                {
+                    cacheDirectory = newTempDir(LifecycleScope.TEST).toFile();
+                }
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+
+            return ControllerFactory.createCachingPooling(new CacheConfiguration()
+                .maximumEntries(10)
+                .diskCache(cacheDirectory, 1024 * 1024), cachedComponentClasses);
+        }
+
+        @Test
+        public void testResultsReadFromDiskAfterRestart()
+        {
+            SlowComponent.processed.set(0);
+            SlowComponent.release = new CountDownLatch(0);
+
+            for (int restart = 0; restart < 2; restart++)
+            {
+                controller = getCachingController(SlowComponent.class);
+                try
+                {
+                    final ProcessingResult result = controller.process(
+                        ImmutableMap.<String, Object> of("slow.input", "in"),
+                        SlowComponent.class);
+                    assertEquals("in!", result.getAttribute("slow.output"));
+                    assertEquals(1, SlowComponent.processed.get());
+                    assertEquals(restart, (long) controller.getStatistics().cacheHitsDisk);
+                }
+                finally
+                {
+                    controller.dispose();
+                    controller = null;
+                }
+            }
+        }
+
+        @Test
+        public void testInitAttributesPartOfDiskKey()
+        {
+            SlowComponent.processed.set(0);
+            SlowComponent.release = new CountDownLatch(0);
+
+            final String [] suffixes = { "!", "?", "?" };
+            for (int restart = 0; restart < suffixes.length; restart++)
+            {
+                controller = getCachingController(SlowComponent.class);
+                try
+                {
+                    controller.init(ImmutableMap.<String, Object> of("slow.suffix",
+                        suffixes[restart]));
+                    final ProcessingResult result = controller.process(
+                        ImmutableMap.<String, Object> of("slow.input", "in"),
+                        SlowComponent.class);
+                    assertEquals("in" + suffixes[restart],
+                        result.getAttribute("slow.output"));
+                }
+                finally
+                {
+                    controller.dispose();
+                    controller = null;
+                }
+            }
+
+            // A different suffix is not read from disk, the same one is.
+            assertEquals(2, SlowComponent.processed.get());
+        }
+    }
+
     public static class CachingControllerCachingOffCommonTests extends ControllerTestsCommon
     {
         @Override
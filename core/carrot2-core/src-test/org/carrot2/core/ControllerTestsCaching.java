@@ -18,19 +18,29 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.carrot2.core.attribute.AttributeNames;
+import org.carrot2.core.attribute.Init;
 import org.carrot2.core.attribute.Processing;
 import org.carrot2.util.attribute.Attribute;
 import org.carrot2.util.attribute.Bindable;
 import org.carrot2.util.attribute.Input;
+import org.carrot2.util.attribute.Output;
 import org.carrot2.util.attribute.Required;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import org.carrot2.shaded.guava.common.collect.ImmutableMap;
+import org.carrot2.shaded.guava.common.collect.Lists;
 import org.carrot2.shaded.guava.common.collect.Maps;
 
 import static org.junit.Assert.*;
@@ -111,6 +121,46 @@ public abstract class ControllerTestsCaching extends ControllerTestsBase
         }
     }
 
+    /**
+     * @see ControllerTestsCaching#testConcurrentIdenticalRequestsCoalesced()
+     */
+    @Bindable
+    public static class SlowComponent extends ProcessingComponentBase
+    {
+        final static AtomicInteger processed = new AtomicInteger();
+        volatile static CountDownLatch release;
+
+        @Processing
+        @Input
+        @Attribute(key = "slow.input")
+        public String input;
+
+        @Init
+        @Input
+        @Attribute(key = "slow.suffix")
+        public String suffix = "!";
+
+        @Processing
+        @Output
+        @Attribute(key = "slow.output")
+        public String output;
+
+        @Override
+        public void process() throws ProcessingException
+        {
+            processed.incrementAndGet();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new ProcessingException(e);
+            }
+            output = input + suffix;
+        }
+    }
+
     @Test @Ignore("Demonstrates concurrent modification exceptions if documents " +
     		"are shared between components and processing chains.")
     public void testConcurrentDocumentModifications() throws Exception
@@ -277,6 +327,126 @@ public abstract class ControllerTestsCaching extends ControllerTestsBase
         Assert.assertEquals("value", resultAttributes.get("key2"));
     }
     
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConcurrentIdenticalRequestsCoalesced() throws Exception
+    {
+        SlowComponent.processed.set(0);
+        SlowComponent.release = new CountDownLatch(1);
+        this.controller = getCachingController(SlowComponent.class);
+        this.controller.init(Maps.<String, Object> newHashMap());
+
+        final int requests = randomIntBetween(2, 6);
+        final ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try
+        {
+            final List<Future<ProcessingResult>> results = Lists.newArrayList();
+            for (int i = 0; i < requests; i++)
+            {
+                results.add(executor.submit(new Callable<ProcessingResult>()
+                {
+                    public ProcessingResult call()
+                    {
+                        return controller.process(
+                            ImmutableMap.<String, Object> of("slow.input", "in"),
+                            SlowComponent.class);
+                    }
+                }));
+            }
+
+            // Wait until all but the first request join the in-flight computation.
+            while (controller.getStatistics().cacheHitsCoalesced < requests - 1)
+            {
+                Thread.sleep(10);
+            }
+            SlowComponent.release.countDown();
+
+            for (Future<ProcessingResult> result : results)
+            {
+                assertEquals("in!", result.get().getAttribute("slow.output"));
+            }
+            assertEquals(1, SlowComponent.processed.get());
+
+            final ControllerStatistics statistics = controller.getStatistics();
+            assertEquals(requests, (long) statistics.cacheMisses);
+            assertEquals(requests - 1, (long) statistics.cacheHitsCoalesced);
+
+            // Subsequent requests are regular cache hits.
+            controller.process(ImmutableMap.<String, Object> of("slow.input", "in"),
+                SlowComponent.class);
+            assertEquals(1, SlowComponent.processed.get());
+            assertEquals(1, (long) controller.getStatistics().cacheHitsTotal);
+        }
+        finally
+        {
+            SlowComponent.release.countDown();
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            controller.dispose();
+            controller = null;
+        }
+    }
+
+    @Test
+    public void testBypassingRequestDoesNotJoinComputation() throws Exception
+    {
+        SlowComponent.processed.set(0);
+        SlowComponent.release = new CountDownLatch(1);
+        this.controller = getCachingController(SlowComponent.class);
+        this.controller.init(Maps.<String, Object> newHashMap());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            final Future<ProcessingResult> cached = executor
+                .submit(new Callable<ProcessingResult>()
+                {
+                    public ProcessingResult call()
+                    {
+                        return controller.process(
+                            ImmutableMap.<String, Object> of("slow.input", "in"),
+                            SlowComponent.class);
+                    }
+                });
+            while (SlowComponent.processed.get() < 1)
+            {
+                Thread.sleep(10);
+            }
+
+            // The computation started above may return a cached result, so the bypassing
+            // request must perform its own processing.
+            final Future<ProcessingResult> bypassing = executor
+                .submit(new Callable<ProcessingResult>()
+                {
+                    public ProcessingResult call()
+                    {
+                        return controller.process(ImmutableMap.<String, Object> of(
+                            "slow.input", "in",
+                            CachingProcessingComponentManager.CACHE_BYPASS_ATTR, true),
+                            SlowComponent.class);
+                    }
+                });
+            for (int i = 0; i < 500 && SlowComponent.processed.get() < 2; i++)
+            {
+                Thread.sleep(10);
+            }
+            assertEquals(2, SlowComponent.processed.get());
+            assertEquals(0, (long) controller.getStatistics().cacheHitsCoalesced);
+
+            SlowComponent.release.countDown();
+            assertEquals("in!", cached.get().getAttribute("slow.output"));
+            assertEquals("in!", bypassing.get().getAttribute("slow.output"));
+        }
+        finally
+        {
+            SlowComponent.release.countDown();
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            controller.dispose();
+            controller = null;
+        }
+    }
+
     private void invokeProcessingWithInitForNoPool(IProcessingComponent... components)
     {
         if (isPooling())
@@ -558,16 +558,20 @@ public abstract class ControllerTestsCommon extends ControllerTestsBase
         assertThat(statistics.sourceTimeMeasurementsInWindow).isEqualTo(0);
         assertThat(statistics.totalTimeAverageInWindow).isEqualTo(0);
         assertThat(statistics.totalTimeMeasurementsInWindow).isEqualTo(0);
+        assertThat(statistics.totalTimeP50InWindow).isEqualTo(0);
+        assertThat(statistics.totalTimeP99InWindow).isEqualTo(0);
 
         if (isCaching())
         {
             assertThat(statistics.cacheMisses).isEqualTo(0);
             assertThat(statistics.cacheHitsTotal).isEqualTo(0);
+            assertThat(statistics.cacheHitsCoalesced).isEqualTo(0);
         }
         else
         {
             assertThat((Object) statistics.cacheMisses).isNull();
             assertThat((Object) statistics.cacheHitsTotal).isNull();
+            assertThat((Object) statistics.cacheHitsCoalesced).isNull();
         }
         
         controller.dispose();
@@ -602,6 +606,9 @@ public abstract class ControllerTestsCommon extends ControllerTestsBase
         assertThat(statistics.sourceTimeMeasurementsInWindow).isEqualTo(1);
         assertThat(statistics.totalTimeAverageInWindow).isGreaterThanOrEqualTo(2 * halfDelay);
         assertThat(statistics.totalTimeMeasurementsInWindow).isEqualTo(1);
+        assertThat(statistics.algorithmTimeP50InWindow).isGreaterThanOrEqualTo(halfDelay);
+        assertThat(statistics.sourceTimeP95InWindow).isGreaterThanOrEqualTo(halfDelay);
+        assertThat(statistics.totalTimeP99InWindow).isGreaterThanOrEqualTo(2 * halfDelay);
         if (isCaching())
         {
             assertThat(statistics.cacheMisses).isEqualTo(2);
@@ -0,0 +1,451 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.core;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.carrot2.core.attribute.AttributeNames;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.ImmutableSet;
+import org.carrot2.shaded.guava.common.collect.Iterables;
+import org.carrot2.shaded.guava.common.collect.Lists;
+import org.carrot2.shaded.guava.common.collect.Maps;
+
+import com.carrotsearch.randomizedtesting.LifecycleScope;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link DiskResultCache}.
+ */
+public class DiskResultCacheTest extends CarrotTestCase
+{
+    @Test
+    public void testDocumentsRoundTrip() throws Exception
+    {
+        final DiskResultCache cache = new DiskResultCache(tempDir(), 1024 * 1024);
+        try
+        {
+            final Map<String, Object> result = Maps.newHashMap();
+            result.put(AttributeNames.DOCUMENTS, documents(10));
+            result.put(AttributeNames.RESULTS_TOTAL, 100L);
+
+            cache.put("a", result, null);
+            final Map<String, Object> cached = cache.get("a", null);
+            assertNotNull(cached);
+            assertEquals(result.keySet(), cached.keySet());
+            assertEquals(100L, cached.get(AttributeNames.RESULTS_TOTAL));
+
+            final List<?> documents = (List<?>) cached.get(AttributeNames.DOCUMENTS);
+            assertEquals(10, documents.size());
+            assertEquals("Title 3",
+                ((Document) documents.get(3)).getField(Document.TITLE));
+
+            assertNull(cache.get("b", null));
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testClustersResolvedAgainstInputDocuments() throws Exception
+    {
+        final List<Document> input = documents(5);
+        final Cluster cluster = new Cluster("label");
+        cluster.addDocuments(input.get(1), input.get(3));
+        final Cluster subcluster = new Cluster("sub");
+        subcluster.addDocuments(input.get(4));
+        cluster.addSubclusters(subcluster);
+
+        final Map<String, Object> result = Maps.newHashMap();
+        result.put(AttributeNames.CLUSTERS, Lists.newArrayList(cluster));
+
+        final DiskResultCache cache = new DiskResultCache(tempDir(), 1024 * 1024);
+        try
+        {
+            cache.put("a", result, input);
+            final Map<String, Object> cached = cache.get("a", input);
+            assertNotNull(cached);
+            assertEquals(ImmutableSet.of(AttributeNames.CLUSTERS), cached.keySet());
+
+            @SuppressWarnings("unchecked")
+            final List<Cluster> clusters = (List<Cluster>) cached
+                .get(AttributeNames.CLUSTERS);
+            assertEquals(1, clusters.size());
+            assertEquals("label", clusters.get(0).getLabel());
+            assertSame(input.get(1), clusters.get(0).getDocuments().get(0));
+            assertSame(input.get(3), clusters.get(0).getDocuments().get(1));
+            assertSame(input.get(4), clusters.get(0).getSubclusters().get(0)
+                .getDocuments().get(0));
+
+            // Documents the clusters refer to are missing.
+            assertNull(cache.get("a", input.subList(0, 2)));
+            assertNull(cache.get("a", null));
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testInputAndResultNotModified() throws Exception
+    {
+        final List<Document> input = documents(5);
+        final Cluster cluster = new Cluster("label");
+        cluster.addDocuments(input.get(1), input.get(3));
+        cluster.addSubclusters(new Cluster("sub", input.get(4)));
+
+        final List<Document> documents = documents(3);
+        final Cluster documentsCluster = new Cluster("documents", documents.get(2));
+
+        final DiskResultCache cache = new DiskResultCache(tempDir(), 1024 * 1024);
+        try
+        {
+            final Map<String, Object> clusters = Maps.newHashMap();
+            clusters.put(AttributeNames.CLUSTERS, Lists.newArrayList(cluster));
+            cache.put("clusters", clusters, input);
+
+            final Map<String, Object> documentsAndClusters = Maps.newHashMap();
+            documentsAndClusters.put(AttributeNames.DOCUMENTS, documents);
+            documentsAndClusters.put(AttributeNames.CLUSTERS,
+                Lists.newArrayList(documentsCluster));
+            cache.put("documents", documentsAndClusters, null);
+
+            assertNotNull(cache.get("clusters", input));
+            assertNotNull(cache.get("documents", null));
+
+            for (Document document : Iterables.concat(input, documents))
+            {
+                assertNull(document.getStringId());
+            }
+            assertNull(cluster.getId());
+            assertNull(cluster.getSubclusters().get(0).getId());
+            assertNull(documentsCluster.getId());
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testResultsAvailableAfterReopen() throws Exception
+    {
+        final File directory = tempDir();
+        DiskResultCache cache = new DiskResultCache(directory, 1024 * 1024);
+        cache.put("a", result("first"), null);
+        cache.put("b", result("second"), null);
+        cache.put("a", result("third"), null);
+        cache.close();
+
+        cache = new DiskResultCache(directory, 1024 * 1024);
+        try
+        {
+            assertEquals(2, cache.size());
+            assertEquals("third", cache.get("a", null).get(AttributeNames.QUERY));
+            assertEquals("second", cache.get("b", null).get(AttributeNames.QUERY));
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testResultsOfOtherFormatDiscarded() throws Exception
+    {
+        final File directory = tempDir();
+        DiskResultCache cache = new DiskResultCache(directory, 1024 * 1024);
+        cache.put("a", result("first"), null);
+        cache.close();
+
+        // Simulate segments written by a different build.
+        final DataOutputStream output = new DataOutputStream(new FileOutputStream(
+            new File(directory, "format")));
+        try
+        {
+            output.writeUTF("carrot2.disk-cache.0");
+        }
+        finally
+        {
+            output.close();
+        }
+
+        cache = new DiskResultCache(directory, 1024 * 1024);
+        try
+        {
+            assertEquals(0, cache.size());
+            assertNull(cache.get("a", null));
+            assertEquals(0, cache.getSizeInBytes());
+        }
+        finally
+        {
+            cache.close();
+        }
+
+        cache = new DiskResultCache(directory, 1024 * 1024);
+        try
+        {
+            cache.put("a", result("second"), null);
+        }
+        finally
+        {
+            cache.close();
+        }
+
+        cache = new DiskResultCache(directory, 1024 * 1024);
+        try
+        {
+            assertEquals("second", cache.get("a", null).get(AttributeNames.QUERY));
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedSegmentRecovered() throws Exception
+    {
+        final File directory = tempDir();
+        DiskResultCache cache = new DiskResultCache(directory, 1024 * 1024);
+        cache.put("a", result("first"), null);
+        cache.put("b", result("second"), null);
+        final long size = cache.getSizeInBytes();
+        cache.close();
+
+        // Simulate a write interrupted by a crash.
+        final File segment = segments(directory).get(0);
+        final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try
+        {
+            file.setLength(size - randomIntBetween(1, 10));
+        }
+        finally
+        {
+            file.close();
+        }
+
+        cache = new DiskResultCache(directory, 1024 * 1024);
+        try
+        {
+            assertEquals(1, cache.size());
+            assertEquals("first", cache.get("a", null).get(AttributeNames.QUERY));
+            assertNull(cache.get("b", null));
+
+            cache.put("b", result("second"), null);
+            assertEquals("second", cache.get("b", null).get(AttributeNames.QUERY));
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testUsableAfterInterrupt() throws Exception
+    {
+        final DiskResultCache cache = new DiskResultCache(tempDir(), 1024 * 1024);
+        try
+        {
+            cache.put("a", result("first"), null);
+
+            // An interrupt closes the channel the thread is blocked on (or about to use).
+            Thread.currentThread().interrupt();
+            assertNull(cache.get("a", null));
+            assertTrue(Thread.interrupted());
+
+            Thread.currentThread().interrupt();
+            cache.put("b", result("second"), null);
+            assertTrue(Thread.interrupted());
+
+            assertEquals("first", cache.get("a", null).get(AttributeNames.QUERY));
+            assertNull(cache.get("b", null));
+            cache.put("b", result("second"), null);
+            assertEquals("second", cache.get("b", null).get(AttributeNames.QUERY));
+            assertEquals("first", cache.get("a", null).get(AttributeNames.QUERY));
+        }
+        finally
+        {
+            Thread.interrupted();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testOldestResultsEvicted() throws Exception
+    {
+        final File directory = tempDir();
+        final long maximumBytes = 4 * 1024 * 1024;
+        final DiskResultCache cache = new DiskResultCache(directory, maximumBytes);
+        try
+        {
+            final StringBuilder query = new StringBuilder();
+            for (int i = 0; i < 64 * 1024; i++)
+            {
+                query.append((char) ('a' + i % 26));
+            }
+
+            final int count = 100;
+            for (int i = 0; i < count; i++)
+            {
+                cache.put("key" + i, result(i + query.toString()), null);
+                assertTrue(cache.getSizeInBytes() <= maximumBytes);
+            }
+
+            assertTrue(cache.size() < count);
+            assertNull(cache.get("key0", null));
+            assertEquals((count - 1) + query.toString(),
+                cache.get("key" + (count - 1), null).get(AttributeNames.QUERY));
+
+            long filesBytes = 0;
+            for (File file : segments(directory))
+            {
+                filesBytes += file.length();
+            }
+            assertEquals(cache.getSizeInBytes(), filesBytes);
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testUnserializableResultNotStored() throws Exception
+    {
+        final DiskResultCache cache = new DiskResultCache(tempDir(), 1024 * 1024);
+        try
+        {
+            final Map<String, Object> result = Maps.newHashMap();
+            result.put(AttributeNames.QUERY, "query");
+            result.put("object", new NoDefaultConstructor(1));
+            cache.put("a", result, null);
+            assertNull(cache.get("a", null));
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testStableKey() throws Exception
+    {
+        final Map<String, Object> attributes = Maps.newHashMap();
+        attributes.put(AttributeNames.QUERY, "data mining");
+        attributes.put(AttributeNames.RESULTS, 100);
+        attributes.put("language", LanguageCode.ENGLISH);
+        attributes.put("class", String.class);
+        attributes.put(AttributeNames.DOCUMENTS, documents(3));
+        attributes.put("array", new int [] { 1, 2 });
+        attributes.put("null", null);
+
+        final String key = DiskResultCache.stableKey(attributes);
+        assertNotNull(key);
+        assertEquals(40, key.length());
+
+        // Independent of the map type and order.
+        final Map<String, Object> reordered = new LinkedHashMap<String, Object>();
+        final List<String> keys = Lists.newArrayList(attributes.keySet());
+        Collections.reverse(keys);
+        for (String k : keys)
+        {
+            reordered.put(k, attributes.get(k));
+        }
+        assertEquals(key, DiskResultCache.stableKey(reordered));
+
+        // Equal content, different instances.
+        final Map<String, Object> copy = Maps.newHashMap(attributes);
+        copy.put(AttributeNames.DOCUMENTS, documents(3));
+        copy.put("array", new int [] { 1, 2 });
+        assertEquals(key, DiskResultCache.stableKey(copy));
+
+        // Different values.
+        copy.put(AttributeNames.RESULTS, 101);
+        assertFalse(key.equals(DiskResultCache.stableKey(copy)));
+        copy.put(AttributeNames.RESULTS, 100L);
+        assertFalse(key.equals(DiskResultCache.stableKey(copy)));
+        copy.put(AttributeNames.RESULTS, 100);
+        copy.put(AttributeNames.DOCUMENTS, documents(4));
+        assertFalse(key.equals(DiskResultCache.stableKey(copy)));
+
+        // Unsupported values.
+        copy.put(AttributeNames.DOCUMENTS, documents(3));
+        assertEquals(key, DiskResultCache.stableKey(copy));
+        copy.put("object", new Object());
+        assertNull(DiskResultCache.stableKey(copy));
+        copy.put("object", ImmutableSet.of("a"));
+        assertNull(DiskResultCache.stableKey(copy));
+    }
+
+    private static final class NoDefaultConstructor
+    {
+        @SuppressWarnings("unused")
+        final int value;
+
+        NoDefaultConstructor(int value)
+        {
+            this.value = value;
+        }
+    }
+
+    private static List<File> segments(File directory)
+    {
+        final List<File> segments = Lists.newArrayList();
+        for (File file : directory.listFiles())
+        {
+            if (file.getName().startsWith("segment-"))
+            {
+                segments.add(file);
+            }
+        }
+        return segments;
+    }
+
+    private File tempDir() throws IOException
+    {
+        return newTempDir(LifecycleScope.TEST).toFile();
+    }
+
+    private static Map<String, Object> result(String query)
+    {
+        final Map<String, Object> result = Maps.newHashMap();
+        result.put(AttributeNames.QUERY, query);
+        return result;
+    }
+
+    private static List<Document> documents(int count)
+    {
+        final List<Document> documents = Lists.newArrayList();
+        for (int i = 0; i < count; i++)
+        {
+            documents.add(new Document("Title " + i, "Summary " + i,
+                "http://www.example.com/" + i));
+        }
+        return documents;
+    }
+}
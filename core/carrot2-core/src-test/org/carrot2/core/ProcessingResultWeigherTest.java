@@ -0,0 +1,128 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.core;
+
+import java.util.List;
+import java.util.Map;
+
+import org.carrot2.core.attribute.AttributeNames;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+import org.carrot2.shaded.guava.common.collect.Maps;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link ProcessingResultWeigher}.
+ */
+public class ProcessingResultWeigherTest extends CarrotTestCase
+{
+    @Test
+    public void testEmptyResult()
+    {
+        final Map<String, Object> result = Maps.newHashMap();
+        assertTrue(ProcessingResultWeigher.INSTANCE.weigh(null, result) > 0);
+    }
+
+    @Test
+    public void testWeightGrowsWithDocuments()
+    {
+        final long oneHundred = ProcessingResultWeigher.estimate(result(documents(100, 50)));
+        final long oneThousand = ProcessingResultWeigher.estimate(result(documents(1000, 50)));
+        final long longerSummaries = ProcessingResultWeigher.estimate(result(documents(100, 500)));
+
+        assertTrue(oneThousand > 9 * oneHundred);
+        assertTrue(longerSummaries > 100 * 450 * 2);
+        assertTrue(longerSummaries > oneHundred);
+    }
+
+    @Test
+    public void testClusterDocumentsCountedAsReferences()
+    {
+        final List<Document> documents = documents(100, 500);
+        final Cluster withDocuments = new Cluster("label");
+        withDocuments.addDocuments(documents);
+        final Cluster empty = new Cluster("label");
+
+        final long difference = ProcessingResultWeigher.estimate(withDocuments)
+            - ProcessingResultWeigher.estimate(empty);
+        assertTrue(difference > 0);
+        assertTrue(difference < ProcessingResultWeigher.estimate(documents) / 10);
+    }
+
+    @Test
+    public void testKeyAttributesCounted()
+    {
+        final List<Document> documents = documents(100, 500);
+        final Map<String, Object> input = result(documents);
+        final ProcessingResultWeigher.IAttributeRetainingKey key = 
+            new ProcessingResultWeigher.IAttributeRetainingKey()
+            {
+                public Map<String, Object> getRetainedAttributes()
+                {
+                    return input;
+                }
+            };
+
+        final Map<String, Object> clusters = Maps.newHashMap();
+        clusters.put(AttributeNames.CLUSTERS, Lists.newArrayList(new Cluster("label")));
+        assertTrue(ProcessingResultWeigher.INSTANCE.weigh(key, clusters) > 
+            ProcessingResultWeigher.estimate(documents));
+
+        // Values held by the result too are counted once.
+        final Map<String, Object> withDocuments = result(documents);
+        assertTrue(ProcessingResultWeigher.INSTANCE.weigh(key, withDocuments) < 
+            ProcessingResultWeigher.estimate(documents) * 3 / 2);
+    }
+
+    @Test
+    public void testSubclustersAndArrays()
+    {
+        final Cluster parent = new Cluster("parent");
+        final long flat = ProcessingResultWeigher.estimate(parent);
+        parent.addSubclusters(new Cluster("child 1"), new Cluster("child 2"));
+        assertTrue(ProcessingResultWeigher.estimate(parent) > flat);
+
+        assertTrue(ProcessingResultWeigher.estimate(new int [1000]) >= 4000);
+        assertTrue(ProcessingResultWeigher.estimate(new String [] { "abc", "def" }) > 2 * 6);
+        assertEquals(0, ProcessingResultWeigher.estimate(null));
+        assertEquals(0, ProcessingResultWeigher.estimate(LanguageCode.ENGLISH));
+    }
+
+    private static Map<String, Object> result(List<Document> documents)
+    {
+        final Map<String, Object> result = Maps.newHashMap();
+        result.put(AttributeNames.DOCUMENTS, documents);
+        result.put(AttributeNames.QUERY, "query");
+        return result;
+    }
+
+    private static List<Document> documents(int count, int summaryLength)
+    {
+        final StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < summaryLength; i++)
+        {
+            summary.append((char) ('a' + i % 26));
+        }
+
+        final List<Document> documents = Lists.newArrayList();
+        for (int i = 0; i < count; i++)
+        {
+            documents.add(new Document("Title " + i, summary.toString(),
+                "http://www.example.com/" + i));
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,154 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.core;
+
+import java.io.File;
+import java.util.Map;
+
+import org.carrot2.shaded.guava.common.collect.Maps;
+
+/**
+ * Size and expiration settings of the processing results cache maintained by
+ * {@link CachingProcessingComponentManager}.
+ * <p>
+ * By default, the cache holds up to {@value #DEFAULT_MAXIMUM_ENTRIES} results of all
+ * cached components together, regardless of their size. As a single result may hold
+ * anything from a few to thousands of documents, a more predictable option is to bound
+ * the cache by the estimated number of bytes the cached results retain, see
+ * {@link #maximumBytes(long)}. Components of selected classes can also be given their own
+ * byte budgets, see {@link #maximumBytes(Class, long)}, so that, for example, large
+ * document source results do not evict clustering results.
+ * </p>
+ * <p>
+ * Results can additionally be stored on disk, see {@link #diskCache(File, long)}, so that
+ * they survive restarts and outlive their eviction from memory.
+ * </p>
+ */
+public final class CacheConfiguration
+{
+    /**
+     * Default maximum number of cached results.
+     */
+    public static final long DEFAULT_MAXIMUM_ENTRIES = 100;
+
+    /** Maximum number of entries, used if {@link #maximumBytes} is 0. */
+    long maximumEntries = DEFAULT_MAXIMUM_ENTRIES;
+
+    /** Maximum estimated size of entries in bytes, 0 if not bounded by size. */
+    long maximumBytes;
+
+    /** Time after which entries expire, 0 if never. */
+    long expireAfterWriteMillis;
+
+    /** Time after which entries are recomputed on next access, 0 if never. */
+    long refreshAfterWriteMillis;
+
+    /** Byte budgets of selected component classes, in the order of declaration. */
+    final Map<Class<? extends IProcessingComponent>, Long> componentMaximumBytes = Maps
+        .newLinkedHashMap();
+
+    /** Directory of the disk cache, <code>null</code> if results are not stored on disk. */
+    File diskCacheDirectory;
+
+    /** Maximum size of the disk cache in bytes. */
+    long diskCacheMaximumBytes;
+
+    /**
+     * Bounds the cache by the number of entries (the default). Discards any limit set
+     * by {@link #maximumBytes(long)}.
+     */
+    public CacheConfiguration maximumEntries(long maximumEntries)
+    {
+        if (maximumEntries <= 0)
+            throw new IllegalArgumentException("Maximum number of entries must be greater than zero: "
+                + maximumEntries);
+        this.maximumEntries = maximumEntries;
+        this.maximumBytes = 0;
+        return this;
+    }
+
+    /**
+     * Bounds the cache by the estimated number of bytes retained by the cached results
+     * (documents, clusters and other output attributes).
+     */
+    public CacheConfiguration maximumBytes(long maximumBytes)
+    {
+        if (maximumBytes <= 0)
+            throw new IllegalArgumentException("Maximum size must be greater than zero: "
+                + maximumBytes);
+        this.maximumBytes = maximumBytes;
+        return this;
+    }
+
+    /**
+     * Gives the results of components that are instances of <code>componentClass</code> a
+     * separate cache bounded by the estimated number of bytes retained by the results.
+     * If a component matches more than one class, the budget of the class declared first
+     * is used. Expiration settings apply to all caches.
+     */
+    public CacheConfiguration maximumBytes(
+        Class<? extends IProcessingComponent> componentClass, long maximumBytes)
+    {
+        if (maximumBytes <= 0)
+            throw new IllegalArgumentException("Maximum size must be greater than zero: "
+                + maximumBytes);
+        this.componentMaximumBytes.put(componentClass, maximumBytes);
+        return this;
+    }
+
+    /**
+     * Discards cached results older than the given time, 0 to keep results until they
+     * are evicted due to the size limit.
+     */
+    public CacheConfiguration expireAfterWrite(long millis)
+    {
+        if (millis < 0)
+            throw new IllegalArgumentException("Expiration time must not be negative: "
+                + millis);
+        this.expireAfterWriteMillis = millis;
+        return this;
+    }
+
+    /**
+     * Recomputes cached results older than the given time in the background, after the
+     * next request for them, 0 to never recompute. Until the new result is available,
+     * requests (including the one that triggered the refresh) get the stale result.
+     */
+    public CacheConfiguration refreshAfterWrite(long millis)
+    {
+        if (millis < 0)
+            throw new IllegalArgumentException("Refresh time must not be negative: "
+                + millis);
+        this.refreshAfterWriteMillis = millis;
+        return this;
+    }
+
+    /**
+     * Stores results also in a {@link DiskResultCache} in the given directory, bounded by
+     * the size of its files. Results evicted from memory are read back from disk, results
+     * stored before a restart are available immediately (unless they were stored by a
+     * different version of Carrot2). Only results of components whose input processing
+     * and initialization attributes are all of types supported by
+     * {@link DiskResultCache#stableKey(Map)} and whose output attributes can be serialized
+     * to XML are stored.
+     */
+    public CacheConfiguration diskCache(File directory, long maximumBytes)
+    {
+        if (maximumBytes <= 0)
+            throw new IllegalArgumentException("Maximum size must be greater than zero: "
+                + maximumBytes);
+        this.diskCacheDirectory = directory;
+        this.diskCacheMaximumBytes = maximumBytes;
+        return this;
+    }
+}
@@ -12,19 +12,31 @@
 
 package org.carrot2.core;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.carrot2.core.Controller.IControllerStatisticsProvider;
+import org.carrot2.core.attribute.AttributeNames;
+import org.carrot2.core.attribute.Init;
 import org.carrot2.core.attribute.Processing;
 import org.carrot2.util.ExceptionUtils;
+import org.carrot2.util.ExecutorServiceUtils;
 import org.carrot2.util.Pair;
+import org.carrot2.util.StripedLongCounter;
 import org.carrot2.util.attribute.*;
 
 import org.carrot2.shaded.guava.common.cache.*;
 import org.carrot2.shaded.guava.common.collect.*;
-import org.carrot2.shaded.guava.common.util.concurrent.UncheckedExecutionException;
+import org.carrot2.shaded.guava.common.util.concurrent.ListenableFuture;
+import org.carrot2.shaded.guava.common.util.concurrent.ListenableFutureTask;
+import org.carrot2.shaded.guava.common.util.concurrent.Uninterruptibles;
 
 /**
  * An {@link IProcessingComponentManager} that implements processing results caching
@@ -35,6 +47,21 @@ import org.carrot2.shaded.guava.common.util.concurrent.UncheckedExecutionExcepti
  * ) and wraps the components the delegate with a functionality that either returns the
  * results from cache or performs the processing if the result are not yet cached.
  * </p>
+ * <p>
+ * The size and expiration of cached results is controlled by a
+ * {@link CacheConfiguration}.
+ * </p>
+ * <p>
+ * Concurrent identical requests for results that are not cached yet (or requests that
+ * bypass the cache, see {@link #CACHE_BYPASS_ATTR}) share a single in-flight
+ * computation: only the first request performs processing, the other ones wait for and
+ * return its result.
+ * </p>
+ * <p>
+ * If configured (see {@link CacheConfiguration#diskCache(java.io.File, long)}), results
+ * are also stored in a {@link DiskResultCache}, which is consulted when a result is not
+ * found in memory.
+ * </p>
  */
 public class CachingProcessingComponentManager implements IProcessingComponentManager,
     Controller.IControllerStatisticsProvider
@@ -63,9 +90,49 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
      */
     private Cache<AttributeMapCacheKey, Map<String,Object>> cache;
 
+    /**
+     * Separate caches for results of components of classes with their own byte budgets,
+     * see {@link CacheConfiguration#maximumBytes(Class, long)}.
+     */
+    private final Map<Class<? extends IProcessingComponent>, Cache<AttributeMapCacheKey, Map<String, Object>>> componentCaches = Maps
+        .newLinkedHashMap();
+
+    /**
+     * Computations of results in progress, shared by concurrent identical requests.
+     */
+    private final ConcurrentMap<AttributeMapCacheKey, FutureTask<Map<String, Object>>> inFlight = 
+        new ConcurrentHashMap<AttributeMapCacheKey, FutureTask<Map<String, Object>>>();
+
+    /**
+     * Computations of requests that bypass the cache, kept apart from {@link #inFlight}
+     * because other computations may return cached results.
+     */
+    private final ConcurrentMap<AttributeMapCacheKey, FutureTask<Map<String, Object>>> inFlightBypassing = 
+        new ConcurrentHashMap<AttributeMapCacheKey, FutureTask<Map<String, Object>>>();
+
+    /** Number of requests that waited for a computation started by another request. */
+    private final StripedLongCounter coalescedHits = new StripedLongCounter();
+
+    /** Second-level cache of results, <code>null</code> if not configured. */
+    private final DiskResultCache diskCache;
+
+    /** The number of threads refreshing results, see {@link #refreshExecutor}. */
+    private static final int REFRESH_THREADS = 2;
+
+    /**
+     * Recomputes results to refresh (see {@link CacheConfiguration#refreshAfterWrite(long)})
+     * off the request threads, <code>null</code> if results are not refreshed.
+     */
+    private final ExecutorService refreshExecutor;
+
+    /** Number of results read from {@link #diskCache}. */
+    private final StripedLongCounter diskHits = new StripedLongCounter();
+
     /** Cache statistics keys. */
     static final String CACHE_MISSES = "cache.misses";
     static final String CACHE_HITS_TOTAL = "cache.hits.total";
+    static final String CACHE_HITS_COALESCED = "cache.hits.coalesced";
+    static final String CACHE_HITS_DISK = "cache.hits.disk";
 
     /**
      * Creates a {@link CachingProcessingComponentManager}.
@@ -81,15 +148,147 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
     @SafeVarargs
     public CachingProcessingComponentManager(IProcessingComponentManager delegate,
         Class<? extends IProcessingComponent>... cachedComponentClasses)
+    {
+        this(delegate, new CacheConfiguration(), cachedComponentClasses);
+    }
+
+    /**
+     * Creates a {@link CachingProcessingComponentManager} with custom cache size and
+     * expiration settings.
+     * 
+     * @param delegate the manager to handle the preparation of the actual processing
+     *            component instances
+     * @param configuration cache size and expiration settings
+     * @param cachedComponentClasses classes of components whose output should be cached
+     *            by the controller. If a superclass is provided here, e.g.
+     *            {@link IDocumentSource}, all its subclasses will be subject to caching.
+     *            If {@link IProcessingComponent} is provided here, output of all
+     *            components will be cached.
+     */
+    @SafeVarargs
+    public CachingProcessingComponentManager(IProcessingComponentManager delegate,
+        CacheConfiguration configuration,
+        Class<? extends IProcessingComponent>... cachedComponentClasses)
     {
         this.delegate = delegate;
         this.cachedComponentClasses = ImmutableSet.copyOf(cachedComponentClasses);
 
-        // Initialize cache.
-        cache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .recordStats()
-            .build();
+        // Initialize caches.
+        refreshExecutor = configuration.refreshAfterWriteMillis > 0 ? ExecutorServiceUtils
+            .createExecutorService(REFRESH_THREADS, CachingProcessingComponentManager.class)
+            : null;
+        cache = createCache(configuration, configuration.maximumBytes);
+        for (Map.Entry<Class<? extends IProcessingComponent>, Long> entry : 
+            configuration.componentMaximumBytes.entrySet())
+        {
+            componentCaches.put(entry.getKey(),
+                createCache(configuration, entry.getValue()));
+        }
+
+        if (configuration.diskCacheDirectory != null)
+        {
+            try
+            {
+                diskCache = new DiskResultCache(configuration.diskCacheDirectory,
+                    configuration.diskCacheMaximumBytes);
+            }
+            catch (IOException e)
+            {
+                throw new ComponentInitializationException(
+                    "Could not open the disk cache: "
+                        + configuration.diskCacheDirectory.getAbsolutePath(), e);
+            }
+        }
+        else
+        {
+            diskCache = null;
+        }
+    }
+
+    /**
+     * Creates a cache bounded by the estimated size of results if
+     * <code>maximumBytes</code> is greater than 0, or by the number of results otherwise.
+     */
+    private Cache<AttributeMapCacheKey, Map<String, Object>> createCache(
+        CacheConfiguration configuration, long maximumBytes)
+    {
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+            .recordStats();
+
+        if (configuration.expireAfterWriteMillis > 0)
+        {
+            builder.expireAfterWrite(configuration.expireAfterWriteMillis,
+                TimeUnit.MILLISECONDS);
+        }
+
+        if (configuration.refreshAfterWriteMillis > 0)
+        {
+            builder.refreshAfterWrite(configuration.refreshAfterWriteMillis,
+                TimeUnit.MILLISECONDS);
+        }
+
+        // Refreshing requires a loading cache. Entries are normally put in the cache by
+        // CachingValueProducer, Guava uses the loader only to refresh them. Results are
+        // recomputed in the background, the request that triggered the refresh (and
+        // requests arriving in the meantime) get the stale result.
+        final CacheLoader<AttributeMapCacheKey, Map<String, Object>> loader = 
+            new CacheLoader<AttributeMapCacheKey, Map<String, Object>>()
+        {
+            @Override
+            public Map<String, Object> load(AttributeMapCacheKey key) throws Exception
+            {
+                final Map<String, Object> result = new ValueProducer(key).call();
+                storeOnDisk(key, result);
+                return result;
+            }
+
+            @Override
+            public ListenableFuture<Map<String, Object>> reload(
+                final AttributeMapCacheKey key, Map<String, Object> oldValue)
+            {
+                final ListenableFutureTask<Map<String, Object>> task = ListenableFutureTask
+                    .create(new Callable<Map<String, Object>>()
+                    {
+                        public Map<String, Object> call() throws Exception
+                        {
+                            return load(key);
+                        }
+                    });
+                refreshExecutor.execute(task);
+                return task;
+            }
+        };
+
+        if (maximumBytes > 0)
+        {
+            return builder
+                .maximumWeight(maximumBytes)
+                .weigher(ProcessingResultWeigher.INSTANCE)
+                .build(loader);
+        }
+        else
+        {
+            return builder
+                .maximumSize(configuration.maximumEntries)
+                .build(loader);
+        }
+    }
+
+    /**
+     * Returns the cache for results of the given component class.
+     */
+    private Cache<AttributeMapCacheKey, Map<String, Object>> cacheFor(
+        Class<? extends IProcessingComponent> componentClass)
+    {
+        for (Map.Entry<Class<? extends IProcessingComponent>, Cache<AttributeMapCacheKey, Map<String, Object>>> entry : 
+            componentCaches.entrySet())
+        {
+            if (entry.getKey().isAssignableFrom(componentClass))
+            {
+                return entry.getValue();
+            }
+        }
+        return cache;
     }
 
     public void init(IControllerContext context, Map<String, Object> attributes,
@@ -142,11 +341,25 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
     {
         try
         {
+            // Stop refreshing before the components are disposed of.
+            if (refreshExecutor != null)
+            {
+                refreshExecutor.shutdownNow();
+            }
             delegate.dispose();
             if (cache != null)
             {
                 cache.invalidateAll();
             }
+            for (Cache<AttributeMapCacheKey, Map<String, Object>> componentCache : 
+                componentCaches.values())
+            {
+                componentCache.invalidateAll();
+            }
+            if (diskCache != null)
+            {
+                diskCache.close();
+            }
         }
         finally
         {
@@ -157,7 +370,12 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
     public Map<String, Object> getStatistics()
     {
         // Return some custom statistics
-        final CacheStats cacheStats = cache.stats();
+        CacheStats cacheStats = cache.stats();
+        for (Cache<AttributeMapCacheKey, Map<String, Object>> componentCache : 
+            componentCaches.values())
+        {
+            cacheStats = cacheStats.plus(componentCache.stats());
+        }
         final Map<String, Object> stats = Maps.newHashMap();
         if (delegate instanceof IControllerStatisticsProvider) 
         {
@@ -165,10 +383,45 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
         }
         stats.put(CACHE_MISSES, cacheStats.missCount());
         stats.put(CACHE_HITS_TOTAL, cacheStats.hitCount());
+        stats.put(CACHE_HITS_COALESCED, coalescedHits.sum());
+        if (diskCache != null)
+        {
+            stats.put(CACHE_HITS_DISK, diskHits.sum());
+        }
         
         return stats;
     }
 
+    /**
+     * Returns the result for the key from the disk cache or <code>null</code>.
+     */
+    private Map<String, Object> loadFromDisk(AttributeMapCacheKey key)
+    {
+        if (diskCache == null || key.stableKey() == null)
+        {
+            return null;
+        }
+
+        final Map<String, Object> result = diskCache.get(key.stableKey(),
+            key.inputDocuments());
+        if (result != null)
+        {
+            diskHits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Stores the result for the key in the disk cache, if configured.
+     */
+    private void storeOnDisk(AttributeMapCacheKey key, Map<String, Object> result)
+    {
+        if (diskCache != null && key.stableKey() != null)
+        {
+            diskCache.put(key.stableKey(), result, key.inputDocuments());
+        }
+    }
+
     // Two extra attributes to add to the input map. This way, they will also become
     // part of the cache key, which is what we need.
     private static final String COMPONENT_CLASS_KEY = 
@@ -224,39 +477,83 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
             inputProcessingAttributes.put(COMPONENT_CLASS_KEY, componentClass);
             inputProcessingAttributes.put(COMPONENT_ID_KEY, componentId);
 
+            // Results on disk outlive the component's configuration, so @Input @Init
+            // attributes are part of the disk cache key.
+            final Map<String, Object> inputInitAttributes = getAttributesForDescriptors(
+                descriptors.inputInitDescriptors, inputAttributes);
+
             // Get data from cache. If the result is not in the cache yet, it will
             // be created by the ValueProducer.
             final AttributeMapCacheKey key = new AttributeMapCacheKey(
-                inputProcessingAttributes, inputAttributes);
+                inputProcessingAttributes, inputInitAttributes, inputAttributes);
+
+            final Cache<AttributeMapCacheKey, Map<String, Object>> componentCache = 
+                cacheFor(componentClass);
 
             // Cache bypass.
-            if (inputAttributes.containsKey(CACHE_BYPASS_ATTR) &&
-                Boolean.valueOf(inputAttributes.get(CACHE_BYPASS_ATTR).toString())) {
-                cache.invalidate(key);
+            final boolean bypass = inputAttributes.containsKey(CACHE_BYPASS_ATTR) &&
+                Boolean.valueOf(inputAttributes.get(CACHE_BYPASS_ATTR).toString());
+            if (bypass) {
+                componentCache.invalidate(key);
             }
 
             try
             {
-                final Map<String, Object> processingResult = cache.get(key, new ValueProducer(key));
+                Map<String, Object> processingResult = 
+                    (bypass ? null : componentCache.getIfPresent(key));
+                if (processingResult == null)
+                {
+                    processingResult = computeOnce(componentCache, key, bypass);
+                }
 
                 // Copy the results @Output @Processing attributes back to the result
                 outputAttributes.putAll(getAttributesForDescriptors(
                     descriptors.outputDescriptors, processingResult));
             }
-            catch (UncheckedExecutionException e)
+            catch (ExecutionException e)
             {
                 throw ExceptionUtils.wrapAs(ProcessingException.class, e.getCause());
             }
-            catch (ExecutionException e)
+        }
+
+        /**
+         * Performs processing for the key, unless an identical request is being
+         * processed already, in which case waits for and returns its result. Requests
+         * bypassing the cache only wait for other requests bypassing the cache.
+         */
+        private Map<String, Object> computeOnce(
+            Cache<AttributeMapCacheKey, Map<String, Object>> componentCache,
+            AttributeMapCacheKey key, boolean bypass) throws ExecutionException
+        {
+            final FutureTask<Map<String, Object>> computation = 
+                new FutureTask<Map<String, Object>>(
+                    new CachingValueProducer(componentCache, key, bypass));
+
+            final ConcurrentMap<AttributeMapCacheKey, FutureTask<Map<String, Object>>> computations =
+                (bypass ? inFlightBypassing : inFlight);
+            final FutureTask<Map<String, Object>> inProgress = 
+                computations.putIfAbsent(key, computation);
+            if (inProgress != null)
             {
-                throw ExceptionUtils.wrapAs(ProcessingException.class, e.getCause());
+                coalescedHits.increment();
+                return Uninterruptibles.getUninterruptibly(inProgress);
+            }
+
+            try
+            {
+                computation.run();
+                return Uninterruptibles.getUninterruptibly(computation);
+            }
+            finally
+            {
+                computations.remove(key, computation);
             }
         }
 
         /**
-         * Returns attribute descriptors for {@link Input} {@link Processing} and
-         * {@link Output} {@link Processing} attributes of the component whose results
-         * will be cached.
+         * Returns attribute descriptors for {@link Input} {@link Processing},
+         * {@link Input} {@link Init} and {@link Output} attributes of the component whose
+         * results will be cached.
          */
         private InputOutputAttributeDescriptors prepareAttributeDescriptors()
         {
@@ -280,6 +577,8 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
                         descriptors = new InputOutputAttributeDescriptors(
                             BindableDescriptorBuilder.buildDescriptor(component)
                                 .only(Input.class, Processing.class).flatten().attributeDescriptors,
+                            BindableDescriptorBuilder.buildDescriptor(component)
+                                .only(Input.class, Init.class).flatten().attributeDescriptors,
                             BindableDescriptorBuilder.buildDescriptor(component)
                                 .only(Output.class).flatten().attributeDescriptors);
 
@@ -325,7 +624,8 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
      * modifications to the attributes map or its values do not change the hashCode and
      * equality behavior of the key.
      */
-    private static final class AttributeMapCacheKey
+    private static final class AttributeMapCacheKey implements
+        ProcessingResultWeigher.IAttributeRetainingKey
     {
         /** Input processing attributes, the key for the cache */
         private Map<String, Object> inputProcessingAttributes;
@@ -334,13 +634,27 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
         private int hashCode;
 
         /**
-         * All input attributes. This map is not part of the cache key, but we will need
-         * it to properly retrieve entries from the cache.
+         * Input initialization attributes. Not part of the in-memory cache key (they are
+         * fixed for the lifetime of this manager's components), but part of the disk
+         * cache key.
+         */
+        private Map<String, Object> inputInitAttributes;
+
+        /**
+         * A copy of all input attributes. This map is not part of the cache key, but we
+         * will need it to properly retrieve entries from the cache. It is copied so that
+         * the key does not retain attributes added to the request later (e.g. results)
+         * and can be weighed safely.
          */
         private Map<String, Object> inputAttributes;
 
+        /** Key in the disk cache, computed on demand. */
+        private String stableKey;
+        private boolean stableKeyComputed;
+
         private AttributeMapCacheKey(
             Map<String, Object> inputProcessingAttributes,
+            Map<String, Object> inputInitAttributes,
             Map<String, Object> inputAttributes)
         {
             /*
@@ -359,7 +673,9 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
             this.inputProcessingAttributes = Collections.unmodifiableMap(inputProcessingAttributes);
             this.hashCode = inputProcessingAttributes.hashCode();
 
-            this.inputAttributes = inputAttributes;
+            this.inputInitAttributes = Collections.unmodifiableMap(inputInitAttributes);
+            this.inputAttributes = Collections.unmodifiableMap(Maps
+                .newHashMap(inputAttributes));
         }
 
         /*
@@ -393,6 +709,40 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
         {
             return hashCode;
         }
+
+        /**
+         * Returns the key of the input processing and initialization attributes in the
+         * disk cache, stable across restarts, or <code>null</code> if the attributes
+         * cannot be cached on disk. See {@link DiskResultCache#stableKey(Map)}.
+         */
+        synchronized String stableKey()
+        {
+            if (!stableKeyComputed)
+            {
+                final Map<String, Object> attributes = Maps.newHashMap();
+                attributes.put("processing", inputProcessingAttributes);
+                attributes.put("init", inputInitAttributes);
+                stableKey = DiskResultCache.stableKey(attributes);
+                stableKeyComputed = true;
+            }
+            return stableKey;
+        }
+
+        @Override
+        public Map<String, Object> getRetainedAttributes()
+        {
+            return inputAttributes;
+        }
+
+        /**
+         * Returns the input documents, needed to resolve documents of cached clusters.
+         */
+        @SuppressWarnings("unchecked")
+        List<Document> inputDocuments()
+        {
+            final Object documents = inputAttributes.get(AttributeNames.DOCUMENTS);
+            return documents instanceof List<?> ? (List<Document>) documents : null;
+        }
     }
 
     /**
@@ -443,18 +793,70 @@ public class CachingProcessingComponentManager implements IProcessingComponentMa
     }
 
     /**
-     * Stores a pair of maps of {@link Input} and {@link Output} descriptors.
+     * Performs processing (using {@link ValueProducer}) and caches the result. This
+     * producer is run by the first of concurrent identical requests only.
+     */
+    private final class CachingValueProducer 
+        implements Callable<Map<String, Object>>
+    {
+        private final Cache<AttributeMapCacheKey, Map<String, Object>> componentCache;
+        private final AttributeMapCacheKey key;
+        private final boolean bypass;
+
+        CachingValueProducer(
+            Cache<AttributeMapCacheKey, Map<String, Object>> componentCache,
+            AttributeMapCacheKey key, boolean bypass)
+        {
+            this.componentCache = componentCache;
+            this.key = key;
+            this.bypass = bypass;
+        }
+
+        @Override
+        public Map<String, Object> call() throws Exception
+        {
+            if (!bypass)
+            {
+                // A computation that completed after this request's cache lookup may
+                // have cached the result already. The map view does not count as a hit.
+                final Map<String, Object> cached = componentCache.asMap().get(key);
+                if (cached != null)
+                {
+                    return cached;
+                }
+
+                final Map<String, Object> stored = loadFromDisk(key);
+                if (stored != null)
+                {
+                    componentCache.put(key, stored);
+                    return stored;
+                }
+            }
+
+            final Map<String, Object> result = new ValueProducer(key).call();
+            componentCache.put(key, result);
+            storeOnDisk(key, result);
+            return result;
+        }
+    }
+
+    /**
+     * Stores maps of {@link Input} {@link Processing}, {@link Input} {@link Init} and
+     * {@link Output} descriptors.
      */
     private final static class InputOutputAttributeDescriptors
     {
         final Map<String, AttributeDescriptor> inputProcessingDescriptors;
+        final Map<String, AttributeDescriptor> inputInitDescriptors;
         final Map<String, AttributeDescriptor> outputDescriptors;
 
         InputOutputAttributeDescriptors(
             Map<String, AttributeDescriptor> inputDescriptors,
+            Map<String, AttributeDescriptor> inputInitDescriptors,
             Map<String, AttributeDescriptor> outputDescriptors)
         {
             this.inputProcessingDescriptors = inputDescriptors;
+            this.inputInitDescriptors = inputInitDescriptors;
             this.outputDescriptors = outputDescriptors;
         }
     }
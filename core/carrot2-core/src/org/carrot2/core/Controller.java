@@ -22,6 +22,8 @@ import org.carrot2.core.attribute.AttributeNames;
 import org.carrot2.core.attribute.Init;
 import org.carrot2.util.ReflectionUtils;
 import org.carrot2.util.RollingWindowAverage;
+import org.carrot2.util.RollingWindowHistogram;
+import org.carrot2.util.StripedLongCounter;
 import org.carrot2.util.attribute.Input;
 import org.carrot2.util.attribute.Output;
 import org.simpleframework.xml.Attribute;
@@ -77,6 +79,12 @@ public final class Controller implements Closeable
      */
     private Map<String, ProcessingComponentConfiguration> componentIdToConfiguration;
 
+    /**
+     * Set to <code>true</code> after successful initialization. Lets
+     * {@link #process(Map, Object...)} skip the lock guarding automatic initialization.
+     */
+    private volatile boolean initialized;
+
     /**
      * Some statistics about processing performed in this controller, including: number of
      * queries, number of successful queries, processing times, cache utilization if
@@ -163,6 +171,7 @@ public final class Controller implements Closeable
             .indexByComponentId(configurations);
 
         componentManager.init(context, attributes, configurations);
+        initialized = true;
         return this;
     }
 
@@ -292,13 +301,15 @@ public final class Controller implements Closeable
         checkClosed();
 
         // Automatically initialize the controller if the caller has not done that
-        // explicitly. The extra synchronization overhead does exist, but it's very
-        // small compared to the API simplification benefits.
-        synchronized (this)
+        // explicitly. Once initialized, the lock is not taken anymore.
+        if (!initialized)
         {
-            if (componentIdToConfiguration == null)
+            synchronized (this)
             {
-                init();
+                if (componentIdToConfiguration == null)
+                {
+                    init();
+                }
             }
         }
 
@@ -534,26 +545,27 @@ public final class Controller implements Closeable
     }
 
     /**
-     * Tracks various statistics about processing performed in this component
+     * Tracks various statistics about processing performed in this component. Updates
+     * are lock-free, so concurrent requests do not contend on the statistics.
      */
     final class ProcessingStatistics
     {
         /** Total queries processed (including erroneous) */
-        long totalQueries = 0;
+        final StripedLongCounter totalQueries = new StripedLongCounter();
 
         /** Queries that resulted in a processing exception */
-        long goodQueries = 0;
+        final StripedLongCounter goodQueries = new StripedLongCounter();
 
-        /** Document source processing rolling average time */
-        RollingWindowAverage sourceTimeAverage = new RollingWindowAverage(
+        /** Document source processing time distribution */
+        final RollingWindowHistogram sourceTime = new RollingWindowHistogram(
             5 * RollingWindowAverage.MINUTE, 10 * RollingWindowAverage.SECOND);
 
-        /** Clustering algorithm processing rolling average time */
-        RollingWindowAverage algorithmTimeAverage = new RollingWindowAverage(
+        /** Clustering algorithm processing time distribution */
+        final RollingWindowHistogram algorithmTime = new RollingWindowHistogram(
             5 * RollingWindowAverage.MINUTE, 10 * RollingWindowAverage.SECOND);
 
-        /** Total processing time rolling average time */
-        RollingWindowAverage totalTimeAverage = new RollingWindowAverage(
+        /** Total processing time distribution */
+        final RollingWindowHistogram totalTime = new RollingWindowHistogram(
             5 * RollingWindowAverage.MINUTE, 10 * RollingWindowAverage.SECOND);
 
         /**
@@ -561,22 +573,17 @@ public final class Controller implements Closeable
          */
         void update(ProcessingResult processingResult)
         {
-            synchronized (this)
+            totalQueries.increment();
+            if (processingResult != null)
             {
-                totalQueries++;
-                if (processingResult != null)
-                {
-                    goodQueries++;
-
-                    final Map<String, Object> attributes = processingResult
-                        .getAttributes();
-                    addTimeToAverage(attributes, AttributeNames.PROCESSING_TIME_SOURCE,
-                        sourceTimeAverage);
-                    addTimeToAverage(attributes,
-                        AttributeNames.PROCESSING_TIME_ALGORITHM, algorithmTimeAverage);
-                    addTimeToAverage(attributes, AttributeNames.PROCESSING_TIME_TOTAL,
-                        totalTimeAverage);
-                }
+                goodQueries.increment();
+
+                final long now = System.currentTimeMillis();
+                final Map<String, Object> attributes = processingResult.getAttributes();
+                addTime(attributes, AttributeNames.PROCESSING_TIME_SOURCE, sourceTime, now);
+                addTime(attributes, AttributeNames.PROCESSING_TIME_ALGORITHM,
+                    algorithmTime, now);
+                addTime(attributes, AttributeNames.PROCESSING_TIME_TOTAL, totalTime, now);
             }
         }
 
@@ -593,35 +600,49 @@ public final class Controller implements Closeable
                 extraStats = Collections.emptyMap();
             }
 
-            // The stats may be still a little off because synchronization does not
-            // affect component manager specific stats. Complete accuracy is not
-            // worth the extra synchronizations though.
-            synchronized (this)
+            // The stats may be a little off because they are not an atomic snapshot of
+            // all counters. Complete accuracy is not worth the extra synchronization.
+            final RollingWindowHistogram.Snapshot algorithm = algorithmTime.getSnapshot();
+            final RollingWindowHistogram.Snapshot source = sourceTime.getSnapshot();
+            final RollingWindowHistogram.Snapshot total = totalTime.getSnapshot();
+            return new ControllerStatistics(
+                totalQueries.sum(),
+                goodQueries.sum(),
+                algorithm.getAverage(),
+                algorithm.getCount(),
+                algorithmTime.getWindowSizeMillis(),
+                source.getAverage(),
+                source.getCount(),
+                sourceTime.getWindowSizeMillis(),
+                total.getAverage(),
+                total.getCount(),
+                totalTime.getWindowSizeMillis(),
+                (Long) extraStats.get(CachingProcessingComponentManager.CACHE_MISSES),
+                (Long) extraStats.get(CachingProcessingComponentManager.CACHE_HITS_TOTAL),
+                (Long) extraStats.get(CachingProcessingComponentManager.CACHE_HITS_COALESCED),
+                (Long) extraStats.get(CachingProcessingComponentManager.CACHE_HITS_DISK),
+                percentiles(algorithm),
+                percentiles(source),
+                percentiles(total));
+        }
+
+        private long [] percentiles(RollingWindowHistogram.Snapshot snapshot)
+        {
+            return new long []
             {
-                return new ControllerStatistics(
-                    totalQueries,
-                    goodQueries,
-                    algorithmTimeAverage.getCurrentAverage(),
-                    algorithmTimeAverage.getUpdatesInWindow(),
-                    algorithmTimeAverage.getWindowSizeMillis(),
-                    sourceTimeAverage.getCurrentAverage(),
-                    sourceTimeAverage.getUpdatesInWindow(),
-                    sourceTimeAverage.getWindowSizeMillis(),
-                    totalTimeAverage.getCurrentAverage(),
-                    totalTimeAverage.getUpdatesInWindow(),
-                    totalTimeAverage.getWindowSizeMillis(),
-                    (Long) extraStats.get(CachingProcessingComponentManager.CACHE_MISSES),
-                    (Long) extraStats.get(CachingProcessingComponentManager.CACHE_HITS_TOTAL));
-            }
+                snapshot.getPercentile(0.50),
+                snapshot.getPercentile(0.95),
+                snapshot.getPercentile(0.99)
+            };
         }
 
-        private void addTimeToAverage(Map<String, Object> attributes, String key,
-            RollingWindowAverage average)
+        private void addTime(Map<String, Object> attributes, String key,
+            RollingWindowHistogram histogram, long now)
         {
             final Long time = (Long) attributes.get(key);
             if (time != null)
             {
-                average.add(System.currentTimeMillis(), time);
+                histogram.add(now, time);
             }
         }
     }
@@ -13,7 +13,9 @@
 package org.carrot2.core;
 
 import org.carrot2.util.annotations.AspectModified;
+import org.carrot2.util.pool.ConcurrentPool;
 import org.carrot2.util.pool.FixedSizePool;
+import org.carrot2.util.pool.IParameterizedPool;
 
 /**
  * Creates {@link Controller}s in a number of common configurations. The most useful
@@ -23,6 +25,8 @@ import org.carrot2.util.pool.FixedSizePool;
  * code;</li>
  * <li>{@link #createCachingPooling(Class...)}: for long-running applications (e.g. web
  * applications) handling repeated (cacheable) requests.</li>
+ * <li>{@link #createConcurrentPooling(int, long)}: for long-running applications
+ * handling many concurrent requests on multi-core machines.</li>
  * </ul>
  */
 public final class ControllerFactory
@@ -94,6 +98,40 @@ public final class ControllerFactory
         return create(instancePoolSize);
     }
 
+    /**
+     * Creates a controller with processing component pooling but with no results caching.
+     * The returned controller will maintain an internal {@link ConcurrentPool} of
+     * processing components: borrowing and returning components does not block other
+     * processing threads, so throughput scales with the number of CPU cores. There is no
+     * upper bound on the number of instances the pool may cache.
+     * 
+     * @see #createConcurrentPooling(int, long)
+     */
+    public static Controller createConcurrentPooling()
+    {
+        return createConcurrentPooling(0, 0);
+    }
+
+    /**
+     * Creates a controller with processing component pooling but with no results caching.
+     * The returned controller will maintain an internal {@link ConcurrentPool} of
+     * processing components, optionally bounded and releasing components that have not
+     * been used for some time.
+     * 
+     * @param maxInstancesPerKey Maximum number of instances of a single component
+     *            class-ID pair used at the same time, 0 for no limit. Processing requests
+     *            over the limit wait for an instance to become available.
+     * @param maxIdleMillis Time after which unused component instances are disposed of,
+     *            0 to keep them until the controller is disposed of.
+     * @see #create(IParameterizedPool, Class...)
+     */
+    public static Controller createConcurrentPooling(int maxInstancesPerKey,
+        long maxIdleMillis)
+    {
+        return create(new ConcurrentPool<IProcessingComponent, String>(
+            maxInstancesPerKey, maxIdleMillis));
+    }
+
     /**
      * Creates a controller with no processing component pooling but with results caching.
      * The returned controller will maintain a cache of the processing results. For each
@@ -143,11 +181,53 @@ public final class ControllerFactory
         return create(true, cachedProcessingComponents);
     }
 
+    /**
+     * Creates a controller with processing component pooling and results caching, with
+     * custom cache size and expiration settings. For long-running applications, bounding
+     * the cache by the estimated size of the results (see
+     * {@link CacheConfiguration#maximumBytes(long)}) gives more predictable memory use
+     * than the default bound on the number of results.
+     * 
+     * @param cacheConfiguration cache size and expiration settings
+     * @param cachedProcessingComponents classes of components whose output should be cached
+     *            by the controller. If a superclass is provided here, e.g.
+     *            {@link IDocumentSource}, all its subclasses will be subject to caching.
+     *            If {@link IProcessingComponent} is provided here, output of all
+     *            components will be cached.
+     */
+    @SafeVarargs
+    public static Controller createCachingPooling(CacheConfiguration cacheConfiguration,
+        Class<? extends IProcessingComponent>... cachedProcessingComponents)
+    {
+        return create(true, cacheConfiguration, cachedProcessingComponents);
+    }
+
+    /**
+     * Creates a controller with the specified pooling and caching settings.
+     * 
+     * @param componentPooling if <code>true</code>, component pooling 
+     *      will be performed (soft pool), otherwise no component pool will be used.
+     * @param cachedProcessingComponents classes of components whose output should be cached
+     *            by the controller. If a superclass is provided here, e.g.
+     *            {@link IDocumentSource}, all its subclasses will be subject to caching.
+     *            If {@link IProcessingComponent} is provided here, output of all
+     *            components will be cached.
+     */
+    @SafeVarargs
+    public static Controller create(boolean componentPooling,
+        Class<? extends IProcessingComponent>... cachedProcessingComponents)
+    {
+        return create(componentPooling, new CacheConfiguration(),
+            cachedProcessingComponents);
+    }
+
     /**
      * Creates a controller with the specified pooling and caching settings.
      * 
      * @param componentPooling if <code>true</code>, component pooling 
      *      will be performed (soft pool), otherwise no component pool will be used.
+     * @param cacheConfiguration cache size and expiration settings, used only if
+     *            <code>cachedProcessingComponents</code> is not empty.
      * @param cachedProcessingComponents classes of components whose output should be cached
      *            by the controller. If a superclass is provided here, e.g.
      *            {@link IDocumentSource}, all its subclasses will be subject to caching.
@@ -156,6 +236,7 @@ public final class ControllerFactory
      */
     @SafeVarargs
     public static Controller create(boolean componentPooling,
+        CacheConfiguration cacheConfiguration,
         Class<? extends IProcessingComponent>... cachedProcessingComponents)
     {
         final IProcessingComponentManager baseManager = 
@@ -163,7 +244,8 @@ public final class ControllerFactory
                 ? new PoolingProcessingComponentManager()
                 : new SimpleProcessingComponentManager());
 
-        return new Controller(addCachingManager(baseManager, cachedProcessingComponents));
+        return new Controller(addCachingManager(baseManager, cacheConfiguration,
+            cachedProcessingComponents));
     }
 
     /**
@@ -193,6 +275,29 @@ public final class ControllerFactory
         return new Controller(addCachingManager(baseManager, cachedProcessingComponents));
     }
     
+    /**
+     * Creates a controller with the specified component pool and caching settings.
+     * 
+     * @param componentPool the pool of processing component instances, e.g.
+     *            {@link ConcurrentPool}. The pool must not be shared with other
+     *            controllers.
+     * @param cachedProcessingComponents classes of components whose output should be
+     *            cached by the controller. If a superclass is provided here, e.g.
+     *            {@link IDocumentSource}, all its subclasses will be subject to caching.
+     *            If {@link IProcessingComponent} is provided here, output of all
+     *            components will be cached.
+     */
+    @SafeVarargs
+    public static Controller create(
+        IParameterizedPool<IProcessingComponent, String> componentPool,
+        Class<? extends IProcessingComponent>... cachedProcessingComponents)
+    {
+        final IProcessingComponentManager baseManager = 
+            new PoolingProcessingComponentManager(componentPool);
+
+        return new Controller(addCachingManager(baseManager, cachedProcessingComponents));
+    }
+
     /**
      * Adds caching manager wrapper if caching is requested.
      */
@@ -201,11 +306,25 @@ public final class ControllerFactory
     private static IProcessingComponentManager addCachingManager(
         IProcessingComponentManager baseManager, 
         Class<? extends IProcessingComponent>... cachedProcessingComponents)
+    {
+        return addCachingManager(baseManager, new CacheConfiguration(),
+            cachedProcessingComponents);
+    }
+
+    /**
+     * Adds caching manager wrapper with the provided configuration if caching is
+     * requested.
+     */
+    @AspectModified("Throws an exception in .NET")
+    @SafeVarargs
+    private static IProcessingComponentManager addCachingManager(
+        IProcessingComponentManager baseManager, CacheConfiguration cacheConfiguration,
+        Class<? extends IProcessingComponent>... cachedProcessingComponents)
     {
         if (cachedProcessingComponents.length == 0)
             return baseManager;
 
-        return new CachingProcessingComponentManager(baseManager,
+        return new CachingProcessingComponentManager(baseManager, cacheConfiguration,
             cachedProcessingComponents);
     }
 }
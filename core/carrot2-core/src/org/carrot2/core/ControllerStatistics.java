@@ -107,12 +107,95 @@ public final class ControllerStatistics
     @Attribute(name = "cache-hits-total", required = false)
     public final Long cacheHitsTotal;
 
+    /**
+     * Number of requests not found in the cache that shared the result of an identical
+     * request processed at the same time instead of performing processing. These
+     * requests are also counted in {@link #cacheMisses}. May be null if the controller
+     * does not perform caching.
+     */
+    @Attribute(name = "cache-hits-coalesced", required = false)
+    public final Long cacheHitsCoalesced;
+
+    /**
+     * Number of requests not found in the in-memory cache whose results were read from
+     * the disk cache. These requests are also counted in {@link #cacheMisses}. May be
+     * null if the controller does not use a disk cache.
+     */
+    @Attribute(name = "cache-hits-disk", required = false)
+    public final Long cacheHitsDisk;
+
+    /**
+     * Approximate 50th percentile of clustering time measured within the
+     * {@link #algorithmTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "algorithm-time-p50-in-window")
+    public final long algorithmTimeP50InWindow;
+
+    /**
+     * Approximate 95th percentile of clustering time measured within the
+     * {@link #algorithmTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "algorithm-time-p95-in-window")
+    public final long algorithmTimeP95InWindow;
+
+    /**
+     * Approximate 99th percentile of clustering time measured within the
+     * {@link #algorithmTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "algorithm-time-p99-in-window")
+    public final long algorithmTimeP99InWindow;
+
+    /**
+     * Approximate 50th percentile of document source processing time measured within the
+     * {@link #sourceTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "source-time-p50-in-window")
+    public final long sourceTimeP50InWindow;
+
+    /**
+     * Approximate 95th percentile of document source processing time measured within the
+     * {@link #sourceTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "source-time-p95-in-window")
+    public final long sourceTimeP95InWindow;
+
+    /**
+     * Approximate 99th percentile of document source processing time measured within the
+     * {@link #sourceTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "source-time-p99-in-window")
+    public final long sourceTimeP99InWindow;
+
+    /**
+     * Approximate 50th percentile of total processing time measured within the
+     * {@link #totalTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "total-time-p50-in-window")
+    public final long totalTimeP50InWindow;
+
+    /**
+     * Approximate 95th percentile of total processing time measured within the
+     * {@link #totalTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "total-time-p95-in-window")
+    public final long totalTimeP95InWindow;
+
+    /**
+     * Approximate 99th percentile of total processing time measured within the
+     * {@link #totalTimeWindowSize}, in milliseconds.
+     */
+    @Attribute(name = "total-time-p99-in-window")
+    public final long totalTimeP99InWindow;
+
     ControllerStatistics(long totalQueries, long goodQueries,
         double algorithmTimeAverageInWindow, long algorithmTimeMeasurementsInWindow,
         long algorithmTimeWindowSize, double sourceTimeAverageInWindow,
         long sourceTimeMeasurementsInWindow, long sourceTimeWindowSize,
         double totalTimeAverageInWindow, long totalTimeMeasurementsInWindow,
-        long totalTimeWindowSize, Long cacheMisses, Long cacheHitsTotal)
+        long totalTimeWindowSize, Long cacheMisses, Long cacheHitsTotal,
+        Long cacheHitsCoalesced, Long cacheHitsDisk,
+        long [] algorithmTimePercentiles, long [] sourceTimePercentiles,
+        long [] totalTimePercentiles)
     {
         this.totalQueries = totalQueries;
         this.goodQueries = goodQueries;
@@ -131,6 +214,20 @@ public final class ControllerStatistics
 
         this.cacheMisses = cacheMisses;
         this.cacheHitsTotal = cacheHitsTotal;
+        this.cacheHitsCoalesced = cacheHitsCoalesced;
+        this.cacheHitsDisk = cacheHitsDisk;
+
+        this.algorithmTimeP50InWindow = algorithmTimePercentiles[0];
+        this.algorithmTimeP95InWindow = algorithmTimePercentiles[1];
+        this.algorithmTimeP99InWindow = algorithmTimePercentiles[2];
+
+        this.sourceTimeP50InWindow = sourceTimePercentiles[0];
+        this.sourceTimeP95InWindow = sourceTimePercentiles[1];
+        this.sourceTimeP99InWindow = sourceTimePercentiles[2];
+
+        this.totalTimeP50InWindow = totalTimePercentiles[0];
+        this.totalTimeP95InWindow = totalTimePercentiles[1];
+        this.totalTimeP99InWindow = totalTimePercentiles[2];
     }
 
     /**
@@ -0,0 +1,1024 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import org.carrot2.core.attribute.AttributeNames;
+import org.carrot2.util.annotations.ThreadSafe;
+import org.carrot2.util.simplexml.SimpleXmlWrappers;
+import org.slf4j.Logger;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+import org.carrot2.shaded.guava.common.collect.Maps;
+
+/**
+ * A persistent, size-bounded store of processing results, used by
+ * {@link CachingProcessingComponentManager} as a second-level cache behind the in-memory
+ * one, see {@link CacheConfiguration#diskCache(File, long)}.
+ * <p>
+ * Results are serialized to XML (like {@link ProcessingResult}s) and appended to segment
+ * files in a directory. An in-memory index maps keys to the most recent record; it is
+ * rebuilt by scanning the segments when the cache is opened, so results stored before a
+ * restart are available immediately. When the total size of segments exceeds the limit,
+ * the oldest segment is deleted together with all results it holds.
+ * </p>
+ * <p>
+ * Keys are computed by {@link #stableKey(Map)} from the input attributes, which must be
+ * of types whose content (rather than identity) can be hashed. Results stored by a
+ * different build of Carrot2 are deleted when the cache is opened.
+ * </p>
+ */
+@ThreadSafe
+public final class DiskResultCache implements Closeable
+{
+    private final static Logger logger = org.slf4j.LoggerFactory
+        .getLogger(DiskResultCache.class);
+
+    /** Marks the beginning of each record. */
+    private static final int RECORD_MAGIC = 0xCA2C0001;
+
+    /**
+     * Mixed into keys and stored in {@link #FORMAT_FILE}. Includes the build version, so
+     * that results computed by a different version of the algorithms are discarded.
+     * Change the prefix when the key or record format changes.
+     */
+    private static final String KEY_FORMAT = "carrot2.disk-cache.2/" + buildVersion();
+
+    /** Holds the {@link #KEY_FORMAT} of the segments in the directory. */
+    private static final String FORMAT_FILE = "format";
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** Record header: magic and body length. */
+    private static final int HEADER_BYTES = 4 + 4;
+
+    /** Record trailer: checksum of the body. */
+    private static final int TRAILER_BYTES = 8;
+
+    /** Number of segments the size limit is split into. */
+    private static final int SEGMENTS = 8;
+
+    /** Lower bound on the segment size. */
+    private static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+
+    /**
+     * Location of a record's body.
+     */
+    private final static class Location
+    {
+        final Segment segment;
+        final long offset;
+        final int length;
+
+        Location(Segment segment, long offset, int length)
+        {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * An append-only segment file.
+     */
+    private final static class Segment
+    {
+        final int number;
+        final File file;
+
+        /**
+         * Replaced if closed because a thread using it was interrupted, modified under the
+         * cache's lock.
+         */
+        volatile FileChannel channel;
+
+        /** Size of valid records, modified under the cache's lock. */
+        volatile long size;
+
+        Segment(int number, File file) throws IOException
+        {
+            this.number = number;
+            this.file = file;
+            this.channel = openChannel(file);
+        }
+
+        static FileChannel openChannel(File file) throws IOException
+        {
+            return new RandomAccessFile(file, "rw").getChannel();
+        }
+    }
+
+    private final File directory;
+    private final long maximumBytes;
+    private final long segmentBytes;
+
+    /** Most recent record of each key. */
+    private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+
+    /** Segments, oldest first, the last one is written to. Guarded by this. */
+    private final List<Segment> segments = Lists.newArrayList();
+
+    /** Total size of segments. Guarded by this. */
+    private long totalBytes;
+
+    private volatile boolean closed;
+
+    /**
+     * Opens a cache stored in the provided directory, creating the directory if needed.
+     * Results stored in the directory previously become available immediately.
+     *
+     * @param directory directory to store segment files in. The directory must not be
+     *            used by more than one cache at a time.
+     * @param maximumBytes maximum total size of segment files
+     */
+    public DiskResultCache(File directory, long maximumBytes) throws IOException
+    {
+        if (maximumBytes <= 0)
+            throw new IllegalArgumentException("Maximum size must be greater than zero: "
+                + maximumBytes);
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create cache directory: "
+                + directory.getAbsolutePath());
+        }
+
+        this.directory = directory;
+        this.maximumBytes = maximumBytes;
+        this.segmentBytes = Math.max(MIN_SEGMENT_BYTES, maximumBytes / SEGMENTS);
+
+        open();
+    }
+
+    /**
+     * Returns the cached attributes for the key or <code>null</code> if there are none.
+     * If the attributes include clusters but no documents, documents in the clusters are
+     * resolved by identifier against <code>inputDocuments</code>, which are not modified,
+     * see {@link #put(String, Map, List)}.
+     *
+     * @param key the key returned from {@link #stableKey(Map)}
+     * @param inputDocuments documents the results have been computed for, may be
+     *            <code>null</code>
+     */
+    public Map<String, Object> get(String key, List<Document> inputDocuments)
+    {
+        final Location location = index.get(key);
+        if (location == null || closed)
+        {
+            return null;
+        }
+
+        final FileChannel channel = location.segment.channel;
+        try
+        {
+            final ByteBuffer buffer = ByteBuffer.allocate(location.length);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer, location.offset + buffer.position()) < 0)
+                {
+                    return null;
+                }
+            }
+
+            final DataInputStream input = new DataInputStream(new ByteArrayInputStream(
+                buffer.array()));
+            if (!key.equals(input.readUTF()))
+            {
+                return null;
+            }
+            return readAttributes(input, inputDocuments);
+        }
+        catch (ClosedChannelException e)
+        {
+            // Closed by an interrupt of this or another reading thread (or evicted).
+            logger.debug("Could not read cached result: " + key, e);
+            reopen(location.segment, channel);
+            return null;
+        }
+        catch (Exception e)
+        {
+            // The segment may have been evicted in the meantime or the record may be
+            // unreadable, this is a cache miss either way.
+            logger.debug("Could not read cached result: " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores attributes under the key. Attributes that cannot be serialized are not
+     * stored.
+     * <p>
+     * If the attributes include clusters but no documents (e.g. output of a clustering
+     * algorithm), documents in the clusters are stored as references to identifiers of
+     * <code>inputDocuments</code> or, if they have none, to the identifiers they would be
+     * assigned (see {@link Document#assignDocumentIds(java.util.Collection)}). Neither
+     * the attributes nor the input documents are modified.
+     * </p>
+     *
+     * @param key the key returned from {@link #stableKey(Map)}
+     * @param attributes attributes to store
+     * @param inputDocuments documents the results have been computed for, may be
+     *            <code>null</code>
+     */
+    public void put(String key, Map<String, Object> attributes,
+        List<Document> inputDocuments)
+    {
+        final byte [] body;
+        try
+        {
+            body = writeRecordBody(key, attributes, inputDocuments);
+        }
+        catch (Exception e)
+        {
+            logger.debug("Could not serialize result, not cached on disk: " + key, e);
+            return;
+        }
+
+        try
+        {
+            append(key, body);
+        }
+        catch (ClosedChannelException e)
+        {
+            logger.debug("Interrupted, not cached on disk: " + key, e);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Could not write to disk cache: " + directory, e);
+        }
+    }
+
+    /**
+     * Returns the number of results in the cache.
+     */
+    public int size()
+    {
+        return index.size();
+    }
+
+    /**
+     * Returns the total size of segment files.
+     */
+    public synchronized long getSizeInBytes()
+    {
+        return totalBytes;
+    }
+
+    /**
+     * Closes segment files. Stored results remain on disk.
+     */
+    public synchronized void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        closed = true;
+        for (Segment segment : segments)
+        {
+            closeQuietly(segment);
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    /**
+     * Computes a key of a map of attributes, based on the content of attribute values:
+     * strings, primitive wrappers, enums, classes, documents and collections, maps and
+     * arrays of these. Returns <code>null</code> if any of the values is of a different
+     * type (e.g. an arbitrary object whose identity may matter) or is a set (whose
+     * iteration order is not defined).
+     */
+    public static String stableKey(Map<String, Object> attributes)
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        final DataOutputStream output = new DataOutputStream(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+                digest.update((byte) b);
+            }
+
+            @Override
+            public void write(byte [] b, int off, int len)
+            {
+                digest.update(b, off, len);
+            }
+        });
+
+        try
+        {
+            output.writeUTF(KEY_FORMAT);
+            if (!hash(output, attributes))
+            {
+                return null;
+            }
+        }
+        catch (IOException e)
+        {
+            // Not possible with the digest stream.
+            throw new RuntimeException(e);
+        }
+
+        final StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16));
+            key.append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Feeds the content of a value to the digest stream, returns <code>false</code> if
+     * the value cannot be hashed.
+     */
+    private static boolean hash(DataOutputStream output, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeByte('N');
+        }
+        else if (value instanceof CharSequence)
+        {
+            output.writeByte('S');
+            writeString(output, value.toString());
+        }
+        else if (value instanceof Number || value instanceof Boolean
+            || value instanceof Character)
+        {
+            if (value instanceof Number
+                && !(value instanceof Byte || value instanceof Short
+                    || value instanceof Integer || value instanceof Long
+                    || value instanceof Float || value instanceof Double
+                    || value instanceof BigInteger || value instanceof BigDecimal))
+            {
+                // Mutable numbers, e.g. atomics.
+                return false;
+            }
+            output.writeByte('P');
+            output.writeUTF(value.getClass().getName());
+            writeString(output, value.toString());
+        }
+        else if (value instanceof Enum<?>)
+        {
+            output.writeByte('E');
+            output.writeUTF(((Enum<?>) value).getDeclaringClass().getName());
+            output.writeUTF(((Enum<?>) value).name());
+        }
+        else if (value instanceof Class<?>)
+        {
+            output.writeByte('C');
+            output.writeUTF(((Class<?>) value).getName());
+        }
+        else if (value instanceof Document)
+        {
+            final Document document = (Document) value;
+            output.writeByte('D');
+            if (!hash(output, document.getStringId())
+                || !hash(output, document.getFields()))
+            {
+                return false;
+            }
+        }
+        else if (value instanceof Map<?, ?>)
+        {
+            // Order entries by key so that the result does not depend on the map type.
+            final TreeMap<String, Object> sorted = new TreeMap<String, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+            {
+                if (!(entry.getKey() instanceof String))
+                {
+                    return false;
+                }
+                sorted.put((String) entry.getKey(), entry.getValue());
+            }
+
+            output.writeByte('M');
+            output.writeInt(sorted.size());
+            for (Map.Entry<String, Object> entry : sorted.entrySet())
+            {
+                writeString(output, entry.getKey());
+                if (!hash(output, entry.getValue()))
+                {
+                    return false;
+                }
+            }
+        }
+        else if (value instanceof Collection<?>)
+        {
+            if (value instanceof Set<?>)
+            {
+                return false;
+            }
+
+            final Collection<?> collection = (Collection<?>) value;
+            output.writeByte('L');
+            output.writeInt(collection.size());
+            for (Object element : collection)
+            {
+                if (!hash(output, element))
+                {
+                    return false;
+                }
+            }
+        }
+        else if (value.getClass().isArray())
+        {
+            final int length = Array.getLength(value);
+            output.writeByte('A');
+            output.writeUTF(value.getClass().getComponentType().getName());
+            output.writeInt(length);
+            for (int i = 0; i < length; i++)
+            {
+                if (!hash(output, Array.get(value, i)))
+                {
+                    return false;
+                }
+            }
+        }
+        else
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    private static void writeString(DataOutputStream output, String value)
+        throws IOException
+    {
+        output.writeInt(value.length());
+        output.writeChars(value);
+    }
+
+    /**
+     * Serializes a record body: the key, attribute keys and the XML of attribute values.
+     */
+    private static byte [] writeRecordBody(String key, Map<String, Object> attributes,
+        List<Document> inputDocuments) throws Exception
+    {
+        // Serialization assigns identifiers to documents and clusters, which belong to
+        // the caller, so copies of them are serialized.
+        final Map<String, Object> copy = Maps.newHashMap(attributes);
+        final IdentityHashMap<Document, Document> documentCopies = Maps
+            .newIdentityHashMap();
+
+        @SuppressWarnings("unchecked")
+        final List<Document> documents = (List<Document>) attributes
+            .get(AttributeNames.DOCUMENTS);
+        if (documents != null)
+        {
+            copy.put(AttributeNames.DOCUMENTS, copyDocuments(documents, documentCopies));
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<Cluster> clusters = (List<Cluster>) attributes
+            .get(AttributeNames.CLUSTERS);
+        if (clusters != null)
+        {
+            if (documents == null)
+            {
+                if (inputDocuments == null)
+                {
+                    throw new IllegalArgumentException(
+                        "Documents required to store clusters: " + key);
+                }
+
+                // Cluster documents are serialized by identifier.
+                copyDocuments(inputDocuments, documentCopies);
+            }
+
+            final List<Cluster> clustersCopy = Lists.newArrayList();
+            for (Cluster cluster : clusters)
+            {
+                clustersCopy.add(copyCluster(cluster, documentCopies));
+            }
+            copy.put(AttributeNames.CLUSTERS, clustersCopy);
+        }
+
+        // Values without an XML wrapper would silently be read back as nulls.
+        for (Map.Entry<String, Object> entry : attributes.entrySet())
+        {
+            if (entry.getValue() != null
+                && !AttributeNames.QUERY.equals(entry.getKey())
+                && !AttributeNames.DOCUMENTS.equals(entry.getKey())
+                && !AttributeNames.CLUSTERS.equals(entry.getKey())
+                && SimpleXmlWrappers.unwrap(SimpleXmlWrappers.wrap(entry.getValue())) == null)
+            {
+                throw new IllegalArgumentException("Attribute cannot be serialized: "
+                    + entry.getKey());
+            }
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeUTF(key);
+        output.writeInt(attributes.size());
+        for (String attributeKey : attributes.keySet())
+        {
+            output.writeUTF(attributeKey);
+        }
+
+        // Cluster identifiers are assigned here if not present, exactly as they would be
+        // in the final processing result.
+        new ProcessingResult(copy).serialize(output);
+        output.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes attributes from a record body (after the key).
+     */
+    private static Map<String, Object> readAttributes(DataInputStream input,
+        List<Document> inputDocuments) throws Exception
+    {
+        final int count = input.readInt();
+        final String [] keys = new String [count];
+        for (int i = 0; i < count; i++)
+        {
+            keys[i] = input.readUTF();
+        }
+
+        final Map<String, Object> deserialized = ProcessingResult.deserialize(input)
+            .getAttributes();
+
+        // Deserialization puts the query, documents and clusters in the map even if
+        // they were not there, restore the original set of keys.
+        final Map<String, Object> attributes = Maps.newHashMap();
+        for (String key : keys)
+        {
+            attributes.put(key, deserialized.get(key));
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<Cluster> clusters = (List<Cluster>) attributes
+            .get(AttributeNames.CLUSTERS);
+        if (clusters != null && attributes.get(AttributeNames.DOCUMENTS) == null)
+        {
+            if (inputDocuments == null)
+            {
+                return null;
+            }
+
+            // Identifiers are looked up on copies, as assigned when the result was stored.
+            final IdentityHashMap<Document, Document> documentCopies = Maps
+                .newIdentityHashMap();
+            copyDocuments(inputDocuments, documentCopies);
+            final Map<String, Document> documentsById = Maps.newHashMap();
+            for (Map.Entry<Document, Document> entry : documentCopies.entrySet())
+            {
+                documentsById.put(entry.getValue().getStringId(), entry.getKey());
+            }
+
+            for (Cluster cluster : clusters)
+            {
+                if (!resolveDocuments(cluster, documentsById))
+                {
+                    return null;
+                }
+            }
+        }
+
+        return attributes;
+    }
+
+    /**
+     * Returns shallow copies of documents, with identifiers assigned as in
+     * {@link ProcessingResult}. Maps the original documents to their copies.
+     */
+    private static List<Document> copyDocuments(List<Document> documents,
+        IdentityHashMap<Document, Document> documentCopies)
+    {
+        final List<Document> copies = Lists.newArrayListWithCapacity(documents.size());
+        synchronized (documents)
+        {
+            for (Document document : documents)
+            {
+                final Document copy = document.clone();
+                documentCopies.put(document, copy);
+                copies.add(copy);
+            }
+        }
+        Document.assignDocumentIds(copies);
+        return copies;
+    }
+
+    /**
+     * Copies a cluster with its subclusters, replacing documents with their copies.
+     */
+    private static Cluster copyCluster(Cluster cluster,
+        IdentityHashMap<Document, Document> documentCopies)
+    {
+        final Cluster copy = new Cluster();
+        copy.id = cluster.getId();
+        copy.addPhrases(cluster.getPhrases());
+        for (Map.Entry<String, Object> entry : cluster.getAttributes().entrySet())
+        {
+            copy.setAttribute(entry.getKey(), entry.getValue());
+        }
+
+        for (Document document : cluster.getDocuments())
+        {
+            final Document documentCopy = documentCopies.get(document);
+            if (documentCopy == null)
+            {
+                throw new IllegalArgumentException(
+                    "Cluster document not among the result's or input documents.");
+            }
+            copy.addDocuments(documentCopy);
+        }
+
+        for (Cluster subcluster : cluster.getSubclusters())
+        {
+            copy.addSubclusters(copyCluster(subcluster, documentCopies));
+        }
+        return copy;
+    }
+
+    /**
+     * Replaces document identifiers of deserialized clusters with documents, returns
+     * <code>false</code> if any of the documents is missing.
+     */
+    private static boolean resolveDocuments(Cluster cluster,
+        Map<String, Document> documentsById)
+    {
+        if (cluster.documentIds != null)
+        {
+            for (Cluster.DocumentRefid documentRefid : cluster.documentIds)
+            {
+                final Document document = documentsById.get(documentRefid.refid);
+                if (document == null)
+                {
+                    return false;
+                }
+                cluster.addDocuments(document);
+            }
+        }
+
+        for (Cluster subcluster : cluster.getSubclusters())
+        {
+            if (!resolveDocuments(subcluster, documentsById))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a record to the current segment, starting a new segment and evicting the
+     * oldest ones as needed.
+     */
+    private synchronized void append(String key, byte [] body) throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        final int recordBytes = HEADER_BYTES + body.length + TRAILER_BYTES;
+        Segment current = segments.get(segments.size() - 1);
+        if (current.size > 0 && current.size + recordBytes > segmentBytes)
+        {
+            current = newSegment(current.number + 1);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        final ByteBuffer record = ByteBuffer.allocate(recordBytes);
+        record.putInt(RECORD_MAGIC).putInt(body.length).put(body).putLong(crc.getValue());
+        record.flip();
+
+        final long offset = current.size;
+        final FileChannel channel = current.channel;
+        try
+        {
+            while (record.hasRemaining())
+            {
+                channel.write(record, offset + record.position());
+            }
+        }
+        catch (ClosedChannelException e)
+        {
+            // A partially written record is overwritten by the next one.
+            reopen(current, channel);
+            throw e;
+        }
+        current.size += recordBytes;
+        totalBytes += recordBytes;
+
+        index.put(key, new Location(current, offset + HEADER_BYTES, body.length));
+
+        while (totalBytes > maximumBytes && segments.size() > 1)
+        {
+            evictOldestSegment();
+        }
+    }
+
+    /**
+     * Reopens the channel of a segment closed by an interrupt (see
+     * {@link java.nio.channels.ClosedByInterruptException}) of a thread that used it,
+     * unless the segment has been evicted or its channel has been reopened already.
+     */
+    private synchronized void reopen(Segment segment, FileChannel closedChannel)
+    {
+        if (closed || segment.channel != closedChannel || !segments.contains(segment))
+        {
+            return;
+        }
+
+        try
+        {
+            segment.channel = Segment.openChannel(segment.file);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Could not reopen disk cache segment: " + segment.file, e);
+        }
+    }
+
+    /**
+     * Opens existing segments and indexes their records. Segments are read from the
+     * oldest, so that the index points to the most recent record of each key.
+     */
+    private synchronized void open() throws IOException
+    {
+        final boolean formatChanged = !KEY_FORMAT.equals(readFormat());
+        final File [] files = directory.listFiles();
+        final TreeMap<Integer, File> existing = new TreeMap<Integer, File>();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                final String name = file.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                {
+                    if (formatChanged)
+                    {
+                        if (!file.delete())
+                        {
+                            throw new IOException("Could not delete disk cache segment: "
+                                + file);
+                        }
+                        continue;
+                    }
+
+                    try
+                    {
+                        existing.put(Integer.parseInt(name.substring(
+                            SEGMENT_PREFIX.length(), name.length()
+                                - SEGMENT_SUFFIX.length())), file);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        // Not a segment.
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, File> entry : existing.entrySet())
+        {
+            final Segment segment = new Segment(entry.getKey(), entry.getValue());
+            segments.add(segment);
+            scan(segment);
+            totalBytes += segment.size;
+        }
+
+        if (formatChanged)
+        {
+            logger.info("Disk cache format changed, stored results discarded: "
+                + directory);
+            writeFormat();
+        }
+
+        if (segments.isEmpty())
+        {
+            newSegment(0);
+        }
+
+        while (totalBytes > maximumBytes && segments.size() > 1)
+        {
+            evictOldestSegment();
+        }
+
+        logger.debug("Disk cache opened: " + directory + ", results: " + index.size()
+            + ", bytes: " + totalBytes);
+    }
+
+    /**
+     * Indexes records of a segment. A segment ending with an incomplete or corrupted
+     * record (e.g. after a crash) is truncated after the last valid record.
+     */
+    private void scan(Segment segment) throws IOException
+    {
+        final long fileSize = segment.channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long offset = 0;
+        while (offset + HEADER_BYTES + TRAILER_BYTES <= fileSize)
+        {
+            header.clear();
+            readFully(segment.channel, header, offset);
+            header.flip();
+            final int magic = header.getInt();
+            final int length = header.getInt();
+            if (magic != RECORD_MAGIC || length < 0
+                || offset + HEADER_BYTES + length + TRAILER_BYTES > fileSize)
+            {
+                break;
+            }
+
+            final ByteBuffer body = ByteBuffer.allocate(length + TRAILER_BYTES);
+            readFully(segment.channel, body, offset + HEADER_BYTES);
+            final CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, length);
+            body.position(length);
+            if (crc.getValue() != body.getLong())
+            {
+                break;
+            }
+
+            final String key = new DataInputStream(new ByteArrayInputStream(
+                body.array(), 0, length)).readUTF();
+            index.put(key, new Location(segment, offset + HEADER_BYTES, length));
+            offset += HEADER_BYTES + length + TRAILER_BYTES;
+        }
+
+        if (offset < fileSize)
+        {
+            logger.warn("Truncating corrupted disk cache segment: " + segment.file
+                + " at: " + offset);
+            segment.channel.truncate(offset);
+        }
+        segment.size = offset;
+    }
+
+    /**
+     * Returns the format of the segments in the directory, <code>null</code> if unknown.
+     */
+    private String readFormat()
+    {
+        final File file = new File(directory, FORMAT_FILE);
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        try
+        {
+            final DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try
+            {
+                return input.readUTF();
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    private void writeFormat() throws IOException
+    {
+        final DataOutputStream output = new DataOutputStream(new FileOutputStream(
+            new File(directory, FORMAT_FILE)));
+        try
+        {
+            output.writeUTF(KEY_FORMAT);
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+     * Returns the version of the JAR this class has been loaded from or a placeholder if
+     * it cannot be determined (e.g. when running from classes).
+     */
+    private static String buildVersion()
+    {
+        final Package p = DiskResultCache.class.getPackage();
+        final String version = (p != null ? p.getImplementationVersion() : null);
+        return version != null ? version.trim() : "unversioned";
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset)
+        throws IOException
+    {
+        final int start = buffer.position();
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, offset + buffer.position() - start) < 0)
+            {
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+    }
+
+    private Segment newSegment(int number) throws IOException
+    {
+        final File file = new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX,
+            number, SEGMENT_SUFFIX));
+        final Segment segment = new Segment(number, file);
+        segment.channel.truncate(0);
+        segments.add(segment);
+        return segment;
+    }
+
+    private void evictOldestSegment()
+    {
+        final Segment oldest = segments.remove(0);
+        totalBytes -= oldest.size;
+
+        for (Iterator<Location> i = index.values().iterator(); i.hasNext();)
+        {
+            if (i.next().segment == oldest)
+            {
+                i.remove();
+            }
+        }
+
+        closeQuietly(oldest);
+        if (!oldest.file.delete())
+        {
+            logger.warn("Could not delete disk cache segment: " + oldest.file);
+        }
+    }
+
+    private static void closeQuietly(Segment segment)
+    {
+        try
+        {
+            segment.channel.close();
+        }
+        catch (IOException e)
+        {
+            // Ignore.
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DiskResultCache" + Arrays.asList(directory.getAbsolutePath(), maximumBytes);
+    }
+}
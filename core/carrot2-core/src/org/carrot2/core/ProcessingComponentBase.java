@@ -12,9 +12,17 @@
 
 package org.carrot2.core;
 
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import org.carrot2.util.ExecutorServiceUtils;
+import org.carrot2.util.annotations.ThreadSafe;
+import org.carrot2.util.attribute.AttributeBinder;
+import org.carrot2.util.attribute.Bindable;
+import org.carrot2.util.attribute.Input;
+
+import org.carrot2.shaded.guava.common.collect.Maps;
 
 /**
  * A base class for implementation of the {@link IProcessingComponent} interface that
@@ -87,6 +95,70 @@ public abstract class ProcessingComponentBase implements IProcessingComponent
         }
     }
 
+    /**
+     * Returns a {@link ForkJoinPool} with the given <code>parallelism</code> shared by all
+     * components of <code>clazz</code> initialized with the same controller context. The
+     * pool is shut down when the context is disposed.
+     */
+    protected ForkJoinPool getSharedForkJoinPool(int parallelism, Class<?> clazz)
+    {
+        final IControllerContext context = getContext();
+        synchronized (context)
+        {
+            final String contextKey = clazz.getName() + ".forkJoinPool." + parallelism;
+            ForkJoinPool pool = (ForkJoinPool) context.getAttribute(contextKey);
+            if (pool == null)
+            {
+                pool = new ForkJoinPool(parallelism);
+                context.setAttribute(contextKey, pool);
+                context.addListener(new ExecutorServiceShutdownListener(contextKey));
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Creates a new instance of this component's class, bound to the current values of
+     * this component's {@link Input} attributes and initialized with the same controller
+     * context. Attribute values that are {@link Bindable} objects not marked as
+     * {@link ThreadSafe} are replaced with new instances of the same class (with the same
+     * nested attribute values), so the replica can be used concurrently with this
+     * component. The caller is responsible for disposing of the replica.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ProcessingComponentBase> T createReplica()
+    {
+        try
+        {
+            final Map<String, Object> attributes = Maps.newHashMap();
+            AttributeBinder.get(this, attributes, Input.class);
+            for (Map.Entry<String, Object> entry : attributes.entrySet())
+            {
+                final Object value = entry.getValue();
+                if (value != null && value.getClass().getAnnotation(Bindable.class) != null
+                    && value.getClass().getAnnotation(ThreadSafe.class) == null)
+                {
+                    entry.setValue(value.getClass());
+                }
+            }
+
+            final T replica = (T) getClass().newInstance();
+            AttributeBinder.set(replica, attributes, false, Input.class);
+            replica.init(getContext());
+            return replica;
+        }
+        catch (InstantiationException e)
+        {
+            throw new ProcessingException("Could not create a replica of "
+                + getClass().getName(), e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new ProcessingException("Could not create a replica of "
+                + getClass().getName(), e);
+        }
+    }
+
     /*
      * 
      */
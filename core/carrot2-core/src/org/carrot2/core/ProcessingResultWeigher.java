@@ -0,0 +1,178 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.core;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.carrot2.shaded.guava.common.cache.Weigher;
+import org.carrot2.shaded.guava.common.collect.Sets;
+
+/**
+ * Estimates the number of bytes retained by a map of output attributes cached by
+ * {@link CachingProcessingComponentManager} and by its key, see
+ * {@link IAttributeRetainingKey}. The estimate is rough (it assumes a 64-bit
+ * JVM without compressed references and ignores padding), but it is proportional to the
+ * actual size of documents, clusters and other attribute values, which is what matters
+ * for bounding the cache.
+ * <p>
+ * Documents assigned to clusters are counted as references only, their content is
+ * counted where the documents themselves are stored: in the
+ * {@link org.carrot2.core.attribute.AttributeNames#DOCUMENTS} list of the result (e.g.
+ * of a document source) or of the input attributes retained by the key (e.g. of a
+ * clustering algorithm).
+ * </p>
+ */
+final class ProcessingResultWeigher implements Weigher<Object, Map<String, Object>>
+{
+    static final ProcessingResultWeigher INSTANCE = new ProcessingResultWeigher();
+
+    /**
+     * A cache key that retains attributes, such as input documents of a clustering
+     * algorithm, which are weighed together with the cached result.
+     */
+    interface IAttributeRetainingKey
+    {
+        Map<String, Object> getRetainedAttributes();
+    }
+
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 8;
+    private static final int ARRAY_HEADER = 24;
+    private static final int STRING = OBJECT_HEADER + 24;
+    private static final int MAP_ENTRY = OBJECT_HEADER + 3 * REFERENCE + 8;
+    private static final int COLLECTION = OBJECT_HEADER + 24;
+    private static final int DOCUMENT = OBJECT_HEADER + 4 * REFERENCE;
+    private static final int CLUSTER = OBJECT_HEADER + 12 * REFERENCE;
+
+    private ProcessingResultWeigher()
+    {
+        // No instances.
+    }
+
+    @Override
+    public int weigh(Object key, Map<String, Object> value)
+    {
+        long size = estimate(value);
+        if (key instanceof IAttributeRetainingKey)
+        {
+            // Values held by the result too are counted once.
+            final Set<Object> counted = Sets.newIdentityHashSet();
+            counted.addAll(value.values());
+            for (Map.Entry<String, Object> entry : ((IAttributeRetainingKey) key)
+                .getRetainedAttributes().entrySet())
+            {
+                if (!counted.contains(entry.getValue()))
+                {
+                    size += MAP_ENTRY + estimate(entry.getKey())
+                        + estimate(entry.getValue());
+                }
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by an attribute value.
+     */
+    static long estimate(Object value)
+    {
+        if (value == null || value instanceof Enum<?> || value instanceof Class<?>)
+        {
+            // Shared instances.
+            return 0;
+        }
+
+        if (value instanceof CharSequence)
+        {
+            return STRING + 2L * ((CharSequence) value).length();
+        }
+
+        if (value instanceof Number || value instanceof Boolean
+            || value instanceof Character)
+        {
+            return OBJECT_HEADER + 8;
+        }
+
+        if (value instanceof Document)
+        {
+            return DOCUMENT + estimate(((Document) value).getFields());
+        }
+
+        if (value instanceof Cluster)
+        {
+            final Cluster cluster = (Cluster) value;
+            long size = CLUSTER + estimate(cluster.getPhrases())
+                + estimate(cluster.getAttributes())
+                + (long) REFERENCE * cluster.getDocuments().size();
+            for (Cluster subcluster : cluster.getSubclusters())
+            {
+                size += REFERENCE + estimate(subcluster);
+            }
+            return size;
+        }
+
+        if (value instanceof Map<?, ?>)
+        {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            long size = COLLECTION + (long) REFERENCE * map.size();
+            for (Map.Entry<?, ?> entry : map.entrySet())
+            {
+                size += MAP_ENTRY + estimate(entry.getKey()) + estimate(entry.getValue());
+            }
+            return size;
+        }
+
+        if (value instanceof Collection<?>)
+        {
+            final Collection<?> collection = (Collection<?>) value;
+            long size = COLLECTION + (long) REFERENCE * collection.size();
+            for (Object element : collection)
+            {
+                size += estimate(element);
+            }
+            return size;
+        }
+
+        final Class<?> clazz = value.getClass();
+        if (clazz.isArray())
+        {
+            final int length = Array.getLength(value);
+            final Class<?> componentType = clazz.getComponentType();
+            if (componentType.isPrimitive())
+            {
+                return ARRAY_HEADER + (long) length * primitiveSize(componentType);
+            }
+
+            long size = ARRAY_HEADER + (long) REFERENCE * length;
+            for (int i = 0; i < length; i++)
+            {
+                size += estimate(Array.get(value, i));
+            }
+            return size;
+        }
+
+        // Unknown object, we can't tell more without reflection.
+        return OBJECT_HEADER + REFERENCE;
+    }
+
+    private static int primitiveSize(Class<?> type)
+    {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        return 1;
+    }
+}
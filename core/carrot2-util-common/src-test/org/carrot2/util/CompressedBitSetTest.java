@@ -0,0 +1,181 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.util;
+
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.BitSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link CompressedBitSet} against {@link BitSet}.
+ */
+public class CompressedBitSetTest extends CarrotTestCase
+{
+    @Test
+    public void testEmpty()
+    {
+        final CompressedBitSet set = new CompressedBitSet();
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.cardinality());
+        assertEquals(-1, set.nextSetBit(0));
+        assertFalse(set.get(0));
+        assertEquals(0, set.toArray().length);
+        assertEquals("{}", set.toString());
+        assertEquals(0, CompressedBitSet.intersectionCount(set, CompressedBitSet.of(1, 2)));
+    }
+
+    @Test
+    public void testSetAndIterate()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final BitSet expected = randomBitSet();
+            final CompressedBitSet actual = CompressedBitSet.valueOf(expected);
+            if (randomBoolean())
+            {
+                actual.runOptimize();
+            }
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void testAddAfterRunOptimize()
+    {
+        for (int round = 0; round < 20; round++)
+        {
+            final BitSet expected = randomBitSet();
+            final CompressedBitSet actual = CompressedBitSet.valueOf(expected);
+            actual.runOptimize();
+
+            final int additions = randomIntBetween(0, 5000);
+            for (int i = 0; i < additions; i++)
+            {
+                final int index = randomIntBetween(0, 200000);
+                expected.set(index);
+                actual.set(index);
+            }
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void testBinaryOperations()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final BitSet a = randomBitSet();
+            final BitSet b = randomBitSet();
+            final CompressedBitSet ca = CompressedBitSet.valueOf(a);
+            final CompressedBitSet cb = CompressedBitSet.valueOf(b);
+            if (randomBoolean()) ca.runOptimize();
+            if (randomBoolean()) cb.runOptimize();
+
+            assertEquals(BitSet.intersectionCount(a, b),
+                CompressedBitSet.intersectionCount(ca, cb));
+
+            final CompressedBitSet or = ca.clone();
+            or.or(cb);
+            final BitSet expectedOr = (BitSet) a.clone();
+            expectedOr.or(b);
+            assertSame(expectedOr, or);
+
+            final CompressedBitSet and = ca.clone();
+            and.and(cb);
+            final BitSet expectedAnd = (BitSet) a.clone();
+            expectedAnd.and(b);
+            assertSame(expectedAnd, and);
+
+            // Arguments and originals must not change.
+            assertSame(a, ca);
+            assertSame(b, cb);
+        }
+    }
+
+    @Test
+    public void testEqualsAndHashCode()
+    {
+        final BitSet bits = randomBitSet();
+        final CompressedBitSet a = CompressedBitSet.valueOf(bits);
+        final CompressedBitSet b = CompressedBitSet.valueOf(bits);
+        b.runOptimize();
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        b.set(300000);
+        assertFalse(a.equals(b));
+    }
+
+    @Test
+    public void testMaxValue()
+    {
+        final CompressedBitSet set = CompressedBitSet.of(0, Integer.MAX_VALUE);
+        assertArrayEquals(new int [] { 0, Integer.MAX_VALUE }, set.toArray());
+        assertEquals(-1, set.nextSetBit(Integer.MAX_VALUE + 1));
+    }
+
+    /**
+     * Mixes sparse, dense and run-heavy chunks so that all container types are used.
+     */
+    private BitSet randomBitSet()
+    {
+        final BitSet bits = new BitSet();
+        final int chunks = randomIntBetween(0, 4);
+        for (int chunk = 0; chunk < chunks; chunk++)
+        {
+            final int base = randomIntBetween(0, 3) << 16;
+            switch (randomIntBetween(0, 2))
+            {
+                case 0:
+                    for (int i = randomIntBetween(0, 100); i > 0; i--)
+                    {
+                        bits.set(base + randomIntBetween(0, 0xffff));
+                    }
+                    break;
+                case 1:
+                    for (int i = randomIntBetween(4000, 20000); i > 0; i--)
+                    {
+                        bits.set(base + randomIntBetween(0, 0xffff));
+                    }
+                    break;
+                default:
+                    for (int i = randomIntBetween(1, 10); i > 0; i--)
+                    {
+                        final int start = randomIntBetween(0, 0xffff);
+                        final int end = Math.min(0xffff, start + randomIntBetween(0, 10000));
+                        bits.set(base + start, base + end + 1);
+                    }
+                    break;
+            }
+        }
+        return bits;
+    }
+
+    private static void assertSame(BitSet expected, CompressedBitSet actual)
+    {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertArrayEquals(expected.asIntLookupContainer().toArray(), actual.toArray());
+
+        for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1))
+        {
+            assertTrue(actual.get(i));
+            assertFalse(actual.get(i + 1) != expected.get(i + 1));
+            assertEquals(i, actual.nextSetBit(i));
+            assertEquals(expected.nextSetBit(i + 1), actual.nextSetBit(i + 1));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.util;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link RollingWindowHistogram}.
+ */
+public class RollingWindowHistogramTest extends CarrotTestCase
+{
+    long now;
+
+    private class RollingWindowHistogramFakeTime extends RollingWindowHistogram
+    {
+        public RollingWindowHistogramFakeTime(long windowSizeMillis, long bucketSizeMillis)
+        {
+            super(windowSizeMillis, bucketSizeMillis);
+        }
+
+        long getNow()
+        {
+            return now;
+        }
+    }
+
+    @Before
+    public void setup()
+    {
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        final RollingWindowHistogram rwh = new RollingWindowHistogramFakeTime(
+            1 * RollingWindowAverage.SECOND, 100 * RollingWindowAverage.MILLIS);
+
+        assertEquals(0, rwh.getCurrentAverage(), 0.01d);
+        assertEquals(0, rwh.getUpdatesInWindow());
+        assertEquals(0, rwh.getPercentile(0.99));
+    }
+
+    @Test
+    public void testRollingAverage()
+    {
+        final RollingWindowHistogram rwh = new RollingWindowHistogramFakeTime(
+            1 * RollingWindowAverage.SECOND, 100 * RollingWindowAverage.MILLIS);
+
+        rwh.add(now, 2);
+        rwh.add(now, 3);
+        rwh.add(now, 5);
+
+        assertEquals((2.0 + 3 + 5) / 3, rwh.getCurrentAverage(), 0.01d);
+
+        sleep(120 * RollingWindowAverage.MILLIS);
+        rwh.add(now, 7);
+
+        assertEquals((2.0 + 3 + 5 + 7) / 4, rwh.getCurrentAverage(), 0.01d);
+        assertEquals(4, rwh.getUpdatesInWindow());
+
+        sleep(500 * RollingWindowAverage.MILLIS);
+        rwh.add(now, 9);
+
+        assertEquals((2.0 + 3 + 5 + 7 + 9) / 5, rwh.getCurrentAverage(), 0.01d);
+
+        sleep(1200 * RollingWindowAverage.MILLIS);
+
+        assertEquals(0, rwh.getCurrentAverage(), 0.01d);
+        assertEquals(0, rwh.getUpdatesInWindow());
+    }
+
+    @Test
+    public void testExactPercentilesOfSmallValues()
+    {
+        final RollingWindowHistogram rwh = new RollingWindowHistogramFakeTime(
+            1 * RollingWindowAverage.SECOND, 100 * RollingWindowAverage.MILLIS);
+
+        for (int i = 1; i <= 10; i++)
+        {
+            rwh.add(now, i);
+        }
+
+        assertEquals(1, rwh.getPercentile(0.1));
+        assertEquals(5, rwh.getPercentile(0.5));
+        assertEquals(10, rwh.getPercentile(0.95));
+        assertEquals(10, rwh.getPercentile(1));
+    }
+
+    @Test
+    public void testApproximatePercentiles()
+    {
+        final RollingWindowHistogram rwh = new RollingWindowHistogramFakeTime(
+            1 * RollingWindowAverage.SECOND, 100 * RollingWindowAverage.MILLIS);
+
+        final long [] values = new long [randomIntBetween(1, 1000)];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = randomIntBetween(0, 100000);
+            rwh.add(now, values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double quantile : new double [] { 0.5, 0.95, 0.99 })
+        {
+            final long expected = values[(int) Math.ceil(quantile * values.length) - 1];
+            assertEquals(expected, rwh.getPercentile(quantile), expected * 0.07);
+        }
+    }
+
+    @Test
+    public void testBins()
+    {
+        int previousBin = -1;
+        for (long value = 0; value < 100000; value++)
+        {
+            final int bin = RollingWindowHistogram.bin(value);
+            assertTrue(bin == previousBin || bin == previousBin + 1);
+            previousBin = bin;
+
+            final long binValue = RollingWindowHistogram.binValue(bin);
+            assertEquals(bin, RollingWindowHistogram.bin(binValue));
+            assertEquals(value, binValue, value / 16.0 + 1);
+        }
+
+        assertEquals(RollingWindowHistogram.BINS - 1,
+            RollingWindowHistogram.bin(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException
+    {
+        final RollingWindowHistogram rwh = new RollingWindowHistogram(
+            5 * RollingWindowAverage.MINUTE, 10 * RollingWindowAverage.SECOND);
+
+        final int threads = 4;
+        final int updates = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread [] workers = new Thread [threads];
+        for (int t = 0; t < threads; t++)
+        {
+            workers[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    for (int i = 0; i < updates; i++)
+                    {
+                        rwh.add(System.currentTimeMillis(), 3);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+
+        assertEquals(threads * updates, rwh.getUpdatesInWindow());
+        assertEquals(3, rwh.getCurrentAverage(), 0.0d);
+    }
+
+    /**
+     * Fake thread sleep (adds to time counter only).
+     */
+    private void sleep(int delay)
+    {
+        this.now += delay;
+    }
+}
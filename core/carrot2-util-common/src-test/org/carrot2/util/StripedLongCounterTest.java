@@ -0,0 +1,68 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.util;
+
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link StripedLongCounter}.
+ */
+public class StripedLongCounterTest extends CarrotTestCase
+{
+    @Test
+    public void testSingleThread()
+    {
+        final StripedLongCounter counter = new StripedLongCounter(randomIntBetween(1, 10));
+        assertEquals(0, counter.sum());
+
+        counter.increment();
+        counter.add(41);
+        assertEquals(42, counter.sum());
+
+        counter.add(-2);
+        assertEquals(40, counter.sum());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException
+    {
+        final StripedLongCounter counter = new StripedLongCounter();
+        final int threads = 8;
+        final int updates = 10000;
+
+        final Thread [] workers = new Thread [threads];
+        for (int t = 0; t < threads; t++)
+        {
+            workers[t] = new Thread()
+            {
+                public void run()
+                {
+                    for (int i = 0; i < updates; i++)
+                    {
+                        counter.increment();
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+
+        assertEquals(threads * updates, counter.sum());
+    }
+}
@@ -0,0 +1,249 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.util.pool;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import com.carrotsearch.randomizedtesting.Rethrow;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link ConcurrentPool}.
+ */
+public class ConcurrentPoolTest extends ParameterizedPoolTestBase
+{
+    protected IParameterizedPool<Object, String> createPool()
+    {
+        return new ConcurrentPool<Object, String>();
+    }
+
+    protected int getPoolSize()
+    {
+        return randomIntBetween(4, 10);
+    }
+
+    @Test
+    public void testBoundedStress() throws Exception
+    {
+        final int maxBorrowed = randomIntBetween(1, 3);
+        final ConcurrentPool<Object, String> bounded = new ConcurrentPool<Object, String>(
+            maxBorrowed, 0);
+        final AtomicInteger borrowedNow = new AtomicInteger();
+        final AtomicInteger maxBorrowedNow = new AtomicInteger();
+        final AtomicInteger instantiated = new AtomicInteger();
+        bounded.init(new IInstantiationListener<Object, String>()
+        {
+            public void objectInstantiated(Object object, String parameter)
+            {
+                instantiated.incrementAndGet();
+            }
+        }, null, null, null);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread [] threads = new Thread [maxBorrowed * 4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        latch.await();
+                        for (int j = 0; j < 20; j++)
+                        {
+                            final Object o = bounded.borrowObject(Object.class, "a");
+                            final int current = borrowedNow.incrementAndGet();
+                            int max;
+                            while ((max = maxBorrowedNow.get()) < current
+                                && !maxBorrowedNow.compareAndSet(max, current))
+                            {
+                                // Retry.
+                            }
+                            Thread.sleep(1);
+                            borrowedNow.decrementAndGet();
+                            bounded.returnObject(o, "a");
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        Rethrow.rethrow(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        latch.countDown();
+
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        bounded.dispose();
+
+        assertTrue(maxBorrowedNow.get() <= maxBorrowed);
+        assertTrue(instantiated.get() <= maxBorrowed);
+    }
+
+    @Test
+    public void testBorrowFromExhaustedPoolAfterDispose() throws Exception
+    {
+        final ConcurrentPool<Object, String> bounded = new ConcurrentPool<Object, String>(
+            1, 0);
+        bounded.borrowObject(String.class, null);
+
+        final Thread disposer = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException e)
+                {
+                    // Dispose anyway.
+                }
+                bounded.dispose();
+            }
+        };
+        disposer.start();
+
+        try
+        {
+            bounded.borrowObject(String.class, null);
+            fail("Expected the borrowing thread to be released.");
+        }
+        catch (InstantiationException e)
+        {
+            // Expected.
+        }
+        finally
+        {
+            disposer.join();
+        }
+    }
+
+    @Test
+    public void testFailedActivationReleasesPermit() throws Exception
+    {
+        final ConcurrentPool<Object, String> bounded = new ConcurrentPool<Object, String>(
+            1, 0);
+        final List<Object> disposed = Lists.newArrayList();
+        final AtomicInteger activations = new AtomicInteger();
+        bounded.init(null, new IActivationListener<Object, String>()
+        {
+            public void activate(Object object, String parameter)
+            {
+                if (activations.incrementAndGet() == 1)
+                {
+                    throw new IllegalStateException("Activation failed.");
+                }
+            }
+        }, null, new IDisposalListener<Object, String>()
+        {
+            public void dispose(Object object, String parameter)
+            {
+                disposed.add(object);
+            }
+        });
+
+        try
+        {
+            bounded.borrowObject(String.class, null);
+            fail("Expected the activation to fail.");
+        }
+        catch (IllegalStateException e)
+        {
+            // Expected.
+        }
+        assertEquals(1, disposed.size());
+
+        // The permit must have been released.
+        final String instance = bounded.borrowObject(String.class, null);
+        assertNotSame(disposed.get(0), instance);
+        bounded.returnObject(instance, null);
+        bounded.dispose();
+    }
+
+    @Test
+    public void testInterruptedWhileWaiting() throws Exception
+    {
+        final ConcurrentPool<Object, String> bounded = new ConcurrentPool<Object, String>(
+            1, 0);
+        bounded.borrowObject(String.class, null);
+
+        Thread.currentThread().interrupt();
+        try
+        {
+            bounded.borrowObject(String.class, null);
+            fail("Expected the borrowing thread to be released.");
+        }
+        catch (InstantiationException e)
+        {
+            assertTrue(Thread.interrupted());
+        }
+        finally
+        {
+            Thread.interrupted();
+            bounded.dispose();
+        }
+    }
+
+    @Test
+    public void testIdleObjectsEvicted() throws Exception
+    {
+        final ConcurrentPool<Object, String> evicting = new ConcurrentPool<Object, String>(
+            0, 1);
+        final List<Object> disposed = Lists.newArrayList();
+        evicting.init(null, null, null, new IDisposalListener<Object, String>()
+        {
+            public void dispose(Object object, String parameter)
+            {
+                disposed.add(object);
+            }
+        });
+
+        final String a = evicting.borrowObject(String.class, null);
+        final String b = evicting.borrowObject(String.class, null);
+        evicting.returnObject(a, null);
+        evicting.returnObject(b, null);
+
+        Thread.sleep(20);
+        evicting.evictIdleObjects();
+        assertEquals(2, disposed.size());
+        assertSame(a, disposed.get(0));
+        assertSame(b, disposed.get(1));
+
+        final String c = evicting.borrowObject(String.class, null);
+        assertNotSame(a, c);
+        assertNotSame(b, c);
+        evicting.dispose();
+        assertEquals(2, disposed.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReturnWithDifferentParameter() throws Exception
+    {
+        final String newString = pool.borrowObject(String.class, "a");
+        pool.borrowObject(String.class, "b");
+        pool.returnObject(newString, "b");
+    }
+}
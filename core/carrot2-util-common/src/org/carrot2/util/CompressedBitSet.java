@@ -0,0 +1,1047 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.util;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.BitSet;
+
+/**
+ * A compressed set of non-negative integers, such as document indices, organized
+ * similarly to Roaring bitmaps. The integers are split into chunks of 2<sup>16</sup> by
+ * their upper 16 bits, each non-empty chunk is stored in a container most compact for
+ * its contents:
+ * <ul>
+ * <li>a sorted array of the lower 16 bits, for chunks with at most 4096 elements,</li>
+ * <li>a bitmap of 2<sup>16</sup> bits, for denser chunks,</li>
+ * <li>a sorted list of runs of consecutive integers, created by {@link #runOptimize()}
+ * for chunks where this is the most compact option.</li>
+ * </ul>
+ * Sparse sets take much less memory than a {@link BitSet} sized for all documents, and
+ * {@link #intersectionCount(CompressedBitSet, CompressedBitSet)} does not allocate.
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public final class CompressedBitSet implements Cloneable
+{
+    /** Maximum number of elements in an array container. */
+    private static final int ARRAY_MAX_SIZE = 4096;
+
+    /** Number of <code>long</code> words in a bitmap container. */
+    private static final int BITMAP_WORDS = (1 << 16) / 64;
+
+    /** Upper 16 bits of elements in each container, sorted. */
+    private char [] keys;
+
+    /** Containers of elements for each key in {@link #keys}. */
+    private Container [] containers;
+
+    /** Number of containers in use. */
+    private int size;
+
+    /**
+     * Creates an empty set.
+     */
+    public CompressedBitSet()
+    {
+        this.keys = new char [1];
+        this.containers = new Container [1];
+    }
+
+    /**
+     * Creates a set containing the elements set in <code>bits</code>.
+     */
+    public static CompressedBitSet valueOf(BitSet bits)
+    {
+        final CompressedBitSet set = new CompressedBitSet();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+        {
+            set.set(i);
+        }
+        return set;
+    }
+
+    /**
+     * Creates a set containing the provided elements.
+     */
+    public static CompressedBitSet of(int... elements)
+    {
+        final CompressedBitSet set = new CompressedBitSet();
+        for (int element : elements)
+        {
+            set.set(element);
+        }
+        return set;
+    }
+
+    /**
+     * Adds <code>index</code> to the set.
+     */
+    public void set(int index)
+    {
+        if (index < 0)
+        {
+            throw new IndexOutOfBoundsException("Negative index: " + index);
+        }
+
+        final char key = (char) (index >>> 16);
+        final int i = indexOf(key);
+        if (i >= 0)
+        {
+            containers[i] = containers[i].add((char) index);
+        }
+        else
+        {
+            insert(-i - 1, key, new ArrayContainer().add((char) index));
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if <code>index</code> is in the set.
+     */
+    public boolean get(int index)
+    {
+        if (index < 0)
+        {
+            return false;
+        }
+
+        final int i = indexOf((char) (index >>> 16));
+        return i >= 0 && containers[i].contains((char) index);
+    }
+
+    /**
+     * Returns the number of elements in the set.
+     */
+    public int cardinality()
+    {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++)
+        {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns <code>true</code> if the set has no elements.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Removes all elements from the set.
+     */
+    public void clear()
+    {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the smallest element of the set greater than or equal to
+     * <code>fromIndex</code> or <code>-1</code> if there is no such element or
+     * <code>fromIndex</code> is negative (which also ends iteration after an element
+     * equal to {@link Integer#MAX_VALUE}).
+     */
+    public int nextSetBit(int fromIndex)
+    {
+        if (fromIndex < 0)
+        {
+            return -1;
+        }
+
+        int i = indexOf((char) (fromIndex >>> 16));
+        if (i >= 0)
+        {
+            final int next = containers[i].nextValue(fromIndex & 0xffff);
+            if (next >= 0)
+            {
+                return (keys[i] << 16) | next;
+            }
+            i++;
+        }
+        else
+        {
+            i = -i - 1;
+        }
+
+        // Containers are never empty.
+        return i < size ? (keys[i] << 16) | containers[i].nextValue(0) : -1;
+    }
+
+    /**
+     * Returns the elements of the set in increasing order.
+     */
+    public int [] toArray()
+    {
+        final int [] result = new int [cardinality()];
+        int k = 0;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1))
+        {
+            result[k++] = i;
+        }
+        return result;
+    }
+
+    /**
+     * Adds all elements of <code>other</code> to this set.
+     */
+    public void or(CompressedBitSet other)
+    {
+        final char [] newKeys = new char [size + other.size];
+        final Container [] newContainers = new Container [size + other.size];
+
+        int i = 0, j = 0, k = 0;
+        while (i < size || j < other.size)
+        {
+            if (j == other.size || (i < size && keys[i] < other.keys[j]))
+            {
+                newKeys[k] = keys[i];
+                newContainers[k++] = containers[i++];
+            }
+            else if (i == size || other.keys[j] < keys[i])
+            {
+                newKeys[k] = other.keys[j];
+                newContainers[k++] = other.containers[j++].clone();
+            }
+            else
+            {
+                newKeys[k] = keys[i];
+                newContainers[k++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+
+        this.keys = newKeys;
+        this.containers = newContainers;
+        this.size = k;
+    }
+
+    /**
+     * Removes elements not present in <code>other</code> from this set.
+     */
+    public void and(CompressedBitSet other)
+    {
+        int i = 0, j = 0, k = 0;
+        while (i < size && j < other.size)
+        {
+            if (keys[i] < other.keys[j])
+            {
+                i++;
+            }
+            else if (other.keys[j] < keys[i])
+            {
+                j++;
+            }
+            else
+            {
+                final Container c = containers[i].and(other.containers[j]);
+                if (c.cardinality() > 0)
+                {
+                    keys[k] = keys[i];
+                    containers[k++] = c;
+                }
+                i++;
+                j++;
+            }
+        }
+
+        Arrays.fill(containers, k, size, null);
+        this.size = k;
+    }
+
+    /**
+     * Returns the number of elements present in both <code>a</code> and <code>b</code>.
+     * No temporary sets are created.
+     */
+    public static int intersectionCount(CompressedBitSet a, CompressedBitSet b)
+    {
+        int count = 0;
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size)
+        {
+            if (a.keys[i] < b.keys[j])
+            {
+                i++;
+            }
+            else if (b.keys[j] < a.keys[i])
+            {
+                j++;
+            }
+            else
+            {
+                count += a.containers[i++].andCardinality(b.containers[j++]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Converts containers to run containers where this saves memory. Worth calling on
+     * sets that will not be modified and contain long runs of consecutive elements.
+     */
+    public void runOptimize()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    @Override
+    public CompressedBitSet clone()
+    {
+        try
+        {
+            final CompressedBitSet clone = (CompressedBitSet) super.clone();
+            clone.keys = keys.clone();
+            clone.containers = containers.clone();
+            for (int i = 0; i < size; i++)
+            {
+                clone.containers[i] = containers[i].clone();
+            }
+            return clone;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == this)
+        {
+            return true;
+        }
+        if (!(obj instanceof CompressedBitSet))
+        {
+            return false;
+        }
+
+        final CompressedBitSet other = (CompressedBitSet) obj;
+        if (size != other.size)
+        {
+            return false;
+        }
+
+        int i = nextSetBit(0), j = other.nextSetBit(0);
+        while (i == j && i >= 0)
+        {
+            i = nextSetBit(i + 1);
+            j = other.nextSetBit(j + 1);
+        }
+        return i == j;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 0;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1))
+        {
+            hash = 31 * hash + i;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder b = new StringBuilder("{");
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1))
+        {
+            if (b.length() > 1)
+            {
+                b.append(", ");
+            }
+            b.append(i);
+        }
+        return b.append("}").toString();
+    }
+
+    /**
+     * Returns the index of <code>key</code> in {@link #keys} or
+     * <code>-(insertion point) - 1</code> if not present.
+     */
+    private int indexOf(char key)
+    {
+        // Fast path for sets with all elements below 2^16.
+        if (size > 0 && keys[size - 1] == key)
+        {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, char key, Container container)
+    {
+        if (size == keys.length)
+        {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * A set of 16-bit values. Operations return the resulting container, which may be
+     * this container (modified) or a new one. Arguments are never modified.
+     */
+    private static abstract class Container implements Cloneable
+    {
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        /** Returns the smallest value greater or equal to <code>from</code> or -1. */
+        abstract int nextValue(int from);
+
+        abstract Container or(Container other);
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container runOptimize();
+
+        abstract BitmapContainer toBitmap();
+
+        @Override
+        public abstract Container clone();
+    }
+
+    /**
+     * Up to {@link CompressedBitSet#ARRAY_MAX_SIZE} values in a sorted array.
+     */
+    private static final class ArrayContainer extends Container
+    {
+        char [] values;
+        int cardinality;
+
+        ArrayContainer()
+        {
+            this(new char [4], 0);
+        }
+
+        ArrayContainer(char [] values, int cardinality)
+        {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value)
+        {
+            // Fast path for values added in increasing order.
+            int index = -cardinality - 1;
+            if (cardinality > 0 && values[cardinality - 1] >= value)
+            {
+                index = Arrays.binarySearch(values, 0, cardinality, value);
+                if (index >= 0)
+                {
+                    return this;
+                }
+            }
+
+            if (cardinality == ARRAY_MAX_SIZE)
+            {
+                return toBitmap().add(value);
+            }
+
+            index = -index - 1;
+            if (cardinality == values.length)
+            {
+                values = Arrays.copyOf(values,
+                    Math.min(ARRAY_MAX_SIZE, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value)
+        {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        int nextValue(int from)
+        {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (index < 0)
+            {
+                index = -index - 1;
+            }
+            return index < cardinality ? values[index] : -1;
+        }
+
+        @Override
+        Container or(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                final ArrayContainer o = (ArrayContainer) other;
+                if (cardinality + o.cardinality <= ARRAY_MAX_SIZE)
+                {
+                    final char [] merged = new char [cardinality + o.cardinality];
+                    int i = 0, j = 0, k = 0;
+                    while (i < cardinality && j < o.cardinality)
+                    {
+                        final char a = values[i], b = o.values[j];
+                        if (a <= b)
+                        {
+                            merged[k++] = a;
+                            i++;
+                            if (a == b) j++;
+                        }
+                        else
+                        {
+                            merged[k++] = b;
+                            j++;
+                        }
+                    }
+                    while (i < cardinality) merged[k++] = values[i++];
+                    while (j < o.cardinality) merged[k++] = o.values[j++];
+                    return new ArrayContainer(merged, k);
+                }
+            }
+            return toBitmap().or(other).shrink();
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            int k = 0;
+            for (int i = 0; i < cardinality; i++)
+            {
+                if (other.contains(values[i]))
+                {
+                    values[k++] = values[i];
+                }
+            }
+            cardinality = k;
+            return this;
+        }
+
+        @Override
+        int andCardinality(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                final ArrayContainer o = (ArrayContainer) other;
+                int count = 0;
+                int i = 0, j = 0;
+                while (i < cardinality && j < o.cardinality)
+                {
+                    final char a = values[i], b = o.values[j];
+                    if (a < b) i++;
+                    else if (b < a) j++;
+                    else
+                    {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+                return count;
+            }
+
+            int count = 0;
+            for (int i = 0; i < cardinality; i++)
+            {
+                if (other.contains(values[i])) count++;
+            }
+            return count;
+        }
+
+        @Override
+        Container runOptimize()
+        {
+            int runs = 0;
+            for (int i = 0; i < cardinality; i++)
+            {
+                if (i == 0 || values[i] != values[i - 1] + 1) runs++;
+            }
+
+            if (RunContainer.sizeInBytes(runs) >= 2 * cardinality)
+            {
+                if (values.length > cardinality)
+                {
+                    values = Arrays.copyOf(values, cardinality);
+                }
+                return this;
+            }
+
+            final RunContainer run = new RunContainer(runs);
+            for (int i = 0; i < cardinality; i++)
+            {
+                run.append(values[i]);
+            }
+            return run;
+        }
+
+        @Override
+        BitmapContainer toBitmap()
+        {
+            final BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++)
+            {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+
+        @Override
+        public ArrayContainer clone()
+        {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+    }
+
+    /**
+     * Values as bits of a 2<sup>16</sup>-bit bitmap.
+     */
+    private static final class BitmapContainer extends Container
+    {
+        final long [] words;
+        int cardinality;
+
+        BitmapContainer()
+        {
+            this(new long [BITMAP_WORDS], 0);
+        }
+
+        BitmapContainer(long [] words, int cardinality)
+        {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(int value)
+        {
+            final long before = words[value >>> 6];
+            final long after = before | (1L << value);
+            words[value >>> 6] = after;
+            if (before != after) cardinality++;
+        }
+
+        /** Sets values from <code>start</code> to <code>end</code>, inclusive. */
+        void setRange(int start, int end)
+        {
+            for (int value = start; value <= end; value++)
+            {
+                set(value);
+            }
+        }
+
+        /** Counts values from <code>start</code> to <code>end</code>, inclusive. */
+        int countRange(int start, int end)
+        {
+            final int firstWord = start >>> 6;
+            final int lastWord = end >>> 6;
+            final long firstMask = -1L << start;
+            final long lastMask = -1L >>> (63 - (end & 63));
+            if (firstWord == lastWord)
+            {
+                return Long.bitCount(words[firstWord] & firstMask & lastMask);
+            }
+
+            int count = Long.bitCount(words[firstWord] & firstMask);
+            for (int i = firstWord + 1; i < lastWord; i++)
+            {
+                count += Long.bitCount(words[i]);
+            }
+            return count + Long.bitCount(words[lastWord] & lastMask);
+        }
+
+        @Override
+        Container add(char value)
+        {
+            set(value);
+            return this;
+        }
+
+        @Override
+        boolean contains(char value)
+        {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        int nextValue(int from)
+        {
+            int i = from >>> 6;
+            long word = words[i] & (-1L << from);
+            while (true)
+            {
+                if (word != 0)
+                {
+                    return (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+                if (++i == BITMAP_WORDS)
+                {
+                    return -1;
+                }
+                word = words[i];
+            }
+        }
+
+        @Override
+        BitmapContainer or(Container other)
+        {
+            if (other instanceof BitmapContainer)
+            {
+                final long [] o = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++)
+                {
+                    words[i] |= o[i];
+                    count += Long.bitCount(words[i]);
+                }
+                cardinality = count;
+            }
+            else if (other instanceof ArrayContainer)
+            {
+                final ArrayContainer o = (ArrayContainer) other;
+                for (int i = 0; i < o.cardinality; i++)
+                {
+                    set(o.values[i]);
+                }
+            }
+            else
+            {
+                final RunContainer o = (RunContainer) other;
+                for (int i = 0; i < o.runs; i++)
+                {
+                    setRange(o.starts[i], o.starts[i] + o.lengths[i]);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                final ArrayContainer o = (ArrayContainer) other;
+                final ArrayContainer result = new ArrayContainer(new char [o.cardinality], 0);
+                for (int i = 0; i < o.cardinality; i++)
+                {
+                    if (contains(o.values[i]))
+                    {
+                        result.values[result.cardinality++] = o.values[i];
+                    }
+                }
+                return result;
+            }
+
+            final long [] o = other.toBitmap().words;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                words[i] &= o[i];
+                count += Long.bitCount(words[i]);
+            }
+            cardinality = count;
+            return shrink();
+        }
+
+        @Override
+        int andCardinality(Container other)
+        {
+            if (other instanceof BitmapContainer)
+            {
+                final long [] o = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++)
+                {
+                    count += Long.bitCount(words[i] & o[i]);
+                }
+                return count;
+            }
+            return other.andCardinality(this);
+        }
+
+        @Override
+        Container runOptimize()
+        {
+            int runs = 0;
+            long previousTopBit = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                final long word = words[i];
+                runs += Long.bitCount(word & ~((word << 1) | previousTopBit));
+                previousTopBit = word >>> 63;
+            }
+
+            if (RunContainer.sizeInBytes(runs) >= BITMAP_WORDS * 8)
+            {
+                return shrink();
+            }
+
+            final RunContainer run = new RunContainer(runs);
+            for (int value = nextValue(0); value >= 0; value = value == 0xffff ? -1
+                : nextValue(value + 1))
+            {
+                run.append((char) value);
+            }
+            return run;
+        }
+
+        /**
+         * Returns an array container with the same values if small enough.
+         */
+        Container shrink()
+        {
+            if (cardinality > ARRAY_MAX_SIZE)
+            {
+                return this;
+            }
+
+            final ArrayContainer array = new ArrayContainer(new char [cardinality], 0);
+            for (int value = nextValue(0); value >= 0; value = value == 0xffff ? -1
+                : nextValue(value + 1))
+            {
+                array.values[array.cardinality++] = (char) value;
+            }
+            return array;
+        }
+
+        @Override
+        BitmapContainer toBitmap()
+        {
+            return this;
+        }
+
+        @Override
+        public BitmapContainer clone()
+        {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+    }
+
+    /**
+     * Values as sorted, non-adjacent runs of consecutive values.
+     */
+    private static final class RunContainer extends Container
+    {
+        /** First value of each run. */
+        final char [] starts;
+
+        /** Length of each run minus one. */
+        final char [] lengths;
+
+        int runs;
+        int cardinality;
+
+        RunContainer(int capacity)
+        {
+            this.starts = new char [capacity];
+            this.lengths = new char [capacity];
+        }
+
+        static int sizeInBytes(int runs)
+        {
+            return 4 * runs;
+        }
+
+        /**
+         * Appends a value greater than all values in this container.
+         */
+        void append(char value)
+        {
+            if (runs > 0 && starts[runs - 1] + lengths[runs - 1] + 1 == value)
+            {
+                lengths[runs - 1]++;
+            }
+            else
+            {
+                starts[runs] = value;
+                lengths[runs] = 0;
+                runs++;
+            }
+            cardinality++;
+        }
+
+        /**
+         * Returns the index of the last run starting at or before <code>value</code>, or
+         * -1 if there is none.
+         */
+        private int runIndex(int value)
+        {
+            int low = 0, high = runs - 1;
+            while (low <= high)
+            {
+                final int mid = (low + high) >>> 1;
+                if (starts[mid] <= value) low = mid + 1;
+                else high = mid - 1;
+            }
+            return high;
+        }
+
+        @Override
+        Container add(char value)
+        {
+            if (contains(value))
+            {
+                return this;
+            }
+
+            final Container converted = cardinality < ARRAY_MAX_SIZE ? toArray() : toBitmap();
+            return converted.add(value);
+        }
+
+        @Override
+        boolean contains(char value)
+        {
+            final int i = runIndex(value);
+            return i >= 0 && value <= starts[i] + lengths[i];
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        int nextValue(int from)
+        {
+            final int i = runIndex(from);
+            if (i >= 0 && from <= starts[i] + lengths[i])
+            {
+                return from;
+            }
+            return i + 1 < runs ? starts[i + 1] : -1;
+        }
+
+        @Override
+        Container or(Container other)
+        {
+            return toBitmap().or(other).shrink();
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                return other.clone().and(this);
+            }
+            return toBitmap().and(other);
+        }
+
+        @Override
+        int andCardinality(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                return other.andCardinality(this);
+            }
+
+            int count = 0;
+            if (other instanceof BitmapContainer)
+            {
+                final BitmapContainer o = (BitmapContainer) other;
+                for (int i = 0; i < runs; i++)
+                {
+                    count += o.countRange(starts[i], starts[i] + lengths[i]);
+                }
+                return count;
+            }
+
+            final RunContainer o = (RunContainer) other;
+            int i = 0, j = 0;
+            while (i < runs && j < o.runs)
+            {
+                final int endA = starts[i] + lengths[i];
+                final int endB = o.starts[j] + o.lengths[j];
+                final int overlap = Math.min(endA, endB) - Math.max(starts[i], o.starts[j]);
+                if (overlap >= 0)
+                {
+                    count += overlap + 1;
+                }
+                if (endA < endB) i++;
+                else j++;
+            }
+            return count;
+        }
+
+        @Override
+        Container runOptimize()
+        {
+            return this;
+        }
+
+        private ArrayContainer toArray()
+        {
+            final ArrayContainer array = new ArrayContainer(new char [cardinality + 1], 0);
+            for (int i = 0; i < runs; i++)
+            {
+                for (int v = starts[i], end = starts[i] + lengths[i]; v <= end; v++)
+                {
+                    array.values[array.cardinality++] = (char) v;
+                }
+            }
+            return array;
+        }
+
+        @Override
+        BitmapContainer toBitmap()
+        {
+            final BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < runs; i++)
+            {
+                bitmap.setRange(starts[i], starts[i] + lengths[i]);
+            }
+            return bitmap;
+        }
+
+        @Override
+        public RunContainer clone()
+        {
+            final RunContainer clone = new RunContainer(runs);
+            System.arraycopy(starts, 0, clone.starts, 0, runs);
+            System.arraycopy(lengths, 0, clone.lengths, 0, runs);
+            clone.runs = runs;
+            clone.cardinality = cardinality;
+            return clone;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.carrot2.util.annotations.ThreadSafe;
+
+/**
+ * Tracks the distribution of non-negative values showing up in a given time window. Like
+ * in {@link RollingWindowAverage}, values are grouped into time buckets; in addition to
+ * the average, approximate percentiles are available.
+ * <p>
+ * This class is thread-safe and lock-free: updates never block each other. Values are
+ * counted in logarithmic bins with 8 sub-bins per power of two, so percentiles of values
+ * smaller than 16 are exact and larger ones are reported with a relative error below
+ * 7%. The average is exact.
+ */
+@ThreadSafe
+public class RollingWindowHistogram
+{
+    /** Number of sub-bins per power of two, as a power of two. */
+    private static final int SUB_BIN_BITS = 3;
+
+    /** Number of sub-bins per power of two. */
+    private static final int SUB_BINS = 1 << SUB_BIN_BITS;
+
+    /** Values below this threshold have their own bins. */
+    private static final int EXACT_BINS = 2 * SUB_BINS;
+
+    /** The largest power of two with dedicated bins, larger values share the last bin. */
+    private static final int MAX_EXPONENT = 40;
+
+    /** Total number of bins. */
+    static final int BINS = EXACT_BINS + (MAX_EXPONENT - SUB_BIN_BITS) * SUB_BINS;
+
+    /**
+     * A time bucket, replaced (not cleared) when its slot is reused for a later period.
+     */
+    private final static class Bucket
+    {
+        /** Time period index: start timestamp divided by bucket size. */
+        final long period;
+
+        final AtomicLongArray counts = new AtomicLongArray(BINS);
+        final StripedLongCounter sum = new StripedLongCounter();
+
+        Bucket(long period)
+        {
+            this.period = period;
+        }
+    }
+
+    /**
+     * Counts and sums of values in a time window.
+     */
+    public static final class Snapshot
+    {
+        private final long [] counts;
+        private final long count;
+        private final long sum;
+
+        Snapshot(long [] counts, long count, long sum)
+        {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        /**
+         * Returns the number of values in the window.
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Returns the average of values in the window or 0 if there were no values.
+         */
+        public double getAverage()
+        {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the approximate value below or at which the <code>quantile</code>
+         * fraction of values in the window fall, or 0 if there were no values.
+         *
+         * @param quantile a number in range <code>(0, 1]</code>, e.g. 0.95 for the 95th
+         *            percentile.
+         */
+        public long getPercentile(double quantile)
+        {
+            if (quantile <= 0 || quantile > 1)
+            {
+                throw new IllegalArgumentException("Quantile must be in (0, 1]: "
+                    + quantile);
+            }
+            if (count == 0)
+            {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long cumulative = 0;
+            for (int bin = 0; bin < counts.length; bin++)
+            {
+                cumulative += counts[bin];
+                if (cumulative >= rank)
+                {
+                    return binValue(bin);
+                }
+            }
+            return binValue(counts.length - 1);
+        }
+    }
+
+    private final long bucketSizeMillis;
+    private final long windowSizeMillis;
+
+    /** Ring of time buckets, indexed by period modulo length. */
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * Creates a histogram of values in the last <code>windowSizeMillis</code>, grouped
+     * into buckets of <code>bucketSizeMillis</code> (smaller than the window).
+     */
+    public RollingWindowHistogram(long windowSizeMillis, long bucketSizeMillis)
+    {
+        if (bucketSizeMillis <= 0 || windowSizeMillis <= 0
+            || windowSizeMillis <= bucketSizeMillis)
+        {
+            throw new IllegalArgumentException("Bucket size must be smaller than window size.");
+        }
+
+        this.bucketSizeMillis = bucketSizeMillis;
+        this.windowSizeMillis = windowSizeMillis;
+
+        // Enough slots to hold all buckets overlapping the window plus the current one.
+        this.buckets = new AtomicReferenceArray<Bucket>(
+            (int) (windowSizeMillis / bucketSizeMillis) + 2);
+    }
+
+    /**
+     * Adds a new entry. Negative values are counted as 0.
+     */
+    public final void add(long timestamp, long value)
+    {
+        final long period = timestamp / bucketSizeMillis;
+        final int slot = (int) (period % buckets.length());
+
+        Bucket bucket = buckets.get(slot);
+        while (bucket == null || bucket.period < period)
+        {
+            final Bucket newBucket = new Bucket(period);
+            if (buckets.compareAndSet(slot, bucket, newBucket))
+            {
+                bucket = newBucket;
+            }
+            else
+            {
+                bucket = buckets.get(slot);
+            }
+        }
+
+        if (bucket.period != period)
+        {
+            // The slot has already been reused for a later period, the value is too old.
+            return;
+        }
+
+        final long v = Math.max(0, value);
+        bucket.counts.incrementAndGet(bin(v));
+        bucket.sum.add(v);
+    }
+
+    /**
+     * Returns counts and sums of values in the current window.
+     */
+    public final Snapshot getSnapshot()
+    {
+        final long oldestPeriod = (getNow() - windowSizeMillis) / bucketSizeMillis;
+
+        final long [] counts = new long [BINS];
+        long count = 0;
+        long sum = 0;
+        for (int slot = 0; slot < buckets.length(); slot++)
+        {
+            final Bucket bucket = buckets.get(slot);
+            if (bucket == null || bucket.period < oldestPeriod)
+            {
+                continue;
+            }
+
+            for (int bin = 0; bin < BINS; bin++)
+            {
+                final long binCount = bucket.counts.get(bin);
+                counts[bin] += binCount;
+                count += binCount;
+            }
+            sum += bucket.sum.sum();
+        }
+
+        return new Snapshot(counts, count, sum);
+    }
+
+    /**
+     * Returns the average of values in the current window.
+     */
+    public final double getCurrentAverage()
+    {
+        return getSnapshot().getAverage();
+    }
+
+    /**
+     * Returns the number of updates kept in the rolling window's scope.
+     */
+    public final long getUpdatesInWindow()
+    {
+        return getSnapshot().getCount();
+    }
+
+    /**
+     * Returns the approximate percentile of values in the current window, see
+     * {@link Snapshot#getPercentile(double)}.
+     */
+    public final long getPercentile(double quantile)
+    {
+        return getSnapshot().getPercentile(quantile);
+    }
+
+    /**
+     * Returns the size of the rolling window.
+     */
+    public final long getWindowSizeMillis()
+    {
+        return windowSizeMillis;
+    }
+
+    /**
+     * Returns <code>System.currentTimeMillis()</code>, moved to a separate method to make
+     * tests independent of actual wall time.
+     */
+    long getNow()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the bin of a non-negative value.
+     */
+    static int bin(long value)
+    {
+        if (value < EXACT_BINS)
+        {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBin = (int) (value >>> (exponent - SUB_BIN_BITS)) & (SUB_BINS - 1);
+        return Math.min(BINS - 1, EXACT_BINS + (exponent - SUB_BIN_BITS - 1) * SUB_BINS
+            + subBin);
+    }
+
+    /**
+     * Returns the value representing a bin: the value itself for exact bins, the middle
+     * of the bin's range otherwise.
+     */
+    static long binValue(int bin)
+    {
+        if (bin < EXACT_BINS)
+        {
+            return bin;
+        }
+
+        final int exponent = (bin - EXACT_BINS) / SUB_BINS + SUB_BIN_BITS + 1;
+        final int subBin = (bin - EXACT_BINS) % SUB_BINS;
+        final long width = 1L << (exponent - SUB_BIN_BITS);
+        return (SUB_BINS + subBin) * width + width / 2;
+    }
+}
@@ -0,0 +1,96 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.carrot2.util.annotations.ThreadSafe;
+
+/**
+ * A thread-safe <code>long</code> counter that spreads updates over a number of cells
+ * (selected by the updating thread) to avoid contention on a single memory location.
+ * Updates are cheap, {@link #sum()} is more expensive as it reads all cells. A sum read
+ * while updates are in progress is not an atomic snapshot.
+ */
+@ThreadSafe
+public final class StripedLongCounter
+{
+    /** Distance between cells, in longs, so that each cell gets its own cache line. */
+    private static final int PADDING = 8;
+
+    /** Upper bound on the default number of cells. */
+    private static final int MAX_DEFAULT_STRIPES = 64;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    /**
+     * Creates a counter with the number of cells matching the number of available
+     * processors.
+     */
+    public StripedLongCounter()
+    {
+        this(Math.min(MAX_DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates a counter with at least <code>stripes</code> cells.
+     */
+    public StripedLongCounter(int stripes)
+    {
+        int cellCount = 1;
+        while (cellCount < stripes)
+        {
+            cellCount <<= 1;
+        }
+        this.cells = new AtomicLongArray(cellCount * PADDING);
+        this.mask = cellCount - 1;
+    }
+
+    /**
+     * Adds <code>delta</code> to the counter.
+     */
+    public void add(long delta)
+    {
+        cells.getAndAdd(cellIndex(), delta);
+    }
+
+    /**
+     * Adds one to the counter.
+     */
+    public void increment()
+    {
+        add(1);
+    }
+
+    /**
+     * Returns the current value of the counter.
+     */
+    public long sum()
+    {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING)
+        {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    private int cellIndex()
+    {
+        // Spread thread identifiers so that consecutive ids land in different cells.
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return ((int) h & mask) * PADDING;
+    }
+}
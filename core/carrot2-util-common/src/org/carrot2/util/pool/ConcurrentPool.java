@@ -0,0 +1,412 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.util.pool;
+
+import java.lang.ref.SoftReference;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.carrot2.util.Pair;
+import org.carrot2.util.annotations.ThreadSafe;
+
+/**
+ * A lock-free object pool for highly concurrent use. Like {@link SoftUnboundedPool},
+ * objects get created using parameterless constructors and idle objects are held using
+ * {@link SoftReference}s, but borrowing and returning objects of different (and the same)
+ * keys does not serialize on a single monitor: each key has its own lock-free stack of
+ * idle objects, most recently returned objects are reused first.
+ * <p>
+ * Optionally, the pool can:
+ * <ul>
+ * <li>limit the number of objects borrowed at the same time for each key; threads
+ * borrowing over the limit wait until an object is returned,</li>
+ * <li>dispose of objects that have been idle for longer than a given time, so that the
+ * pool shrinks after bursts of concurrent requests.</li>
+ * </ul>
+ * Idle objects are evicted while the pool is being used, objects of keys that are no
+ * longer requested can be evicted by calling {@link #evictIdleObjects()}.
+ */
+@ThreadSafe
+public final class ConcurrentPool<T, P> implements IParameterizedPool<T, P>
+{
+    /** How often threads waiting for an object check whether the pool has been disposed. */
+    private static final long DISPOSAL_CHECK_MILLIS = 100;
+
+    /**
+     * An idle object and the time it was returned to the pool.
+     */
+    private final static class IdleObject<T>
+    {
+        final SoftReference<T> reference;
+        final long returnedAt;
+
+        IdleObject(T object, long returnedAt)
+        {
+            this.reference = new SoftReference<T>(object);
+            this.returnedAt = returnedAt;
+        }
+    }
+
+    /**
+     * Wraps a borrowed object so that borrowed objects are compared by identity, not
+     * equality.
+     */
+    private final static class Identity
+    {
+        final Object object;
+
+        Identity(Object object)
+        {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Identity && ((Identity) other).object == object;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(object);
+        }
+    }
+
+    /**
+     * Idle and borrowed objects of a single key.
+     */
+    private final static class KeyPool<T>
+    {
+        /** Idle objects, most recently returned first. */
+        final ConcurrentLinkedDeque<IdleObject<T>> idle = new ConcurrentLinkedDeque<IdleObject<T>>();
+
+        /** Objects currently borrowed. */
+        final ConcurrentMap<Identity, Boolean> borrowed = new ConcurrentHashMap<Identity, Boolean>();
+
+        /** Permits to borrow, <code>null</code> if the number of objects is not limited. */
+        final Semaphore permits;
+
+        KeyPool(int maxBorrowed)
+        {
+            this.permits = maxBorrowed > 0 ? new Semaphore(maxBorrowed) : null;
+        }
+    }
+
+    private final ConcurrentMap<Pair<Class<? extends T>, P>, KeyPool<T>> instances = new ConcurrentHashMap<Pair<Class<? extends T>, P>, KeyPool<T>>();
+
+    private volatile boolean disposed;
+
+    private IInstantiationListener<T, P> instantiationListener;
+    private IActivationListener<T, P> activationListener;
+    private IPassivationListener<T, P> passivationListener;
+    private IDisposalListener<T, P> disposalListener;
+
+    /**
+     * Maximum number of objects borrowed at the same time for each key, 0 if unlimited.
+     */
+    private final int maxBorrowedPerKey;
+
+    /**
+     * Time after which idle objects get disposed of, in nanoseconds, 0 if never.
+     */
+    private final long maxIdleNanos;
+
+    /**
+     * Creates a pool with no limit on the number of objects and no idle object eviction.
+     */
+    public ConcurrentPool()
+    {
+        this(0, 0);
+    }
+
+    /**
+     * @param maxBorrowedPerKey Maximum number of objects that can be borrowed at the same
+     *            time for each key, 0 for no limit.
+     * @param maxIdleMillis Time after which objects not borrowed from the pool get
+     *            disposed of, 0 to keep idle objects until the pool is disposed of or
+     *            the objects are garbage collected.
+     */
+    public ConcurrentPool(int maxBorrowedPerKey, long maxIdleMillis)
+    {
+        if (maxBorrowedPerKey < 0)
+            throw new IllegalArgumentException("Pool size must not be negative: "
+                + maxBorrowedPerKey);
+        if (maxIdleMillis < 0)
+            throw new IllegalArgumentException("Maximum idle time must not be negative: "
+                + maxIdleMillis);
+
+        this.maxBorrowedPerKey = maxBorrowedPerKey;
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+    }
+
+    public void init(IInstantiationListener<T, P> objectInstantiationListener,
+        IActivationListener<T, P> objectActivationListener,
+        IPassivationListener<T, P> objectPassivationListener,
+        IDisposalListener<T, P> objectDisposalListener)
+    {
+        this.instantiationListener = objectInstantiationListener;
+        this.activationListener = objectActivationListener;
+        this.passivationListener = objectPassivationListener;
+        this.disposalListener = objectDisposalListener;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <I extends T> I borrowObject(Class<I> clazz, P parameter)
+        throws InstantiationException, IllegalAccessException
+    {
+        if (disposed)
+        {
+            throw new IllegalStateException("The pool has already been disposed of");
+        }
+
+        final Pair<Class<? extends T>, P> key = new Pair<Class<? extends T>, P>(clazz,
+            parameter);
+        KeyPool<T> keyPool = instances.get(key);
+        if (keyPool == null)
+        {
+            final KeyPool<T> newKeyPool = new KeyPool<T>(maxBorrowedPerKey);
+            keyPool = instances.putIfAbsent(key, newKeyPool);
+            if (keyPool == null)
+            {
+                keyPool = newKeyPool;
+            }
+        }
+
+        if (keyPool.permits != null)
+        {
+            acquire(keyPool.permits, clazz, parameter);
+        }
+
+        I instance = null;
+        boolean borrowed = false;
+        try
+        {
+            IdleObject<T> idleObject;
+            while (instance == null && (idleObject = keyPool.idle.pollFirst()) != null)
+            {
+                // This cast goes unchecked and can be broken by bad calls, but we shift
+                // the responsibility to the users of this class.
+                instance = (I) idleObject.reference.get();
+            }
+
+            if (instance == null)
+            {
+                instance = clazz.newInstance();
+                if (instantiationListener != null)
+                {
+                    instantiationListener.objectInstantiated(instance, parameter);
+                }
+            }
+
+            keyPool.borrowed.put(new Identity(instance), Boolean.TRUE);
+            borrowed = true;
+        }
+        finally
+        {
+            if (!borrowed && keyPool.permits != null)
+            {
+                keyPool.permits.release();
+            }
+        }
+
+        evictIdle(keyPool, parameter, System.nanoTime());
+
+        if (activationListener != null)
+        {
+            boolean activated = false;
+            try
+            {
+                activationListener.activate(instance, parameter);
+                activated = true;
+            }
+            finally
+            {
+                if (!activated)
+                {
+                    // The instance may be in any state, don't return it to the pool.
+                    keyPool.borrowed.remove(new Identity(instance));
+                    if (keyPool.permits != null)
+                    {
+                        keyPool.permits.release();
+                    }
+                    dispose(instance, parameter);
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    public void returnObject(T object, P parameter)
+    {
+        if (object == null)
+        {
+            return;
+        }
+
+        @SuppressWarnings({
+            "rawtypes", "unchecked"
+        })
+        final Pair<Class<? extends T>, P> key = new Pair(object.getClass(), parameter);
+        final KeyPool<T> keyPool = instances.get(key);
+        if (keyPool == null)
+        {
+            if (disposed)
+            {
+                return;
+            }
+            throw new IllegalStateException(
+                "Returning an object that was never borrowed: " + object);
+        }
+
+        if (keyPool.borrowed.remove(new Identity(object)) == null)
+        {
+            if (disposed)
+            {
+                return;
+            }
+            throw new IllegalStateException("Object has not been borrowed");
+        }
+
+        if (passivationListener != null)
+        {
+            passivationListener.passivate(object, parameter);
+        }
+
+        if (!disposed)
+        {
+            final long now = System.nanoTime();
+            keyPool.idle.offerFirst(new IdleObject<T>(object, now));
+
+            // The object must be visible on the idle stack before the permit is released.
+            if (keyPool.permits != null)
+            {
+                keyPool.permits.release();
+            }
+
+            if (disposed)
+            {
+                // The pool got disposed of concurrently, make sure no object is left over.
+                disposeAll(keyPool, parameter);
+            }
+            else
+            {
+                evictIdle(keyPool, parameter, now);
+            }
+        }
+    }
+
+    /**
+     * Disposes of objects that have been idle for longer than the maximum idle time
+     * specified at construction time, across all keys. Does nothing if the maximum idle
+     * time is 0.
+     */
+    public void evictIdleObjects()
+    {
+        final long now = System.nanoTime();
+        for (Entry<Pair<Class<? extends T>, P>, KeyPool<T>> entry : instances.entrySet())
+        {
+            evictIdle(entry.getValue(), entry.getKey().objectB, now);
+        }
+    }
+
+    public void dispose()
+    {
+        disposed = true;
+
+        for (Entry<Pair<Class<? extends T>, P>, KeyPool<T>> entry : instances.entrySet())
+        {
+            disposeAll(entry.getValue(), entry.getKey().objectB);
+        }
+    }
+
+    /**
+     * Waits for a permit to borrow an object, checking periodically whether the pool
+     * has been disposed of.
+     */
+    private void acquire(Semaphore permits, Class<?> clazz, P parameter)
+        throws InstantiationException
+    {
+        try
+        {
+            while (!permits.tryAcquire(DISPOSAL_CHECK_MILLIS, TimeUnit.MILLISECONDS))
+            {
+                if (disposed)
+                {
+                    throw new InstantiationException("Pool disposed while waiting.");
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InstantiationException(
+                "Interrupted while waiting for the object pool: " + clazz + ", "
+                    + parameter);
+        }
+    }
+
+    /**
+     * Disposes of idle objects of a key returned before <code>now - maxIdleNanos</code>.
+     * The oldest objects are at the tail of the idle stack.
+     */
+    private void evictIdle(KeyPool<T> keyPool, P parameter, long now)
+    {
+        if (maxIdleNanos == 0)
+        {
+            return;
+        }
+
+        IdleObject<T> oldest;
+        while ((oldest = keyPool.idle.peekLast()) != null
+            && now - oldest.returnedAt > maxIdleNanos)
+        {
+            // Another thread may have borrowed or evicted the object in the meantime.
+            if (keyPool.idle.removeLastOccurrence(oldest))
+            {
+                dispose(oldest, parameter);
+            }
+        }
+    }
+
+    private void disposeAll(KeyPool<T> keyPool, P parameter)
+    {
+        IdleObject<T> idleObject;
+        while ((idleObject = keyPool.idle.pollFirst()) != null)
+        {
+            dispose(idleObject, parameter);
+        }
+    }
+
+    private void dispose(IdleObject<T> idleObject, P parameter)
+    {
+        final T instance = idleObject.reference.get();
+        if (instance != null)
+        {
+            dispose(instance, parameter);
+        }
+    }
+
+    private void dispose(T instance, P parameter)
+    {
+        if (disposalListener != null)
+        {
+            disposalListener.dispose(instance, parameter);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.matrix;
+
+import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
+import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+import org.carrot2.mahout.math.matrix.impl.SparseDoubleMatrix2D;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CompressedSparseRowMatrix}.
+ */
+public class CompressedSparseRowMatrixTest extends CarrotTestCase
+{
+    @Test
+    public void testEmpty()
+    {
+        final CompressedSparseRowMatrix csr = CompressedSparseRowMatrix
+            .create(new DenseDoubleMatrix2D(3, 0));
+        assertThat(csr.rows()).isEqualTo(3);
+        assertThat(csr.columns()).isEqualTo(0);
+        assertThat(csr.nonZeros()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCreateIfSparse()
+    {
+        final DoubleMatrix2D A = new DenseDoubleMatrix2D(new double [] []
+        {
+            {
+                1, 0, 0, 0
+            },
+            {
+                0, 0, 2, 0
+            }
+        });
+
+        assertThat(CompressedSparseRowMatrix.createIfSparse(A, 0.1)).isNull();
+        assertThat(CompressedSparseRowMatrix.createIfSparse(A, 0.25).nonZeros())
+            .isEqualTo(2);
+    }
+
+    @Test
+    public void testProductsMatchDense()
+    {
+        final int rows = randomIntBetween(1, 30);
+        final int columns = randomIntBetween(1, 30);
+        final int k = randomIntBetween(1, 5);
+
+        final DoubleMatrix2D A = randomBoolean() ? new DenseDoubleMatrix2D(rows, columns)
+            : new SparseDoubleMatrix2D(rows, columns);
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                if (randomInt(4) == 0)
+                {
+                    A.setQuick(r, c, randomDouble());
+                }
+            }
+        }
+
+        final CompressedSparseRowMatrix csr = CompressedSparseRowMatrix.create(A);
+        assertThat(csr.nonZeros()).isEqualTo(A.cardinality());
+
+        final DoubleMatrix2D B = randomMatrix(columns, k);
+        MatrixAssertions.assertThat(csr.zMult(B, randomMatrix(rows, k), false))
+            .isEquivalentTo(A.zMult(B, null, 1, 0, false, false), 1e-10);
+
+        final DoubleMatrix2D Bt = randomMatrix(rows, k);
+        MatrixAssertions.assertThat(csr.zMult(Bt, randomMatrix(columns, k), true))
+            .isEquivalentTo(A.zMult(Bt, null, 1, 0, true, false), 1e-10);
+    }
+
+    private DoubleMatrix2D randomMatrix(int rows, int columns)
+    {
+        final DoubleMatrix2D M = new DenseDoubleMatrix2D(rows, columns);
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                M.setQuick(r, c, randomDouble());
+            }
+        }
+        return M;
+    }
+}
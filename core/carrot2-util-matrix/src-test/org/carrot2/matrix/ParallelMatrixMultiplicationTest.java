@@ -0,0 +1,154 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.matrix;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
+import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+/**
+ * Test cases for dense matrix multiplication, serial and with
+ * {@link ParallelMatrixMultiplication} enabled.
+ */
+public class ParallelMatrixMultiplicationTest extends CarrotTestCase
+{
+    @Test
+    public void testBlockedMultiplication()
+    {
+        final boolean transposeA = randomBoolean();
+        final boolean transposeB = randomBoolean();
+        final int m = randomIntBetween(1, 300);
+        final int n = randomIntBetween(1, 300);
+        final int p = randomIntBetween(1, 300);
+        final double alpha = randomDouble();
+        final double beta = randomBoolean() ? 0 : randomDouble();
+
+        final DoubleMatrix2D A = transposeA ? randomMatrix(n, m) : randomMatrix(m, n);
+        final DoubleMatrix2D B = transposeB ? randomMatrix(p, n) : randomMatrix(n, p);
+        final DoubleMatrix2D C = randomMatrix(m, p);
+        final DoubleMatrix2D expected = naiveMult(A, B, C, alpha, beta, transposeA,
+            transposeB);
+
+        MatrixAssertions.assertThat(
+            A.zMult(B, C.copy(), alpha, beta, transposeA, transposeB)).isEquivalentTo(
+            expected, 1e-9);
+    }
+
+    @Test
+    public void testNonFiniteValuesPropagated()
+    {
+        final DoubleMatrix2D A = new DenseDoubleMatrix2D(new double [] []
+        {
+            { 0, 1 },
+            { 1, 1 }
+        });
+        final DoubleMatrix2D B = new DenseDoubleMatrix2D(new double [] []
+        {
+            { Double.POSITIVE_INFINITY, 1 },
+            { 1, 1 }
+        });
+        final DoubleMatrix2D C = new DenseDoubleMatrix2D(new double [] []
+        {
+            { 0, Double.NaN },
+            { 0, 0 }
+        });
+
+        // 0 * Infinity and 0 * NaN are NaN, also for beta equal to 0
+        final DoubleMatrix2D result = A.zMult(B, C, 1, 0, false, false);
+        assertThat(Double.isNaN(result.getQuick(0, 0))).isTrue();
+        assertThat(Double.isNaN(result.getQuick(0, 1))).isTrue();
+        assertThat(result.getQuick(1, 0)).isEqualTo(Double.POSITIVE_INFINITY);
+        assertThat(result.getQuick(1, 1)).isEqualTo(2.0);
+    }
+
+    @Test
+    public void testParallelResultIdenticalToSerial()
+    {
+        final DoubleMatrix2D A = randomMatrix(randomIntBetween(2, 200), 150);
+        final DoubleMatrix2D B = randomMatrix(150, randomIntBetween(1, 50));
+
+        final DoubleMatrix2D serial = A.zMult(B, null, 1, 0, false, false);
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            ParallelMatrixMultiplication.enable(pool, 0);
+            final DoubleMatrix2D parallel = A.zMult(B, null, 1, 0, false, false);
+            MatrixAssertions.assertThat(parallel).isEquivalentTo(serial, 0);
+        }
+        finally
+        {
+            ParallelMatrixMultiplication.disable();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testThreshold()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            ParallelMatrixMultiplication.enable(pool, 1000);
+            assertThat(ParallelMatrixMultiplication.getPool(999)).isNull();
+            assertThat(ParallelMatrixMultiplication.getPool(1000)).isSameAs(pool);
+
+            ParallelMatrixMultiplication.disable();
+            assertThat(ParallelMatrixMultiplication.getPool(1000)).isNull();
+        }
+        finally
+        {
+            ParallelMatrixMultiplication.disable();
+            pool.shutdown();
+        }
+    }
+
+    private static DoubleMatrix2D naiveMult(DoubleMatrix2D A, DoubleMatrix2D B,
+        DoubleMatrix2D C, double alpha, double beta, boolean transposeA,
+        boolean transposeB)
+    {
+        final DoubleMatrix2D a = transposeA ? A.viewDice() : A;
+        final DoubleMatrix2D b = transposeB ? B.viewDice() : B;
+        final DoubleMatrix2D result = new DenseDoubleMatrix2D(a.rows(), b.columns());
+        for (int i = 0; i < a.rows(); i++)
+        {
+            for (int j = 0; j < b.columns(); j++)
+            {
+                double s = 0;
+                for (int k = 0; k < a.columns(); k++)
+                {
+                    s += a.getQuick(i, k) * b.getQuick(k, j);
+                }
+                result.setQuick(i, j, alpha * s + beta * C.getQuick(i, j));
+            }
+        }
+        return result;
+    }
+
+    private DoubleMatrix2D randomMatrix(int rows, int columns)
+    {
+        final DoubleMatrix2D M = new DenseDoubleMatrix2D(rows, columns);
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                // Some zeros to exercise skipping of empty elements
+                M.setQuick(r, c, randomInt(3) == 0 ? 0 : randomDouble());
+            }
+        }
+        return M;
+    }
+}
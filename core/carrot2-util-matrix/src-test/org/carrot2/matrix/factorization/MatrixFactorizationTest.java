@@ -14,6 +14,7 @@ package org.carrot2.matrix.factorization;
 
 import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
 import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+import org.carrot2.mahout.math.matrix.impl.SparseDoubleMatrix2D;
 import org.carrot2.matrix.MatrixAssertions;
 import org.carrot2.matrix.factorization.seeding.ISeedingStrategy;
 import org.carrot2.matrix.factorization.seeding.ISeedingStrategyFactory;
@@ -115,6 +116,113 @@ public class MatrixFactorizationTest extends CarrotTestCase
         org.junit.Assert.assertArrayEquals(expectedS, factorization.getSingularValues(), DELTA);
     }
 
+    @Test
+    public void testRandomizedSVD()
+    {
+        checkRandomizedSVD(A);
+    }
+
+    @Test
+    public void testRandomizedSVDSparseInput()
+    {
+        checkRandomizedSVD(new SparseDoubleMatrix2D(A.toArray()));
+    }
+
+    @Test
+    public void testRandomizedSVDSingularValuesMatchFullSVD()
+    {
+        final DoubleMatrix2D B = new DenseDoubleMatrix2D(40, 25);
+        for (int r = 0; r < B.rows(); r++)
+        {
+            for (int c = 0; c < B.columns(); c++)
+            {
+                if (randomInt(3) == 0)
+                {
+                    B.setQuick(r, c, randomDouble());
+                }
+            }
+        }
+
+        final PartialSingularValueDecompositionFactory full = new PartialSingularValueDecompositionFactory();
+        full.setK(5);
+        final RandomizedSingularValueDecompositionFactory randomized = new RandomizedSingularValueDecompositionFactory();
+        randomized.setK(5);
+
+        final double [] expectedS = ((PartialSingularValueDecomposition) full
+            .factorize(B)).getSingularValues();
+        final RandomizedSingularValueDecomposition factorization = (RandomizedSingularValueDecomposition) randomized
+            .factorize(B);
+
+        org.junit.Assert.assertEquals(5, factorization.getU().columns());
+        org.junit.Assert.assertEquals(5, factorization.getV().columns());
+        // Random matrices have a flat spectrum, which is the worst case for the
+        // randomized algorithm, hence the larger tolerance.
+        org.junit.Assert.assertArrayEquals(expectedS, factorization.getSingularValues(),
+            1e-2);
+    }
+
+    private void checkRandomizedSVD(DoubleMatrix2D input)
+    {
+        RandomizedSingularValueDecompositionFactory factory = new RandomizedSingularValueDecompositionFactory();
+        factory.setK(2);
+
+        RandomizedSingularValueDecomposition factorization = (RandomizedSingularValueDecomposition) factory
+            .factorize(input);
+
+        // Same as full SVD, but with the largest element of each base vector positive
+        DoubleMatrix2D expectedU = new DenseDoubleMatrix2D(new double [] []
+        {
+            {
+                0, 0.752646
+            },
+            {
+                0.651927, 0
+            },
+            {
+                0.651927, 0
+            },
+            {
+                0.387277, 0
+            },
+            {
+                0, 0.658425
+            }
+        });
+
+        DoubleMatrix2D expectedV = new DenseDoubleMatrix2D(new double [] []
+        {
+            {
+                0.557873, 0
+            },
+            {
+                0.562741, 0
+            },
+            {
+                0, 0.619628
+            },
+            {
+                0, 0.619628
+            },
+            {
+                0.23542, 0
+            },
+            {
+                0.562741, 0
+            },
+            {
+                0, 0.48179
+            }
+        });
+
+        double [] expectedS = new double []
+        {
+            1.6450472, 1.5621864
+        };
+
+        check(expectedU, expectedV, factorization);
+        org.junit.Assert.assertArrayEquals(expectedS, factorization.getSingularValues(), DELTA);
+    }
+
     @Test
     public void testUnorderedNMFED()
     {
@@ -371,6 +479,33 @@ public class MatrixFactorizationTest extends CarrotTestCase
             new LocalNonnegativeMatrixFactorizationFactory());
     }
 
+    @Test
+    public void testSparseProductsMatchDense()
+    {
+        final IterativeMatrixFactorizationFactory [] factories = new IterativeMatrixFactorizationFactory []
+        {
+            new NonnegativeMatrixFactorizationEDFactory(),
+            new NonnegativeMatrixFactorizationKLFactory(),
+            new LocalNonnegativeMatrixFactorizationFactory(),
+            new KMeansMatrixFactorizationFactory()
+        };
+
+        for (IterativeMatrixFactorizationFactory factory : factories)
+        {
+            factory.setK(K);
+            factory.setMaxIterations(MAX_ITERATIONS);
+            factory.setStopThreshold(STOP_THRESHOLD);
+            factory.setSeedingFactory(ConstantSeedingStrategyFactory.INSTANCE);
+
+            factory.setSparseDensityThreshold(-1);
+            final IMatrixFactorization dense = factory.factorize(A);
+            factory.setSparseDensityThreshold(1);
+            final IMatrixFactorization sparse = factory.factorize(A);
+
+            check(dense.getU(), dense.getV(), sparse);
+        }
+    }
+
     private IMatrixFactorization checkIterative(DoubleMatrix2D expectedU,
         DoubleMatrix2D expectedV, IterativeMatrixFactorizationFactory factory)
     {
@@ -1,5 +1,8 @@
 /* Imported from Mahout. */package org.carrot2.mahout.math.matrix.impl;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import org.carrot2.mahout.math.function.DoubleDoubleFunction;
 import org.carrot2.mahout.math.function.DoubleFunction;
 import org.carrot2.mahout.math.function.Functions;
@@ -7,6 +10,7 @@ import org.carrot2.mahout.math.function.Mult;
 import org.carrot2.mahout.math.function.PlusMult;
 import org.carrot2.mahout.math.matrix.DoubleMatrix1D;
 import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
+import org.carrot2.matrix.ParallelMatrixMultiplication;
 
 public final class DenseDoubleMatrix2D extends DoubleMatrix2D {
 
@@ -419,99 +423,146 @@ public final class DenseDoubleMatrix2D extends DoubleMatrix2D {
       throw new IllegalArgumentException("Matrices must not be identical");
     }
 
+    if (!(B instanceof DenseDoubleMatrix2D)) {
+      return super.zMult(B, C, alpha, beta, transposeA, transposeB);
+    }
+
     DenseDoubleMatrix2D BB = (DenseDoubleMatrix2D) B;
     DenseDoubleMatrix2D CC = (DenseDoubleMatrix2D) C;
+    if (this.elements == null || BB.elements == null || CC.elements == null) {
+      throw new IllegalStateException();
+    }
+
+    // Zero elements of A can only be skipped if B has no NaN or infinite elements,
+    // which would turn the skipped products into NaN.
+    boolean skipZeros = BB.allFinite();
+
+    // Split large products into row blocks computed in parallel, if enabled on this thread
+    ForkJoinPool pool = ParallelMatrixMultiplication.getPool((long) m * n * p);
+    if (pool != null && m > 1) {
+      int minRows = Math.max(1, m / (pool.getParallelism() * 4));
+      pool.invoke(new RowBlockMultiplication(this, BB, CC, alpha, beta, skipZeros, 0, m, minRows));
+    } else {
+      multiplyRows(BB, CC, alpha, beta, skipZeros, 0, m);
+    }
+    return C;
+  }
+
+  /*
+   * Returns true if no element of this matrix is NaN or infinite.
+   */
+  private boolean allFinite() {
+    for (int row = 0; row < rows; row++) {
+      int i = index(row, 0);
+      for (int column = columns; --column >= 0;) {
+        double value = elements[i];
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+          return false;
+        }
+        i += columnStride;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Cache-tiled kernel computing rows [rowFrom, rowTo) of C = alpha * A * B + beta * C.
+   * The inner loop walks rows of B and C. If skipZeros is true, zero elements of A
+   * (frequent in term-document matrices) are skipped.
+   */
+  private void multiplyRows(DenseDoubleMatrix2D BB, DenseDoubleMatrix2D CC, double alpha, double beta,
+                            boolean skipZeros, int rowFrom, int rowTo) {
     double[] AElems = this.elements;
     double[] BElems = BB.elements;
     double[] CElems = CC.elements;
-    if (AElems == null || BElems == null || CElems == null) {
-      throw new IllegalStateException();
-    }
+
+    int n = columns;
+    int p = BB.columns;
 
     int cA = this.columnStride;
     int cB = BB.columnStride;
     int cC = CC.columnStride;
 
-    int rA = this.rowStride;
-    int rB = BB.rowStride;
-    int rC = CC.rowStride;
-
-    /*
-    A is blocked to hide memory latency
-        xxxxxxx B
-        xxxxxxx
-        xxxxxxx
-    A
-    xxx     xxxxxxx C
-    xxx     xxxxxxx
-    ---     -------
-    xxx     xxxxxxx
-    xxx     xxxxxxx
-    ---     -------
-    xxx     xxxxxxx
-    */
-    int blockSize = 30000; // * 8 == Level 2 cache in bytes
-    //if (n+p == 0) return C;
-    //int m_optimal = (BLOCK_SIZE - n*p) / (n+p);
-    int mOptimal = (blockSize - n) / (n + 1);
-    if (mOptimal <= 0) {
-      mOptimal = 1;
-    }
-    int blocks = m / mOptimal;
-    if (m % mOptimal != 0) {
-      blocks++;
-    }
-    int rr = 0;
-    while (--blocks >= 0) {
-      int jB = BB.index(0, 0);
-      int indexA = index(rr, 0);
-      int jC = CC.index(rr, 0);
-      rr += mOptimal;
-      if (blocks == 0) {
-        mOptimal += m - rr;
-      }
-
+    for (int i = rowFrom; i < rowTo; i++) {
+      int iC = CC.index(i, 0);
       for (int j = p; --j >= 0;) {
-        int iA = indexA;
-        int iC = jC;
-        for (int i = mOptimal; --i >= 0;) {
-          int kA = iA;
-          int kB = jB;
-
-          /*
-          // not unrolled:
-          for (int k = n; --k >= 0; ) {
-            //s += getQuick(i,k) * B.getQuick(k,j);
-            s += AElems[kA] * BElems[kB];
-            kB += rB;
-            kA += cA;
-          }
-          */
-
-          // loop unrolled
-          kA -= cA;
-          kB -= rB;
+        CElems[iC] *= beta;
+        iC += cC;
+      }
+    }
 
-          double s = 0;
-          for (int k = n % 4; --k >= 0;) {
-            s += AElems[kA += cA] * BElems[kB += rB];
-          }
-          for (int k = n / 4; --k >= 0;) {
-            s += AElems[kA += cA] * BElems[kB += rB]
-                + AElems[kA += cA] * BElems[kB += rB] 
-                + AElems[kA += cA] * BElems[kB += rB]
-                + AElems[kA += cA] * BElems[kB += rB];
+    for (int kk = 0; kk < n; kk += BLOCK_INNER) {
+      int kEnd = Math.min(kk + BLOCK_INNER, n);
+      for (int jj = 0; jj < p; jj += BLOCK_COLUMNS) {
+        int jCount = Math.min(jj + BLOCK_COLUMNS, p) - jj;
+        for (int i = rowFrom; i < rowTo; i++) {
+          int iA = index(i, kk);
+          int iC = CC.index(i, jj);
+          for (int k = kk; k < kEnd; k++, iA += cA) {
+            double a = AElems[iA];
+            if (a == 0 && skipZeros) {
+              continue;
+            }
+            a *= alpha;
+
+            int kB = BB.index(k, jj);
+            int kC = iC;
+            for (int j = jCount; --j >= 0;) {
+              CElems[kC] += a * BElems[kB];
+              kB += cB;
+              kC += cC;
+            }
           }
-
-          CElems[iC] = alpha * s + beta * CElems[iC];
-          iA += rA;
-          iC += rC;
         }
-        jB += cB;
-        jC += cC;
       }
     }
-    return C;
+  }
+
+  /** Inner dimension tile: a block of BLOCK_INNER rows of B stays in cache. */
+  private static final int BLOCK_INNER = 128;
+
+  /** Column tile of B and C. */
+  private static final int BLOCK_COLUMNS = 256;
+
+  /*
+   * Recursively splits the rows of the result matrix into blocks. Each row is
+   * computed by exactly one task, so the result does not depend on scheduling.
+   */
+  private static final class RowBlockMultiplication extends RecursiveAction {
+    private final DenseDoubleMatrix2D A;
+    private final DenseDoubleMatrix2D B;
+    private final DenseDoubleMatrix2D C;
+    private final double alpha;
+    private final double beta;
+    private final boolean skipZeros;
+    private final int rowFrom;
+    private final int rowTo;
+    private final int minRows;
+
+    RowBlockMultiplication(DenseDoubleMatrix2D A, DenseDoubleMatrix2D B, DenseDoubleMatrix2D C,
+                           double alpha, double beta, boolean skipZeros, int rowFrom, int rowTo,
+                           int minRows) {
+      this.A = A;
+      this.B = B;
+      this.C = C;
+      this.alpha = alpha;
+      this.beta = beta;
+      this.skipZeros = skipZeros;
+      this.rowFrom = rowFrom;
+      this.rowTo = rowTo;
+      this.minRows = minRows;
+    }
+
+    @Override
+    protected void compute() {
+      if (rowTo - rowFrom <= minRows) {
+        A.multiplyRows(B, C, alpha, beta, skipZeros, rowFrom, rowTo);
+      } else {
+        int middle = (rowFrom + rowTo) >>> 1;
+        invokeAll(new RowBlockMultiplication(A, B, C, alpha, beta, skipZeros, rowFrom, middle, minRows),
+            new RowBlockMultiplication(A, B, C, alpha, beta, skipZeros, middle, rowTo, minRows));
+      }
+    }
   }
 
   
@@ -0,0 +1,235 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.matrix;
+
+import org.carrot2.mahout.math.function.IntIntDoubleFunction;
+import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
+
+/**
+ * An immutable, compressed sparse row (CSR) snapshot of a {@link DoubleMatrix2D}. Non-zero
+ * elements of each row are stored contiguously, ordered by column index, which makes
+ * products with dense matrices cost <code>O(nnz * k)</code> instead of
+ * <code>O(rows * columns * k)</code>.
+ */
+public final class CompressedSparseRowMatrix
+{
+    /** Number of rows */
+    private final int rows;
+
+    /** Number of columns */
+    private final int columns;
+
+    /**
+     * Non-zero elements of row <code>r</code> are stored at indices
+     * <code>[rowPointers[r], rowPointers[r + 1])</code> of {@link #columnIndices} and
+     * {@link #values}.
+     */
+    public final int [] rowPointers;
+
+    /** Column indices of non-zero elements */
+    public final int [] columnIndices;
+
+    /** Values of non-zero elements */
+    public final double [] values;
+
+    private CompressedSparseRowMatrix(int rows, int columns, int [] rowPointers,
+        int [] columnIndices, double [] values)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+
+    /**
+     * Creates a compressed copy of <code>A</code>. Later changes to <code>A</code> are
+     * not reflected in the copy.
+     */
+    public static CompressedSparseRowMatrix create(DoubleMatrix2D A)
+    {
+        final int rows = A.rows();
+        final int columns = A.columns();
+
+        // Count non-zero elements in each row
+        final int [] rowPointers = new int [rows + 1];
+        A.forEachNonZero(new IntIntDoubleFunction()
+        {
+            public double apply(int row, int column, double value)
+            {
+                rowPointers[row + 1]++;
+                return value;
+            }
+        });
+        for (int r = 0; r < rows; r++)
+        {
+            rowPointers[r + 1] += rowPointers[r];
+        }
+
+        // Distribute elements to their rows
+        final int nonZeros = rowPointers[rows];
+        final int [] columnIndices = new int [nonZeros];
+        final double [] values = new double [nonZeros];
+        final int [] fill = new int [rows];
+        A.forEachNonZero(new IntIntDoubleFunction()
+        {
+            public double apply(int row, int column, double value)
+            {
+                final int index = rowPointers[row] + fill[row]++;
+                columnIndices[index] = column;
+                values[index] = value;
+                return value;
+            }
+        });
+
+        // Order elements of each row by column. Rows are short, insertion sort will do.
+        for (int r = 0; r < rows; r++)
+        {
+            final int start = rowPointers[r];
+            final int end = rowPointers[r + 1];
+            for (int i = start + 1; i < end; i++)
+            {
+                final int column = columnIndices[i];
+                final double value = values[i];
+                int j = i - 1;
+                while (j >= start && columnIndices[j] > column)
+                {
+                    columnIndices[j + 1] = columnIndices[j];
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                columnIndices[j + 1] = column;
+                values[j + 1] = value;
+            }
+        }
+
+        return new CompressedSparseRowMatrix(rows, columns, rowPointers, columnIndices,
+            values);
+    }
+
+    /**
+     * Returns a compressed copy of <code>A</code> if the fraction of its non-zero
+     * elements does not exceed <code>maxDensity</code>, or <code>null</code> otherwise.
+     */
+    public static CompressedSparseRowMatrix createIfSparse(DoubleMatrix2D A,
+        double maxDensity)
+    {
+        final long size = (long) A.rows() * A.columns();
+        if (size == 0 || A.cardinality() > maxDensity * size)
+        {
+            return null;
+        }
+        return create(A);
+    }
+
+    public int rows()
+    {
+        return rows;
+    }
+
+    public int columns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns the number of non-zero elements.
+     */
+    public int nonZeros()
+    {
+        return rowPointers[rows];
+    }
+
+    /**
+     * Computes <code>C = A * B</code> or, if <code>transposeA</code> is
+     * <code>true</code>, <code>C = A' * B</code>, where <code>A</code> is this matrix.
+     * The previous content of <code>C</code> is overwritten.
+     *
+     * @return C (for convenience only)
+     */
+    public DoubleMatrix2D zMult(DoubleMatrix2D B, DoubleMatrix2D C, boolean transposeA)
+    {
+        final int k = B.columns();
+        final int innerSize = transposeA ? rows : columns;
+        final int outerSize = transposeA ? columns : rows;
+        if (B.rows() != innerSize)
+        {
+            throw new IllegalArgumentException("Matrix inner dimensions must agree");
+        }
+        if (C.rows() != outerSize || C.columns() != k)
+        {
+            throw new IllegalArgumentException("Incompatible result matrix");
+        }
+
+        if (transposeA)
+        {
+            // C[j, :] += A[r, j] * B[r, :]
+            final double [][] c = new double [columns][k];
+            final double [] b = new double [k];
+            for (int r = 0; r < rows; r++)
+            {
+                final int end = rowPointers[r + 1];
+                if (rowPointers[r] == end)
+                {
+                    continue;
+                }
+
+                for (int i = 0; i < k; i++)
+                {
+                    b[i] = B.getQuick(r, i);
+                }
+                for (int p = rowPointers[r]; p < end; p++)
+                {
+                    final double [] cRow = c[columnIndices[p]];
+                    final double a = values[p];
+                    for (int i = 0; i < k; i++)
+                    {
+                        cRow[i] += a * b[i];
+                    }
+                }
+            }
+            C.assign(c);
+        }
+        else
+        {
+            // C[r, :] = sum(A[r, j] * B[j, :])
+            final double [][] b = B.toArray();
+            final double [] c = new double [k];
+            for (int r = 0; r < rows; r++)
+            {
+                for (int i = 0; i < k; i++)
+                {
+                    c[i] = 0;
+                }
+
+                final int end = rowPointers[r + 1];
+                for (int p = rowPointers[r]; p < end; p++)
+                {
+                    final double [] bRow = b[columnIndices[p]];
+                    final double a = values[p];
+                    for (int i = 0; i < k; i++)
+                    {
+                        c[i] += a * bRow[i];
+                    }
+                }
+
+                for (int i = 0; i < k; i++)
+                {
+                    C.setQuick(r, i, c[i]);
+                }
+            }
+        }
+
+        return C;
+    }
+}
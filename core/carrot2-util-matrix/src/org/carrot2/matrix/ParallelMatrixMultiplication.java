@@ -0,0 +1,104 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.matrix;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+
+/**
+ * Enables parallel multiplication of large dense matrices on the current thread. While
+ * enabled, {@link DenseDoubleMatrix2D#zMult} splits products requiring at least a
+ * given number of multiply-add operations into row blocks computed on a
+ * {@link ForkJoinPool}. Smaller products are always computed on the calling thread.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ * ParallelMatrixMultiplication.enable(pool);
+ * try
+ * {
+ *     // matrix computations
+ * }
+ * finally
+ * {
+ *     ParallelMatrixMultiplication.disable();
+ * }
+ * </pre>
+ */
+public final class ParallelMatrixMultiplication
+{
+    /**
+     * The default minimum number of multiply-add operations for which a product will be
+     * computed in parallel.
+     */
+    public static final long DEFAULT_MIN_PARALLEL_OPERATIONS = 1L << 21;
+
+    /** Settings of the current thread, <code>null</code> if disabled */
+    private static final ThreadLocal<ParallelMatrixMultiplication> current = new ThreadLocal<ParallelMatrixMultiplication>();
+
+    private final ForkJoinPool pool;
+    private final long minParallelOperations;
+
+    private ParallelMatrixMultiplication(ForkJoinPool pool, long minParallelOperations)
+    {
+        this.pool = pool;
+        this.minParallelOperations = minParallelOperations;
+    }
+
+    /**
+     * Enables parallel multiplication on the current thread with the
+     * {@link #DEFAULT_MIN_PARALLEL_OPERATIONS} threshold.
+     */
+    public static void enable(ForkJoinPool pool)
+    {
+        enable(pool, DEFAULT_MIN_PARALLEL_OPERATIONS);
+    }
+
+    /**
+     * Enables parallel multiplication on the current thread for products requiring at
+     * least <code>minParallelOperations</code> multiply-add operations.
+     */
+    public static void enable(ForkJoinPool pool, long minParallelOperations)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        current.set(new ParallelMatrixMultiplication(pool, minParallelOperations));
+    }
+
+    /**
+     * Disables parallel multiplication on the current thread.
+     */
+    public static void disable()
+    {
+        current.remove();
+    }
+
+    /**
+     * Returns the pool to use for a product requiring <code>operations</code>
+     * multiply-add operations or <code>null</code> if the product should be computed on
+     * the calling thread.
+     */
+    public static ForkJoinPool getPool(long operations)
+    {
+        final ParallelMatrixMultiplication settings = current.get();
+        if (settings == null || operations < settings.minParallelOperations
+            || settings.pool.getParallelism() < 2)
+        {
+            return null;
+        }
+        return settings.pool;
+    }
+}
@@ -14,6 +14,7 @@ package org.carrot2.matrix.factorization;
 
 import org.carrot2.mahout.math.function.Functions;
 import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
+import org.carrot2.matrix.CompressedSparseRowMatrix;
 import org.carrot2.matrix.MatrixUtils;
 import org.carrot2.matrix.factorization.seeding.ISeedingStrategy;
 import org.carrot2.matrix.factorization.seeding.RandomSeedingStrategy;
@@ -53,6 +54,14 @@ abstract class IterativeMatrixFactorizationBase extends MatrixFactorizationBase
     protected boolean ordered;
     protected static final boolean DEFAULT_ORDERED = false;
 
+    /**
+     * If the fraction of non-zero elements of A does not exceed this threshold, products
+     * involving A will be computed on a compressed sparse copy of A. Set to a negative
+     * value to always use dense products.
+     */
+    protected double sparseDensityThreshold;
+    protected static final double DEFAULT_SPARSE_DENSITY_THRESHOLD = 0.3;
+
     /** Current approximation error */
     protected double approximationError;
 
@@ -76,6 +85,7 @@ abstract class IterativeMatrixFactorizationBase extends MatrixFactorizationBase
         this.stopThreshold = DEFAULT_STOP_THRESHOLD;
         this.seedingStrategy = DEFAULT_SEEDING_STRATEGY;
         this.ordered = DEFAULT_ORDERED;
+        this.sparseDensityThreshold = DEFAULT_SPARSE_DENSITY_THRESHOLD;
         this.approximationErrors = null;
         this.approximationError = -1;
         this.iterationsCompleted = 0;
@@ -127,6 +137,129 @@ abstract class IterativeMatrixFactorizationBase extends MatrixFactorizationBase
         }
     }
 
+    /**
+     * Returns a compressed sparse copy of A if A is sparse enough for sparse products to
+     * pay off, <code>null</code> otherwise.
+     */
+    protected CompressedSparseRowMatrix compressIfSparse()
+    {
+        if (sparseDensityThreshold < 0)
+        {
+            return null;
+        }
+        return CompressedSparseRowMatrix.createIfSparse(A, sparseDensityThreshold);
+    }
+
+    /**
+     * Computes <code>C = A * B</code> or <code>C = A' * B</code>, using the compressed
+     * sparse copy of A if available.
+     */
+    protected void multiplyA(CompressedSparseRowMatrix sparseA, DoubleMatrix2D B,
+        DoubleMatrix2D C, boolean transposeA)
+    {
+        if (sparseA != null)
+        {
+            sparseA.zMult(B, C, transposeA);
+        }
+        else
+        {
+            A.zMult(B, C, 1, 0, transposeA, false);
+        }
+    }
+
+    /**
+     * Performs the multiplicative update <code>X = X .* ((N + eps) ./ (D + eps))</code>
+     * in a single pass over the matrices.
+     */
+    protected static void multiplicativeUpdate(DoubleMatrix2D X, DoubleMatrix2D N,
+        DoubleMatrix2D D, double eps)
+    {
+        final int rows = X.rows();
+        final int columns = X.columns();
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                X.setQuick(r, c, X.getQuick(r, c)
+                    * ((N.getQuick(r, c) + eps) / (D.getQuick(r, c) + eps)));
+            }
+        }
+    }
+
+    /**
+     * Computes the multiplicative update factors of the divergence-based NMF variants
+     * without materializing the m x n matrix <code>R = (A + eps) ./ (UV' + eps)</code>.
+     * If <code>transpose</code> is <code>true</code>, <code>C = R' * U</code>, otherwise
+     * <code>C = R * V</code>. Elements of A are read from <code>sparseA</code>, if
+     * provided.
+     */
+    protected void divergenceUpdateFactors(CompressedSparseRowMatrix sparseA,
+        DoubleMatrix2D U, DoubleMatrix2D V, DoubleMatrix2D C, double eps,
+        boolean transpose)
+    {
+        final int m = U.rows();
+        final int n = V.rows();
+        final int k = U.columns();
+        final double [][] u = U.toArray();
+        final double [][] v = V.toArray();
+        final double [][] c = new double [transpose ? n : m] [k];
+
+        for (int i = 0; i < m; i++)
+        {
+            final double [] uRow = u[i];
+            int p = sparseA != null ? sparseA.rowPointers[i] : 0;
+            final int end = sparseA != null ? sparseA.rowPointers[i + 1] : 0;
+
+            for (int j = 0; j < n; j++)
+            {
+                final double [] vRow = v[j];
+
+                double a;
+                if (sparseA != null)
+                {
+                    if (p < end && sparseA.columnIndices[p] == j)
+                    {
+                        a = sparseA.values[p++];
+                    }
+                    else
+                    {
+                        a = 0;
+                    }
+                }
+                else
+                {
+                    a = A.getQuick(i, j);
+                }
+
+                double uv = 0;
+                for (int l = 0; l < k; l++)
+                {
+                    uv += uRow[l] * vRow[l];
+                }
+                final double r = (a + eps) / (uv + eps);
+
+                if (transpose)
+                {
+                    final double [] cRow = c[j];
+                    for (int l = 0; l < k; l++)
+                    {
+                        cRow[l] += r * uRow[l];
+                    }
+                }
+                else
+                {
+                    final double [] cRow = c[i];
+                    for (int l = 0; l < k; l++)
+                    {
+                        cRow[l] += r * vRow[l];
+                    }
+                }
+            }
+        }
+
+        C.assign(c);
+    }
+
     /**
      * Orders U and V matrices according to the 'activity' of base vectors.
      */
@@ -221,6 +354,24 @@ abstract class IterativeMatrixFactorizationBase extends MatrixFactorizationBase
         return iterationsCompleted;
     }
 
+    /**
+     * Returns the maximum density of A for which sparse products will be used.
+     */
+    public double getSparseDensityThreshold()
+    {
+        return sparseDensityThreshold;
+    }
+
+    /**
+     * Sets the maximum density (fraction of non-zero elements) of A for which products
+     * involving A will be computed on a compressed sparse copy of A. Set to a negative
+     * value to always use dense products.
+     */
+    public void setSparseDensityThreshold(double sparseDensityThreshold)
+    {
+        this.sparseDensityThreshold = sparseDensityThreshold;
+    }
+
     /**
      * Returns <code>true</code> when the factorization is set to generate an ordered
      * basis.
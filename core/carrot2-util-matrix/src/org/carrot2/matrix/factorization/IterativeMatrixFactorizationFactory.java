@@ -51,6 +51,10 @@ public abstract class IterativeMatrixFactorizationFactory implements
     protected boolean ordered;
     protected static final boolean DEFAULT_ORDERED = true;
 
+    /** Maximum density of the input matrix for which sparse products will be used */
+    protected double sparseDensityThreshold;
+    protected static final double DEFAULT_SPARSE_DENSITY_THRESHOLD = 0.3;
+
     public IterativeMatrixFactorizationFactory()
     {
         this.k = DEFAULT_K;
@@ -58,6 +62,7 @@ public abstract class IterativeMatrixFactorizationFactory implements
         this.stopThreshold = DEFAULT_STOP_THRESHOLD;
         this.seedingFactory = DEFAULT_SEEDING_FACTORY;
         this.ordered = DEFAULT_ORDERED;
+        this.sparseDensityThreshold = DEFAULT_SPARSE_DENSITY_THRESHOLD;
     }
 
     /**
@@ -149,4 +154,23 @@ public abstract class IterativeMatrixFactorizationFactory implements
     {
         this.ordered = ordered;
     }
+
+    /**
+     * Returns the maximum density of the input matrix for which sparse products will be
+     * used.
+     */
+    public double getSparseDensityThreshold()
+    {
+        return sparseDensityThreshold;
+    }
+
+    /**
+     * Sets the maximum density (fraction of non-zero elements) of the input matrix for
+     * which sparse products will be used. Set to a negative value to always use dense
+     * products.
+     */
+    public void setSparseDensityThreshold(double sparseDensityThreshold)
+    {
+        this.sparseDensityThreshold = sparseDensityThreshold;
+    }
 }
@@ -16,6 +16,7 @@ import org.carrot2.mahout.math.function.Functions;
 import org.carrot2.mahout.math.function.Mult;
 import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
 import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+import org.carrot2.matrix.CompressedSparseRowMatrix;
 import org.carrot2.matrix.MatrixUtils;
 
 /**
@@ -50,13 +51,23 @@ public class KMeansMatrixFactorization extends IterativeMatrixFactorizationBase
         U = new DenseDoubleMatrix2D(A.rows(), k);
         U.assign(A.viewPart(0, 0, A.rows(), k));
 
+        // Term-document matrices are mostly zeros, sparse products are much faster
+        final CompressedSparseRowMatrix sparseA = compressIfSparse();
+
         int [] minIndices = new int [D.columns()];
         double [] minValues = new double [D.columns()];
 
         for (iterationsCompleted = 0; iterationsCompleted < maxIterations; iterationsCompleted++)
         {
             // Calculate cosine distances
-            U.zMult(A, D, 1, 0, true, false);
+            if (sparseA != null)
+            {
+                sparseA.zMult(U, D.viewDice(), true);
+            }
+            else
+            {
+                U.zMult(A, D, 1, 0, true, false);
+            }
 
             V.assign(0);
             U.assign(0);
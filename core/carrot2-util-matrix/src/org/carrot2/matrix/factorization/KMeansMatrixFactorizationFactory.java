@@ -25,6 +25,7 @@ public class KMeansMatrixFactorizationFactory extends IterativeMatrixFactorizati
         factorization.setK(k);
         factorization.setMaxIterations(maxIterations);
         factorization.setStopThreshold(stopThreshold);
+        factorization.setSparseDensityThreshold(sparseDensityThreshold);
 
         factorization.compute();
 
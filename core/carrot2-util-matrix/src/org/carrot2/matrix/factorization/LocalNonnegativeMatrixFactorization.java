@@ -13,10 +13,10 @@
 package org.carrot2.matrix.factorization;
 
 import org.carrot2.mahout.math.function.DoubleDoubleFunction;
-import org.carrot2.mahout.math.function.DoubleFunction;
 import org.carrot2.mahout.math.function.Functions;
 import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
 import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+import org.carrot2.matrix.CompressedSparseRowMatrix;
 import org.carrot2.matrix.MatrixUtils;
 
 /**
@@ -67,17 +67,15 @@ public class LocalNonnegativeMatrixFactorization extends IterativeMatrixFactoriz
         seedingStrategy.seed(A, U, V);
 
         // Temporary matrices
-        DoubleMatrix2D Aeps = A.copy();
-        Aeps.assign(Functions.plus(eps));
-        DoubleMatrix2D UV = new DenseDoubleMatrix2D(A.rows(), A.columns());
         DoubleMatrix2D VT = new DenseDoubleMatrix2D(A.columns(), k);
         DoubleMatrix2D UT = new DenseDoubleMatrix2D(A.rows(), k);
         double [] work = new double [U.columns()];
 
         // Colt functions
-        DoubleDoubleFunction invDiv = Functions.swapArgs(Functions.DIV);
         DoubleDoubleFunction sqrtMult = Functions.chain(Functions.SQRT, Functions.MULT);
-        DoubleFunction plusEps = Functions.plus(eps);
+
+        // Term-document matrices are mostly zeros, read A from a sparse copy
+        final CompressedSparseRowMatrix sparseA = compressIfSparse();
 
         if (stopThreshold >= 0)
         {
@@ -87,17 +85,11 @@ public class LocalNonnegativeMatrixFactorization extends IterativeMatrixFactoriz
         for (int i = 0; i < maxIterations; i++)
         {
             // Update V
-            U.zMult(V, UV, 1, 0, false, true); // UV <- U*V'
-            UV.assign(plusEps); // UV <- UV + eps
-            UV.assign(Aeps, invDiv); // UV <- Aeps ./ UV
-            UV.zMult(U, VT, 1, 0, true, false); // VT <- UV' * U
+            divergenceUpdateFactors(sparseA, U, V, VT, eps, true); // VT <- ((A + eps) ./ (UV' + eps))' * U
             V.assign(VT, sqrtMult); // V <- sqrt(V .* VT)
 
             // Update U
-            U.zMult(V, UV, 1, 0, false, true); // UV <- U*V'
-            UV.assign(plusEps); // UV <- UV + eps
-            UV.assign(Aeps, invDiv); // UV <- Aeps ./ UV
-            UV.zMult(V, UT, 1, 0, false, false); // UT <- UV * V
+            divergenceUpdateFactors(sparseA, U, V, UT, eps, false); // UT <- ((A + eps) ./ (UV' + eps)) * V
             U.assign(UT, Functions.MULT); // U <- U .* UT
 
             MatrixUtils.normalizeColumnL1(U, work);
@@ -27,6 +27,7 @@ public class LocalNonnegativeMatrixFactorizationFactory extends
         factorization.setK(k);
         factorization.setMaxIterations(maxIterations);
         factorization.setStopThreshold(stopThreshold);
+        factorization.setSparseDensityThreshold(sparseDensityThreshold);
         factorization.setSeedingStrategy(createSeedingStrategy());
         factorization.setOrdered(ordered);
 
@@ -12,10 +12,9 @@
 
 package org.carrot2.matrix.factorization;
 
-import org.carrot2.mahout.math.function.DoubleFunction;
-import org.carrot2.mahout.math.function.Functions;
 import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
 import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+import org.carrot2.matrix.CompressedSparseRowMatrix;
 
 /**
  * Performs matrix factorization using the Non-negative Matrix Factorization algorithm
@@ -66,7 +65,9 @@ public class NonnegativeMatrixFactorizationED extends IterativeMatrixFactorizati
         DoubleMatrix2D UT2 = new DenseDoubleMatrix2D(A.rows(), k);
         DoubleMatrix2D VT1 = new DenseDoubleMatrix2D(A.columns(), k);
         DoubleMatrix2D VT2 = new DenseDoubleMatrix2D(A.columns(), k);
-        DoubleFunction plusEps = Functions.plus(eps);
+
+        // Term-document matrices are mostly zeros, sparse products are much faster
+        final CompressedSparseRowMatrix sparseA = compressIfSparse();
 
         if (stopThreshold >= 0)
         {
@@ -77,21 +78,15 @@ public class NonnegativeMatrixFactorizationED extends IterativeMatrixFactorizati
         {
             // Update V
             U.zMult(U, T, 1, 0, true, false); // T <- U'U
-            A.zMult(U, VT1, 1, 0, true, false); // VT1 <- A'U
+            multiplyA(sparseA, U, VT1, true); // VT1 <- A'U
             V.zMult(T, VT2, 1, 0, false, false); // VT2 <- VT
-            VT1.assign(plusEps); // TODO: shift this to the dividing function?
-            VT2.assign(plusEps);
-            VT1.assign(VT2, Functions.DIV); // VT1 <- VT1 ./ VT2
-            V.assign(VT1, Functions.MULT); // V <- V .* VT1
+            multiplicativeUpdate(V, VT1, VT2, eps); // V <- V .* (VT1 + eps) ./ (VT2 + eps)
 
             // Update U
             V.zMult(V, T, 1, 0, true, false); // T <- V'V
-            A.zMult(V, UT1, 1, 0, false, false); // UT1 <- AV
+            multiplyA(sparseA, V, UT1, false); // UT1 <- AV
             U.zMult(T, UT2, 1, 0, false, false); // UT2 <- UT
-            UT1.assign(plusEps);
-            UT2.assign(plusEps);
-            UT1.assign(UT2, Functions.DIV); // UT1 <- UT1 ./ UT2
-            U.assign(UT1, Functions.MULT); // U <- U .* UT1
+            multiplicativeUpdate(U, UT1, UT2, eps); // U <- U .* (UT1 + eps) ./ (UT2 + eps)
 
             iterationsCompleted++;
             if (stopThreshold >= 0)
@@ -12,11 +12,10 @@
 
 package org.carrot2.matrix.factorization;
 
-import org.carrot2.mahout.math.function.DoubleDoubleFunction;
-import org.carrot2.mahout.math.function.DoubleFunction;
 import org.carrot2.mahout.math.function.Functions;
 import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
 import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+import org.carrot2.matrix.CompressedSparseRowMatrix;
 import org.carrot2.matrix.MatrixUtils;
 
 /**
@@ -68,16 +67,12 @@ public class NonnegativeMatrixFactorizationKL extends IterativeMatrixFactorizati
         seedingStrategy.seed(A, U, V);
 
         // Temporary matrices
-        DoubleMatrix2D Aeps = A.copy();
-        Aeps.assign(Functions.plus(eps));
-        DoubleMatrix2D UV = new DenseDoubleMatrix2D(m, n);
         DoubleMatrix2D VT = new DenseDoubleMatrix2D(n, k);
         DoubleMatrix2D UT = new DenseDoubleMatrix2D(m, k);
         double [] work = new double [U.columns()];
 
-        // Colt functions
-        DoubleDoubleFunction invDiv = Functions.swapArgs(Functions.DIV);
-        DoubleFunction plusEps = Functions.plus(eps);
+        // Term-document matrices are mostly zeros, read A from a sparse copy
+        final CompressedSparseRowMatrix sparseA = compressIfSparse();
 
         if (stopThreshold >= 0)
         {
@@ -87,17 +82,11 @@ public class NonnegativeMatrixFactorizationKL extends IterativeMatrixFactorizati
         for (int i = 0; i < maxIterations; i++)
         {
             // Update V
-            U.zMult(V, UV, 1, 0, false, true); // UV <- U*V'
-            UV.assign(plusEps); // UV <- UV + eps
-            UV.assign(Aeps, invDiv); // UV <- Aeps ./ UV
-            UV.zMult(U, VT, 1, 0, true, false); // VT <- UV' * U
+            divergenceUpdateFactors(sparseA, U, V, VT, eps, true); // VT <- ((A + eps) ./ (UV' + eps))' * U
             V.assign(VT, Functions.MULT); // V <- V .* VT
 
             // Update U
-            U.zMult(V, UV, 1, 0, false, true); // UV <- U*V'
-            UV.assign(plusEps); // UV <- UV + eps
-            UV.assign(Aeps, invDiv); // UV <- Aeps ./ UV
-            UV.zMult(V, UT, 1, 0, false, false); // UT <- UV * V
+            divergenceUpdateFactors(sparseA, U, V, UT, eps, false); // UT <- ((A + eps) ./ (UV' + eps)) * V
             U.assign(UT, Functions.MULT); // U <- U .* UT
 
             MatrixUtils.normalizeColumnL1(U, work);
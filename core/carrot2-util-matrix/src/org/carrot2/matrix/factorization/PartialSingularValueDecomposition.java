@@ -75,7 +75,7 @@ public class PartialSingularValueDecomposition extends MatrixFactorizationBase i
         }
     }
 
-    private static DenseDoubleMatrix2D toColtMatrix(Matrix m)
+    static DenseDoubleMatrix2D toColtMatrix(Matrix m)
     {
         DenseDoubleMatrix2D result = new DenseDoubleMatrix2D(m.rowSize(), m.columnSize());
         for (int r = 0; r < result.rows(); r++)
@@ -0,0 +1,301 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.matrix.factorization;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.carrot2.mahout.math.DenseMatrix;
+import org.carrot2.mahout.math.SingularValueDecomposition;
+import org.carrot2.mahout.math.matrix.DoubleMatrix2D;
+import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
+
+/**
+ * Computes a truncated Singular Value Decomposition of a matrix using randomized range
+ * finding (Halko, Martinsson, Tropp). Only the top <i>k</i> singular triplets are
+ * computed. The input matrix is only accessed through matrix products, so for sparse
+ * matrices the cost is proportional to the number of non-zero elements times
+ * <i>k</i>.
+ * <p>
+ * The signs of singular vectors are normalized so that the largest (by absolute value)
+ * element of each column of <i>U</i> is positive.
+ */
+public class RandomizedSingularValueDecomposition extends MatrixFactorizationBase
+{
+    /** The desired number of base vectors */
+    protected int k;
+
+    /** The default number of desired base vectors */
+    protected static final int DEFAULT_K = -1;
+
+    /** The number of additional random projections used to improve accuracy */
+    protected int oversampling;
+
+    /** The default oversampling */
+    protected static final int DEFAULT_OVERSAMPLING = 10;
+
+    /** The number of power (subspace) iterations */
+    protected int powerIterations;
+
+    /** The default number of power iterations */
+    protected static final int DEFAULT_POWER_ITERATIONS = 2;
+
+    /** Seed for the random projection matrix */
+    protected long seed;
+
+    /** The default random seed */
+    protected static final long DEFAULT_SEED = 0;
+
+    /** Singular values */
+    private double [] S;
+
+    /**
+     * Computes a truncated SVD of a matrix. Before accessing results, perform
+     * computations by calling the {@link #compute()} method.
+     *
+     * @param A matrix to be factorized
+     */
+    public RandomizedSingularValueDecomposition(DoubleMatrix2D A)
+    {
+        super(A);
+
+        this.k = DEFAULT_K;
+        this.oversampling = DEFAULT_OVERSAMPLING;
+        this.powerIterations = DEFAULT_POWER_ITERATIONS;
+        this.seed = DEFAULT_SEED;
+    }
+
+    public void compute()
+    {
+        final int m = A.rows();
+        final int n = A.columns();
+        final int rank = Math.min(m, n);
+        final int targetK = (k > 0 && k < rank) ? k : rank;
+        final int l = Math.min(targetK + Math.max(oversampling, 0), rank);
+
+        // Random projection of the column space of A: Y <- A * Omega
+        final Random random = new Random(seed);
+        final DoubleMatrix2D omega = new DenseDoubleMatrix2D(n, l);
+        for (int r = 0; r < n; r++)
+        {
+            for (int c = 0; c < l; c++)
+            {
+                omega.setQuick(r, c, random.nextGaussian());
+            }
+        }
+
+        DoubleMatrix2D Q = A.zMult(omega, new DenseDoubleMatrix2D(m, l), 1, 0, false,
+            false);
+        orthonormalizeColumns(Q);
+
+        // Power iterations sharpen the decay of the spectrum
+        final DoubleMatrix2D Z = new DenseDoubleMatrix2D(n, l);
+        for (int i = 0; i < powerIterations; i++)
+        {
+            A.zMult(Q, Z, 1, 0, true, false); // Z <- A'Q
+            orthonormalizeColumns(Z);
+            A.zMult(Z, Q, 1, 0, false, false); // Q <- AZ
+            orthonormalizeColumns(Q);
+        }
+
+        // Project A onto the range basis: Bt = (Q'A)' = A'Q, an n x l matrix
+        A.zMult(Q, Z, 1, 0, true, false);
+
+        // Bt = Ub * S * Vb' => A ~ Q * Vb * S * Ub'
+        final SingularValueDecomposition svd = new SingularValueDecomposition(
+            new DenseMatrix(Z.toArray()));
+        final DoubleMatrix2D Vb = PartialSingularValueDecomposition.toColtMatrix(svd
+            .getV());
+        final DoubleMatrix2D Ub = PartialSingularValueDecomposition.toColtMatrix(svd
+            .getU());
+
+        U = Q.zMult(Vb, null, 1, 0, false, false);
+        V = Ub;
+        S = svd.getSingularValues();
+
+        if (targetK < S.length)
+        {
+            U = U.viewPart(0, 0, U.rows(), targetK).copy();
+            V = V.viewPart(0, 0, V.rows(), targetK).copy();
+            S = Arrays.copyOf(S, targetK);
+        }
+
+        normalizeSigns(U, V);
+    }
+
+    /**
+     * Orthonormalizes columns of <code>M</code> in place using the modified
+     * Gram-Schmidt process, repeated twice for numerical stability. Columns that turn out
+     * to be linearly dependent on the preceding ones are set to zero.
+     */
+    static void orthonormalizeColumns(DoubleMatrix2D M)
+    {
+        final int rows = M.rows();
+        final int columns = M.columns();
+
+        for (int c = 0; c < columns; c++)
+        {
+            double originalNorm = 0;
+            for (int r = 0; r < rows; r++)
+            {
+                final double v = M.getQuick(r, c);
+                originalNorm += v * v;
+            }
+            originalNorm = Math.sqrt(originalNorm);
+
+            for (int pass = 0; pass < 2; pass++)
+            {
+                for (int p = 0; p < c; p++)
+                {
+                    double dot = 0;
+                    for (int r = 0; r < rows; r++)
+                    {
+                        dot += M.getQuick(r, p) * M.getQuick(r, c);
+                    }
+                    if (dot != 0)
+                    {
+                        for (int r = 0; r < rows; r++)
+                        {
+                            M.setQuick(r, c, M.getQuick(r, c) - dot * M.getQuick(r, p));
+                        }
+                    }
+                }
+            }
+
+            double norm = 0;
+            for (int r = 0; r < rows; r++)
+            {
+                final double v = M.getQuick(r, c);
+                norm += v * v;
+            }
+            norm = Math.sqrt(norm);
+
+            final double scale = (norm > 1e-10 * originalNorm && norm > 0) ? 1 / norm : 0;
+            for (int r = 0; r < rows; r++)
+            {
+                M.setQuick(r, c, M.getQuick(r, c) * scale);
+            }
+        }
+    }
+
+    /**
+     * Flips signs of corresponding columns of <code>U</code> and <code>V</code> so that
+     * the largest absolute element of each column of <code>U</code> is positive.
+     */
+    static void normalizeSigns(DoubleMatrix2D U, DoubleMatrix2D V)
+    {
+        for (int c = 0; c < U.columns(); c++)
+        {
+            double max = 0;
+            for (int r = 0; r < U.rows(); r++)
+            {
+                final double v = U.getQuick(r, c);
+                if (Math.abs(v) > Math.abs(max))
+                {
+                    max = v;
+                }
+            }
+
+            if (max < 0)
+            {
+                for (int r = 0; r < U.rows(); r++)
+                {
+                    U.setQuick(r, c, -U.getQuick(r, c));
+                }
+                for (int r = 0; r < V.rows(); r++)
+                {
+                    V.setQuick(r, c, -V.getQuick(r, c));
+                }
+            }
+        }
+    }
+
+    public String toString()
+    {
+        return "RSVD";
+    }
+
+    /**
+     * Returns singular values of the matrix.
+     */
+    public double [] getSingularValues()
+    {
+        return S;
+    }
+
+    /**
+     * Sets the number of base vectors <i>k </i>.
+     *
+     * @param k the number of base vectors
+     */
+    public void setK(int k)
+    {
+        this.k = k;
+    }
+
+    /**
+     * Returns the number of base vectors <i>k </i>.
+     */
+    public int getK()
+    {
+        return k;
+    }
+
+    /**
+     * Sets the number of additional random projections.
+     */
+    public void setOversampling(int oversampling)
+    {
+        this.oversampling = oversampling;
+    }
+
+    /**
+     * Returns the number of additional random projections.
+     */
+    public int getOversampling()
+    {
+        return oversampling;
+    }
+
+    /**
+     * Sets the number of power iterations.
+     */
+    public void setPowerIterations(int powerIterations)
+    {
+        this.powerIterations = powerIterations;
+    }
+
+    /**
+     * Returns the number of power iterations.
+     */
+    public int getPowerIterations()
+    {
+        return powerIterations;
+    }
+
+    /**
+     * Sets the seed of the random projection matrix.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the seed of the random projection matrix.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+}
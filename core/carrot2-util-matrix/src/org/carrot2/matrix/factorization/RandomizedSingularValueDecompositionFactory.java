@@ -0,0 +1,134 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.matrix.factorization;
+
+import org.carrot2.mahout.math.matrix.*;
+
+/**
+ * Factory for {@link RandomizedSingularValueDecomposition}s.
+ */
+public class RandomizedSingularValueDecompositionFactory implements
+    IMatrixFactorizationFactory
+{
+    /** The desired number of base vectors */
+    protected int k;
+
+    /** The default desired number of base vectors */
+    protected static final int DEFAULT_K = -1;
+
+    /** The number of additional random projections */
+    protected int oversampling;
+
+    /** The default number of additional random projections */
+    protected static final int DEFAULT_OVERSAMPLING = 10;
+
+    /** The number of power iterations */
+    protected int powerIterations;
+
+    /** The default number of power iterations */
+    protected static final int DEFAULT_POWER_ITERATIONS = 2;
+
+    /** Seed for the random projection matrix */
+    protected long seed;
+
+    /**
+     * Creates the factory that creates factorizations that compute the maximum number of
+     * base vectors.
+     */
+    public RandomizedSingularValueDecompositionFactory()
+    {
+        this.k = DEFAULT_K;
+        this.oversampling = DEFAULT_OVERSAMPLING;
+        this.powerIterations = DEFAULT_POWER_ITERATIONS;
+    }
+
+    public IMatrixFactorization factorize(DoubleMatrix2D A)
+    {
+        RandomizedSingularValueDecomposition factorization = new RandomizedSingularValueDecomposition(
+            A);
+
+        factorization.setK(k);
+        factorization.setOversampling(oversampling);
+        factorization.setPowerIterations(powerIterations);
+        factorization.setSeed(seed);
+        factorization.compute();
+
+        return factorization;
+    }
+
+    /**
+     * Sets the number of base vectors <i>k </i>.
+     * 
+     * @param k the number of base vectors
+     */
+    public void setK(int k)
+    {
+        this.k = k;
+    }
+
+    /**
+     * Returns the number of base vectors <i>k </i>.
+     */
+    public int getK()
+    {
+        return k;
+    }
+
+    /**
+     * Sets the number of additional random projections.
+     */
+    public void setOversampling(int oversampling)
+    {
+        this.oversampling = oversampling;
+    }
+
+    /**
+     * Returns the number of additional random projections.
+     */
+    public int getOversampling()
+    {
+        return oversampling;
+    }
+
+    /**
+     * Sets the number of power iterations.
+     */
+    public void setPowerIterations(int powerIterations)
+    {
+        this.powerIterations = powerIterations;
+    }
+
+    /**
+     * Returns the number of power iterations.
+     */
+    public int getPowerIterations()
+    {
+        return powerIterations;
+    }
+
+    /**
+     * Sets the seed of the random projection matrix.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the seed of the random projection matrix.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+}
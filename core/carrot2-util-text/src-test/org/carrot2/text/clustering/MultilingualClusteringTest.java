@@ -15,6 +15,9 @@ package org.carrot2.text.clustering;
 import static org.carrot2.core.test.assertions.Carrot2CoreAssertions.assertThatClusters;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.carrot2.core.*;
 import org.carrot2.text.clustering.MultilingualClustering.LanguageAggregationStrategy;
@@ -299,6 +302,46 @@ public class MultilingualClusteringTest extends CarrotTestCase
             strategy);
     }
 
+    @Test
+    public void testConcurrentLanguagesMatchSequential() throws InterruptedException
+    {
+        final List<Document> documents = documentsWithLanguages(LanguageCode.ENGLISH,
+            LanguageCode.GERMAN, LanguageCode.ENGLISH, LanguageCode.FRENCH,
+            LanguageCode.POLISH, LanguageCode.GERMAN, null, LanguageCode.FRENCH,
+            LanguageCode.NORWEGIAN, LanguageCode.ENGLISH, LanguageCode.GERMAN);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            for (LanguageAggregationStrategy strategy : LanguageAggregationStrategy.values())
+            {
+                multilingualClustering.languageAggregationStrategy = strategy;
+
+                final List<Cluster> sequential = multilingualClustering.process(
+                    documents, new TestMultilingualClusteringAlgorithm());
+                final Map<String, Integer> sequentialCounts = multilingualClustering.languageCounts;
+
+                final List<Cluster> concurrent = multilingualClustering.process(
+                    documents, new TestMultilingualClusteringAlgorithm(),
+                    new IMonolingualClusteringAlgorithmFactory()
+                    {
+                        public IMonolingualClusteringAlgorithm create()
+                        {
+                            return new TestMultilingualClusteringAlgorithm();
+                        }
+                    }, executor);
+
+                assertThatClusters(concurrent).as(strategy.name()).isEquivalentTo(sequential);
+                assertThat(multilingualClustering.languageCounts).isEqualTo(sequentialCounts);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
     private void check(final List<Document> documents,
         final List<Cluster> expectedClusters,
         final List<LanguageCode> expectedClusteringLanguages,
@@ -12,6 +12,10 @@
 
 package org.carrot2.text.linguistic;
 
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
 
 import org.carrot2.text.analysis.ExtendedWhitespaceTokenizer;
 import org.carrot2.text.analysis.ITokenizer;
@@ -204,4 +208,32 @@ public class ExtendedWhitespaceTokenizerTest extends TokenizerTestBase
 
         assertEqualTokens(test, tokens);
     }
+
+    @Test
+    public void testBufferNotModified() throws IOException
+    {
+        final ITokenizer tokenizer = createTokenStream();
+        final char [] buffer = "some terms. www.carrot2.org".toCharArray();
+        final char [] copy = buffer.clone();
+        tokenizer.reset(buffer, 0, buffer.length);
+        while (tokenizer.nextToken() != ITokenizer.TT_EOF)
+        {
+        }
+
+        // Long enough to refill the tokenizer's own buffer.
+        final StringBuilder text = new StringBuilder();
+        while (text.length() < 40000)
+        {
+            text.append("term ");
+        }
+        tokenizer.reset(new StringReader(text.toString()));
+        int tokens = 0;
+        while (tokenizer.nextToken() != ITokenizer.TT_EOF)
+        {
+            tokens++;
+        }
+
+        assertEquals(8000, tokens);
+        assertArrayEquals(copy, buffer);
+    }
 }
@@ -0,0 +1,184 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.linguistic;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.resource.ResourceLookup;
+import org.carrot2.util.resource.ResourceLookup.Location;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.ObjectHashSet;
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+/**
+ * Checks that {@link StopLabelAutomaton} matches the same labels as {@link Pattern}.
+ */
+public class StopLabelAutomatonTest extends CarrotTestCase
+{
+    private static final String [] SYNTAX =
+    {
+        "abc", "a|b|", "[a-c]x?", "(?i)[^a]b", "[-a]+", "[a-]", "[\\d.]*", "a{2,3}",
+        "a{2}b{0,}", "(ab)*c+", "(?:ab|c){1,2}", "(?i:ab)c", "a(?i)b|c", "(a(?i)b)c",
+        "(?i)A(?-i)b", "\\d+\\s\\w", "\\D\\S\\W", "a.c", ".*", "x*?y", "a??b+?",
+        "\\.\\u0041\\x42", "(?i).*(ab|c) \\d+.*", "[^\\s]\\t"
+    };
+
+    @Test
+    public void testSyntaxEquivalentToPattern()
+    {
+        for (String regex : SYNTAX)
+        {
+            final Pattern pattern = Pattern.compile(regex);
+            final List<Pattern> unsupported = Lists.newArrayList();
+            final StopLabelAutomaton automaton = StopLabelAutomaton.compile(
+                Lists.newArrayList(pattern), unsupported, StopLabelAutomaton.DEFAULT_MAX_STATES);
+            assertTrue(regex, unsupported.isEmpty());
+
+            for (int i = 0; i < 500; i++)
+            {
+                final String label = randomLabel("abcABCxy1 .\t\n-_éÉ", 8);
+                assertEquals(regex + " on: " + label, pattern.matcher(label).matches(),
+                    automaton.matches(label));
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedSyntax()
+    {
+        final List<Pattern> patterns = compile("a\\b", "(?=a)a", "a++", "(a)\\1", "^a",
+            "[a&&b]", "\\p{L}", "[[a]b]", "(?u)a", "\\Qa\\E");
+        final List<Pattern> unsupported = Lists.newArrayList();
+        assertNull(StopLabelAutomaton.compile(patterns, unsupported,
+            StopLabelAutomaton.DEFAULT_MAX_STATES));
+        assertEquals(patterns, unsupported);
+    }
+
+    @Test
+    public void testStateLimit()
+    {
+        final List<Pattern> patterns = compile(".*a.{10}");
+        final List<Pattern> unsupported = Lists.newArrayList();
+        assertNull(StopLabelAutomaton.compile(patterns, unsupported, 100));
+        assertEquals(patterns, unsupported);
+    }
+
+    @Test
+    public void testShippedStopLabels() throws IOException
+    {
+        final ResourceLookup lookup = new ResourceLookup(Location.CONTEXT_CLASS_LOADER);
+        final ArrayList<Pattern> merged = Lists.newArrayList();
+        for (LanguageCode language : LanguageCode.values())
+        {
+            final ArrayList<Pattern> patterns = Lists.newArrayList();
+            for (String regex : DefaultLexicalDataFactory.load(lookup.getFirst("stoplabels."
+                + language.getIsoCode())))
+            {
+                patterns.add(Pattern.compile(regex));
+            }
+            merged.addAll(patterns);
+            assertSameMatches(language.toString(), patterns);
+        }
+        assertSameMatches("merged", merged);
+    }
+
+    @Test
+    public void testFallbackAndSurrogates()
+    {
+        final ArrayList<Pattern> patterns = compile("a.b", "x++", "(?i)stop");
+        final DefaultLexicalData data = new DefaultLexicalData(
+            new ObjectHashSet<MutableCharArray>(), patterns);
+
+        assertTrue(data.isStopLabel("axb"));
+        assertTrue(data.isStopLabel("a𝄞b"));
+        assertTrue(data.isStopLabel("xx"));
+        assertTrue(data.isStopLabel("STOP"));
+        assertFalse(data.isStopLabel("a𝄞𝄞b"));
+        assertFalse(data.isStopLabel("xy"));
+        assertFalse(data.isStopLabel(""));
+    }
+
+    /**
+     * Compares the automaton against a union pattern on labels built from fragments of
+     * the expressions, which are likely to match some of them.
+     */
+    private void assertSameMatches(String description, List<Pattern> patterns)
+    {
+        final List<Pattern> unsupported = Lists.newArrayList();
+        final StopLabelAutomaton automaton = StopLabelAutomaton.compile(patterns,
+            unsupported, StopLabelAutomaton.DEFAULT_MAX_STATES);
+        assertTrue(description + ": " + unsupported, unsupported.isEmpty());
+        if (patterns.isEmpty())
+        {
+            assertNull(automaton);
+            return;
+        }
+
+        final StringBuilder union = new StringBuilder();
+        final ArrayList<String> words = Lists.newArrayList("1", "23", " ", "x");
+        for (Pattern pattern : patterns)
+        {
+            union.append(union.length() > 0 ? "|(" : "(").append(pattern).append(")");
+            for (String word : pattern.pattern().split("[()|?*+.\\\\]+"))
+            {
+                if (word.length() > 0)
+                {
+                    words.add(word);
+                    words.add(word.toUpperCase());
+                }
+            }
+        }
+        final Pattern unionPattern = Pattern.compile(union.toString());
+
+        for (int i = 0; i < 2000; i++)
+        {
+            final StringBuilder label = new StringBuilder();
+            for (int j = randomIntBetween(1, 3); j > 0; j--)
+            {
+                if (label.length() > 0 && randomBoolean()) label.append(' ');
+                label.append(randomFrom(words));
+            }
+            assertEquals(description + ": " + label, unionPattern.matcher(label).matches(),
+                automaton.matches(label));
+        }
+    }
+
+    private String randomLabel(String alphabet, int maxLength)
+    {
+        final StringBuilder label = new StringBuilder();
+        for (int i = randomIntBetween(0, maxLength); i > 0; i--)
+        {
+            label.append(alphabet.charAt(randomIntBetween(0, alphabet.length() - 1)));
+        }
+        return label.toString();
+    }
+
+    private static ArrayList<Pattern> compile(String... regexes)
+    {
+        final ArrayList<Pattern> patterns = Lists.newArrayList();
+        for (String regex : regexes)
+        {
+            patterns.add(Pattern.compile(regex));
+        }
+        return patterns;
+    }
+}
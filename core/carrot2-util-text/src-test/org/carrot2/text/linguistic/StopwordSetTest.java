@@ -0,0 +1,137 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.linguistic;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.resource.ResourceLookup;
+import org.carrot2.util.resource.ResourceLookup.Location;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+/**
+ * Test cases for {@link StopwordSet}.
+ */
+public class StopwordSetTest extends CarrotTestCase
+{
+    @Test
+    public void testEmpty()
+    {
+        final StopwordSet set = new StopwordSet(new ArrayList<String>());
+        assertEquals(0, set.size());
+        assertFalse(set.contains(new MutableCharArray("")));
+        assertFalse(set.contains(new MutableCharArray("a")));
+    }
+
+    @Test
+    public void testIgnoresCase()
+    {
+        final StopwordSet set = new StopwordSet(Lists.newArrayList("The", "über", "a"));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(new MutableCharArray("the")));
+        assertTrue(set.contains(new MutableCharArray("THE")));
+        assertTrue(set.contains(new MutableCharArray("Über")));
+        assertTrue(set.contains(new MutableCharArray("A")));
+        assertFalse(set.contains(new MutableCharArray("then")));
+        assertFalse(set.contains(new MutableCharArray("")));
+    }
+
+    @Test
+    public void testBufferRange()
+    {
+        final StopwordSet set = new StopwordSet(Lists.newArrayList("stop"));
+        final char [] buffer = "xxSTOPxx".toCharArray();
+        assertTrue(set.contains(buffer, 2, 4));
+        assertFalse(set.contains(buffer, 1, 4));
+        assertFalse(set.contains(buffer, 2, 5));
+    }
+
+    @Test
+    public void testRandomWords()
+    {
+        for (int round = 0; round < 20; round++)
+        {
+            final HashSet<String> words = new HashSet<String>();
+            for (int i = randomIntBetween(0, 2000); i > 0; i--)
+            {
+                words.add(randomWord());
+            }
+
+            final StopwordSet set = new StopwordSet(words);
+            assertEquals(words.size(), set.size());
+            for (String word : words)
+            {
+                assertTrue(word, set.contains(new MutableCharArray(word)));
+                assertTrue(word, set.contains(new MutableCharArray(
+                    word.toUpperCase(Locale.ROOT))));
+            }
+
+            for (int i = 0; i < 2000; i++)
+            {
+                final String word = randomWord();
+                assertEquals(word, words.contains(word),
+                    set.contains(new MutableCharArray(word)));
+            }
+        }
+    }
+
+    @Test
+    public void testShippedStopwords() throws IOException
+    {
+        final ResourceLookup lookup = new ResourceLookup(Location.CONTEXT_CLASS_LOADER);
+        final ArrayList<String> merged = Lists.newArrayList();
+        for (LanguageCode language : LanguageCode.values())
+        {
+            final HashSet<String> words = new HashSet<String>();
+            for (String word : DefaultLexicalDataFactory.load(lookup.getFirst("stopwords."
+                + language.getIsoCode())))
+            {
+                words.add(word.toLowerCase(Locale.ROOT));
+            }
+            merged.addAll(words);
+
+            final StopwordSet set = new StopwordSet(words);
+            for (String word : words)
+            {
+                assertTrue(language + ": " + word, set.contains(new MutableCharArray(word)));
+            }
+        }
+
+        final StopwordSet set = new StopwordSet(merged);
+        assertEquals(new HashSet<String>(merged).size(), set.size());
+        for (String word : merged)
+        {
+            assertTrue(word, set.contains(new MutableCharArray(word)));
+        }
+    }
+
+    private String randomWord()
+    {
+        final String alphabet = "abcdeéxyz";
+        final char [] word = new char [randomIntBetween(1, 6)];
+        for (int i = 0; i < word.length; i++)
+        {
+            word[i] = alphabet.charAt(randomIntBetween(0, alphabet.length() - 1));
+        }
+        return new String(word);
+    }
+}
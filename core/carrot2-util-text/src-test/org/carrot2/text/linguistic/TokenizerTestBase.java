@@ -72,7 +72,8 @@ abstract class TokenizerTestBase extends CarrotTestCase
     }
 
     /**
-     * Compare expected and produced token sequences.
+     * Compare expected and produced token sequences. The string is tokenized from a
+     * reader and then, with the same tokenizer, from a range of a character buffer.
      */
     protected void assertEqualTokens(String testString, TokenImage [] expectedTokens)
     {
@@ -80,21 +81,14 @@ abstract class TokenizerTestBase extends CarrotTestCase
         {
             final ITokenizer tokenStream = createTokenStream();
             tokenStream.reset(new StringReader(testString));
+            Assertions
+                .assertThat(tokenize(tokenStream))
+                .containsExactly((Object[]) expectedTokens);
 
-            final ArrayList<TokenImage> tokens = new ArrayList<TokenImage>();
-            short token;
-            MutableCharArray buffer = new MutableCharArray();
-            while ((token = tokenStream.nextToken()) >= 0)
-            {
-                tokenStream.setTermBuffer(buffer);
-                tokens.add(new TokenImage(buffer.toString(), token));
-            }
-
-            for (int i = 0; i < tokens.size(); i++) {
-            }        
-
+            final char [] buffer = ("<" + testString + ">").toCharArray();
+            tokenStream.reset(buffer, 1, testString.length());
             Assertions
-                .assertThat(tokens)
+                .assertThat(tokenize(tokenStream))
                 .containsExactly((Object[]) expectedTokens);
         }
         catch (IOException e)
@@ -103,6 +97,20 @@ abstract class TokenizerTestBase extends CarrotTestCase
         }
     }
 
+    private static ArrayList<TokenImage> tokenize(ITokenizer tokenStream)
+        throws IOException
+    {
+        final ArrayList<TokenImage> tokens = new ArrayList<TokenImage>();
+        short token;
+        MutableCharArray buffer = new MutableCharArray();
+        while ((token = tokenStream.nextToken()) >= 0)
+        {
+            tokenStream.setTermBuffer(buffer);
+            tokens.add(new TokenImage(buffer.toString(), token));
+        }
+        return tokens;
+    }
+
     protected TokenImage term(String image)
     {
         return new TokenImage(image, ITokenizer.TT_TERM);
@@ -238,7 +238,7 @@ public class DocumentAssignerTest extends LabelFilterTestBase
             .hasSize(expectedDocumentIndices.length);
         for (int i = 0; i < expectedDocumentIndices.length; i++)
         {
-            assertThat(context.allLabels.documentIndices[i].asIntLookupContainer().toArray()).as(
+            assertThat(context.allLabels.documentIndices[i].toArray()).as(
                 "allLabels.documentIndices[" + i + "]").isEqualTo(
                 expectedDocumentIndices[i]);
         }
@@ -0,0 +1,115 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.List;
+
+import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
+import org.carrot2.text.preprocessing.pipeline.CompletePreprocessingPipeline;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import static org.carrot2.text.preprocessing.PreprocessingTestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CaseNormalizer#normalizeUsingHashing(PreprocessingContext)} and
+ * {@link LanguageModelStemmer#stemUsingHashing(PreprocessingContext)} produce the same
+ * results as their sort-based counterparts.
+ */
+public class HashingWordStatisticsTest extends CarrotTestCase
+{
+    @Test
+    public void testSameResultsAsSorting()
+    {
+        for (int round = 0; round < 20; round++)
+        {
+            final List<Document> documents = randomDocuments();
+            final String query = randomBoolean() ? null : randomFrom(WORDS) + " "
+                + randomFrom(WORDS);
+
+            final CompletePreprocessingPipeline sorting = new CompletePreprocessingPipeline();
+            final CompletePreprocessingPipeline hashing = new CompletePreprocessingPipeline();
+            hashing.hashingWordStatistics = true;
+            sorting.caseNormalizer.dfThreshold = hashing.caseNormalizer.dfThreshold =
+                randomIntBetween(1, 3);
+
+            assertSameStatistics(
+                sorting.preprocess(documents, query, LanguageCode.ENGLISH),
+                hashing.preprocess(documents, query, LanguageCode.ENGLISH));
+        }
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        final BasicPreprocessingPipeline hashing = new BasicPreprocessingPipeline();
+        hashing.hashingWordStatistics = true;
+        final PreprocessingContext context = hashing.preprocess(
+            Lists.<Document> newArrayList(), null, LanguageCode.ENGLISH);
+
+        assertArrayEquals(new int [] { -1 }, context.allTokens.wordIndex);
+        assertEquals(0, context.allWords.image.length);
+        assertEquals(0, context.allStems.image.length);
+        assertEquals(0, context.allWords.stemIndex.length);
+    }
+
+    @Test
+    public void testMostFrequentVariantSelected()
+    {
+        final List<Document> documents = Lists.newArrayList(
+            new Document("MacOS MacOS Macos", "macos MacOS"),
+            new Document("Data data", "data DATA data"));
+
+        final BasicPreprocessingPipeline hashing = new BasicPreprocessingPipeline();
+        hashing.hashingWordStatistics = true;
+        final PreprocessingContext context = hashing.preprocess(documents, null,
+            LanguageCode.ENGLISH);
+
+        assertEquals(2, context.allWords.image.length);
+        for (int i = 0; i < context.allWords.image.length; i++)
+        {
+            final String image = new String(context.allWords.image[i]);
+            assertTrue(image, image.equals("MacOS") || image.equals("data"));
+            assertEquals(5, context.allWords.tf[i]);
+        }
+    }
+
+    private static void assertSameStatistics(PreprocessingContext expected,
+        PreprocessingContext actual)
+    {
+        assertArrayEquals(expected.allTokens.wordIndex, actual.allTokens.wordIndex);
+
+        assertArrayEquals(expected.allWords.image, actual.allWords.image);
+        assertArrayEquals(expected.allWords.tf, actual.allWords.tf);
+        assertArrayEquals(expected.allWords.type, actual.allWords.type);
+        assertArrayEquals(expected.allWords.fieldIndices, actual.allWords.fieldIndices);
+        assertArrayEquals(expected.allWords.stemIndex, actual.allWords.stemIndex);
+        assertSameSparseArrays(expected.allWords.tfByDocument, actual.allWords.tfByDocument);
+
+        assertArrayEquals(expected.allStems.image, actual.allStems.image);
+        assertArrayEquals(expected.allStems.tf, actual.allStems.tf);
+        assertArrayEquals(expected.allStems.mostFrequentOriginalWordIndex,
+            actual.allStems.mostFrequentOriginalWordIndex);
+        assertArrayEquals(expected.allStems.fieldIndices, actual.allStems.fieldIndices);
+        assertSameSparseArrays(expected.allStems.tfByDocument, actual.allStems.tfByDocument);
+
+        // Phrases are built on top of word and stem statistics.
+        assertArrayEquals(expected.allPhrases.wordIndices, actual.allPhrases.wordIndices);
+        assertArrayEquals(expected.allLabels.featureIndex, actual.allLabels.featureIndex);
+    }
+}
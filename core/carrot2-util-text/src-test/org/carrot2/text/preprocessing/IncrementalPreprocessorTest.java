@@ -0,0 +1,115 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
+import org.carrot2.text.preprocessing.pipeline.CompletePreprocessingPipeline;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import static org.carrot2.text.preprocessing.PreprocessingTestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that preprocessing documents in batches with {@link IncrementalPreprocessor}
+ * produces the same results as preprocessing all documents at once.
+ */
+public class IncrementalPreprocessorTest extends CarrotTestCase
+{
+    @Test
+    public void testSameResultsAsAllDocuments()
+    {
+        for (int round = 0; round < 20; round++)
+        {
+            final List<Document> documents = randomDocuments();
+            final String query = randomBoolean() ? null : randomFrom(WORDS);
+
+            final CompletePreprocessingPipeline pipeline = new CompletePreprocessingPipeline();
+            pipeline.hashingWordStatistics = randomBoolean();
+            pipeline.caseNormalizer.dfThreshold = randomIntBetween(1, 2);
+
+            final PreprocessingContext expected = pipeline.preprocess(documents, query,
+                LanguageCode.ENGLISH);
+
+            final BasicPreprocessingPipeline.Batches batches = pipeline.startBatches(query,
+                LanguageCode.ENGLISH);
+            int added = 0;
+            while (added < documents.size())
+            {
+                final int batchSize = randomIntBetween(0, documents.size() - added);
+                batches.addDocuments(documents.subList(added, added + batchSize));
+                added += batchSize;
+            }
+            final PreprocessingContext actual = batches.finish();
+
+            assertEquals(documents, actual.documents);
+            assertSameResults(expected, actual);
+        }
+    }
+
+    @Test
+    public void testNoDocuments()
+    {
+        final BasicPreprocessingPipeline pipeline = new BasicPreprocessingPipeline();
+        final BasicPreprocessingPipeline.Batches batches = pipeline.startBatches(null,
+            LanguageCode.ENGLISH);
+        batches.addDocuments(Lists.<Document> newArrayList());
+        final PreprocessingContext context = batches.finish();
+
+        assertArrayEquals(new int [] { -1 }, context.allTokens.wordIndex);
+        assertEquals(0, context.allWords.image.length);
+        assertEquals(0, context.allStems.image.length);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoDocumentsAfterFinish()
+    {
+        final BasicPreprocessingPipeline pipeline = new BasicPreprocessingPipeline();
+        final BasicPreprocessingPipeline.Batches batches = pipeline.startBatches(null,
+            LanguageCode.ENGLISH);
+        batches.finish();
+        batches.addDocuments(Lists.newArrayList(new Document("data")));
+    }
+
+    private static void assertSameResults(PreprocessingContext expected,
+        PreprocessingContext actual)
+    {
+        assertArrayEquals(expected.allTokens.image, actual.allTokens.image);
+        assertArrayEquals(expected.allTokens.type, actual.allTokens.type);
+        assertArrayEquals(expected.allTokens.documentIndex, actual.allTokens.documentIndex);
+        assertArrayEquals(expected.allTokens.fieldIndex, actual.allTokens.fieldIndex);
+        assertArrayEquals(expected.allTokens.wordIndex, actual.allTokens.wordIndex);
+
+        assertArrayEquals(expected.allWords.image, actual.allWords.image);
+        assertArrayEquals(expected.allWords.tf, actual.allWords.tf);
+        assertArrayEquals(expected.allWords.type, actual.allWords.type);
+        assertArrayEquals(expected.allWords.stemIndex, actual.allWords.stemIndex);
+        assertSameSparseArrays(expected.allWords.tfByDocument, actual.allWords.tfByDocument);
+
+        assertArrayEquals(expected.allStems.image, actual.allStems.image);
+        assertArrayEquals(expected.allStems.tf, actual.allStems.tf);
+        assertSameSparseArrays(expected.allStems.tfByDocument, actual.allStems.tfByDocument);
+
+        assertArrayEquals(expected.allPhrases.wordIndices, actual.allPhrases.wordIndices);
+        assertArrayEquals(expected.allLabels.featureIndex, actual.allLabels.featureIndex);
+        assertEquals(Arrays.asList(expected.allLabels.documentIndices),
+            Arrays.asList(actual.allLabels.documentIndices));
+    }
+}
@@ -0,0 +1,118 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.List;
+
+import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.preprocessing.pipeline.CompletePreprocessingPipeline;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import static org.carrot2.text.preprocessing.PreprocessingTestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link PackedIntArrays} and {@link PreprocessingArena}.
+ */
+public class PackedIntArraysTest extends CarrotTestCase
+{
+    @Test
+    public void testPacking()
+    {
+        final int [][] arrays = new int [randomIntBetween(0, 100)] [];
+        for (int i = 0; i < arrays.length; i++)
+        {
+            arrays[i] = new int [randomIntBetween(0, 10)];
+            for (int j = 0; j < arrays[i].length; j++)
+            {
+                arrays[i][j] = randomInt();
+            }
+        }
+
+        final PreprocessingArena arena = randomBoolean() ? new PreprocessingArena() : null;
+        final PackedIntArrays packed = new PackedIntArrays(arrays, arena);
+        assertEquals(arrays.length, packed.size());
+        for (int i = 0; i < arrays.length; i++)
+        {
+            assertEquals(arrays[i].length, packed.length(i));
+            assertArrayEquals(arrays[i], packed.get(i));
+            for (int j = 0; j < arrays[i].length; j++)
+            {
+                assertEquals(arrays[i][j], packed.data()[packed.start(i) + j]);
+            }
+            assertEquals(packed.start(i) + arrays[i].length, packed.end(i));
+        }
+    }
+
+    @Test
+    public void testArenaBuffersReused()
+    {
+        final PreprocessingArena arena = new PreprocessingArena();
+        final int [] first = arena.allocate(100);
+        final int [] second = arena.allocate(10);
+        assertNotSame(first, second);
+        assertTrue(first.length >= 100);
+
+        arena.reset();
+        final long capacity = arena.capacity();
+        assertSame(second, arena.allocate(5));
+        assertSame(first, arena.allocate(100));
+        assertEquals(capacity, arena.capacity());
+        assertNotSame(first, arena.allocate(100));
+    }
+
+    @Test
+    public void testCompactContext()
+    {
+        final List<Document> documents = Lists.newArrayList(
+            new Document("data mining", "data mining and web mining"),
+            new Document("web mining", "mining the web"),
+            new Document("web search", "search the web"));
+
+        final CompletePreprocessingPipeline pipeline = new CompletePreprocessingPipeline();
+        final PreprocessingContext regular = pipeline.preprocess(documents, null,
+            LanguageCode.ENGLISH);
+
+        pipeline.compactContext = true;
+        pipeline.reuseContextBuffers = true;
+        for (int round = 0; round < 3; round++)
+        {
+            final PreprocessingContext compact = pipeline.preprocess(documents, null,
+                LanguageCode.ENGLISH);
+            assertNull(compact.allWords.tfByDocument);
+            assertNull(compact.allStems.tfByDocument);
+            assertNull(compact.allPhrases.tfByDocument);
+
+            assertSamePacked(regular.allWords.tfByDocument,
+                compact.allWords.getPackedTfByDocument());
+            assertSamePacked(regular.allStems.tfByDocument,
+                compact.allStems.getPackedTfByDocument());
+            assertSamePacked(regular.allPhrases.tfByDocument,
+                compact.allPhrases.getPackedTfByDocument());
+            assertNotNull(compact.toString());
+        }
+    }
+
+    private static void assertSamePacked(int [][] expected, PackedIntArrays actual)
+    {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertSameSparseArray(expected[i], actual.get(i));
+        }
+    }
+}
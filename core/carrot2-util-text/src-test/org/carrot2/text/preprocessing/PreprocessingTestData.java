@@ -0,0 +1,113 @@
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.carrot2.core.Document;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import static com.carrotsearch.randomizedtesting.RandomizedTest.*;
+import static org.junit.Assert.*;
+
+/**
+ * Random documents and assertions for tests that compare results of different ways of
+ * preprocessing the same documents.
+ */
+final class PreprocessingTestData
+{
+    /**
+     * Words of random documents: case variants, words with a common stem, stop words,
+     * numbers and URLs.
+     */
+    static final String [] WORDS =
+    {
+        "data", "Data", "DATA", "mining", "Mining", "miner", "miners", "mine", "web",
+        "Web", "WEB", "search", "searches", "searching", "Search", "engine", "engines",
+        "a", "A", "the", "and", "of", "MacOS", "macos", "Macos", "2016", "x-ray", "X-Ray",
+        "http://carrot2.org"
+    };
+
+    private static final String [] PUNCTUATION =
+    {
+        ".", ",", "!", " - ", "?"
+    };
+
+    private PreprocessingTestData()
+    {
+        // No instances.
+    }
+
+    /**
+     * Returns up to 30 documents made of random {@link #WORDS}.
+     */
+    static List<Document> randomDocuments()
+    {
+        final List<Document> documents = Lists.newArrayList();
+        final int documentCount = randomIntBetween(0, 30);
+        for (int i = 0; i < documentCount; i++)
+        {
+            documents.add(new Document(randomText(randomIntBetween(0, 6)),
+                randomText(randomIntBetween(0, 40))));
+        }
+        return documents;
+    }
+
+    /**
+     * Returns the given number of random {@link #WORDS}, rarely separated by punctuation.
+     */
+    static String randomText(int words)
+    {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++)
+        {
+            text.append(randomFrom(WORDS));
+            text.append(rarely() ? randomFrom(PUNCTUATION) : " ");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Asserts that arrays of sparse (index, value) pairs, e.g.
+     * {@link PreprocessingContext.AllWords#tfByDocument}, are equal. Pairs may come in
+     * any order of documents, so they are compared sorted.
+     */
+    static void assertSameSparseArrays(int [][] expected, int [][] actual)
+    {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertSameSparseArray(expected[i], actual[i]);
+        }
+    }
+
+    /**
+     * Asserts that sparse (index, value) pairs are equal, regardless of their order.
+     */
+    static void assertSameSparseArray(int [] expected, int [] actual)
+    {
+        assertArrayEquals(toSortedPairs(expected), toSortedPairs(actual));
+    }
+
+    private static long [] toSortedPairs(int [] sparse)
+    {
+        final long [] pairs = new long [sparse.length / 2];
+        for (int i = 0; i < pairs.length; i++)
+        {
+            pairs[i] = ((long) sparse[2 * i] << 32) | (sparse[2 * i + 1] & 0xffffffffL);
+        }
+        Arrays.sort(pairs);
+        return pairs;
+    }
+}
@@ -0,0 +1,173 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.linguistic.IStemmer;
+import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import com.carrotsearch.randomizedtesting.Rethrow;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link StemCache}.
+ */
+public class StemCacheTest extends CarrotTestCase
+{
+    @Test
+    public void testStemsCached()
+    {
+        final CountingStemmer stemmer = new CountingStemmer();
+        final StemCache cache = new StemCache(100);
+
+        final char [] buffer = "xxminingxx".toCharArray();
+        final char [] stem = cache.stem(new MutableCharArray(buffer, 2, 6), stemmer);
+        assertArrayEquals("mini".toCharArray(), stem);
+        assertSame(stem, cache.stem(new MutableCharArray("mining"), stemmer));
+        assertEquals(1, stemmer.calls.get());
+
+        assertNull(cache.stem(new MutableCharArray("at"), stemmer));
+        assertNull(cache.stem(new MutableCharArray("at"), stemmer));
+        assertEquals(2, stemmer.calls.get());
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testSizeBounded()
+    {
+        final CountingStemmer stemmer = new CountingStemmer();
+        final StemCache cache = new StemCache(randomIntBetween(1, 200));
+        for (int i = 0; i < 10000; i++)
+        {
+            final String word = "word" + randomIntBetween(0, 1000);
+            assertEquals(stemmer.stem(word).toString(),
+                new String(cache.stem(new MutableCharArray(word), stemmer)));
+            assertTrue(cache.size() <= cache.capacity());
+        }
+        assertEquals(10000, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    public void testConcurrentStemming() throws Exception
+    {
+        final StemCache cache = new StemCache(randomIntBetween(16, 500));
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread [] threads = new Thread [4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final long seed = randomLong();
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        latch.await();
+                        final Random random = new Random(seed);
+                        final CountingStemmer stemmer = new CountingStemmer();
+                        for (int i = 0; i < 20000; i++)
+                        {
+                            final String word = "word" + random.nextInt(2000);
+                            final char [] stem = cache.stem(new MutableCharArray(word),
+                                stemmer);
+                            if (!word.substring(0, word.length() - 2).equals(
+                                new String(stem)))
+                            {
+                                throw new AssertionError("Wrong stem for: " + word);
+                            }
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        Rethrow.rethrow(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        latch.countDown();
+
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertTrue(cache.size() <= cache.capacity());
+        assertEquals(threads.length * 20000, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    public void testCachedStemmingIdenticalToUncached()
+    {
+        final List<Document> documents = Lists.newArrayList(
+            new Document("Data Mining", "data mining and web mining"),
+            new Document("Web search", "searching the web, searches"),
+            new Document("MINING", "miners mine"));
+
+        final BasicPreprocessingPipeline pipeline = new BasicPreprocessingPipeline();
+        final PreprocessingContext uncached = pipeline.preprocess(documents, "mining",
+            LanguageCode.ENGLISH);
+
+        pipeline.languageModelStemmer.stemCacheSize = 1000;
+        for (int round = 0; round < 2; round++)
+        {
+            final PreprocessingContext cached = pipeline.preprocess(documents, "mining",
+                LanguageCode.ENGLISH);
+
+            assertArrayEquals(uncached.allWords.stemIndex, cached.allWords.stemIndex);
+            assertArrayEquals(uncached.allWords.type, cached.allWords.type);
+            assertArrayEquals(uncached.allStems.tf, cached.allStems.tf);
+            assertEquals(uncached.allStems.image.length, cached.allStems.image.length);
+            for (int i = 0; i < cached.allStems.image.length; i++)
+            {
+                assertArrayEquals(uncached.allStems.image[i], cached.allStems.image[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes the last two characters of words longer than two characters, counts
+     * invocations.
+     */
+    private static final class CountingStemmer implements IStemmer
+    {
+        final AtomicInteger calls = new AtomicInteger();
+
+        public CharSequence stem(CharSequence word)
+        {
+            calls.incrementAndGet();
+            if (word.length() > 2)
+            {
+                return word.toString().substring(0, word.length() - 2);
+            }
+            else
+            {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+import org.carrot2.shaded.guava.common.collect.Lists;
+
+import com.carrotsearch.randomizedtesting.Rethrow;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link TokenImageDictionary}.
+ */
+public class TokenImageDictionaryTest extends CarrotTestCase
+{
+    @Test
+    public void testInternReturnsSharedCopy()
+    {
+        final TokenImageDictionary dictionary = new TokenImageDictionary(100);
+        final char [] buffer = "xxdataxx".toCharArray();
+        final char [] image = dictionary.intern(new MutableCharArray(buffer, 2, 4));
+        assertArrayEquals("data".toCharArray(), image);
+        assertNotSame(buffer, image);
+
+        assertSame(image, dictionary.intern(new MutableCharArray("data")));
+        assertNotSame(image, dictionary.intern(new MutableCharArray("Data")));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    public void testSizeBounded()
+    {
+        final TokenImageDictionary dictionary = new TokenImageDictionary(
+            randomIntBetween(1, 200));
+        for (int i = 0; i < 10000; i++)
+        {
+            final String token = Integer.toString(randomIntBetween(0, 1000));
+            assertEquals(token, new String(dictionary.intern(new MutableCharArray(token))));
+            assertTrue(dictionary.size() <= dictionary.capacity());
+        }
+    }
+
+    @Test
+    public void testReusedImagesRetained()
+    {
+        final TokenImageDictionary dictionary = new TokenImageDictionary(16 * 64);
+        final char [] frequent = dictionary.intern(new MutableCharArray("frequent"));
+        for (int i = 0; i < 100000; i++)
+        {
+            dictionary.intern(new MutableCharArray("rare" + i));
+            if (i % 16 == 0)
+            {
+                assertSame(frequent, dictionary.intern(new MutableCharArray("frequent")));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentInterning() throws Exception
+    {
+        final TokenImageDictionary dictionary = new TokenImageDictionary(
+            randomIntBetween(16, 500));
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread [] threads = new Thread [4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final long seed = randomLong();
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        latch.await();
+                        final Random random = new Random(seed);
+                        for (int i = 0; i < 20000; i++)
+                        {
+                            final String token = Integer.toString(random.nextInt(2000));
+                            if (!token.equals(new String(dictionary.intern(
+                                new MutableCharArray(token)))))
+                            {
+                                throw new AssertionError("Wrong image for: " + token);
+                            }
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        Rethrow.rethrow(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        latch.countDown();
+
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertTrue(dictionary.size() <= dictionary.capacity());
+    }
+
+    @Test
+    public void testImagesSharedAcrossContexts()
+    {
+        final List<Document> documents = Lists.newArrayList(
+            new Document("data mining", "data mining and web mining"),
+            new Document("web search", "search the web"));
+
+        final BasicPreprocessingPipeline pipeline = new BasicPreprocessingPipeline();
+        final PreprocessingContext unshared = pipeline.preprocess(documents, null,
+            LanguageCode.ENGLISH);
+
+        pipeline.tokenImageDictionarySize = 1000;
+        final PreprocessingContext first = pipeline.preprocess(documents, null,
+            LanguageCode.ENGLISH);
+        final PreprocessingContext second = pipeline.preprocess(documents, null,
+            LanguageCode.ENGLISH);
+
+        assertArrayEquals(unshared.allTokens.type, first.allTokens.type);
+        assertArrayEquals(unshared.allWords.type, first.allWords.type);
+        for (int i = 0; i < first.allTokens.image.length; i++)
+        {
+            assertArrayEquals(unshared.allTokens.image[i], first.allTokens.image[i]);
+            assertSame(first.allTokens.image[i], second.allTokens.image[i]);
+        }
+    }
+}
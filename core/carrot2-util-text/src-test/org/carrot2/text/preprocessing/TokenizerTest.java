@@ -16,6 +16,12 @@ import static org.carrot2.text.preprocessing.PreprocessingContextAssert.tokens;
 import static org.carrot2.text.preprocessing.PreprocessingContextBuilder.FieldValue.*;
 
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.carrot2.core.Document;
+import org.carrot2.core.LanguageCode;
 
 import org.carrot2.text.analysis.ITokenizer;
 import org.carrot2.text.preprocessing.pipeline.BasicPreprocessingPipeline;
@@ -23,6 +29,8 @@ import org.carrot2.util.attribute.AttributeUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.carrot2.shaded.guava.common.collect.Lists;
+
 /**
  * Test cases for {@link Tokenizer}.
  */
@@ -213,4 +221,111 @@ public class TokenizerTest extends PreprocessingContextTestBase
     }
 
     // @formatter:on
+
+    @Test
+    public void testParallelTokenizationIdenticalToSequential()
+    {
+        final String [] words = {
+            "data", "mining", "Data", "web", "site", "ai", "1.5", "x-y", "e-mail",
+            "http://www.carrot2.org", "żółw", "test.", "test", "..."
+        };
+        final List<Document> documents = Lists.newArrayList();
+        final int count = randomIntBetween(2, 500);
+        for (int i = 0; i < count; i++)
+        {
+            documents.add(new Document(randomText(words), randomText(words)));
+        }
+
+        final BasicPreprocessingPipeline pipeline = new BasicPreprocessingPipeline();
+        final PreprocessingContext sequential = pipeline.preprocess(documents, null,
+            LanguageCode.ENGLISH);
+
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(2, 4));
+        final PreprocessingContext parallel;
+        try
+        {
+            ParallelTokenization.enable(pool, 0);
+            parallel = pipeline.preprocess(documents, null, LanguageCode.ENGLISH);
+        }
+        finally
+        {
+            ParallelTokenization.disable();
+            pool.shutdown();
+        }
+
+        assertThat(parallel.allTokens.type).isEqualTo(sequential.allTokens.type);
+        assertThat(parallel.allTokens.documentIndex).isEqualTo(
+            sequential.allTokens.documentIndex);
+        assertThat(parallel.allTokens.fieldIndex).isEqualTo(
+            sequential.allTokens.fieldIndex);
+
+        // Equal images must be the same instances in both cases.
+        final char [][] sequentialImages = sequential.allTokens.image;
+        final char [][] parallelImages = parallel.allTokens.image;
+        assertThat(parallelImages.length).isEqualTo(sequentialImages.length);
+        final IdentityHashMap<char [], char []> instances = new IdentityHashMap<char [], char []>();
+        for (int i = 0; i < sequentialImages.length; i++)
+        {
+            if (sequentialImages[i] == null)
+            {
+                assertThat(parallelImages[i]).isNull();
+                continue;
+            }
+
+            assertThat(parallelImages[i]).isEqualTo(sequentialImages[i]);
+            final char [] previous = instances.put(sequentialImages[i], parallelImages[i]);
+            assertThat(previous == null || previous == parallelImages[i]).isTrue();
+        }
+        assertThat(parallel.allWords.image.length).isEqualTo(
+            sequential.allWords.image.length);
+    }
+
+    @Test
+    public void testPipelineTokenizationThreads()
+    {
+        final String [] words = {
+            "data", "mining", "Data", "web", "site", "x-y", "http://www.carrot2.org"
+        };
+        final List<Document> documents = Lists.newArrayList();
+        final int count = ParallelTokenization.DEFAULT_MIN_PARALLEL_DOCUMENTS
+            + randomIntBetween(0, 100);
+        for (int i = 0; i < count; i++)
+        {
+            documents.add(new Document(randomText(words), randomText(words)));
+        }
+
+        final BasicPreprocessingPipeline pipeline = new BasicPreprocessingPipeline();
+        final PreprocessingContext sequential = pipeline.preprocess(documents, null,
+            LanguageCode.ENGLISH);
+
+        pipeline.tokenizationThreads = randomIntBetween(2, 4);
+        final PreprocessingContext parallel = pipeline.preprocess(documents, null,
+            LanguageCode.ENGLISH);
+
+        assertThat(ParallelTokenization.getPool(count)).isNull();
+
+        assertThat(parallel.allTokens.type).isEqualTo(sequential.allTokens.type);
+        assertThat(parallel.allTokens.documentIndex).isEqualTo(
+            sequential.allTokens.documentIndex);
+        assertThat(parallel.allTokens.fieldIndex).isEqualTo(
+            sequential.allTokens.fieldIndex);
+        assertThat(parallel.allTokens.image.length).isEqualTo(
+            sequential.allTokens.image.length);
+        for (int i = 0; i < sequential.allTokens.image.length; i++)
+        {
+            assertThat(parallel.allTokens.image[i]).isEqualTo(
+                sequential.allTokens.image[i]);
+        }
+    }
+
+    private String randomText(String [] words)
+    {
+        final StringBuilder text = new StringBuilder();
+        final int length = randomIntBetween(0, 10);
+        for (int i = 0; i < length; i++)
+        {
+            text.append(randomFrom(words)).append(' ');
+        }
+        return text.toString();
+    }
 }
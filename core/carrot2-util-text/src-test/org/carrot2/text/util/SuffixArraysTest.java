@@ -0,0 +1,161 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.carrot2.util.tests.CarrotTestCase;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link SuffixArrays}.
+ */
+public class SuffixArraysTest extends CarrotTestCase
+{
+    @Test
+    public void testEmpty()
+    {
+        final int [] input = new int [0];
+        assertThat(SuffixArrays.suffixArray(input, 1)).isEmpty();
+        assertThat(SuffixArrays.lcp(input, new int [0])).isEmpty();
+    }
+
+    @Test
+    public void testBanana()
+    {
+        // b a n a n a
+        final int [] input = new int []
+        {
+            1, 0, 2, 0, 2, 0
+        };
+
+        final int [] suffixArray = SuffixArrays.suffixArray(input, 3);
+        assertThat(suffixArray).isEqualTo(new int []
+        {
+            5, 3, 1, 0, 4, 2
+        });
+        assertThat(SuffixArrays.lcp(input, suffixArray)).isEqualTo(new int []
+        {
+            0, 1, 3, 0, 0, 2
+        });
+    }
+
+    @Test
+    public void testRepeatedSymbol()
+    {
+        final int [] input = new int [100];
+        final int [] suffixArray = SuffixArrays.suffixArray(input, 1);
+        final int [] lcp = SuffixArrays.lcp(input, suffixArray);
+        for (int i = 0; i < input.length; i++)
+        {
+            assertThat(suffixArray[i]).isEqualTo(input.length - 1 - i);
+            assertThat(lcp[i]).isEqualTo(i);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSymbolOutOfRange()
+    {
+        SuffixArrays.suffixArray(new int []
+        {
+            0, 3
+        }, 3);
+    }
+
+    @Test
+    public void testRandomInput()
+    {
+        for (int iteration = 0; iteration < 50; iteration++)
+        {
+            checkRandomInput();
+        }
+    }
+
+    private void checkRandomInput()
+    {
+        final int alphabetSize = randomIntBetween(1, 10);
+        final int [] input = new int [randomIntBetween(1, 500)];
+        for (int i = 0; i < input.length; i++)
+        {
+            input[i] = randomInt(alphabetSize - 1);
+        }
+
+        final int [] suffixArray = SuffixArrays.suffixArray(input, alphabetSize);
+        assertThat(suffixArray).isEqualTo(naiveSuffixArray(input));
+
+        final int [] lcp = SuffixArrays.lcp(input, suffixArray);
+        assertThat(lcp).isEqualTo(naiveLcp(input, suffixArray));
+
+        // Descending order
+        final int [] reversed = new int [suffixArray.length];
+        for (int i = 0; i < reversed.length; i++)
+        {
+            reversed[i] = suffixArray[suffixArray.length - 1 - i];
+        }
+        assertThat(SuffixArrays.lcp(input, reversed))
+            .isEqualTo(naiveLcp(input, reversed));
+    }
+
+    private static int [] naiveSuffixArray(final int [] input)
+    {
+        final Integer [] suffixes = new Integer [input.length];
+        for (int i = 0; i < suffixes.length; i++)
+        {
+            suffixes[i] = i;
+        }
+
+        Arrays.sort(suffixes, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                int i = a;
+                int j = b;
+                while (i < input.length && j < input.length)
+                {
+                    if (input[i] != input[j])
+                    {
+                        return input[i] < input[j] ? -1 : 1;
+                    }
+                    i++;
+                    j++;
+                }
+                return (input.length - a) - (input.length - b);
+            }
+        });
+
+        final int [] result = new int [suffixes.length];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = suffixes[i];
+        }
+        return result;
+    }
+
+    private static int [] naiveLcp(int [] input, int [] suffixArray)
+    {
+        final int [] lcp = new int [suffixArray.length];
+        for (int i = 1; i < lcp.length; i++)
+        {
+            int a = suffixArray[i - 1];
+            int b = suffixArray[i];
+            while (a < input.length && b < input.length && input[a] == input[b])
+            {
+                a++;
+                b++;
+                lcp[i]++;
+            }
+        }
+        return lcp;
+    }
+}
@@ -187,6 +187,38 @@ public class TermDocumentMatrixBuilderTest extends TermDocumentMatrixBuilderTest
         check(expectedTdMatrixElements, expectedTdMatrixStemIndices);
     }
 
+    @Test
+    public void testSparseMatrix()
+    {
+        createDocuments("aa", "bb", "", "bb . cc", "", "aa . cc . cc", "", "dd . aa");
+        preprocessingPipeline.documentAssigner.minClusterSize = 1;
+        buildTermDocumentMatrix();
+
+        final IntIntHashMap stemToRowIndex = vsmContext.stemToRowIndex;
+        matrixBuilder.buildSparseTermDocumentMatrix(vsmContext, Integer.MAX_VALUE);
+
+        final SparseTermDocumentMatrix sparse = vsmContext.sparseTermDocumentMatrix;
+        assertThat(sparse.rows).isEqualTo(vsmContext.termDocumentMatrix.rows());
+        assertThat(sparse.columns()).isEqualTo(vsmContext.termDocumentMatrix.columns());
+        assertThat((Object) vsmContext.stemToRowIndex).isEqualTo(stemToRowIndex);
+        for (int d = 0; d < sparse.columns(); d++)
+        {
+            for (int i = sparse.columnStarts[d] + 1; i < sparse.columnStarts[d + 1]; i++)
+            {
+                assertThat(sparse.rowIndices[i]).isGreaterThan(sparse.rowIndices[i - 1]);
+            }
+            for (int r = 0; r < sparse.rows; r++)
+            {
+                assertThat(sparse.get(r, d)).isEqualTo(
+                    vsmContext.termDocumentMatrix.getQuick(r, d));
+            }
+        }
+
+        matrixBuilder.buildSparseTermDocumentMatrix(vsmContext, 2);
+        assertThat(vsmContext.sparseTermDocumentMatrix.rows).isEqualTo(2);
+        assertThat(vsmContext.stemToRowIndex.size()).isEqualTo(2);
+    }
+
     @Test
     public void testCarrot905()
     {
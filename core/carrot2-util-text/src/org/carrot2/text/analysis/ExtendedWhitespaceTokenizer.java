@@ -19,7 +19,8 @@ import org.carrot2.text.util.MutableCharArray;
 
 /**
  * A tokenizer separating input characters on whitespace, but capable of extracting more
- * complex tokens, such as URLs, e-mail addresses and sentence delimiters.
+ * complex tokens, such as URLs, e-mail addresses and sentence delimiters. Characters
+ * passed to {@link #reset(char[], int, int)} are tokenized in place.
  */
 public final class ExtendedWhitespaceTokenizer implements ITokenizer
 {
@@ -39,7 +40,17 @@ public final class ExtendedWhitespaceTokenizer implements ITokenizer
     @Override
     public void reset(Reader input)
     {
-        this.parser.yyreset(input);
+        this.parser.yyresetReader(input);
+    }
+
+    /**
+     * Reset this tokenizer to start parsing characters of the buffer, without copying
+     * them.
+     */
+    @Override
+    public void reset(char [] buffer, int start, int length)
+    {
+        this.parser.yyresetBuffer(buffer, start, length);
     }
 
     @Override
@@ -461,6 +461,33 @@ public final class ExtendedWhitespaceTokenizerImpl {
 	final int yystart() {
 		return zzStartRead;
 	}
+
+    /**
+     * The scanner's own buffer, replaced with the input buffer while scanning
+     * characters in place.
+     */
+	private char [] zzOwnBuffer = zzBuffer;
+
+    /**
+     * Resets the scanner to read from a new input stream into its own buffer.
+     */
+	final void yyresetReader(java.io.Reader reader) {
+		zzBuffer = zzOwnBuffer;
+		yyreset(reader);
+		zzOwnBuffer = zzBuffer;
+	}
+
+    /**
+     * Resets the scanner to scan a range of the provided buffer in place. The buffer
+     * is not modified, but must not change until scanning is finished.
+     */
+	final void yyresetBuffer(char [] buffer, int start, int length) {
+		yyresetReader(null);
+		zzBuffer = buffer;
+		zzStartRead = zzCurrentPos = zzMarkedPos = start;
+		zzEndRead = start + length;
+		zzAtEOF = true;
+	}
 
 
   /**
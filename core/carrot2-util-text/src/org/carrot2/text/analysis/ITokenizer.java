@@ -104,6 +104,18 @@ public interface ITokenizer
      */
     public void reset(Reader reader) throws IOException;
 
+    /**
+     * Resets the tokenizer to process a range of characters of the provided buffer.
+     * Depending on the implementation, the characters may be tokenized in place, without
+     * copying them, so the buffer must not be modified until the tokenizer is reset
+     * again.
+     * 
+     * @param buffer the buffer with characters to tokenize
+     * @param start index of the first character to tokenize
+     * @param length the number of characters to tokenize
+     */
+    public void reset(char [] buffer, int start, int length) throws IOException;
+
     /**
      * Returns the next token from the input stream.
      * 
@@ -0,0 +1,28 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.clustering;
+
+/**
+ * Creates independent instances of {@link IMonolingualClusteringAlgorithm}, which
+ * enables {@link MultilingualClustering} to cluster different languages concurrently.
+ */
+public interface IMonolingualClusteringAlgorithmFactory
+{
+    /**
+     * Creates a new algorithm instance that shares no mutable state with other instances.
+     * The returned instance will be used for exactly one
+     * {@link IMonolingualClusteringAlgorithm#process(java.util.List, org.carrot2.core.LanguageCode)}
+     * call, possibly on a different thread than the one that created it.
+     */
+    public IMonolingualClusteringAlgorithm create();
+}
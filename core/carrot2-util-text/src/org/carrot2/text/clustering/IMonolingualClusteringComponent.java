@@ -0,0 +1,34 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.clustering;
+
+import java.util.List;
+
+import org.carrot2.core.*;
+
+/**
+ * Clusters documents in one language using a clustering component of type
+ * <code>T</code>. Used with
+ * {@link MultilingualClustering#process(List, ProcessingComponentBase, IMonolingualClusteringComponent, java.util.concurrent.ExecutorService)},
+ * which passes the component itself or one of its replicas, so implementations must not
+ * keep any state of their own.
+ */
+public interface IMonolingualClusteringComponent<T extends ProcessingComponentBase>
+{
+    /**
+     * Clusters <code>documents</code> with <code>component</code> assuming they are
+     * written in <code>language</code>.
+     */
+    public List<Cluster> process(T component, List<Document> documents,
+        LanguageCode language);
+}
@@ -13,10 +13,14 @@
 package org.carrot2.text.clustering;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.carrot2.core.*;
+import org.carrot2.core.attribute.Init;
 import org.carrot2.core.attribute.Processing;
+import org.carrot2.util.ExceptionUtils;
 import org.carrot2.util.attribute.*;
+import org.carrot2.util.attribute.constraint.IntRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +33,8 @@ import org.carrot2.shaded.guava.common.collect.Multiset.Entry;
  * A helper for clustering multilingual collections of documents. The helper partitions
  * the input documents by {@link org.carrot2.core.Document#LANGUAGE}, clusters each such monolingual
  * partition separately and then aggregates the partial cluster lists based on the
- * selected {@link LanguageAggregationStrategy}.
+ * selected {@link LanguageAggregationStrategy}. Monolingual partitions can optionally be
+ * clustered concurrently, see {@link #languageClusteringThreads}.
  */
 @Bindable(prefix = "MultilingualClustering")
 public class MultilingualClustering
@@ -143,8 +148,39 @@ public class MultilingualClustering
     @Group(MULTILINGUAL_CLUSTERING)
     @Level(AttributeLevel.MEDIUM)
     public String majorityLanguage = ""; 
-    
+
+    /**
+     * Language clustering threads. The maximum number of language partitions clustered
+     * concurrently. Concurrent clustering requires support from the clustering algorithm
+     * and is not used with
+     * {@link org.carrot2.text.clustering.MultilingualClustering.LanguageAggregationStrategy#CLUSTER_IN_MAJORITY_LANGUAGE}.
+     * The results are identical to sequential clustering.
+     */
+    @Init
+    @Input
+    @Processing
+    @Attribute
+    @IntRange(min = 1, max = 16)
+    @Group(MULTILINGUAL_CLUSTERING)
+    @Level(AttributeLevel.ADVANCED)
+    public int languageClusteringThreads = 1;
+
     public List<Cluster> process(List<Document> documents, IMonolingualClusteringAlgorithm algorithm)
+    {
+        return process(documents, algorithm, null, null);
+    }
+
+    /**
+     * Clusters <code>documents</code>, running monolingual partitions concurrently on
+     * <code>executor</code>. The first partition is clustered with <code>algorithm</code>
+     * on the calling thread, each of the remaining partitions with a new instance created
+     * by <code>algorithmFactory</code>. If <code>algorithmFactory</code> or
+     * <code>executor</code> is <code>null</code>, all partitions are clustered
+     * sequentially with <code>algorithm</code>.
+     */
+    public List<Cluster> process(List<Document> documents,
+        IMonolingualClusteringAlgorithm algorithm,
+        IMonolingualClusteringAlgorithmFactory algorithmFactory, ExecutorService executor)
     {
         languageCounts = Maps.newHashMap();
         
@@ -160,7 +196,8 @@ public class MultilingualClustering
 
         // Clusters documents in each language separately,
         // creates a map of top-level Cluster instances named after the language code.
-        final Map<LanguageCode, Cluster> clustersByLanguage = clusterByLanguage(documents, algorithm);
+        final Map<LanguageCode, Cluster> clustersByLanguage = clusterByLanguage(documents,
+            algorithm, algorithmFactory, executor);
         final List<Cluster> clusters = Lists.newArrayList(clustersByLanguage.values());
 
         // For FLATTEN_ALL we combine all clusters
@@ -246,10 +283,56 @@ public class MultilingualClustering
     }
 
     /**
-     * Clusters documents in each language separately.
+     * Clusters <code>documents</code> with <code>clustering</code>, running monolingual
+     * partitions concurrently on <code>executor</code>. The first partition is clustered
+     * with <code>component</code> on the calling thread, each of the remaining partitions
+     * with a {@link ProcessingComponentBase#createReplica() replica} of
+     * <code>component</code>, disposed of once the partition is clustered. If
+     * <code>executor</code> is <code>null</code>, all partitions are clustered
+     * sequentially with <code>component</code>.
+     */
+    public <T extends ProcessingComponentBase> List<Cluster> process(
+        List<Document> documents, final T component,
+        final IMonolingualClusteringComponent<T> clustering, ExecutorService executor)
+    {
+        return process(documents, new IMonolingualClusteringAlgorithm()
+        {
+            public List<Cluster> process(List<Document> documents, LanguageCode language)
+            {
+                return clustering.process(component, documents, language);
+            }
+        }, new IMonolingualClusteringAlgorithmFactory()
+        {
+            public IMonolingualClusteringAlgorithm create()
+            {
+                final T replica = component.createReplica();
+                return new IMonolingualClusteringAlgorithm()
+                {
+                    public List<Cluster> process(List<Document> documents,
+                        LanguageCode language)
+                    {
+                        try
+                        {
+                            return clustering.process(replica, documents, language);
+                        }
+                        finally
+                        {
+                            replica.dispose();
+                        }
+                    }
+                };
+            }
+        }, executor);
+    }
+
+    /**
+     * Clusters documents in each language separately. Languages are stored in the order
+     * of their first occurrence in the input, regardless of whether the partitions are
+     * clustered sequentially or concurrently.
      */
     private Map<LanguageCode, Cluster> clusterByLanguage(List<Document> documents,
-        IMonolingualClusteringAlgorithm algorithm)
+        IMonolingualClusteringAlgorithm algorithm,
+        IMonolingualClusteringAlgorithmFactory algorithmFactory, ExecutorService executor)
     {
         // Partition by language first. As Multimaps.index() does not handle null
         // keys, we'd need to index by LanguageCode string and have a dedicated empty
@@ -264,41 +347,101 @@ public class MultilingualClustering
                 }
             });
 
-        // For each language, perform clustering. Please note that implementations of 
-        // IMonolingualClusteringAlgorithm.cluster() are not guaranteed to be thread-safe
-        // and hence the method must NOT be called concurrently.
-        final Map<LanguageCode, Cluster> clusters = Maps.newHashMap();
-        for (String language : documentsByLanguage.keySet())
+        final List<String> languages = Lists.newArrayList(documentsByLanguage.keySet());
+        final List<LanguageCode> languageCodes = Lists.newArrayList();
+        for (String language : languages)
         {
-            final ImmutableList<Document> languageDocuments = documentsByLanguage.get(language);
             final LanguageCode languageCode = language.equals("") ? null : LanguageCode.valueOf(language);
-            final Cluster languageCluster = new Cluster(
-                languageCode != null ? languageCode.toString() : "Unknown Language");
-            
+            languageCodes.add(languageCode);
             languageCounts.put(languageCode != null ? languageCode.getIsoCode() : "",
-                languageDocuments.size());
+                documentsByLanguage.get(language).size());
+        }
 
-            // Perform clustering
-            final LanguageCode currentLanguage = languageCode != null ? languageCode : defaultLanguage;
-            logger.debug("Performing monolingual clustering in: " + currentLanguage);
-            final List<Cluster> clustersForLanguage = algorithm.process(
-                languageDocuments, currentLanguage);
+        // Implementations of IMonolingualClusteringAlgorithm.cluster() are not
+        // guaranteed to be thread-safe, so concurrent partitions get their own instances,
+        // created on this thread before the tasks are submitted.
+        final List<Future<List<Cluster>>> futures = Lists.newArrayList();
+        if (algorithmFactory != null && executor != null && languages.size() > 1)
+        {
+            for (int i = 1; i < languages.size(); i++)
+            {
+                final IMonolingualClusteringAlgorithm languageAlgorithm = algorithmFactory.create();
+                final List<Document> languageDocuments = documentsByLanguage.get(languages.get(i));
+                final LanguageCode currentLanguage = clusteringLanguage(languageCodes.get(i));
+                futures.add(executor.submit(new Callable<List<Cluster>>()
+                {
+                    public List<Cluster> call()
+                    {
+                        logger.debug("Performing monolingual clustering in: " + currentLanguage);
+                        return languageAlgorithm.process(languageDocuments, currentLanguage);
+                    }
+                }));
+            }
+        }
 
-            if (clustersForLanguage.size() == 0 || 
-                clustersForLanguage.size() == 1 && clustersForLanguage.get(0).isOtherTopics())
+        // Perform clustering for each language, collecting concurrent results in order.
+        final Map<LanguageCode, Cluster> clusters = Maps.newLinkedHashMap();
+        try
+        {
+            for (int i = 0; i < languages.size(); i++)
             {
-                languageCluster.addDocuments(languageDocuments);
+                final LanguageCode languageCode = languageCodes.get(i);
+                final ImmutableList<Document> languageDocuments = documentsByLanguage.get(languages.get(i));
+                final Cluster languageCluster = new Cluster(
+                    languageCode != null ? languageCode.toString() : "Unknown Language");
+
+                final List<Cluster> clustersForLanguage;
+                if (i > 0 && !futures.isEmpty())
+                {
+                    clustersForLanguage = futures.get(i - 1).get();
+                }
+                else
+                {
+                    final LanguageCode currentLanguage = clusteringLanguage(languageCode);
+                    logger.debug("Performing monolingual clustering in: " + currentLanguage);
+                    clustersForLanguage = algorithm.process(languageDocuments, currentLanguage);
+                }
+
+                if (clustersForLanguage.size() == 0 || 
+                    clustersForLanguage.size() == 1 && clustersForLanguage.get(0).isOtherTopics())
+                {
+                    languageCluster.addDocuments(languageDocuments);
+                }
+                else
+                {
+                    languageCluster.addSubclusters(clustersForLanguage);
+                }
+
+                clusters.put(languageCode, languageCluster);
             }
-            else
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException("Interrupted while clustering languages", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw ExceptionUtils.wrapAsRuntimeException(e.getCause());
+        }
+        finally
+        {
+            for (Future<List<Cluster>> future : futures)
             {
-                languageCluster.addSubclusters(clustersForLanguage);
+                future.cancel(true);
             }
-
-            clusters.put(languageCode, languageCluster);
         }
 
         return clusters;
     }
+
+    /**
+     * Returns the language to cluster documents of <code>languageCode</code> in.
+     */
+    private LanguageCode clusteringLanguage(LanguageCode languageCode)
+    {
+        return languageCode != null ? languageCode : defaultLanguage;
+    }
     
     private List<Cluster> clusterInMajorityLanguage(List<Document> documents,
         IMonolingualClusteringAlgorithm algorithm)
@@ -18,14 +18,25 @@ import java.util.regex.Pattern;
 import org.carrot2.text.util.MutableCharArray;
 
 import com.carrotsearch.hppc.ObjectHashSet;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
 
 /**
- * {@link ILexicalData} implemented on top of a hash set (stopwords) and a regular
- * expression pattern (stoplabels).
+ * {@link ILexicalData} implemented on top of a perfect hash set (stopwords) and an
+ * automaton compiled from regular expressions (stoplabels). Expressions the automaton
+ * cannot express are matched with {@link Pattern}. Stopwords are matched regardless of
+ * their case.
  */
-final class DefaultLexicalData implements ILexicalData
+final class DefaultLexicalData implements ICaseInsensitiveLexicalData
 {
-    private final ObjectHashSet<MutableCharArray> stopwords;
+    private final StopwordSet stopwords;
+
+    /** Matches stoplabels, <code>null</code> if none could be compiled. */
+    private final StopLabelAutomaton stoplabelAutomaton;
+
+    /** Union of stoplabels not matched by {@link #stoplabelAutomaton}. */
+    private final Pattern fallbackPattern;
+
+    /** Union of all stoplabels, for labels the automaton cannot handle. */
     private final Pattern stoplabelPattern;
 
     /*
@@ -34,8 +45,19 @@ final class DefaultLexicalData implements ILexicalData
     public DefaultLexicalData(ObjectHashSet<MutableCharArray> stopwords, 
                               ArrayList<Pattern> stoplabels)
     {
-        this.stopwords = stopwords;
-        this.stoplabelPattern = union(stoplabels);
+        final ArrayList<MutableCharArray> words = new ArrayList<MutableCharArray>(
+            stopwords.size());
+        for (ObjectCursor<MutableCharArray> c : stopwords)
+        {
+            words.add(c.value);
+        }
+        this.stopwords = new StopwordSet(words);
+
+        final ArrayList<Pattern> unsupported = new ArrayList<Pattern>();
+        this.stoplabelAutomaton = StopLabelAutomaton.compile(stoplabels, unsupported,
+            StopLabelAutomaton.DEFAULT_MAX_STATES);
+        this.fallbackPattern = union(unsupported);
+        this.stoplabelPattern = stoplabelAutomaton != null ? union(stoplabels) : null;
     }
 
     /*
@@ -53,16 +75,41 @@ final class DefaultLexicalData implements ILexicalData
     @Override
     public boolean isStopLabel(CharSequence label)
     {
-        if (this.stoplabelPattern == null)
-            return false;
+        if (stoplabelAutomaton != null)
+        {
+            if (hasSurrogates(label))
+            {
+                return stoplabelPattern.matcher(label).matches();
+            }
+
+            if (stoplabelAutomaton.matches(label))
+            {
+                return true;
+            }
+        }
+
+        return fallbackPattern != null && fallbackPattern.matcher(label).matches();
+    }
 
-        return stoplabelPattern.matcher(label).matches();
+    /**
+     * {@link Pattern} matches surrogate pairs as single code points, the automaton
+     * works with individual characters.
+     */
+    private static boolean hasSurrogates(CharSequence label)
+    {
+        for (int i = 0; i < label.length(); i++)
+        {
+            if (Character.isSurrogate(label.charAt(i)))
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Combines a number of patterns into a single pattern with a union
-     * of all of them. With automata-based pattern engines, this should
-     * be faster and memory-friendly.
+     * of all of them.
      */
     private static Pattern union(ArrayList<Pattern> patterns)
     {
@@ -13,7 +13,6 @@
 package org.carrot2.text.linguistic;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.EnumMap;
 
 import org.carrot2.core.LanguageCode;
@@ -52,7 +51,8 @@ public class DefaultTokenizerFactory implements ITokenizerFactory
             // Assume functional if there's no exception.
             try
             {
-                tokenizer.reset(new StringReader("verify"));
+                final char [] verify = "verify".toCharArray();
+                tokenizer.reset(verify, 0, verify.length);
                 tokenizer.nextToken();
             }
             catch (IOException e)
@@ -0,0 +1,23 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.linguistic;
+
+import org.carrot2.text.util.MutableCharArray;
+
+/**
+ * {@link ILexicalData} which ignores the case of words passed to
+ * {@link #isCommonWord(MutableCharArray)}, so callers need not lower-case them first.
+ */
+public interface ICaseInsensitiveLexicalData extends ILexicalData
+{
+}
@@ -26,6 +26,7 @@ public final class LanguageModel
     private final LanguageCode languageCode;
     private final IFactory<IStemmer> stemmerFactory;
     private final IFactory<ITokenizer> tokenizerFactory;
+    private final IFactory<ITokenizer> newTokenizerFactory;
     private final IFactory<ILexicalData> lexicalDataFactory;
 
     LanguageModel(LanguageCode languageCode, IFactory<IStemmer> stemmerFactory,
@@ -35,6 +36,7 @@ public final class LanguageModel
         this.stemmerFactory = new CachedInstanceFactoryDecorator<IStemmer>(stemmerFactory);
         this.tokenizerFactory = new CachedInstanceFactoryDecorator<ITokenizer>(
             tokenizerFactory);
+        this.newTokenizerFactory = tokenizerFactory;
         this.lexicalDataFactory = new CachedInstanceFactoryDecorator<ILexicalData>(
             lexicalDataFactory);
     }
@@ -92,4 +94,13 @@ public final class LanguageModel
     {
         return tokenizerFactory.createInstance();
     }
+
+    /**
+     * Returns a new tokenizer instance, as opposed to {@link #getTokenizer()}, which
+     * always returns the same instance. Useful for tokenizing in parallel.
+     */
+    public ITokenizer createTokenizer()
+    {
+        return newTokenizerFactory.createInstance();
+    }
 }
@@ -0,0 +1,953 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.linguistic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntStack;
+
+/**
+ * A deterministic automaton matching the union of a number of stop label regular
+ * expressions in time linear in the length of the label, regardless of the number of
+ * expressions.
+ * <p>
+ * The automaton understands the subset of {@link Pattern} syntax used in stop label
+ * resources: literals and escaped characters, <code>.</code>, character classes (without
+ * intersections and nested classes), predefined classes <code>\d \D \s \S \w \W</code>,
+ * groups, alternatives, greedy and lazy quantifiers and the <code>i</code> inline flag
+ * (US-ASCII case folding, as in {@link Pattern#CASE_INSENSITIVE}). Expressions using any
+ * other construct are reported as unsupported and must be matched with {@link Pattern}.
+ * </p>
+ * <p>
+ * Matching is equivalent to {@link java.util.regex.Matcher#matches()} for labels without
+ * surrogate characters; {@link Pattern} treats surrogate pairs as single code points.
+ * </p>
+ */
+final class StopLabelAutomaton
+{
+    /** Default maximum number of automaton states, see {@link #compile}. */
+    static final int DEFAULT_MAX_STATES = 20000;
+
+    /** Largest supported repetition bound in <code>{n,m}</code> quantifiers. */
+    private static final int MAX_REPETITIONS = 100;
+
+    /** Characters not matched by <code>.</code> (line terminators). */
+    private static final int [] DOT = complement(new int []
+    {
+        '\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'
+    });
+
+    private static final int [] DIGIT = new int []
+    {
+        '0', '9'
+    };
+
+    private static final int [] SPACE = new int []
+    {
+        '\t', '\r', ' ', ' '
+    };
+
+    private static final int [] WORD = new int []
+    {
+        '0', '9', 'A', 'Z', '_', '_', 'a', 'z'
+    };
+
+    /**
+     * Lower bounds of character classes. Characters from
+     * <code>classBounds[i]</code> to <code>classBounds[i + 1] - 1</code> are not
+     * distinguished by any expression.
+     */
+    private final int [] classBounds;
+
+    /** Character classes of US-ASCII characters, for faster lookups. */
+    private final int [] asciiClasses;
+
+    /** Number of character classes. */
+    private final int classCount;
+
+    /**
+     * Transitions, <code>transitions[state * classCount + class]</code> is the next state
+     * or -1 if no expression can match.
+     */
+    private final int [] transitions;
+
+    /** Accepting states. */
+    private final boolean [] accepting;
+
+    private StopLabelAutomaton(int [] classBounds, int [] transitions, boolean [] accepting)
+    {
+        this.classBounds = classBounds;
+        this.classCount = classBounds.length - 1;
+        this.transitions = transitions;
+        this.accepting = accepting;
+
+        this.asciiClasses = new int [128];
+        for (int c = 0; c < asciiClasses.length; c++)
+        {
+            asciiClasses[c] = classOf(c);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if any of the expressions matches the whole
+     * <code>label</code>.
+     */
+    boolean matches(CharSequence label)
+    {
+        int state = 0;
+        for (int i = 0; i < label.length(); i++)
+        {
+            final char c = label.charAt(i);
+            final int charClass = c < 128 ? asciiClasses[c] : classOf(c);
+            state = transitions[state * classCount + charClass];
+            if (state < 0)
+            {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Returns the number of states of this automaton.
+     */
+    int getStateCount()
+    {
+        return accepting.length;
+    }
+
+    private int classOf(int c)
+    {
+        final int index = Arrays.binarySearch(classBounds, c);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Compiles an automaton matching the union of <code>patterns</code>. Patterns the
+     * automaton cannot express are added to <code>unsupported</code>. If none of the
+     * patterns could be compiled or the automaton would have more than
+     * <code>maxStates</code> states, all patterns are added to <code>unsupported</code>
+     * and <code>null</code> is returned.
+     */
+    static StopLabelAutomaton compile(List<Pattern> patterns, List<Pattern> unsupported,
+        int maxStates)
+    {
+        final Nfa nfa = new Nfa();
+        final int start = nfa.newState();
+        final List<Pattern> compiled = new ArrayList<Pattern>();
+        for (Pattern pattern : patterns)
+        {
+            final Node node;
+            try
+            {
+                // Flags passed to Pattern#compile, flags() includes inline flags too.
+                if (pattern.flags() != Pattern.compile(pattern.pattern()).flags())
+                {
+                    throw new UnsupportedSyntaxException();
+                }
+                node = new Parser(pattern.pattern()).parse();
+            }
+            catch (UnsupportedSyntaxException e)
+            {
+                unsupported.add(pattern);
+                continue;
+            }
+
+            final int patternStart = nfa.newState();
+            nfa.epsilon(start, patternStart);
+            nfa.accepting.set(nfa.build(node, patternStart));
+            compiled.add(pattern);
+        }
+
+        final StopLabelAutomaton automaton = compiled.isEmpty() ? null : determinize(nfa,
+            start, maxStates);
+        if (automaton == null)
+        {
+            unsupported.addAll(compiled);
+        }
+        return automaton;
+    }
+
+    /**
+     * Converts the NFA into a DFA using subset construction, returns <code>null</code> if
+     * the DFA would have more than <code>maxStates</code> states.
+     */
+    private static StopLabelAutomaton determinize(Nfa nfa, int start, int maxStates)
+    {
+        // Split the alphabet into classes of characters no transition distinguishes.
+        final IntArrayList bounds = new IntArrayList();
+        bounds.add(0);
+        bounds.add(0x10000);
+        for (int [] ranges : nfa.ranges)
+        {
+            if (ranges != null)
+            {
+                for (int i = 0; i < ranges.length; i += 2)
+                {
+                    bounds.add(ranges[i]);
+                    bounds.add(ranges[i + 1] + 1);
+                }
+            }
+        }
+        final int [] classBounds = unique(bounds.toArray());
+        final int classCount = classBounds.length - 1;
+
+        // DFA states are sorted sets of NFA states with character transitions or
+        // accepting, other states do not affect matching.
+        final HashMap<IntArrayList, Integer> stateIds = new HashMap<IntArrayList, Integer>();
+        final ArrayList<IntArrayList> states = new ArrayList<IntArrayList>();
+        final IntArrayList transitions = new IntArrayList();
+        final BitSet visited = new BitSet();
+
+        final IntArrayList initial = new IntArrayList();
+        initial.add(start);
+        states.add(nfa.closure(initial, visited));
+        stateIds.put(states.get(0), 0);
+
+        final IntArrayList segmentBounds = new IntArrayList();
+        final HashMap<IntArrayList, Integer> nextStates = new HashMap<IntArrayList, Integer>();
+        for (int state = 0; state < states.size(); state++)
+        {
+            final IntArrayList nfaStates = states.get(state);
+
+            // Split classes into segments no transition of this state distinguishes.
+            segmentBounds.clear();
+            segmentBounds.add(0, classCount);
+            for (int k = 0; k < nfaStates.size(); k++)
+            {
+                final int [] ranges = nfa.ranges.get(nfaStates.get(k));
+                if (ranges != null)
+                {
+                    for (int i = 0; i < ranges.length; i += 2)
+                    {
+                        segmentBounds.add(Arrays.binarySearch(classBounds, ranges[i]));
+                        segmentBounds.add(Arrays.binarySearch(classBounds, ranges[i + 1] + 1));
+                    }
+                }
+            }
+            final int [] segments = unique(segmentBounds.toArray());
+
+            final IntArrayList [] targets = new IntArrayList [segments.length - 1];
+            for (int k = 0; k < nfaStates.size(); k++)
+            {
+                final int q = nfaStates.get(k);
+                final int [] ranges = nfa.ranges.get(q);
+                if (ranges == null)
+                {
+                    continue;
+                }
+
+                for (int i = 0; i < ranges.length; i += 2)
+                {
+                    final int last = Arrays.binarySearch(classBounds, ranges[i + 1] + 1);
+                    int segment = Arrays.binarySearch(segments,
+                        Arrays.binarySearch(classBounds, ranges[i]));
+                    for (; segment < targets.length && segments[segment] < last; segment++)
+                    {
+                        if (targets[segment] == null)
+                        {
+                            targets[segment] = new IntArrayList();
+                        }
+                        targets[segment].add(nfa.targets.get(q));
+                    }
+                }
+            }
+
+            // Different segments often lead to the same states, compute closures once.
+            nextStates.clear();
+            for (int segment = 0; segment < targets.length; segment++)
+            {
+                final IntArrayList target = targets[segment];
+                int id = -1;
+                if (target != null)
+                {
+                    Integer existing = nextStates.get(target);
+                    if (existing == null)
+                    {
+                        final IntArrayList closure = nfa.closure(target, visited);
+                        existing = stateIds.get(closure);
+                        if (existing == null)
+                        {
+                            if (states.size() == maxStates)
+                            {
+                                return null;
+                            }
+                            existing = states.size();
+                            stateIds.put(closure, existing);
+                            states.add(closure);
+                        }
+                        nextStates.put(target, existing);
+                    }
+                    id = existing;
+                }
+
+                for (int c = segments[segment]; c < segments[segment + 1]; c++)
+                {
+                    transitions.add(id);
+                }
+            }
+        }
+
+        final boolean [] accepting = new boolean [states.size()];
+        for (int state = 0; state < accepting.length; state++)
+        {
+            final IntArrayList nfaStates = states.get(state);
+            for (int k = 0; k < nfaStates.size() && !accepting[state]; k++)
+            {
+                accepting[state] = nfa.accepting.get(nfaStates.get(k));
+            }
+        }
+
+        return new StopLabelAutomaton(classBounds, transitions.toArray(), accepting);
+    }
+
+    /**
+     * Sorts and removes duplicates.
+     */
+    private static int [] unique(int [] values)
+    {
+        Arrays.sort(values);
+        int k = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            if (k == 0 || values[k - 1] != values[i])
+            {
+                values[k++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, k);
+    }
+
+    /**
+     * Normalizes a list of inclusive character ranges (pairs of lower and upper bounds)
+     * into sorted, non-overlapping and non-adjacent ranges.
+     */
+    private static int [] normalize(IntArrayList ranges)
+    {
+        final int count = ranges.size() / 2;
+        final long [] sorted = new long [count];
+        for (int i = 0; i < count; i++)
+        {
+            sorted[i] = ((long) ranges.get(2 * i) << 32) | ranges.get(2 * i + 1);
+        }
+        Arrays.sort(sorted);
+
+        final IntArrayList result = new IntArrayList(ranges.size());
+        for (long range : sorted)
+        {
+            final int lower = (int) (range >>> 32);
+            final int upper = (int) range;
+            final int last = result.size() - 1;
+            if (last > 0 && lower <= result.get(last) + 1)
+            {
+                result.set(last, Math.max(upper, result.get(last)));
+            }
+            else
+            {
+                result.add(lower, upper);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Returns ranges of characters not in <code>ranges</code>.
+     */
+    private static int [] complement(int [] ranges)
+    {
+        final IntArrayList result = new IntArrayList();
+        int next = 0;
+        for (int i = 0; i < ranges.length; i += 2)
+        {
+            if (ranges[i] > next)
+            {
+                result.add(next, ranges[i] - 1);
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= 0xffff)
+        {
+            result.add(next, 0xffff);
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Adds the other case of US-ASCII letters to <code>ranges</code>.
+     */
+    private static int [] foldCase(int [] ranges)
+    {
+        final IntArrayList result = new IntArrayList();
+        result.add(ranges, 0, ranges.length);
+        for (int i = 0; i < ranges.length; i += 2)
+        {
+            addShifted(result, ranges[i], ranges[i + 1], 'a', 'z', 'A' - 'a');
+            addShifted(result, ranges[i], ranges[i + 1], 'A', 'Z', 'a' - 'A');
+        }
+        return normalize(result);
+    }
+
+    private static void addShifted(IntArrayList result, int lower, int upper, int from,
+        int to, int shift)
+    {
+        lower = Math.max(lower, from);
+        upper = Math.min(upper, to);
+        if (lower <= upper)
+        {
+            result.add(lower + shift, upper + shift);
+        }
+    }
+
+    /**
+     * Thrown for syntax the automaton cannot express.
+     */
+    @SuppressWarnings("serial")
+    private static final class UnsupportedSyntaxException extends Exception
+    {
+    }
+
+    /**
+     * A node of the expression tree.
+     */
+    private static final class Node
+    {
+        static final int CHARACTERS = 0;
+        static final int SEQUENCE = 1;
+        static final int ALTERNATIVES = 2;
+        static final int REPETITION = 3;
+
+        final int type;
+
+        /** Character ranges for {@link #CHARACTERS}. */
+        int [] ranges;
+
+        /** Children for {@link #SEQUENCE}, {@link #ALTERNATIVES} and {@link #REPETITION}. */
+        List<Node> children;
+
+        /** Repetition bounds, <code>max</code> is -1 for unbounded repetitions. */
+        int min, max;
+
+        Node(int type)
+        {
+            this.type = type;
+        }
+
+        static Node characters(int [] ranges)
+        {
+            final Node node = new Node(CHARACTERS);
+            node.ranges = ranges;
+            return node;
+        }
+
+        static Node parent(int type, List<Node> children)
+        {
+            final Node node = new Node(type);
+            node.children = children;
+            return node;
+        }
+    }
+
+    /**
+     * A recursive descent parser of the supported subset of {@link Pattern} syntax. The
+     * input is assumed to be a valid {@link Pattern}.
+     */
+    private static final class Parser
+    {
+        private final String pattern;
+        private int position;
+
+        /** Case folding, scoped to the enclosing group like in {@link Pattern}. */
+        private boolean caseInsensitive;
+
+        Parser(String pattern)
+        {
+            this.pattern = pattern;
+        }
+
+        Node parse() throws UnsupportedSyntaxException
+        {
+            final Node node = alternatives();
+            if (position != pattern.length())
+            {
+                throw new UnsupportedSyntaxException();
+            }
+            return node;
+        }
+
+        private Node alternatives() throws UnsupportedSyntaxException
+        {
+            final List<Node> alternatives = new ArrayList<Node>();
+            alternatives.add(sequence());
+            while (position < pattern.length() && pattern.charAt(position) == '|')
+            {
+                position++;
+                alternatives.add(sequence());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : Node.parent(
+                Node.ALTERNATIVES, alternatives);
+        }
+
+        private Node sequence() throws UnsupportedSyntaxException
+        {
+            final List<Node> sequence = new ArrayList<Node>();
+            while (position < pattern.length())
+            {
+                final char c = pattern.charAt(position);
+                if (c == '|' || c == ')')
+                {
+                    break;
+                }
+
+                final Node atom = atom();
+                if (atom != null)
+                {
+                    sequence.add(quantifier(atom));
+                }
+            }
+            return Node.parent(Node.SEQUENCE, sequence);
+        }
+
+        /**
+         * Returns the next atom or <code>null</code> for inline flags.
+         */
+        private Node atom() throws UnsupportedSyntaxException
+        {
+            final char c = pattern.charAt(position++);
+            switch (c)
+            {
+                case '(':
+                    return group();
+                case '[':
+                    return Node.characters(characterClass());
+                case '.':
+                    return Node.characters(DOT);
+                case '\\':
+                    return Node.characters(fold(escape()));
+                case '^':
+                case '$':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw new UnsupportedSyntaxException();
+                default:
+                    return Node.characters(fold(character(c)));
+            }
+        }
+
+        private Node group() throws UnsupportedSyntaxException
+        {
+            final boolean outer = caseInsensitive;
+            if (consume('?'))
+            {
+                if (!consume(':'))
+                {
+                    // Only the case-insensitivity flag is supported.
+                    boolean enable = true;
+                    boolean flag = caseInsensitive;
+                    while (true)
+                    {
+                        if (consume('-')) enable = false;
+                        else if (consume('i')) flag = enable;
+                        else break;
+                    }
+
+                    if (consume(')'))
+                    {
+                        caseInsensitive = flag;
+                        return null;
+                    }
+                    if (!consume(':'))
+                    {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    caseInsensitive = flag;
+                }
+            }
+
+            final Node node = alternatives();
+            if (!consume(')'))
+            {
+                throw new UnsupportedSyntaxException();
+            }
+            caseInsensitive = outer;
+            return node;
+        }
+
+        private Node quantifier(Node atom) throws UnsupportedSyntaxException
+        {
+            if (position == pattern.length())
+            {
+                return atom;
+            }
+
+            final int min, max;
+            switch (pattern.charAt(position))
+            {
+                case '?':
+                    min = 0;
+                    max = 1;
+                    break;
+                case '*':
+                    min = 0;
+                    max = -1;
+                    break;
+                case '+':
+                    min = 1;
+                    max = -1;
+                    break;
+                case '{':
+                    position++;
+                    min = number();
+                    if (consume(','))
+                    {
+                        max = pattern.charAt(position) == '}' ? -1 : number();
+                    }
+                    else
+                    {
+                        max = min;
+                    }
+                    if (pattern.charAt(position) != '}' || min > MAX_REPETITIONS
+                        || max > MAX_REPETITIONS)
+                    {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    break;
+                default:
+                    return atom;
+            }
+            position++;
+
+            // Lazy quantifiers accept the same whole inputs, possessive ones do not.
+            if (!consume('?') && position < pattern.length()
+                && pattern.charAt(position) == '+')
+            {
+                throw new UnsupportedSyntaxException();
+            }
+
+            final Node node = Node.parent(Node.REPETITION, Arrays.asList(atom));
+            node.min = min;
+            node.max = max;
+            return node;
+        }
+
+        private int number() throws UnsupportedSyntaxException
+        {
+            final int start = position;
+            while (position < pattern.length()
+                && Character.isDigit(pattern.charAt(position)))
+            {
+                position++;
+            }
+            if (position == start || position - start > 4)
+            {
+                throw new UnsupportedSyntaxException();
+            }
+            return Integer.parseInt(pattern.substring(start, position));
+        }
+
+        private int [] characterClass() throws UnsupportedSyntaxException
+        {
+            final boolean negated = consume('^');
+            if (position < pattern.length() && pattern.charAt(position) == ']')
+            {
+                throw new UnsupportedSyntaxException();
+            }
+
+            final IntArrayList ranges = new IntArrayList();
+            while (!consume(']'))
+            {
+                final char c = pattern.charAt(position++);
+                final int [] item;
+                if (c == '[' || (c == '&' && consume('&')))
+                {
+                    throw new UnsupportedSyntaxException();
+                }
+                else if (c == '\\')
+                {
+                    item = escape();
+                }
+                else
+                {
+                    item = character(c);
+                }
+
+                // A range if a single character is followed by '-' and not by ']'.
+                if (item.length == 2 && item[0] == item[1]
+                    && position + 1 < pattern.length() && pattern.charAt(position) == '-'
+                    && pattern.charAt(position + 1) != ']')
+                {
+                    position++;
+                    final char d = pattern.charAt(position++);
+                    final int [] upper;
+                    if (d == '[')
+                    {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    upper = d == '\\' ? escape() : character(d);
+                    if (upper.length != 2 || upper[0] != upper[1])
+                    {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    ranges.add(item[0], upper[0]);
+                }
+                else
+                {
+                    ranges.add(item, 0, item.length);
+                }
+            }
+
+            final int [] folded = fold(normalize(ranges));
+            return negated ? complement(folded) : folded;
+        }
+
+        /**
+         * Parses an escape sequence following a backslash.
+         */
+        private int [] escape() throws UnsupportedSyntaxException
+        {
+            final char c = pattern.charAt(position++);
+            switch (c)
+            {
+                case 'd': return DIGIT;
+                case 'D': return complement(DIGIT);
+                case 's': return SPACE;
+                case 'S': return complement(SPACE);
+                case 'w': return WORD;
+                case 'W': return complement(WORD);
+                case 't': return character('\t');
+                case 'n': return character('\n');
+                case 'r': return character('\r');
+                case 'f': return character('\f');
+                case 'a': return character('\u0007');
+                case 'e': return character('\u001B');
+                case 'u': return character(hex(4));
+                case 'x':
+                    if (position < pattern.length() && pattern.charAt(position) == '{')
+                    {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    return character(hex(2));
+                default:
+                    // Backreferences, boundaries, quoting, properties etc.
+                    if (Character.isLetterOrDigit(c))
+                    {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    return character(c);
+            }
+        }
+
+        private char hex(int digits) throws UnsupportedSyntaxException
+        {
+            if (position + digits > pattern.length())
+            {
+                throw new UnsupportedSyntaxException();
+            }
+            try
+            {
+                return (char) Integer.parseInt(
+                    pattern.substring(position, position += digits), 16);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new UnsupportedSyntaxException();
+            }
+        }
+
+        private int [] character(char c) throws UnsupportedSyntaxException
+        {
+            // Pattern matches surrogate pairs as single code points.
+            if (Character.isSurrogate(c))
+            {
+                throw new UnsupportedSyntaxException();
+            }
+            return new int []
+            {
+                c, c
+            };
+        }
+
+        private int [] fold(int [] ranges)
+        {
+            return caseInsensitive ? foldCase(ranges) : ranges;
+        }
+
+        private boolean consume(char c)
+        {
+            if (position < pattern.length() && pattern.charAt(position) == c)
+            {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A nondeterministic automaton with epsilon transitions. Each state has at most one
+     * character transition.
+     */
+    private static final class Nfa
+    {
+        final ArrayList<IntArrayList> epsilon = new ArrayList<IntArrayList>();
+        final ArrayList<int []> ranges = new ArrayList<int []>();
+        final IntArrayList targets = new IntArrayList();
+        final BitSet accepting = new BitSet();
+
+        int newState()
+        {
+            epsilon.add(null);
+            ranges.add(null);
+            targets.add(-1);
+            return targets.size() - 1;
+        }
+
+        void epsilon(int from, int to)
+        {
+            if (epsilon.get(from) == null)
+            {
+                epsilon.set(from, new IntArrayList(2));
+            }
+            epsilon.get(from).add(to);
+        }
+
+        /**
+         * Adds states matching <code>node</code> starting at <code>from</code>, returns
+         * the end state.
+         */
+        int build(Node node, int from)
+        {
+            switch (node.type)
+            {
+                case Node.CHARACTERS:
+                {
+                    final int state = newState();
+                    final int end = newState();
+                    epsilon(from, state);
+                    ranges.set(state, node.ranges);
+                    targets.set(state, end);
+                    return end;
+                }
+
+                case Node.SEQUENCE:
+                {
+                    int current = from;
+                    for (Node child : node.children)
+                    {
+                        current = build(child, current);
+                    }
+                    return current;
+                }
+
+                case Node.ALTERNATIVES:
+                {
+                    final int end = newState();
+                    for (Node child : node.children)
+                    {
+                        final int start = newState();
+                        epsilon(from, start);
+                        epsilon(build(child, start), end);
+                    }
+                    return end;
+                }
+
+                case Node.REPETITION:
+                {
+                    final Node child = node.children.get(0);
+                    int current = from;
+                    for (int i = 0; i < node.min; i++)
+                    {
+                        current = build(child, current);
+                    }
+
+                    if (node.max < 0)
+                    {
+                        final int loop = newState();
+                        epsilon(current, loop);
+                        epsilon(build(child, loop), loop);
+                        return loop;
+                    }
+
+                    final int end = newState();
+                    for (int i = node.min; i < node.max; i++)
+                    {
+                        epsilon(current, end);
+                        current = build(child, current);
+                    }
+                    epsilon(current, end);
+                    return end;
+                }
+
+                default:
+                    throw new RuntimeException("Unknown node type: " + node.type);
+            }
+        }
+
+        /**
+         * Returns the sorted states reachable from <code>states</code> through epsilon
+         * transitions, limited to states with character transitions or accepting.
+         * <code>visited</code> must be clear and is cleared on return.
+         */
+        IntArrayList closure(IntArrayList states, BitSet visited)
+        {
+            final IntStack stack = new IntStack();
+            for (int i = 0; i < states.size(); i++)
+            {
+                final int q = states.get(i);
+                if (!visited.get(q))
+                {
+                    visited.set(q);
+                    stack.push(q);
+                }
+            }
+
+            final IntArrayList closure = new IntArrayList();
+            while (!stack.isEmpty())
+            {
+                final int q = stack.pop();
+                if (ranges.get(q) != null || accepting.get(q))
+                {
+                    closure.add(q);
+                }
+
+                final IntArrayList next = epsilon.get(q);
+                if (next != null)
+                {
+                    for (int i = 0; i < next.size(); i++)
+                    {
+                        final int r = next.get(i);
+                        if (!visited.get(r))
+                        {
+                            visited.set(r);
+                            stack.push(r);
+                        }
+                    }
+                }
+            }
+
+            visited.clear();
+            final int [] sorted = closure.toArray();
+            Arrays.sort(sorted);
+            closure.clear();
+            closure.add(sorted, 0, sorted.length);
+            return closure;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.linguistic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.annotations.ThreadSafe;
+
+import com.carrotsearch.hppc.BitMixer;
+
+/**
+ * An immutable, case-insensitive set of words based on a minimal perfect hash function:
+ * each word has its own slot, so a lookup hashes the word once and compares it with at
+ * most one stored word. Words are stored lower-cased, one after another in a single
+ * character pool; lookups fold the case of each character on the fly (using
+ * {@link Character#toLowerCase(char)}), without copying the word.
+ * <p>
+ * The hash function is built with the "hash, displace" method: words are distributed
+ * into small buckets, then, starting from the largest bucket, each bucket is assigned
+ * a displacement that moves all its words to free slots.
+ * </p>
+ */
+@ThreadSafe
+public final class StopwordSet
+{
+    /** Average number of words in a bucket. */
+    private static final int BUCKET_SIZE = 4;
+
+    /** Number of bits of a displacement used for the offset; limits the number of words. */
+    private static final int OFFSET_BITS = 24;
+
+    private static final int OFFSET_MASK = (1 << OFFSET_BITS) - 1;
+
+    /** Multipliers tried for a bucket before another seed is chosen. */
+    private static final int MULTIPLIERS = 64;
+
+    /** Seed of the hash function, chosen so that the function is perfect. */
+    private final long seed;
+
+    /** Displacement of each bucket. */
+    private final int [] displacements;
+
+    /** Lower-cased words, in slot order. */
+    private final char [] pool;
+
+    /** Start of each slot's word in {@link #pool}, followed by the end of the last word. */
+    private final int [] offsets;
+
+    /**
+     * Creates a set of the provided words, lower-cased.
+     */
+    public StopwordSet(Collection<? extends CharSequence> words)
+    {
+        final LinkedHashSet<String> unique = new LinkedHashSet<String>();
+        for (CharSequence word : words)
+        {
+            unique.add(toLowerCase(word));
+        }
+
+        if (unique.size() > OFFSET_MASK)
+        {
+            throw new IllegalArgumentException("Too many words: " + unique.size());
+        }
+
+        final String [] keys = unique.toArray(new String [unique.size()]);
+        final int slots = keys.length;
+        final int buckets = Math.max(1, slots / BUCKET_SIZE);
+
+        long seed = 0;
+        int [] displacements;
+        int [] slotKeys;
+        while ((slotKeys = assignSlots(keys, seed, displacements = new int [buckets])) == null)
+        {
+            seed++;
+        }
+        this.seed = seed;
+        this.displacements = displacements;
+
+        int total = 0;
+        for (String key : keys)
+        {
+            total += key.length();
+        }
+
+        this.pool = new char [total];
+        this.offsets = new int [slots + 1];
+        int offset = 0;
+        for (int slot = 0; slot < slots; slot++)
+        {
+            final String key = keys[slotKeys[slot]];
+            offsets[slot] = offset;
+            key.getChars(0, key.length(), pool, offset);
+            offset += key.length();
+        }
+        offsets[slots] = offset;
+    }
+
+    /**
+     * Returns <code>true</code> if the set contains <code>word</code>, ignoring case.
+     */
+    public boolean contains(MutableCharArray word)
+    {
+        return contains(word.getBuffer(), word.getStart(), word.length());
+    }
+
+    /**
+     * Returns <code>true</code> if the set contains the word stored in
+     * <code>buffer</code> at <code>start</code>, ignoring case.
+     */
+    public boolean contains(char [] buffer, int start, int length)
+    {
+        final int slots = offsets.length - 1;
+        if (slots == 0)
+        {
+            return false;
+        }
+
+        final long hash = hash(buffer, start, length, seed);
+        final int slot = slot(hash, displacements[bucket(hash, displacements.length)], slots);
+
+        final int from = offsets[slot];
+        if (offsets[slot + 1] - from != length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (pool[from + i] != Character.toLowerCase(buffer[start + i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of words in the set.
+     */
+    public int size()
+    {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Tries to assign displacements to buckets so that each key gets its own slot.
+     * Returns the index of the key in each slot or <code>null</code> if some bucket
+     * could not be placed with this seed.
+     */
+    private static int [] assignSlots(String [] keys, long seed, int [] displacements)
+    {
+        final int slots = keys.length;
+        final int buckets = displacements.length;
+
+        final long [] hashes = new long [keys.length];
+        final ArrayList<ArrayList<Integer>> bucketKeys = new ArrayList<ArrayList<Integer>>();
+        for (int i = 0; i < buckets; i++)
+        {
+            bucketKeys.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < keys.length; i++)
+        {
+            final char [] key = keys[i].toCharArray();
+            hashes[i] = hash(key, 0, key.length, seed);
+            bucketKeys.get(bucket(hashes[i], buckets)).add(i);
+        }
+
+        final Integer [] order = new Integer [buckets];
+        for (int i = 0; i < buckets; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                return bucketKeys.get(b).size() - bucketKeys.get(a).size();
+            }
+        });
+
+        final int [] slotKeys = new int [slots];
+        Arrays.fill(slotKeys, -1);
+        final int [] candidate = new int [keys.length];
+        for (int bucket : order)
+        {
+            final ArrayList<Integer> members = bucketKeys.get(bucket);
+            if (members.isEmpty())
+            {
+                break;
+            }
+
+            boolean placed = false;
+            for (int displacement = 0; !placed && (displacement >>> OFFSET_BITS) < MULTIPLIERS;
+                displacement = next(displacement, slots))
+            {
+                placed = true;
+                for (int j = 0; j < members.size() && placed; j++)
+                {
+                    final int slot = slot(hashes[members.get(j)], displacement, slots);
+                    placed = slotKeys[slot] < 0;
+                    for (int k = 0; k < j && placed; k++)
+                    {
+                        placed = candidate[k] != slot;
+                    }
+                    candidate[j] = slot;
+                }
+
+                if (placed)
+                {
+                    displacements[bucket] = displacement;
+                    for (int j = 0; j < members.size(); j++)
+                    {
+                        slotKeys[candidate[j]] = members.get(j);
+                    }
+                }
+            }
+
+            if (!placed)
+            {
+                return null;
+            }
+        }
+        return slotKeys;
+    }
+
+    private static int bucket(long hash, int buckets)
+    {
+        return (int) (((hash >>> 32) * buckets) >>> 32);
+    }
+
+    /**
+     * The displacement encodes a multiplier of the second hash (high bits) and an offset
+     * (low bits); the offset alone reaches every slot.
+     */
+    private static int slot(long hash, int displacement, int slots)
+    {
+        final long first = hash & 0xffffffffL;
+        final long second = BitMixer.mix64(hash) & 0xffffffffL;
+        final long offset = displacement & OFFSET_MASK;
+        return (int) ((first + (displacement >>> OFFSET_BITS) * second + offset) % slots);
+    }
+
+    /**
+     * Returns the displacement following <code>displacement</code>: the next offset or
+     * the next multiplier once all offsets have been tried.
+     */
+    private static int next(int displacement, int slots)
+    {
+        if ((displacement & OFFSET_MASK) + 1 < slots)
+        {
+            return displacement + 1;
+        }
+        return ((displacement >>> OFFSET_BITS) + 1) << OFFSET_BITS;
+    }
+
+    /**
+     * A 64-bit hash of the lower-cased characters.
+     */
+    private static long hash(char [] buffer, int start, int length, long seed)
+    {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (int i = start; i < start + length; i++)
+        {
+            hash = (hash ^ Character.toLowerCase(buffer[i])) * 0x100000001b3L;
+        }
+        return BitMixer.mix64(hash);
+    }
+
+    private static String toLowerCase(CharSequence word)
+    {
+        final char [] chars = new char [word.length()];
+        for (int i = 0; i < chars.length; i++)
+        {
+            chars[i] = Character.toLowerCase(word.charAt(i));
+        }
+        return new String(chars);
+    }
+}
@@ -12,6 +12,7 @@
 
 package org.carrot2.text.linguistic.lucene;
 
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.regex.Pattern;
@@ -95,4 +96,9 @@ public final class ChineseTokenizerAdapter implements ITokenizer
             throw ExceptionUtils.wrapAsRuntimeException(e);
         }
     }
+
+    public void reset(char [] buffer, int start, int length) throws IOException
+    {
+        reset(new CharArrayReader(buffer, start, length));
+    }
 }
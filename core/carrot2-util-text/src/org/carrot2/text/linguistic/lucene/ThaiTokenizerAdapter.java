@@ -12,6 +12,7 @@
 
 package org.carrot2.text.linguistic.lucene;
 
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.Reader;
 
@@ -75,6 +76,11 @@ public final class ThaiTokenizerAdapter implements ITokenizer
             throw ExceptionUtils.wrapAsRuntimeException(e);
         }
     }
+
+    public void reset(char [] buffer, int start, int length) throws IOException
+    {
+        reset(new CharArrayReader(buffer, start, length));
+    }
     
     /**
      * Check support for Thai.
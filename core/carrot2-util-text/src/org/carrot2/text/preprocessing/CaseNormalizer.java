@@ -34,6 +34,7 @@ import com.carrotsearch.hppc.BitSet;
 import com.carrotsearch.hppc.ByteArrayList;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntStack;
+import com.carrotsearch.hppc.ObjectIntIdentityHashMap;
 import com.carrotsearch.hppc.ShortArrayList;
 import com.carrotsearch.hppc.sorting.IndirectSort;
 import org.carrot2.shaded.guava.common.collect.Lists;
@@ -231,6 +232,227 @@ public final class CaseNormalizer
         context.allWords.type = types.toArray();
     }
 
+    /**
+     * Performs normalization and saves the results to the <code>context</code>, producing
+     * the same results as {@link #normalize(PreprocessingContext)}. Instead of sorting
+     * all tokens, this method aggregates tokens by their image in a hash map and sorts
+     * the distinct images only, which is faster for larger inputs.
+     */
+    public void normalizeUsingHashing(PreprocessingContext context)
+    {
+        normalizeUsingHashing(context, new CaseVariants());
+    }
+
+    /**
+     * Performs hash-based normalization of the <code>context</code>, taking case variants
+     * of the leading tokens from <code>variants</code>. Variants of the remaining tokens
+     * are added to <code>variants</code> first.
+     */
+    void normalizeUsingHashing(PreprocessingContext context, CaseVariants variants)
+    {
+        // Local references to already existing arrays
+        final char [][] tokenImages = context.allTokens.image;
+        final short [] tokenTypesArray = context.allTokens.type;
+        final int [] documentIndexesArray = context.allTokens.documentIndex;
+        final byte [] tokensFieldIndex = context.allTokens.fieldIndex;
+        final int tokenCount = tokenImages.length;
+
+        variants.tokenVariants.ensureCapacity(tokenCount);
+        for (int i = variants.tokenVariants.size(); i < tokenCount; i++)
+        {
+            variants.add(tokenImages[i], tokenTypesArray[i]);
+        }
+        final List<char []> variantImageList = variants.images;
+        final IntArrayList variantTf = variants.tf;
+        final IntArrayList variantFirstToken = variants.firstToken;
+        final IntArrayList variantLastToken = variants.lastToken;
+        final int [] tokenVariants = variants.tokenVariants.buffer;
+
+        // Sort distinct images in the order of the sort-based normalization and
+        // group case variants of the same word.
+        final char [][] variantImages = variantImageList
+            .toArray(new char [variantImageList.size()] []);
+        final int [] variantOrder = IndirectSort.mergesort(variantImages, 0,
+            variantImages.length, CharArrayComparators.NORMALIZING_CHAR_ARRAY_COMPARATOR);
+
+        final int [] variantGroups = new int [variantImages.length];
+        final IntArrayList groupStart = new IntArrayList();
+        for (int i = 0; i < variantOrder.length; i++)
+        {
+            if (i == 0 || CharArrayComparators.CASE_INSENSITIVE_CHAR_ARRAY_COMPARATOR
+                .compare(variantImages[variantOrder[i - 1]], variantImages[variantOrder[i]]) != 0)
+            {
+                groupStart.add(i);
+            }
+            variantGroups[variantOrder[i]] = groupStart.size() - 1;
+        }
+        final int groupCount = groupStart.size();
+        groupStart.add(variantOrder.length);
+
+        // Lay out documents and field indices of each group's tokens. Tokens are
+        // ordered by document, so documents of each group come out sorted.
+        final int [] groupOffsets = new int [groupCount + 1];
+        for (int i = 0; i < variantImages.length; i++)
+        {
+            groupOffsets[variantGroups[i] + 1] += variantTf.get(i);
+        }
+        for (int i = 0; i < groupCount; i++)
+        {
+            groupOffsets[i + 1] += groupOffsets[i];
+        }
+
+        final int [] groupDocuments = new int [groupOffsets[groupCount]];
+        final long [] groupFieldIndices = new long [groupCount];
+        final int [] groupFill = Arrays.copyOf(groupOffsets, groupCount);
+        for (int i = 0; i < tokenCount; i++)
+        {
+            if (tokenVariants[i] >= 0)
+            {
+                final int group = variantGroups[tokenVariants[i]];
+                groupDocuments[groupFill[group]++] = documentIndexesArray[i];
+                groupFieldIndices[group] |= 1L << tokensFieldIndex[i];
+            }
+        }
+
+        // Create holders for new arrays
+        final List<char []> normalizedWordImages = Lists.newArrayList();
+        final IntArrayList normalizedWordTf = new IntArrayList();
+        final List<int []> wordTfByDocumentList = Lists.newArrayList();
+        final ByteArrayList fieldIndexList = new ByteArrayList();
+        final ShortArrayList types = new ShortArrayList();
+
+        final int [] groupWords = new int [groupCount];
+        for (int group = 0; group < groupCount; group++)
+        {
+            groupWords[group] = -1;
+
+            // Select the most frequent variant exactly as the sort-based normalization
+            // does, including carrying the count of a variant that did not become the
+            // most frequent one over to the next variant.
+            int maxTf = 1;
+            int maxTfVariantIndex = variantFirstToken.get(variantOrder[groupStart.get(group)]);
+            int tf = 0;
+            boolean counterReset = true;
+            for (int i = groupStart.get(group); i < groupStart.get(group + 1); i++)
+            {
+                final int variant = variantOrder[i];
+                tf = counterReset ? variantTf.get(variant) : tf + variantTf.get(variant) - 1;
+                counterReset = maxTf < tf;
+                if (counterReset)
+                {
+                    maxTf = tf;
+                    maxTfVariantIndex = variantLastToken.get(variant);
+                }
+            }
+
+            final int from = groupOffsets[group];
+            final int to = groupOffsets[group + 1];
+            final int totalTf = to - from;
+            if (totalTf < dfThreshold)
+            {
+                continue;
+            }
+
+            final int [] sparseEncoding = toSparseEncoding(groupDocuments, from, to);
+            final int df = (sparseEncoding.length >> 1);
+            if (df >= dfThreshold)
+            {
+                groupWords[group] = normalizedWordImages.size();
+
+                wordTfByDocumentList.add(sparseEncoding);
+                normalizedWordImages.add(tokenImages[maxTfVariantIndex]);
+                types.add(tokenTypesArray[maxTfVariantIndex]);
+                normalizedWordTf.add(totalTf);
+                fieldIndexList.add((byte) groupFieldIndices[group]);
+            }
+        }
+
+        // Mapping from allTokens
+        final int [] wordIndexes = new int [tokenCount];
+        for (int i = 0; i < tokenCount; i++)
+        {
+            wordIndexes[i] = tokenVariants[i] >= 0 ? groupWords[variantGroups[tokenVariants[i]]] : -1;
+        }
+        context.allTokens.wordIndex = wordIndexes;
+
+        context.allWords.image = normalizedWordImages
+            .toArray(new char [normalizedWordImages.size()] []);
+        context.allWords.tf = normalizedWordTf.toArray();
+        context.allWords.tfByDocument = 
+            wordTfByDocumentList.toArray(new int [wordTfByDocumentList.size()] []);
+        context.allWords.fieldIndices = fieldIndexList.toArray();
+        context.allWords.type = types.toArray();
+    }
+
+    /**
+     * Distinct images (case variants) of tokens, collected token by token. Token images
+     * are interned in the context, so we can compare them by identity.
+     */
+    static final class CaseVariants
+    {
+        private final ObjectIntIdentityHashMap<char []> indexes = new ObjectIntIdentityHashMap<char []>();
+
+        final List<char []> images = Lists.newArrayList();
+        final IntArrayList tf = new IntArrayList();
+        final IntArrayList firstToken = new IntArrayList();
+        final IntArrayList lastToken = new IntArrayList();
+
+        /** Variant of each token added so far, <code>-1</code> if not indexed. */
+        final IntArrayList tokenVariants = new IntArrayList();
+
+        /**
+         * Adds the next token.
+         */
+        void add(char [] image, short type)
+        {
+            final int token = tokenVariants.size();
+            if (image == null || isNotIndexed(type))
+            {
+                tokenVariants.add(-1);
+                return;
+            }
+
+            final int slot = indexes.indexOf(image);
+            final int variant;
+            if (indexes.indexExists(slot))
+            {
+                variant = indexes.indexGet(slot);
+                tf.buffer[variant]++;
+                lastToken.buffer[variant] = token;
+            }
+            else
+            {
+                variant = images.size();
+                indexes.indexInsert(slot, image, variant);
+                images.add(image);
+                tf.add(1);
+                firstToken.add(token);
+                lastToken.add(token);
+            }
+            tokenVariants.add(variant);
+        }
+    }
+
+    /**
+     * Converts a sorted range of document indices to the sparse document-count
+     * representation.
+     */
+    private static int [] toSparseEncoding(int [] documents, int from, int to)
+    {
+        final int [] result = new int [2 * SparseArray.countUnique(documents, from, to)];
+        int k = 0;
+        for (int i = from; i < to; i++)
+        {
+            if (i == from || documents[i] != documents[i - 1])
+            {
+                result[k++] = documents[i];
+                result[k++] = 0;
+            }
+            result[k - 1]++;
+        }
+        return result;
+    }
+
     /**
      * Initializes the counters for the a token image.
      */
@@ -249,7 +471,7 @@ public final class CaseNormalizer
     /**
      * Determines whether we should include the token in AllWords.
      */
-    private boolean isNotIndexed(final int tokenType)
+    static boolean isNotIndexed(final int tokenType)
     {
         return tokenType == ITokenizer.TT_PUNCTUATION
             || tokenType == ITokenizer.TT_FULL_URL
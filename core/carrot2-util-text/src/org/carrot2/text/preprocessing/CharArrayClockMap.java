@@ -0,0 +1,274 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.annotations.ThreadSafe;
+
+import com.carrotsearch.hppc.BitMixer;
+
+/**
+ * A bounded map from character sequences to <code>char []</code> values, shared by
+ * concurrent preprocessing requests.
+ * <p>
+ * The map is split into stripes locked independently. Each stripe is an open-addressing
+ * hash table with linear probing, which evicts entries using the clock (second chance)
+ * algorithm when full: an entry is evicted when the clock hand finds it not reused since
+ * the hand last passed. Entries that are never reused are evicted first, so a burst of
+ * rare keys does not flush frequent ones.
+ * </p>
+ */
+@ThreadSafe
+final class CharArrayClockMap
+{
+    /** Number of independently locked stripes, a power of two. */
+    private static final int STRIPES = 16;
+
+    /** Bits of the hash used to select the stripe. */
+    private static final int STRIPE_BITS = Integer.numberOfTrailingZeros(STRIPES);
+
+    private final Stripe [] stripes;
+
+    /**
+     * Creates a map holding up to <code>capacity</code> entries.
+     */
+    CharArrayClockMap(int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be greater than zero: "
+                + capacity);
+        }
+
+        this.stripes = new Stripe [STRIPES];
+        final int stripeCapacity = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++)
+        {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    /**
+     * Returns the value mapped to <code>key</code> or <code>null</code> if there is no
+     * such value. Does not allocate.
+     */
+    char [] get(MutableCharArray key)
+    {
+        final int hash = BitMixer.mix32(key.hashCode());
+        return stripes[hash & (STRIPES - 1)].get(key.getBuffer(), key.getStart(),
+            key.length(), hash >>> STRIPE_BITS);
+    }
+
+    /**
+     * Returns the value mapped to <code>key</code>, mapping a copy of <code>key</code> to
+     * <code>value</code> first if there is no such value. If <code>value</code> is
+     * <code>null</code>, the copy of the key becomes the value.
+     */
+    char [] putIfAbsent(MutableCharArray key, char [] value)
+    {
+        final int hash = BitMixer.mix32(key.hashCode());
+        return stripes[hash & (STRIPES - 1)].putIfAbsent(key.getBuffer(), key.getStart(),
+            key.length(), hash >>> STRIPE_BITS, value);
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     */
+    int size()
+    {
+        int size = 0;
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of entries in the map.
+     */
+    int capacity()
+    {
+        return stripes.length * stripes[0].capacity;
+    }
+
+    /**
+     * A hash table with clock eviction.
+     */
+    private static final class Stripe
+    {
+        final int capacity;
+        final int mask;
+
+        final char [][] keys;
+        final char [][] values;
+        final int [] hashes;
+
+        /** Whether entries have been reused since the clock hand last passed them. */
+        final boolean [] referenced;
+
+        int size;
+        int hand;
+
+        Stripe(int capacity)
+        {
+            this.capacity = capacity;
+
+            // Keep the load factor at or below 0.5 for short probe sequences.
+            final int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+            this.mask = slots - 1;
+            this.keys = new char [slots] [];
+            this.values = new char [slots] [];
+            this.hashes = new int [slots];
+            this.referenced = new boolean [slots];
+        }
+
+        synchronized char [] get(char [] buffer, int start, int length, int hash)
+        {
+            final int slot = find(buffer, start, length, hash);
+            if (keys[slot] == null)
+            {
+                return null;
+            }
+
+            referenced[slot] = true;
+            return values[slot];
+        }
+
+        synchronized char [] putIfAbsent(char [] buffer, int start, int length, int hash,
+            char [] value)
+        {
+            int slot = find(buffer, start, length, hash);
+            if (keys[slot] != null)
+            {
+                referenced[slot] = true;
+                return values[slot];
+            }
+
+            if (size == capacity)
+            {
+                evict();
+
+                // Eviction may have shifted entries, find the free slot again.
+                slot = hash & mask;
+                while (keys[slot] != null)
+                {
+                    slot = (slot + 1) & mask;
+                }
+            }
+
+            final char [] key = new char [length];
+            System.arraycopy(buffer, start, key, 0, length);
+            keys[slot] = key;
+            values[slot] = (value != null ? value : key);
+            hashes[slot] = hash;
+            referenced[slot] = false;
+            size++;
+            return values[slot];
+        }
+
+        /**
+         * Returns the slot holding the key or the free slot ending its probe sequence.
+         */
+        private int find(char [] buffer, int start, int length, int hash)
+        {
+            int slot = hash & mask;
+            while (keys[slot] != null)
+            {
+                if (hashes[slot] == hash && equals(keys[slot], buffer, start, length))
+                {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Advances the clock hand to the first entry not referenced since the last
+         * pass, clearing reference bits on the way, and removes that entry.
+         */
+        private void evict()
+        {
+            while (true)
+            {
+                hand = (hand + 1) & mask;
+                if (keys[hand] != null)
+                {
+                    if (referenced[hand])
+                    {
+                        referenced[hand] = false;
+                    }
+                    else
+                    {
+                        remove(hand);
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes the entry at the slot, shifting back the following entries of the
+         * probe sequence so that lookups do not stop at the removed slot.
+         */
+        private void remove(int slot)
+        {
+            int gap = slot;
+            int i = slot;
+            while (true)
+            {
+                i = (i + 1) & mask;
+                if (keys[i] == null)
+                {
+                    break;
+                }
+
+                final int ideal = hashes[i] & mask;
+                if (((i - ideal) & mask) >= ((i - gap) & mask))
+                {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    hashes[gap] = hashes[i];
+                    referenced[gap] = referenced[i];
+                    gap = i;
+                }
+            }
+
+            keys[gap] = null;
+            values[gap] = null;
+            referenced[gap] = false;
+            size--;
+        }
+
+        private static boolean equals(char [] key, char [] buffer, int start, int length)
+        {
+            if (key.length != length)
+            {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++)
+            {
+                if (key[i] != buffer[start + i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import org.carrot2.core.attribute.Processing;
 import org.carrot2.text.analysis.TokenTypeUtils;
 import org.carrot2.text.preprocessing.PreprocessingContext.AllLabels;
+import org.carrot2.util.CompressedBitSet;
 import org.carrot2.util.attribute.*;
 import org.carrot2.util.attribute.constraint.IntRange;
 
@@ -26,7 +27,7 @@ import org.carrot2.shaded.guava.common.collect.Lists;
 
 /**
  * Assigns document to label candidates. For each label candidate from
- * {@link AllLabels#featureIndex} an {@link BitSet} with the assigned documents is
+ * {@link AllLabels#featureIndex} a {@link CompressedBitSet} with the assigned documents is
  * constructed. The assignment algorithm is rather simple: in order to be assigned to a
  * label, a document must contain at least one occurrence of each non-stop word from the
  * label.
@@ -85,11 +86,15 @@ public class DocumentAssigner
         final int wordCount = wordsStemIndex.length;
         final int documentCount = context.documents.size();
 
-        final BitSet [] labelsDocumentIndices = new BitSet [labelsFeatureIndex.length];
+        final CompressedBitSet [] labelsDocumentIndices =
+            new CompressedBitSet [labelsFeatureIndex.length];
 
+        // Labels are assigned using reusable bit sets, then stored compressed.
+        final BitSet documentIndices = new BitSet(documentCount);
+        final BitSet temp = new BitSet(documentCount);
         for (int i = 0; i < labelsFeatureIndex.length; i++)
         {
-            final BitSet documentIndices = new BitSet(documentCount);
+            documentIndices.clear();
 
             final int featureIndex = labelsFeatureIndex[i];
             if (featureIndex < wordCount)
@@ -123,7 +128,7 @@ public class DocumentAssigner
                             }
                             else
                             {
-                                final BitSet temp = new BitSet(documentCount);
+                                temp.clear();
                                 addTfByDocumentToBitSet(temp,
                                     stemsTfByDocument[wordsStemIndex[wordIndex]]);
                                 // .retainAll == set intersection
@@ -134,7 +139,7 @@ public class DocumentAssigner
                 }
             }
 
-            labelsDocumentIndices[i] = documentIndices;
+            labelsDocumentIndices[i] = CompressedBitSet.valueOf(documentIndices);
         }
 
         // Filter out labels that do not meet the minimum cluster size
@@ -142,7 +147,7 @@ public class DocumentAssigner
         {
             final IntArrayList newFeatureIndex = new IntArrayList(
                 labelsFeatureIndex.length);
-            final ArrayList<BitSet> newDocumentIndices = Lists
+            final ArrayList<CompressedBitSet> newDocumentIndices = Lists
                 .newArrayListWithExpectedSize(labelsFeatureIndex.length);
 
             for (int i = 0; i < labelsFeatureIndex.length; i++)
@@ -154,7 +159,7 @@ public class DocumentAssigner
                 }
             }
             context.allLabels.documentIndices = newDocumentIndices
-                .toArray(new BitSet [newDocumentIndices.size()]);
+                .toArray(new CompressedBitSet [newDocumentIndices.size()]);
             context.allLabels.featureIndex = newFeatureIndex.toArray();
             LabelFilterProcessor.updateFirstPhraseIndex(context);
         }
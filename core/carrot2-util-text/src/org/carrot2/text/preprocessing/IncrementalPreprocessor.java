@@ -0,0 +1,135 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.Collection;
+
+import org.carrot2.core.Document;
+import org.carrot2.text.preprocessing.CaseNormalizer.CaseVariants;
+import org.carrot2.text.preprocessing.LanguageModelStemmer.WordStemmer;
+
+/**
+ * Tokenizes, normalizes and stems documents arriving in batches, for instance pages of
+ * search results. Each batch is tokenized as soon as it is added, its tokens are
+ * counted for case normalization (if hash-based word statistics are used) and new words
+ * are stemmed, so that most of the work is done while the following batches are still
+ * being fetched. {@link #finish()} completes case normalization and stemming of all
+ * documents.
+ * <p>
+ * The results are the same as those of {@link Tokenizer#tokenize(PreprocessingContext)},
+ * {@link CaseNormalizer} and {@link LanguageModelStemmer} invoked on all documents at
+ * once.
+ * </p>
+ */
+public final class IncrementalPreprocessor
+{
+    private final PreprocessingContext context;
+    private final CaseNormalizer caseNormalizer;
+    private final LanguageModelStemmer languageModelStemmer;
+
+    private final Tokenizer.Batches tokens;
+    private final WordStemmer wordStemmer;
+
+    /** Case variants of tokens, <code>null</code> if statistics are not hash-based. */
+    private final CaseVariants caseVariants;
+
+    /** The number of tokens counted and stemmed so far. */
+    private int processedTokens;
+
+    private boolean finished;
+
+    /**
+     * Starts preprocessing documents added to the <code>context</code> with
+     * {@link #addDocuments(Collection)}. {@link PreprocessingContext#documents} of the
+     * context must be modifiable and initially empty.
+     * 
+     * @param hashingWordStatistics If <code>true</code>, the hash-based variants of case
+     *            normalization and stemming will be used.
+     */
+    public IncrementalPreprocessor(PreprocessingContext context, Tokenizer tokenizer,
+        CaseNormalizer caseNormalizer, LanguageModelStemmer languageModelStemmer,
+        boolean hashingWordStatistics)
+    {
+        if (!context.documents.isEmpty())
+        {
+            throw new IllegalArgumentException("The context must have no documents initially.");
+        }
+
+        this.context = context;
+        this.caseNormalizer = caseNormalizer;
+        this.languageModelStemmer = languageModelStemmer;
+
+        this.tokens = tokenizer.startBatches(context);
+        this.wordStemmer = languageModelStemmer.createWordStemmer(context);
+        this.caseVariants = hashingWordStatistics ? new CaseVariants() : null;
+    }
+
+    /**
+     * Appends the batch of <code>documents</code> to the context's documents and
+     * preprocesses them.
+     */
+    public void addDocuments(Collection<? extends Document> documents)
+    {
+        checkNotFinished();
+
+        context.documents.addAll(documents);
+        tokens.tokenizeNewDocuments();
+
+        final int tokenCount = tokens.getTokenCount();
+        for (int i = processedTokens; i < tokenCount; i++)
+        {
+            final char [] image = tokens.getImage(i);
+            final short type = tokens.getType(i);
+            if (caseVariants != null)
+            {
+                caseVariants.add(image, type);
+            }
+            if (image != null && !CaseNormalizer.isNotIndexed(type))
+            {
+                wordStemmer.stemInAdvance(image);
+            }
+        }
+        processedTokens = tokenCount;
+    }
+
+    /**
+     * Completes tokenization, case normalization and stemming of all documents added so
+     * far and returns the context. No documents can be added afterwards.
+     */
+    public PreprocessingContext finish()
+    {
+        checkNotFinished();
+        finished = true;
+
+        tokens.finish();
+        if (caseVariants != null)
+        {
+            caseNormalizer.normalizeUsingHashing(context, caseVariants);
+            languageModelStemmer.stemUsingHashing(context, wordStemmer);
+        }
+        else
+        {
+            caseNormalizer.normalize(context);
+            languageModelStemmer.stem(context, wordStemmer);
+        }
+        return context;
+    }
+
+    private void checkNotFinished()
+    {
+        if (finished)
+        {
+            throw new IllegalStateException("Preprocessing has been finished.");
+        }
+    }
+}
@@ -13,8 +13,11 @@
 package org.carrot2.text.preprocessing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Set;
 
+import org.carrot2.core.attribute.Init;
+import org.carrot2.core.attribute.Processing;
 import org.carrot2.text.analysis.ITokenizer;
 import org.carrot2.text.linguistic.IStemmer;
 import org.carrot2.text.preprocessing.PreprocessingContext.AllStems;
@@ -22,10 +25,20 @@ import org.carrot2.text.preprocessing.PreprocessingContext.AllWords;
 import org.carrot2.text.util.CharArrayComparators;
 import org.carrot2.text.util.MutableCharArray;
 import org.carrot2.util.CharArrayUtils;
+import org.carrot2.util.attribute.Attribute;
+import org.carrot2.util.attribute.AttributeLevel;
 import org.carrot2.util.attribute.Bindable;
+import org.carrot2.util.attribute.DefaultGroups;
+import org.carrot2.util.attribute.Group;
+import org.carrot2.util.attribute.Input;
+import org.carrot2.util.attribute.Label;
+import org.carrot2.util.attribute.Level;
+import org.carrot2.util.attribute.constraint.IntRange;
 
 import com.carrotsearch.hppc.ByteArrayList;
 import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.ObjectIntIdentityHashMap;
+import com.carrotsearch.hppc.ObjectObjectIdentityHashMap;
 import com.carrotsearch.hppc.sorting.IndirectSort;
 import org.carrot2.shaded.guava.common.collect.Lists;
 import org.carrot2.shaded.guava.common.collect.Sets;
@@ -48,45 +61,165 @@ import org.carrot2.shaded.guava.common.collect.Sets;
 @Bindable(prefix = "LanguageModelStemmer")
 public final class LanguageModelStemmer
 {
+    /**
+     * Shared stem cache size. The maximum number of words per language whose stems are
+     * cached and shared by all requests, so that frequent words are not stemmed again in
+     * each request. The value of 0 disables caching.
+     */
+    @Input
+    @Init
+    @Processing
+    @Attribute
+    @IntRange(min = 0)
+    @Label("Shared stem cache size")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(DefaultGroups.PREPROCESSING)
+    public int stemCacheSize = 0;
+
     /**
      * Performs stemming and saves the results to the <code>context</code>.
      */
     public void stem(PreprocessingContext context)
+    {
+        stem(context, createWordStemmer(context));
+    }
+
+    /**
+     * Performs stemming using the provided <code>wordStemmer</code>, which may hold stems
+     * of some words already.
+     */
+    void stem(PreprocessingContext context, WordStemmer wordStemmer)
+    {
+        addStemStatistics(context, stemWords(context, wordStemmer),
+            prepareQueryWords(context.query, context.language.getStemmer()));
+    }
+
+    /**
+     * Performs stemming and saves the results to the <code>context</code>, producing the
+     * same results as {@link #stem(PreprocessingContext)}. Instead of sorting all words
+     * by their stems, this method aggregates words by stem in a hash map and sorts the
+     * distinct stems only.
+     */
+    public void stemUsingHashing(PreprocessingContext context)
+    {
+        stemUsingHashing(context, createWordStemmer(context));
+    }
+
+    /**
+     * Performs hash-based stemming using the provided <code>wordStemmer</code>, which
+     * may hold stems of some words already.
+     */
+    void stemUsingHashing(PreprocessingContext context, WordStemmer wordStemmer)
+    {
+        addStemStatisticsUsingHashing(context, stemWords(context, wordStemmer),
+            prepareQueryWords(context.query, context.language.getStemmer()));
+    }
+
+    /**
+     * Creates a stemmer of words of the <code>context</code>.
+     */
+    WordStemmer createWordStemmer(PreprocessingContext context)
     {
         final IStemmer stemmer = context.language.getStemmer();
+        final StemCache stemCache = stemCacheSize > 0 ? StemCache.shared(
+            context.language.getLanguageCode(), stemmer.getClass(), stemCacheSize) : null;
+        return new WordStemmer(context, stemmer, stemCache);
+    }
 
+    /**
+     * Returns stem images of all words, interned in the context.
+     */
+    private char [][] stemWords(PreprocessingContext context, WordStemmer wordStemmer)
+    {
         final char [][] wordImages = context.allWords.image;
         final char [][] stemImages = new char [wordImages.length] [];
+        for (int i = 0; i < wordImages.length; i++)
+        {
+            stemImages[i] = wordStemmer.stem(wordImages[i]);
+        }
+        return stemImages;
+    }
 
-        final MutableCharArray mutableCharArray = new MutableCharArray(CharArrayUtils.EMPTY_ARRAY);
-        char [] buffer = new char [128];
+    /**
+     * Stems words of a context. Words can be stemmed ahead of stemming the context, for
+     * instance while documents are still being tokenized, the stems are then reused.
+     */
+    static final class WordStemmer
+    {
+        private final PreprocessingContext context;
+        private final IStemmer stemmer;
+        private final StemCache stemCache;
 
-        for (int i = 0; i < wordImages.length; i++)
+        private final MutableCharArray mutableCharArray = new MutableCharArray(CharArrayUtils.EMPTY_ARRAY);
+        private char [] buffer = new char [128];
+
+        /** Stems of words stemmed in advance, by (interned) word image. */
+        private final ObjectObjectIdentityHashMap<char [], char []> stems =
+            new ObjectObjectIdentityHashMap<char [], char []>();
+
+        WordStemmer(PreprocessingContext context, IStemmer stemmer, StemCache stemCache)
+        {
+            this.context = context;
+            this.stemmer = stemmer;
+            this.stemCache = stemCache;
+        }
+
+        /**
+         * Stems the word unless its stem is known already.
+         */
+        void stemInAdvance(char [] word)
+        {
+            final int slot = stems.indexOf(word);
+            if (!stems.indexExists(slot))
+            {
+                stems.indexInsert(slot, word, stemWord(word));
+            }
+        }
+
+        /**
+         * Returns the stem image of the word, interned in the context.
+         */
+        char [] stem(char [] word)
+        {
+            final char [] stem = stems.get(word);
+            return stem != null ? stem : stemWord(word);
+        }
+
+        private char [] stemWord(char [] word)
         {
-            final char [] word = wordImages[i];
             if (buffer.length < word.length) buffer = new char [word.length];
 
             final boolean different = CharArrayUtils.toLowerCase(word, buffer);
 
             mutableCharArray.reset(buffer, 0, word.length);
-            final CharSequence stemmed = stemmer.stem(mutableCharArray);
-            if (stemmed != null)
+            final boolean stemmed;
+            if (stemCache != null)
             {
-                mutableCharArray.reset(stemmed);
-                stemImages[i] = context.intern(mutableCharArray);
+                final char [] stem = stemCache.stem(mutableCharArray, stemmer);
+                stemmed = (stem != null);
+                if (stemmed) mutableCharArray.reset(stem);
+            }
+            else
+            {
+                final CharSequence stem = stemmer.stem(mutableCharArray);
+                stemmed = (stem != null);
+                if (stemmed) mutableCharArray.reset(stem);
+            }
+
+            if (stemmed)
+            {
+                return context.intern(mutableCharArray);
             }
             else
             {
                 // We need to put the original word here, otherwise, we wouldn't be able
                 // to compute frequencies for stems.
                 if (different)
-                    stemImages[i] = context.intern(mutableCharArray);
+                    return context.intern(mutableCharArray);
                 else
-                    stemImages[i] = word;
+                    return word;
             }
         }
-
-        addStemStatistics(context, stemImages, prepareQueryWords(context.query, stemmer));
     }
 
     /**
@@ -139,7 +272,7 @@ public final class LanguageModelStemmer
         
         stemTfsByDocument.add(wordTfByDocumentArray[stemImagesOrder[0]]);
         byte fieldIndices = 0;
-        fieldIndices |= wordsFieldIndices[0];
+        fieldIndices |= wordsFieldIndices[stemImagesOrder[0]];
 
         // For locating query words
         final MutableCharArray buffer = new MutableCharArray(
@@ -223,6 +356,131 @@ public final class LanguageModelStemmer
         context.allWords.stemIndex = stemIndexesArray;
     }
 
+    /**
+     * Adds frequency statistics to the stems, aggregating words by their stem images in
+     * a hash map.
+     */
+    private void addStemStatisticsUsingHashing(PreprocessingContext context,
+        char [][] wordStemImages, Set<MutableCharArray> queryStems)
+    {
+        // Local array references
+        final int [] wordTfArray = context.allWords.tf;
+        final int [][] wordTfByDocumentArray = context.allWords.tfByDocument;
+        final byte [] wordsFieldIndices = context.allWords.fieldIndices;
+        final short [] wordsType = context.allWords.type;
+
+        final int allWordsCount = wordTfArray.length;
+
+        // Collect distinct stems. Stem images are interned in the context, so we can
+        // compare them by identity.
+        final ObjectIntIdentityHashMap<char []> stemIndexes = new ObjectIntIdentityHashMap<char []>();
+        final ArrayList<char []> stemImageList = new ArrayList<char []>();
+        final IntArrayList stemTfList = new IntArrayList();
+        final IntArrayList stemMostFrequentWordIndexList = new IntArrayList();
+        final ByteArrayList stemFieldIndexList = new ByteArrayList();
+        final IntArrayList stemWordCount = new IntArrayList();
+
+        final int [] wordStems = new int [allWordsCount];
+        for (int i = 0; i < allWordsCount; i++)
+        {
+            final char [] image = wordStemImages[i];
+            final int slot = stemIndexes.indexOf(image);
+            final int stem;
+            if (stemIndexes.indexExists(slot))
+            {
+                stem = stemIndexes.indexGet(slot);
+                stemTfList.buffer[stem] += wordTfArray[i];
+                stemFieldIndexList.buffer[stem] |= wordsFieldIndices[i];
+                stemWordCount.buffer[stem]++;
+                if (wordTfArray[stemMostFrequentWordIndexList.get(stem)] < wordTfArray[i])
+                {
+                    stemMostFrequentWordIndexList.buffer[stem] = i;
+                }
+            }
+            else
+            {
+                stem = stemImageList.size();
+                stemIndexes.indexInsert(slot, image, stem);
+                stemImageList.add(image);
+                stemTfList.add(wordTfArray[i]);
+                stemFieldIndexList.add(wordsFieldIndices[i]);
+                stemWordCount.add(1);
+                stemMostFrequentWordIndexList.add(i);
+            }
+            wordStems[i] = stem;
+        }
+
+        // Sort distinct stems in the order of the sort-based aggregation.
+        final char [][] stemImages = stemImageList.toArray(new char [stemImageList.size()] []);
+        final int stemCount = stemImages.length;
+        final int [] stemOrder = IndirectSort.mergesort(stemImages, 0, stemCount,
+            CharArrayComparators.FAST_CHAR_ARRAY_COMPARATOR);
+        final int [] stemRanks = new int [stemCount];
+        for (int i = 0; i < stemCount; i++)
+        {
+            stemRanks[stemOrder[i]] = i;
+        }
+
+        // Lay out words of each stem, in the order of words.
+        final int [] stemOffsets = new int [stemCount + 1];
+        for (int i = 0; i < stemCount; i++)
+        {
+            stemOffsets[stemRanks[i] + 1] = stemWordCount.get(i);
+        }
+        for (int i = 0; i < stemCount; i++)
+        {
+            stemOffsets[i + 1] += stemOffsets[i];
+        }
+        final int [] stemWords = new int [allWordsCount];
+        final int [] stemFill = Arrays.copyOf(stemOffsets, stemCount);
+        for (int i = 0; i < allWordsCount; i++)
+        {
+            stemWords[stemFill[stemRanks[wordStems[i]]]++] = i;
+        }
+
+        // Store the results in the order of stems
+        final MutableCharArray buffer = new MutableCharArray(CharArrayUtils.EMPTY_ARRAY);
+        final ArrayList<int []> stemTfsByDocument = Lists.newArrayList();
+
+        context.allStems.image = new char [stemCount] [];
+        context.allStems.mostFrequentOriginalWordIndex = new int [stemCount];
+        context.allStems.tf = new int [stemCount];
+        context.allStems.tfByDocument = new int [stemCount] [];
+        context.allStems.fieldIndices = new byte [stemCount];
+        for (int rank = 0; rank < stemCount; rank++)
+        {
+            final int stem = stemOrder[rank];
+            context.allStems.image[rank] = stemImages[stem];
+            context.allStems.mostFrequentOriginalWordIndex[rank] = stemMostFrequentWordIndexList
+                .get(stem);
+            context.allStems.tf[rank] = stemTfList.get(stem);
+            context.allStems.fieldIndices[rank] = stemFieldIndexList.get(stem);
+
+            buffer.reset(stemImages[stem]);
+            final boolean inQuery = queryStems.contains(buffer);
+
+            stemTfsByDocument.clear();
+            for (int i = stemOffsets[rank]; i < stemOffsets[rank + 1]; i++)
+            {
+                stemTfsByDocument.add(wordTfByDocumentArray[stemWords[i]]);
+                if (inQuery)
+                {
+                    wordsType[stemWords[i]] |= ITokenizer.TF_QUERY_WORD;
+                }
+            }
+            context.allStems.tfByDocument[rank] = stemTfsByDocument.size() == 1
+                ? stemTfsByDocument.get(0) : SparseArray.mergeSparseArrays(stemTfsByDocument);
+        }
+
+        // References in allWords
+        final int [] stemIndexesArray = new int [allWordsCount];
+        for (int i = 0; i < allWordsCount; i++)
+        {
+            stemIndexesArray[i] = stemRanks[wordStems[i]];
+        }
+        context.allWords.stemIndex = stemIndexesArray;
+    }
+
     /**
      * 
      */
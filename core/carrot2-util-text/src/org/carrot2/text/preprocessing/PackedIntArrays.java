@@ -0,0 +1,123 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.Arrays;
+
+/**
+ * A sequence of <code>int</code> arrays stored one after another in a single pool,
+ * with an offset table pointing to the start of each array. Compared to an
+ * <code>int [][]</code>, this layout uses two objects regardless of the number of
+ * arrays.
+ * <p>
+ * Elements of the array at <code>index</code> are
+ * <code>data()[start(index)]</code> to <code>data()[end(index) - 1]</code>. The pool
+ * returned from {@link #data()} may be longer than the total length of all arrays.
+ * </p>
+ */
+public final class PackedIntArrays
+{
+    /** The pool of elements of all arrays. */
+    private final int [] data;
+
+    /** Start of each array in {@link #data}, followed by the end of the last array. */
+    private final int [] offsets;
+
+    /** The number of arrays. */
+    private final int size;
+
+    /**
+     * Packs the provided arrays.
+     */
+    public PackedIntArrays(int [][] arrays)
+    {
+        this(arrays, null);
+    }
+
+    /**
+     * Packs the provided arrays, taking the pool and the offset table from the provided
+     * <code>arena</code> (if not <code>null</code>) rather than allocating them.
+     */
+    public PackedIntArrays(int [][] arrays, PreprocessingArena arena)
+    {
+        this.size = arrays.length;
+
+        int total = 0;
+        for (int i = 0; i < size; i++)
+        {
+            total += arrays[i].length;
+        }
+
+        this.data = arena != null ? arena.allocate(total) : new int [total];
+        this.offsets = arena != null ? arena.allocate(size + 1) : new int [size + 1];
+
+        int offset = 0;
+        for (int i = 0; i < size; i++)
+        {
+            offsets[i] = offset;
+            System.arraycopy(arrays[i], 0, data, offset, arrays[i].length);
+            offset += arrays[i].length;
+        }
+        offsets[size] = offset;
+    }
+
+    /**
+     * Returns the number of arrays.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the pool of elements of all arrays. The pool must not be modified.
+     */
+    public int [] data()
+    {
+        return data;
+    }
+
+    /**
+     * Returns the index in {@link #data()} of the first element of the array at
+     * <code>index</code>.
+     */
+    public int start(int index)
+    {
+        return offsets[index];
+    }
+
+    /**
+     * Returns the index in {@link #data()} following the last element of the array at
+     * <code>index</code>.
+     */
+    public int end(int index)
+    {
+        return offsets[index + 1];
+    }
+
+    /**
+     * Returns the length of the array at <code>index</code>.
+     */
+    public int length(int index)
+    {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Returns a copy of the array at <code>index</code>.
+     */
+    public int [] get(int index)
+    {
+        return Arrays.copyOfRange(data, offsets[index], offsets[index + 1]);
+    }
+}
@@ -0,0 +1,101 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Enables parallel tokenization of large document sets on the current thread. While
+ * enabled, {@link Tokenizer#tokenize(PreprocessingContext)} splits inputs of at least
+ * a given number of documents into chunks tokenized on a {@link ForkJoinPool}. Smaller
+ * inputs are always tokenized on the calling thread. The tokenization result is the
+ * same in both cases.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ * ParallelTokenization.enable(pool);
+ * try
+ * {
+ *     // preprocessing
+ * }
+ * finally
+ * {
+ *     ParallelTokenization.disable();
+ * }
+ * </pre>
+ */
+public final class ParallelTokenization
+{
+    /**
+     * The default minimum number of documents that will be tokenized in parallel.
+     */
+    public static final int DEFAULT_MIN_PARALLEL_DOCUMENTS = 1000;
+
+    /** Settings of the current thread, <code>null</code> if disabled */
+    private static final ThreadLocal<ParallelTokenization> current = new ThreadLocal<ParallelTokenization>();
+
+    private final ForkJoinPool pool;
+    private final int minParallelDocuments;
+
+    private ParallelTokenization(ForkJoinPool pool, int minParallelDocuments)
+    {
+        this.pool = pool;
+        this.minParallelDocuments = minParallelDocuments;
+    }
+
+    /**
+     * Enables parallel tokenization on the current thread with the
+     * {@link #DEFAULT_MIN_PARALLEL_DOCUMENTS} threshold.
+     */
+    public static void enable(ForkJoinPool pool)
+    {
+        enable(pool, DEFAULT_MIN_PARALLEL_DOCUMENTS);
+    }
+
+    /**
+     * Enables parallel tokenization on the current thread for inputs of at least
+     * <code>minParallelDocuments</code> documents.
+     */
+    public static void enable(ForkJoinPool pool, int minParallelDocuments)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        current.set(new ParallelTokenization(pool, minParallelDocuments));
+    }
+
+    /**
+     * Disables parallel tokenization on the current thread.
+     */
+    public static void disable()
+    {
+        current.remove();
+    }
+
+    /**
+     * Returns the pool to use for tokenizing <code>documents</code> documents or
+     * <code>null</code> if they should be tokenized on the calling thread.
+     */
+    public static ForkJoinPool getPool(int documents)
+    {
+        final ParallelTokenization settings = current.get();
+        if (settings == null || documents < settings.minParallelDocuments
+            || documents < 2 || settings.pool.getParallelism() < 2)
+        {
+            return null;
+        }
+        return settings.pool;
+    }
+}
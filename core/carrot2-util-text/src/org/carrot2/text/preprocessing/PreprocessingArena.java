@@ -0,0 +1,97 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.ArrayList;
+
+/**
+ * A set of <code>int</code> buffers recycled across preprocessing requests by
+ * {@link PreprocessingContext#compact(PreprocessingArena)}, so that a pipeline
+ * processing one request after another does not allocate the packed arrays anew for
+ * each request.
+ * <p>
+ * Buffers allocated from the arena are valid until the next {@link #reset()}, which
+ * makes them available for reuse. This class is not thread-safe, each pipeline instance
+ * should have its own arena.
+ * </p>
+ */
+public final class PreprocessingArena
+{
+    /** Buffers allocated since the last reset. */
+    private final ArrayList<int []> allocated = new ArrayList<int []>();
+
+    /** Buffers available for reuse. */
+    private final ArrayList<int []> free = new ArrayList<int []>();
+
+    /**
+     * Returns a buffer of at least <code>length</code> elements. The contents of the
+     * buffer are undefined.
+     */
+    public int [] allocate(int length)
+    {
+        // Take the smallest free buffer that fits.
+        int best = -1;
+        for (int i = 0; i < free.size(); i++)
+        {
+            final int [] buffer = free.get(i);
+            if (buffer.length >= length
+                && (best < 0 || buffer.length < free.get(best).length))
+            {
+                best = i;
+            }
+        }
+
+        final int [] buffer;
+        if (best >= 0)
+        {
+            buffer = free.get(best);
+            free.set(best, free.get(free.size() - 1));
+            free.remove(free.size() - 1);
+        }
+        else
+        {
+            // Leave some room so that slightly larger requests can reuse the buffer.
+            buffer = new int [length + (length >>> 3)];
+        }
+
+        allocated.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Makes all buffers allocated from this arena available for reuse. Buffers allocated
+     * before the reset must no longer be used.
+     */
+    public void reset()
+    {
+        free.addAll(allocated);
+        allocated.clear();
+    }
+
+    /**
+     * Returns the total number of elements in buffers held by this arena.
+     */
+    public long capacity()
+    {
+        long capacity = 0;
+        for (int [] buffer : allocated)
+        {
+            capacity += buffer.length;
+        }
+        for (int [] buffer : free)
+        {
+            capacity += buffer.length;
+        }
+        return capacity;
+    }
+}
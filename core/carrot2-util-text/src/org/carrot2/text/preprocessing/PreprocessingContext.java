@@ -22,6 +22,7 @@ import org.carrot2.text.linguistic.IStemmer;
 import org.carrot2.text.linguistic.LanguageModel;
 import org.carrot2.text.util.MutableCharArray;
 import org.carrot2.text.util.TabularOutput;
+import org.carrot2.util.CompressedBitSet;
 
 import com.carrotsearch.hppc.*;
 
@@ -52,16 +53,35 @@ public final class PreprocessingContext
      */
     private ObjectHashSet<MutableCharArray> tokenCache = new ObjectHashSet<>();
 
+    /**
+     * Token images shared with other requests, <code>null</code> if images are allocated
+     * for each request.
+     */
+    private final TokenImageDictionary tokenImageDictionary;
+
     /**
      * Creates a preprocessing context for the provided <code>documents</code> and with
      * the provided <code>languageModel</code>.
      */
     public PreprocessingContext(LanguageModel languageModel, List<Document> documents,
         String query)
+    {
+        this(languageModel, documents, query, null);
+    }
+
+    /**
+     * Creates a preprocessing context for the provided <code>documents</code> and with
+     * the provided <code>languageModel</code>, taking images of tokens from the provided
+     * <code>tokenImageDictionary</code> (if not <code>null</code>) rather than
+     * allocating them.
+     */
+    public PreprocessingContext(LanguageModel languageModel, List<Document> documents,
+        String query, TokenImageDictionary tokenImageDictionary)
     {
         this.query = query;
         this.documents = documents;
         this.language = languageModel;
+        this.tokenImageDictionary = tokenImageDictionary;
     }
 
     /**
@@ -323,7 +343,8 @@ public final class PreprocessingContext
          * at index 2 and 7 times in document at index 138.
          * <p>
          * This array is produced by {@link CaseNormalizer}. The order of documents in this
-         * array is not defined.
+         * array is not defined. The array is <code>null</code> after the context has been
+         * compacted, use {@link #getPackedTfByDocument()} then.
          */
         public int [][] tfByDocument;
 
@@ -344,6 +365,39 @@ public final class PreprocessingContext
          */
         public byte [] fieldIndices;
 
+        /**
+         * {@link #tfByDocument} in the packed layout, <code>null</code> until needed.
+         */
+        private PackedIntArrays packedTfByDocument;
+
+        /**
+         * Returns term frequencies by document, see {@link #tfByDocument}, in the packed
+         * layout. The arrays are packed on the first call unless the context has been
+         * compacted, see {@link PreprocessingContext#compact(PreprocessingArena)}.
+         */
+        public PackedIntArrays getPackedTfByDocument()
+        {
+            if (packedTfByDocument == null)
+            {
+                packedTfByDocument = new PackedIntArrays(tfByDocument);
+            }
+            return packedTfByDocument;
+        }
+
+        void compact(PreprocessingArena arena)
+        {
+            if (tfByDocument != null)
+            {
+                packedTfByDocument = new PackedIntArrays(tfByDocument, arena);
+                tfByDocument = null;
+            }
+        }
+
+        private int [] tfByDocument(int index)
+        {
+            return tfByDocument != null ? tfByDocument[index] : packedTfByDocument.get(index);
+        }
+
         /** For debugging purposes. */
         @Override
         public String toString()
@@ -376,7 +430,7 @@ public final class PreprocessingContext
                     image[i] == null ? "<null>" : new String(image[i]),
                     type[i],
                     tf[i],
-                    SparseArray.sparseToString(tfByDocument[i]));
+                    SparseArray.sparseToString(tfByDocument(i)));
 
                 t.rowData(Arrays.toString(toFieldIndexes(fieldIndices[i])).replace(" ", ""));
 
@@ -441,7 +495,8 @@ public final class PreprocessingContext
          * see {@link AllWords#tfByDocument}.
          * <p>
          * This array is produced by {@link LanguageModelStemmer}. The order of documents in this
-         * array is not defined.
+         * array is not defined. The array is <code>null</code> after the context has been
+         * compacted, use {@link #getPackedTfByDocument()} then.
          */
         public int [][] tfByDocument;
 
@@ -455,6 +510,39 @@ public final class PreprocessingContext
          */
         public byte [] fieldIndices;
 
+        /**
+         * {@link #tfByDocument} in the packed layout, <code>null</code> until needed.
+         */
+        private PackedIntArrays packedTfByDocument;
+
+        /**
+         * Returns term frequencies by document, see {@link #tfByDocument}, in the packed
+         * layout. The arrays are packed on the first call unless the context has been
+         * compacted, see {@link PreprocessingContext#compact(PreprocessingArena)}.
+         */
+        public PackedIntArrays getPackedTfByDocument()
+        {
+            if (packedTfByDocument == null)
+            {
+                packedTfByDocument = new PackedIntArrays(tfByDocument);
+            }
+            return packedTfByDocument;
+        }
+
+        void compact(PreprocessingArena arena)
+        {
+            if (tfByDocument != null)
+            {
+                packedTfByDocument = new PackedIntArrays(tfByDocument, arena);
+                tfByDocument = null;
+            }
+        }
+
+        private int [] tfByDocument(int index)
+        {
+            return tfByDocument != null ? tfByDocument[index] : packedTfByDocument.get(index);
+        }
+
         /** For debugging purposes. */
         @Override
         public String toString()
@@ -483,7 +571,7 @@ public final class PreprocessingContext
                     mostFrequentOriginalWordIndex[i],
                     new String(allWords.image[mostFrequentOriginalWordIndex[i]]),
                     tf[i],
-                    SparseArray.sparseToString(tfByDocument[i]),
+                    SparseArray.sparseToString(tfByDocument(i)),
                     Arrays.toString(toFieldIndexes(fieldIndices[i])).replace(" ", ""));
             }
 
@@ -529,10 +617,44 @@ public final class PreprocessingContext
          * document index, frequency.
          * <p>
          * This array is produced by {@link PhraseExtractor}. The order of documents in this
-         * array is not defined.
+         * array is not defined. The array is <code>null</code> after the context has been
+         * compacted, use {@link #getPackedTfByDocument()} then.
          */
         public int [][] tfByDocument;
 
+        /**
+         * {@link #tfByDocument} in the packed layout, <code>null</code> until needed.
+         */
+        private PackedIntArrays packedTfByDocument;
+
+        /**
+         * Returns term frequencies by document, see {@link #tfByDocument}, in the packed
+         * layout. The arrays are packed on the first call unless the context has been
+         * compacted, see {@link PreprocessingContext#compact(PreprocessingArena)}.
+         */
+        public PackedIntArrays getPackedTfByDocument()
+        {
+            if (packedTfByDocument == null)
+            {
+                packedTfByDocument = new PackedIntArrays(tfByDocument);
+            }
+            return packedTfByDocument;
+        }
+
+        void compact(PreprocessingArena arena)
+        {
+            if (tfByDocument != null)
+            {
+                packedTfByDocument = new PackedIntArrays(tfByDocument, arena);
+                tfByDocument = null;
+            }
+        }
+
+        private int [] tfByDocument(int index)
+        {
+            return tfByDocument != null ? tfByDocument[index] : packedTfByDocument.get(index);
+        }
+
         /** For debugging purposes. */
         @Override
         public String toString()
@@ -558,7 +680,7 @@ public final class PreprocessingContext
                     Arrays.toString(wordIndices[i]).replace(" ", ""),
                     getPhrase(i),
                     tf[i],
-                    SparseArray.sparseToString(tfByDocument[i]));
+                    SparseArray.sparseToString(tfByDocument(i)));
             }
 
             t.flush();
@@ -618,7 +740,7 @@ public final class PreprocessingContext
          * <p>
          * This array is produced by {@link DocumentAssigner}.
          */
-        public BitSet [] documentIndices;
+        public CompressedBitSet [] documentIndices;
 
         /**
          * The first index in {@link #featureIndex} which 
@@ -744,7 +866,24 @@ public final class PreprocessingContext
     }
 
     /**
-     * Return a unique char buffer representing a given character sequence.
+     * Converts term frequencies by document of words, stems and phrases to the packed
+     * layout, see {@link AllWords#getPackedTfByDocument()}, and releases the original
+     * arrays. This saves memory and garbage collection time on large inputs, where there
+     * are millions of the original arrays. The packed arrays are taken from the provided
+     * <code>arena</code> (if not <code>null</code>), and must not be used after the arena
+     * is reset.
+     */
+    public void compact(PreprocessingArena arena)
+    {
+        allWords.compact(arena);
+        allStems.compact(arena);
+        allPhrases.compact(arena);
+    }
+
+    /**
+     * Return a unique char buffer representing a given character sequence. The buffer
+     * is unique within this context only, it may be shared with other contexts if a
+     * {@link TokenImageDictionary} is used.
      */
     public char [] intern(MutableCharArray chs)
     {
@@ -755,8 +894,18 @@ public final class PreprocessingContext
         }
         else
         {
-            final char [] tokenImage = new char [chs.length()];
-            System.arraycopy(chs.getBuffer(), chs.getStart(), tokenImage, 0, chs.length());
+            // The dictionary may evict and re-create images at any time, the local cache
+            // keeps images unique within this context.
+            final char [] tokenImage;
+            if (tokenImageDictionary != null)
+            {
+                tokenImage = tokenImageDictionary.intern(chs);
+            }
+            else
+            {
+                tokenImage = new char [chs.length()];
+                System.arraycopy(chs.getBuffer(), chs.getStart(), tokenImage, 0, chs.length());
+            }
             tokenCache.add(new MutableCharArray(tokenImage));
             return tokenImage;
         }
@@ -0,0 +1,149 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.linguistic.IStemmer;
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.StripedLongCounter;
+import org.carrot2.util.annotations.ThreadSafe;
+
+/**
+ * A bounded cache of stems of (lower case) words shared by concurrent preprocessing
+ * requests, so that frequent words are not stemmed again in each request (see
+ * {@link LanguageModelStemmer}). Lookups of cached words do not allocate.
+ * <p>
+ * Stems are evicted using the clock (second chance) algorithm when the cache is full,
+ * see {@link TokenImageDictionary} for details. The cache assumes the stems depend on
+ * the word only, which holds for all stemmers distributed with Carrot2.
+ * </p>
+ * <p>
+ * Stem images returned from the cache are shared and must not be modified.
+ * </p>
+ */
+@ThreadSafe
+public final class StemCache
+{
+    /** Caches shared by all stemmers, by language, stemmer class and capacity. */
+    private static final ConcurrentMap<List<?>, StemCache> shared =
+        new ConcurrentHashMap<List<?>, StemCache>();
+
+    /** Marks words for which the stemmer returned <code>null</code>. */
+    private static final char [] NO_STEM = new char [0];
+
+    private final CharArrayClockMap stems;
+
+    private final StripedLongCounter hits = new StripedLongCounter();
+    private final StripedLongCounter misses = new StripedLongCounter();
+
+    /**
+     * Creates a cache holding stems of up to <code>capacity</code> words.
+     */
+    public StemCache(int capacity)
+    {
+        this.stems = new CharArrayClockMap(capacity);
+    }
+
+    /**
+     * Returns the cache of the given capacity shared by all stemmers of the given class
+     * processing documents in the given language.
+     */
+    public static StemCache shared(LanguageCode language,
+        Class<? extends IStemmer> stemmerClass, int capacity)
+    {
+        final List<?> key = Arrays.asList(language, stemmerClass, capacity);
+        StemCache cache = shared.get(key);
+        if (cache == null)
+        {
+            final StemCache created = new StemCache(capacity);
+            cache = shared.putIfAbsent(key, created);
+            if (cache == null)
+            {
+                cache = created;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the stem of <code>word</code>, invoking <code>stemmer</code> only if the
+     * stem is not cached. Returns <code>null</code> if the stemmer returned
+     * <code>null</code> for the word.
+     */
+    public char [] stem(MutableCharArray word, IStemmer stemmer)
+    {
+        char [] stem = stems.get(word);
+        if (stem != null)
+        {
+            hits.increment();
+        }
+        else
+        {
+            misses.increment();
+
+            final CharSequence stemmed = stemmer.stem(word);
+            if (stemmed == null)
+            {
+                stem = NO_STEM;
+            }
+            else
+            {
+                stem = new char [stemmed.length()];
+                for (int i = 0; i < stem.length; i++)
+                {
+                    stem[i] = stemmed.charAt(i);
+                }
+            }
+            stem = stems.putIfAbsent(word, stem);
+        }
+
+        return stem == NO_STEM ? null : stem;
+    }
+
+    /**
+     * Returns the number of lookups that found the stem in the cache.
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that invoked the stemmer.
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of words in the cache.
+     */
+    public int size()
+    {
+        return stems.size();
+    }
+
+    /**
+     * Returns the maximum number of words in the cache.
+     */
+    public int capacity()
+    {
+        return stems.capacity();
+    }
+}
@@ -13,6 +13,7 @@
 package org.carrot2.text.preprocessing;
 
 import org.carrot2.text.analysis.ITokenizer;
+import org.carrot2.text.linguistic.ICaseInsensitiveLexicalData;
 import org.carrot2.text.linguistic.ILexicalData;
 import org.carrot2.text.preprocessing.PreprocessingContext.AllWords;
 import org.carrot2.text.util.MutableCharArray;
@@ -43,14 +44,22 @@ public final class StopListMarker
         final MutableCharArray mutableCharArray = new MutableCharArray("");
         char [] buffer = new char [128];
         final ILexicalData lexData = context.language.getLexicalData();
+        final boolean ignoresCase = lexData instanceof ICaseInsensitiveLexicalData;
 
         for (int i = 0; i < wordImages.length; i++)
         {
             final char [] word = wordImages[i];
-            if (buffer.length < word.length) buffer = new char [word.length];
+            if (ignoresCase)
+            {
+                mutableCharArray.reset(word);
+            }
+            else
+            {
+                if (buffer.length < word.length) buffer = new char [word.length];
+                CharArrayUtils.toLowerCase(word, buffer);
+                mutableCharArray.reset(buffer, 0, word.length);
+            }
 
-            CharArrayUtils.toLowerCase(word, buffer);
-            mutableCharArray.reset(buffer, 0, word.length);
             if (lexData.isCommonWord(mutableCharArray))
             {
                 types[i] |= ITokenizer.TF_COMMON_WORD;
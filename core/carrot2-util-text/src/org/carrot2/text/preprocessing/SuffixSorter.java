@@ -12,48 +12,14 @@
 
 package org.carrot2.text.preprocessing;
 
-import com.carrotsearch.hppc.sorting.IndirectComparator;
-import com.carrotsearch.hppc.sorting.IndirectSort;
+import org.carrot2.text.util.SuffixArrays;
 
 /**
- * A simple suffix sorting utility based on the generic sorting routines from {@link IndirectSort}.
+ * Suffix sorting utility. Builds the suffix array with the linear-time SA-IS algorithm
+ * and the LCP array with Kasai's algorithm, see {@link SuffixArrays}.
  */
 final class SuffixSorter
 {
-    /**
-     * An int comparator that enables suffix sorting.
-     */
-    private static class SuffixComparator implements IndirectComparator
-    {
-        private int [] suffixData;
-
-        public SuffixComparator(int [] suffixData)
-        {
-            this.suffixData = suffixData;
-        }
-
-        public int compare(int suffixA, int suffixB)
-        {
-            if (suffixA == suffixB)
-            {
-                return 0;
-            }
-
-            /*
-             * Suffix data ends with a unique negative value, so we don't need to do extra
-             * range checks and we still won't run into array index out of bounds
-             * exceptions.
-             */
-            while (suffixData[suffixA] == suffixData[suffixB])
-            {
-                suffixA++;
-                suffixB++;
-            }
-
-            return suffixData[suffixB] - suffixData[suffixA];
-        }
-    }
-
     /**
      * Performs suffix sorting and saves the results to the <code>context</code>.
      */
@@ -69,41 +35,44 @@ final class SuffixSorter
         final int [] intCodes = new int [context.allTokens.wordIndex.length];
         System.arraycopy(context.allTokens.wordIndex, 0, intCodes, 0, intCodes.length);
         int currentSeparatorCode = -1;
+        int maxWordIndex = -1;
         for (int i = 0; i < intCodes.length; i++)
         {
             if (intCodes[i] < 0)
             {
                 intCodes[i] = currentSeparatorCode--;
             }
+            else if (intCodes[i] > maxWordIndex)
+            {
+                maxWordIndex = intCodes[i];
+            }
         }
 
-        // Create suffix order
-        int [] suffixOrder = IndirectSort.mergesort(0, intCodes.length, new SuffixComparator(intCodes));
-        context.allTokens.suffixOrder = suffixOrder;
-        
-        // Add LCPs
-        context.allTokens.lcp = calculateLcp(intCodes, suffixOrder);
-    }
-
-    /**
-     * Calculates the Longest Common Prefix values for each token.
-     */
-    private int [] calculateLcp(int [] intCodes, int [] suffixOrder)
-    {
-        // LCP array
-        int [] lcpArray = new int [intCodes.length];
+        /*
+         * Shift codes to a non-negative alphabet preserving their order: separators
+         * become [0, separators), words follow.
+         */
+        final int separators = -currentSeparatorCode - 1;
+        for (int i = 0; i < intCodes.length; i++)
+        {
+            intCodes[i] += separators;
+        }
 
-        lcpArray[0] = 0;
-        for (int i = 1; i < lcpArray.length - 1; i++)
+        /*
+         * Phrase extraction expects suffixes in descending order of codes. All suffixes
+         * are distinct, so this is simply the ascending suffix array reversed.
+         */
+        final int [] suffixOrder = SuffixArrays.suffixArray(intCodes, separators
+            + maxWordIndex + 1);
+        for (int i = 0, j = suffixOrder.length - 1; i < j; i++, j--)
         {
-            int lcp = 0;
-            while (intCodes[suffixOrder[i - 1] + lcp] == intCodes[suffixOrder[i] + lcp])
-            {
-                lcp++;
-            }
-            lcpArray[i] = lcp;
+            final int tmp = suffixOrder[i];
+            suffixOrder[i] = suffixOrder[j];
+            suffixOrder[j] = tmp;
         }
+        context.allTokens.suffixOrder = suffixOrder;
 
-        return lcpArray;
+        // Add LCPs
+        context.allTokens.lcp = SuffixArrays.lcp(intCodes, suffixOrder);
     }
 }
@@ -0,0 +1,98 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.preprocessing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.carrot2.core.LanguageCode;
+import org.carrot2.text.util.MutableCharArray;
+import org.carrot2.util.Pair;
+import org.carrot2.util.annotations.ThreadSafe;
+
+/**
+ * A bounded dictionary of token images shared by concurrent preprocessing requests, so
+ * that images of frequent tokens are allocated once rather than once per request (see
+ * {@link PreprocessingContext#intern(MutableCharArray)}).
+ * <p>
+ * Images are evicted using the clock (second chance) algorithm when the dictionary is
+ * full: images that are never reused are evicted first, so a burst of rare tokens does
+ * not flush frequent ones.
+ * </p>
+ * <p>
+ * Images returned from the dictionary are shared and must not be modified.
+ * </p>
+ */
+@ThreadSafe
+public final class TokenImageDictionary
+{
+    /** Dictionaries shared by all pipelines, by language and capacity. */
+    private static final ConcurrentMap<Pair<LanguageCode, Integer>, TokenImageDictionary> shared =
+        new ConcurrentHashMap<Pair<LanguageCode, Integer>, TokenImageDictionary>();
+
+    private final CharArrayClockMap images;
+
+    /**
+     * Creates a dictionary holding up to <code>capacity</code> images.
+     */
+    public TokenImageDictionary(int capacity)
+    {
+        this.images = new CharArrayClockMap(capacity);
+    }
+
+    /**
+     * Returns the dictionary of the given capacity shared by all callers processing
+     * documents in the given language.
+     */
+    public static TokenImageDictionary shared(LanguageCode language, int capacity)
+    {
+        final Pair<LanguageCode, Integer> key = new Pair<LanguageCode, Integer>(language,
+            capacity);
+        TokenImageDictionary dictionary = shared.get(key);
+        if (dictionary == null)
+        {
+            final TokenImageDictionary created = new TokenImageDictionary(capacity);
+            dictionary = shared.putIfAbsent(key, created);
+            if (dictionary == null)
+            {
+                dictionary = created;
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns the dictionary's image equal to the provided one, adding a copy of the
+     * provided image if not present.
+     */
+    public char [] intern(MutableCharArray image)
+    {
+        return images.putIfAbsent(image, null);
+    }
+
+    /**
+     * Returns the number of images in the dictionary.
+     */
+    public int size()
+    {
+        return images.size();
+    }
+
+    /**
+     * Returns the maximum number of images in the dictionary.
+     */
+    public int capacity()
+    {
+        return images.capacity();
+    }
+}
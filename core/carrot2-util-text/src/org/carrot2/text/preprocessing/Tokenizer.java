@@ -13,18 +13,22 @@
 package org.carrot2.text.preprocessing;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.StringUtils;
 import org.carrot2.core.Document;
 import org.carrot2.core.ProcessingException;
 import org.carrot2.core.attribute.Init;
 import org.carrot2.text.analysis.ITokenizer;
+import org.carrot2.text.linguistic.LanguageModel;
 import org.carrot2.text.preprocessing.PreprocessingContext.AllFields;
 import org.carrot2.text.preprocessing.PreprocessingContext.AllTokens;
 import org.carrot2.text.util.MutableCharArray;
@@ -41,6 +45,7 @@ import org.carrot2.util.attribute.Level;
 
 import com.carrotsearch.hppc.ByteArrayList;
 import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.ObjectHashSet;
 import com.carrotsearch.hppc.ShortArrayList;
 import org.carrot2.shaded.guava.common.collect.Lists;
 
@@ -54,6 +59,16 @@ import org.carrot2.shaded.guava.common.collect.Lists;
  * <li>{@link AllTokens#fieldIndex}</li>
  * <li>{@link AllTokens#type}</li>
  * </ul>
+ * <p>
+ * If {@link ParallelTokenization} is enabled on the calling thread, large inputs are
+ * split into chunks of consecutive documents tokenized concurrently, each with its own
+ * tokenizer. The results are then merged in document order and are identical to those
+ * of sequential tokenization.
+ * </p>
+ * <p>
+ * Documents may also be tokenized in batches, as they are appended to
+ * {@link PreprocessingContext#documents}, see {@link #startBatches(PreprocessingContext)}.
+ * </p>
  */
 @Bindable(prefix = "Tokenizer")
 public final class Tokenizer
@@ -73,28 +88,9 @@ public final class Tokenizer
     });
 
     /**
-     * Token images.
-     */
-    private ArrayList<char []> images;
-
-    /**
-     * An array of token types.
-     * 
-     * @see ITokenizer
-     */
-    private ShortArrayList tokenTypes;
-
-    /**
-     * An array of document indexes.
-     */
-    private IntArrayList documentIndices;
-
-    /**
-     * An array of field indexes.
-     * 
-     * @see AllFields
+     * The minimum number of documents in a chunk tokenized in parallel.
      */
-    private ByteArrayList fieldIndices;
+    private static final int MIN_DOCUMENTS_PER_CHUNK = 250;
 
     /**
      * Performs tokenization and saves the results to the <code>context</code>.
@@ -105,125 +101,440 @@ public final class Tokenizer
         final List<Document> documents = context.documents;
         
         // Fields to tokenize
-        final String [] fieldNames = documentFields.toArray(new String [documentFields.size()]); 
+        final String [] fieldNames = getFieldNames();
 
-        if (fieldNames.length > 8)
+        final ForkJoinPool pool = ParallelTokenization.getPool(documents.size());
+        final TokenSequence tokens;
+        if (pool == null)
         {
-            throw new ProcessingException("Maximum number of tokenized fields is 8.");
+            tokens = new TokenSequence(documents, 0, documents.size(), fieldNames,
+                context.language.getTokenizer(), context);
+            tokens.call();
+            tokens.addTerminator();
+        }
+        else
+        {
+            tokens = tokenizeInChunks(context, fieldNames, pool);
         }
 
-        // Prepare arrays
-        images = Lists.newArrayList();
-        tokenTypes = new ShortArrayList();
-        documentIndices = new IntArrayList();
-        fieldIndices = new ByteArrayList();
+        saveTokens(context, fieldNames, tokens);
+    }
 
-        final Iterator<Document> docIterator = documents.iterator();
-        int documentIndex = 0;
-        final ITokenizer ts = context.language.getTokenizer();
-        final MutableCharArray wrapper = new MutableCharArray(CharArrayUtils.EMPTY_ARRAY);
+    /**
+     * Starts tokenization of documents appended to {@link PreprocessingContext#documents}
+     * in batches. Documents of each batch are tokenized by
+     * {@link Batches#tokenizeNewDocuments()}, {@link Batches#finish()} saves the results
+     * of all batches to the <code>context</code>. The results are the same as if all
+     * documents were tokenized with {@link #tokenize(PreprocessingContext)}.
+     */
+    public Batches startBatches(PreprocessingContext context)
+    {
+        return new Batches(context, getFieldNames());
+    }
+
+    /**
+     * Tokenizes documents of a context in batches, see
+     * {@link Tokenizer#startBatches(PreprocessingContext)}.
+     */
+    public static final class Batches
+    {
+        private final PreprocessingContext context;
+        private final String [] fieldNames;
+        private final TokenSequence tokens;
 
-        while (docIterator.hasNext())
+        /** The number of documents tokenized so far. */
+        private int tokenizedDocuments;
+
+        Batches(PreprocessingContext context, String [] fieldNames)
         {
-            final Document doc = docIterator.next();
+            this.context = context;
+            this.fieldNames = fieldNames;
+            this.tokens = new TokenSequence(context.documents, 0, 0, fieldNames,
+                context.language.getTokenizer(), context);
+        }
 
-            boolean hadTokens = false;
-            for (int i = 0; i < fieldNames.length; i++)
+        /**
+         * Tokenizes documents appended to {@link PreprocessingContext#documents} since the
+         * previous invocation.
+         */
+        public void tokenizeNewDocuments()
+        {
+            final int documentCount = context.documents.size();
+            if (documentCount > tokenizedDocuments)
             {
-                final byte fieldIndex = (byte) i;
-                final String fieldName = fieldNames[i];
-                final String fieldValue = doc.getField(fieldName);
-
-                if (!StringUtils.isEmpty(fieldValue))
+                if (tokenizedDocuments > 0)
                 {
-                    try
-                    {
-                        short tokenType;
-
-                        ts.reset(new StringReader(fieldValue));
-                        if ((tokenType = ts.nextToken()) != ITokenizer.TT_EOF)
-                        {
-                            if (hadTokens) addFieldSeparator(documentIndex);
-                            do
-                            {
-                                ts.setTermBuffer(wrapper);
-                                add(documentIndex, fieldIndex, context.intern(wrapper), tokenType);
-                            } while ( (tokenType = ts.nextToken()) != ITokenizer.TT_EOF);
-                            hadTokens = true;
-                        }
-                    }
-                    catch (IOException e)
-                    {
-                        // Not possible (StringReader above)?
-                        throw ExceptionUtils.wrapAsRuntimeException(e);
-                    }
+                    tokens.addDocumentSeparator();
                 }
+                tokens.tokenize(tokenizedDocuments, documentCount);
+                tokenizedDocuments = documentCount;
             }
+        }
 
-            if (docIterator.hasNext())
-            {
-                addDocumentSeparator();
-            }
-
-            documentIndex++;
+        /**
+         * Returns the number of tokens, including separators, of the documents tokenized
+         * so far.
+         */
+        public int getTokenCount()
+        {
+            return tokens.images.size();
         }
 
-        addTerminator();
+        /**
+         * Returns the image of a token tokenized so far, <code>null</code> for separators.
+         */
+        public char [] getImage(int token)
+        {
+            return tokens.images.get(token);
+        }
 
-        // Save results in the PreprocessingContext
-        context.allTokens.documentIndex = documentIndices.toArray();
-        context.allTokens.fieldIndex = fieldIndices.toArray();
-        context.allTokens.image = images.toArray(new char [images.size()] []);
-        context.allTokens.type = tokenTypes.toArray();
-        context.allFields.name = fieldNames;
+        /**
+         * Returns the type of a token tokenized so far.
+         */
+        public short getType(int token)
+        {
+            return tokens.tokenTypes.get(token);
+        }
 
-        // Clean up
-        images = null;
-        fieldIndices = null;
-        tokenTypes = null;
-        documentIndices = null;
+        /**
+         * Tokenizes the remaining documents and saves the results to the context.
+         */
+        public void finish()
+        {
+            tokenizeNewDocuments();
+            tokens.addTerminator();
+            saveTokens(context, fieldNames, tokens);
+        }
     }
 
     /**
-     * Adds a special terminating token required at the very end of all documents.
+     * Returns the names of fields to tokenize.
      */
-    void addTerminator()
+    private String [] getFieldNames()
     {
-        add(-1, (byte) -1, null, ITokenizer.TF_TERMINATOR);
+        final String [] fieldNames = documentFields.toArray(new String [documentFields.size()]); 
+        if (fieldNames.length > 8)
+        {
+            throw new ProcessingException("Maximum number of tokenized fields is 8.");
+        }
+        return fieldNames;
     }
 
     /**
-     * Adds a document separator to the lists.
+     * Saves tokens in the <code>context</code>.
      */
-    void addDocumentSeparator()
+    private static void saveTokens(PreprocessingContext context, String [] fieldNames,
+        TokenSequence tokens)
     {
-        add(-1, (byte) -1, null, ITokenizer.TF_SEPARATOR_DOCUMENT);
+        context.allTokens.documentIndex = tokens.documentIndices.toArray();
+        context.allTokens.fieldIndex = tokens.fieldIndices.toArray();
+        context.allTokens.image = tokens.images.toArray(new char [tokens.images.size()] []);
+        context.allTokens.type = tokens.tokenTypes.toArray();
+        context.allFields.name = fieldNames;
     }
 
     /**
-     * Adds a field separator to the lists.
+     * Tokenizes chunks of documents on the pool and merges the results in document
+     * order. Each chunk interns images in its own table, the images are interned in the
+     * context during merging.
      */
-    void addFieldSeparator(int documentIndex)
+    private TokenSequence tokenizeInChunks(PreprocessingContext context,
+        String [] fieldNames, ForkJoinPool pool)
     {
-        add(documentIndex, (byte) -1, null, ITokenizer.TF_SEPARATOR_FIELD);
-    }
+        final List<Document> documents = context.documents;
+        final int chunkCount = Math.max(2, Math.min(pool.getParallelism() * 4,
+            documents.size() / MIN_DOCUMENTS_PER_CHUNK));
 
-    /**
-     * Adds a sentence separator to the lists.
-     */
-    void addSentenceSeparator(int documentIndex, byte fieldIndex)
-    {
-        add(documentIndex, fieldIndex, null, ITokenizer.TF_SEPARATOR_FIELD);
+        final LanguageModel language = context.language;
+        final List<TokenSequence> chunks = Lists.newArrayList();
+        for (int i = 0; i < chunkCount; i++)
+        {
+            chunks.add(new TokenSequence(documents, 
+                (int) ((long) documents.size() * i / chunkCount),
+                (int) ((long) documents.size() * (i + 1) / chunkCount), fieldNames,
+                language.createTokenizer(), null));
+        }
+
+        try
+        {
+            for (Future<TokenSequence> future : pool.invokeAll(chunks))
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException("Interrupted while tokenizing.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw ExceptionUtils.wrapAsRuntimeException(e.getCause());
+        }
+
+        int size = 0;
+        for (TokenSequence chunk : chunks)
+        {
+            size += chunk.images.size() + 1;
+        }
+
+        final TokenSequence merged = new TokenSequence(size);
+        final MutableCharArray wrapper = new MutableCharArray(CharArrayUtils.EMPTY_ARRAY);
+        final IdentityHashMap<char [], char []> interned = new IdentityHashMap<char [], char []>();
+        for (int i = 0; i < chunks.size(); i++)
+        {
+            final TokenSequence chunk = chunks.get(i);
+            if (i > 0 && !chunk.isEmpty())
+            {
+                merged.addDocumentSeparator();
+            }
+
+            interned.clear();
+            for (int j = 0; j < chunk.images.size(); j++)
+            {
+                char [] image = chunk.images.get(j);
+                if (image != null)
+                {
+                    final char [] contextImage = interned.get(image);
+                    if (contextImage == null)
+                    {
+                        wrapper.reset(image);
+                        interned.put(image, image = context.intern(wrapper));
+                    }
+                    else
+                    {
+                        image = contextImage;
+                    }
+                }
+                merged.add(chunk.documentIndices.get(j), chunk.fieldIndices.get(j),
+                    image, chunk.tokenTypes.get(j));
+            }
+        }
+        merged.addTerminator();
+
+        return merged;
     }
 
     /**
-     * Adds custom token code to the sequence. May be used to add separator constants.
+     * Token images, types, document and field indices of a range of documents.
      */
-    void add(int documentIndex, byte fieldIndex, char [] image, short tokenTypeCode)
+    private static final class TokenSequence implements Callable<TokenSequence>
     {
-        documentIndices.add(documentIndex);
-        fieldIndices.add(fieldIndex);
-        images.add(image);
-        tokenTypes.add(tokenTypeCode);
+        private final List<Document> documents;
+        private final int fromDocument;
+        private final int toDocument;
+        private final String [] fieldNames;
+        private final ITokenizer tokenizer;
+
+        /**
+         * The context to intern images in or <code>null</code> to intern them in
+         * {@link #localImages}.
+         */
+        private final PreprocessingContext context;
+
+        /** Images interned in this sequence if not using the context. */
+        private ObjectHashSet<MutableCharArray> localImages;
+
+        /** Characters of the field being tokenized, reused for all fields. */
+        private char [] fieldBuffer = CharArrayUtils.EMPTY_ARRAY;
+
+        /**
+         * Token images.
+         */
+        final ArrayList<char []> images;
+
+        /**
+         * An array of token types.
+         * 
+         * @see ITokenizer
+         */
+        final ShortArrayList tokenTypes;
+
+        /**
+         * An array of document indexes.
+         */
+        final IntArrayList documentIndices;
+
+        /**
+         * An array of field indexes.
+         * 
+         * @see AllFields
+         */
+        final ByteArrayList fieldIndices;
+
+        TokenSequence(List<Document> documents, int fromDocument, int toDocument,
+            String [] fieldNames, ITokenizer tokenizer, PreprocessingContext context)
+        {
+            this.documents = documents;
+            this.fromDocument = fromDocument;
+            this.toDocument = toDocument;
+            this.fieldNames = fieldNames;
+            this.tokenizer = tokenizer;
+            this.context = context;
+
+            this.images = Lists.newArrayList();
+            this.tokenTypes = new ShortArrayList();
+            this.documentIndices = new IntArrayList();
+            this.fieldIndices = new ByteArrayList();
+        }
+
+        /**
+         * Creates an empty sequence to merge other sequences into.
+         */
+        TokenSequence(int expectedSize)
+        {
+            this.documents = null;
+            this.fromDocument = 0;
+            this.toDocument = 0;
+            this.fieldNames = null;
+            this.tokenizer = null;
+            this.context = null;
+
+            this.images = Lists.newArrayListWithCapacity(expectedSize);
+            this.tokenTypes = new ShortArrayList(expectedSize);
+            this.documentIndices = new IntArrayList(expectedSize);
+            this.fieldIndices = new ByteArrayList(expectedSize);
+        }
+
+        boolean isEmpty()
+        {
+            return fromDocument == toDocument;
+        }
+
+        /**
+         * Tokenizes documents of this sequence. Adds document separators between
+         * documents, but not after the last one.
+         */
+        @Override
+        public TokenSequence call()
+        {
+            if (context == null)
+            {
+                localImages = new ObjectHashSet<MutableCharArray>();
+            }
+
+            tokenize(fromDocument, toDocument);
+
+            localImages = null;
+            return this;
+        }
+
+        /**
+         * Appends tokens of a range of documents. Adds document separators between
+         * documents, but not after the last one.
+         */
+        void tokenize(int fromDocument, int toDocument)
+        {
+            final MutableCharArray wrapper = new MutableCharArray(CharArrayUtils.EMPTY_ARRAY);
+
+            int documentIndex = fromDocument;
+            for (Document doc : documents.subList(fromDocument, toDocument))
+            {
+
+                boolean hadTokens = false;
+                for (int i = 0; i < fieldNames.length; i++)
+                {
+                    final byte fieldIndex = (byte) i;
+                    final String fieldName = fieldNames[i];
+                    final String fieldValue = doc.getField(fieldName);
+
+                    if (!StringUtils.isEmpty(fieldValue))
+                    {
+                        try
+                        {
+                            short tokenType;
+
+                            final int length = fieldValue.length();
+                            if (fieldBuffer.length < length) fieldBuffer = new char [length];
+                            fieldValue.getChars(0, length, fieldBuffer, 0);
+
+                            tokenizer.reset(fieldBuffer, 0, length);
+                            if ((tokenType = tokenizer.nextToken()) != ITokenizer.TT_EOF)
+                            {
+                                if (hadTokens) addFieldSeparator(documentIndex);
+                                do
+                                {
+                                    tokenizer.setTermBuffer(wrapper);
+                                    add(documentIndex, fieldIndex, intern(wrapper), tokenType);
+                                } while ( (tokenType = tokenizer.nextToken()) != ITokenizer.TT_EOF);
+                                hadTokens = true;
+                            }
+                        }
+                        catch (IOException e)
+                        {
+                            // Not possible (in-memory buffer above)?
+                            throw ExceptionUtils.wrapAsRuntimeException(e);
+                        }
+                    }
+                }
+
+                if (documentIndex + 1 < toDocument)
+                {
+                    addDocumentSeparator();
+                }
+
+                documentIndex++;
+            }
+        }
+
+        /**
+         * Returns a unique char buffer representing the image, see
+         * {@link PreprocessingContext#intern(MutableCharArray)}.
+         */
+        private char [] intern(MutableCharArray image)
+        {
+            if (context != null)
+            {
+                return context.intern(image);
+            }
+
+            int index = localImages.indexOf(image);
+            if (localImages.indexExists(index))
+            {
+                return localImages.indexGet(index).getBuffer();
+            }
+            else
+            {
+                final char [] tokenImage = new char [image.length()];
+                System.arraycopy(image.getBuffer(), image.getStart(), tokenImage, 0, image.length());
+                localImages.add(new MutableCharArray(tokenImage));
+                return tokenImage;
+            }
+        }
+
+        /**
+         * Adds a special terminating token required at the very end of all documents.
+         */
+        void addTerminator()
+        {
+            add(-1, (byte) -1, null, ITokenizer.TF_TERMINATOR);
+        }
+
+        /**
+         * Adds a document separator to the lists.
+         */
+        void addDocumentSeparator()
+        {
+            add(-1, (byte) -1, null, ITokenizer.TF_SEPARATOR_DOCUMENT);
+        }
+
+        /**
+         * Adds a field separator to the lists.
+         */
+        void addFieldSeparator(int documentIndex)
+        {
+            add(documentIndex, (byte) -1, null, ITokenizer.TF_SEPARATOR_FIELD);
+        }
+
+        /**
+         * Adds custom token code to the sequence. May be used to add separator constants.
+         */
+        void add(int documentIndex, byte fieldIndex, char [] image, short tokenTypeCode)
+        {
+            documentIndices.add(documentIndex);
+            fieldIndices.add(fieldIndex);
+            images.add(image);
+            tokenTypes.add(tokenTypeCode);
+        }
     }
 }
@@ -12,7 +12,10 @@
 
 package org.carrot2.text.preprocessing.pipeline;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.carrot2.core.Document;
 import org.carrot2.core.LanguageCode;
@@ -27,9 +30,13 @@ import org.carrot2.text.linguistic.IStemmerFactory;
 import org.carrot2.text.linguistic.ITokenizerFactory;
 import org.carrot2.text.linguistic.LanguageModel;
 import org.carrot2.text.preprocessing.CaseNormalizer;
+import org.carrot2.text.preprocessing.IncrementalPreprocessor;
 import org.carrot2.text.preprocessing.LanguageModelStemmer;
+import org.carrot2.text.preprocessing.ParallelTokenization;
+import org.carrot2.text.preprocessing.PreprocessingArena;
 import org.carrot2.text.preprocessing.PreprocessingContext;
 import org.carrot2.text.preprocessing.StopListMarker;
+import org.carrot2.text.preprocessing.TokenImageDictionary;
 import org.carrot2.text.preprocessing.Tokenizer;
 import org.carrot2.util.attribute.Attribute;
 import org.carrot2.util.attribute.AttributeLevel;
@@ -37,14 +44,17 @@ import org.carrot2.util.attribute.Bindable;
 import org.carrot2.util.attribute.DefaultGroups;
 import org.carrot2.util.attribute.Group;
 import org.carrot2.util.attribute.Input;
+import org.carrot2.util.attribute.Label;
 import org.carrot2.util.attribute.Level;
 import org.carrot2.util.attribute.constraint.ImplementingClasses;
+import org.carrot2.util.attribute.constraint.IntRange;
 
 /**
  * Performs basic preprocessing steps on the provided documents. The preprocessing
  * consists of the following steps:
  * <ol>
- * <li>{@link Tokenizer#tokenize(PreprocessingContext)}</li>
+ * <li>{@link Tokenizer#tokenize(PreprocessingContext)}, optionally in parallel, see
+ * {@link #tokenizationThreads}</li>
  * <li>{@link CaseNormalizer#normalize(PreprocessingContext)}</li>
  * <li>{@link LanguageModelStemmer#stem(PreprocessingContext)}</li>
  * <li>{@link StopListMarker#mark(PreprocessingContext)}</li>
@@ -113,6 +123,85 @@ public class BasicPreprocessingPipeline implements IPreprocessingPipeline
     @Group(DefaultGroups.PREPROCESSING)
     public ILexicalDataFactory lexicalDataFactory = new DefaultLexicalDataFactory();
 
+    /**
+     * Shared token image dictionary size. The maximum number of token images per
+     * language shared by all requests, so that images of frequent tokens are not
+     * allocated for each request. The value of 0 disables sharing.
+     */
+    @Input
+    @Init
+    @Processing
+    @Attribute
+    @IntRange(min = 0)
+    @Label("Shared token image dictionary size")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(DefaultGroups.PREPROCESSING)
+    public int tokenImageDictionarySize = 0;
+
+    /**
+     * Hash-based word and stem statistics. If <code>true</code>, case normalization and
+     * stemming aggregate tokens and words in hash maps rather than by sorting all of
+     * them, which is faster for larger inputs. The results are the same in both cases.
+     */
+    @Input
+    @Init
+    @Processing
+    @Attribute
+    @Label("Hash-based word and stem statistics")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(DefaultGroups.PREPROCESSING)
+    public boolean hashingWordStatistics = false;
+
+    /**
+     * Compact preprocessing data. If <code>true</code>, term frequencies by document are
+     * stored in a few large arrays rather than in one small array per word, stem and
+     * phrase, which saves memory on large inputs.
+     */
+    @Input
+    @Init
+    @Processing
+    @Attribute
+    @Label("Compact preprocessing data")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(DefaultGroups.PREPROCESSING)
+    public boolean compactContext = false;
+
+    /**
+     * Reuse compact preprocessing data buffers. If <code>true</code> and preprocessing
+     * data is compacted, the buffers holding the data are reused by the following
+     * requests processed by the same algorithm instance rather than allocated anew.
+     */
+    @Input
+    @Init
+    @Processing
+    @Attribute
+    @Label("Reuse compact preprocessing data buffers")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(DefaultGroups.PREPROCESSING)
+    public boolean reuseContextBuffers = false;
+
+    /**
+     * Tokenization threads. The number of threads that may be used to tokenize large
+     * inputs (at least {@value ParallelTokenization#DEFAULT_MIN_PARALLEL_DOCUMENTS}
+     * documents) while preprocessing a single request. The value of 1 disables parallel
+     * tokenization.
+     */
+    @Input
+    @Init
+    @Processing
+    @Attribute
+    @IntRange(min = 1, max = 64)
+    @Label("Tokenization threads")
+    @Level(AttributeLevel.ADVANCED)
+    @Group(DefaultGroups.PREPROCESSING)
+    public int tokenizationThreads = 1;
+
+    /**
+     * Buffers of compacted contexts, reused if {@link #reuseContextBuffers} is
+     * <code>true</code>.
+     */
+    private final PreprocessingArena arena = new PreprocessingArena();
+
     /**
      * Performs preprocessing on the provided list of documents. Results can be obtained
      * from the returned {@link PreprocessingContext}.
@@ -121,16 +210,146 @@ public class BasicPreprocessingPipeline implements IPreprocessingPipeline
     public PreprocessingContext preprocess(List<Document> documents, String query,
         LanguageCode language)
     {
-        final PreprocessingContext context = new PreprocessingContext(
-            LanguageModel.create(language, stemmerFactory, tokenizerFactory,
-                lexicalDataFactory), documents, query);
+        final PreprocessingContext context = createContext(documents, query, language);
+
+        tokenize(context);
+        normalizeAndStem(context);
+        processWords(context);
+
+        finishContext(context);
+        return context;
+    }
+
+    /**
+     * Starts preprocessing of documents arriving in batches, for instance pages of search
+     * results. Each batch added with {@link Batches#addDocuments(Collection)} is
+     * tokenized, and its words are stemmed, right away; {@link Batches#finish()}
+     * performs the remaining steps. The results are the same as those of
+     * {@link #preprocess(List, String, LanguageCode)} invoked on all documents.
+     */
+    public Batches startBatches(String query, LanguageCode language)
+    {
+        return new Batches(createContext(new ArrayList<Document>(), query, language));
+    }
+
+    /**
+     * Preprocessing of documents arriving in batches, see
+     * {@link BasicPreprocessingPipeline#startBatches(String, LanguageCode)}.
+     */
+    public final class Batches
+    {
+        private final IncrementalPreprocessor preprocessor;
+
+        Batches(PreprocessingContext context)
+        {
+            this.preprocessor = new IncrementalPreprocessor(context, tokenizer,
+                caseNormalizer, languageModelStemmer, hashingWordStatistics);
+        }
+
+        /**
+         * Appends a batch of documents and preprocesses them as far as possible.
+         */
+        public void addDocuments(Collection<? extends Document> documents)
+        {
+            preprocessor.addDocuments(documents);
+        }
+
+        /**
+         * Completes preprocessing of all documents added so far. Results can be obtained
+         * from the returned {@link PreprocessingContext}.
+         */
+        public PreprocessingContext finish()
+        {
+            final PreprocessingContext context = preprocessor.finish();
+            processWords(context);
+
+            finishContext(context);
+            return context;
+        }
+    }
+
+    /**
+     * Tokenizes <code>context</code>, in parallel if {@link #tokenizationThreads} is
+     * greater than 1. The pool is created for this call only, so that it can be used
+     * on any thread, including those clustering languages concurrently.
+     */
+    protected void tokenize(PreprocessingContext context)
+    {
+        if (tokenizationThreads > 1
+            && context.documents.size() >= ParallelTokenization.DEFAULT_MIN_PARALLEL_DOCUMENTS)
+        {
+            final ForkJoinPool pool = new ForkJoinPool(tokenizationThreads);
+            ParallelTokenization.enable(pool);
+            try
+            {
+                tokenizer.tokenize(context);
+            }
+            finally
+            {
+                ParallelTokenization.disable();
+                pool.shutdown();
+            }
+        }
+        else
+        {
+            tokenizer.tokenize(context);
+        }
+    }
 
-        tokenizer.tokenize(context);
-        caseNormalizer.normalize(context);
-        languageModelStemmer.stem(context);
+    /**
+     * Performs the preprocessing steps following case normalization and stemming.
+     */
+    protected void processWords(PreprocessingContext context)
+    {
         stopListMarker.mark(context);
+    }
 
+    /**
+     * Performs case normalization and stemming of the tokenized <code>context</code>.
+     */
+    protected void normalizeAndStem(PreprocessingContext context)
+    {
+        if (hashingWordStatistics)
+        {
+            caseNormalizer.normalizeUsingHashing(context);
+            languageModelStemmer.stemUsingHashing(context);
+        }
+        else
+        {
+            caseNormalizer.normalize(context);
+            languageModelStemmer.stem(context);
+        }
+    }
+
+    /**
+     * Creates an empty preprocessing context for the provided documents. If context
+     * buffers are reused, contexts created before must no longer be used.
+     */
+    protected PreprocessingContext createContext(List<Document> documents, String query,
+        LanguageCode language)
+    {
+        if (compactContext && reuseContextBuffers)
+        {
+            arena.reset();
+        }
+
+        return new PreprocessingContext(
+            LanguageModel.create(language, stemmerFactory, tokenizerFactory,
+                lexicalDataFactory), documents, query,
+            tokenImageDictionarySize > 0 ? TokenImageDictionary.shared(language,
+                tokenImageDictionarySize) : null);
+    }
+
+    /**
+     * Releases temporary data of the preprocessed <code>context</code> and compacts it
+     * if requested.
+     */
+    protected void finishContext(PreprocessingContext context)
+    {
         context.preprocessingFinished();
-        return context;
+        if (compactContext)
+        {
+            context.compact(reuseContextBuffers ? arena : null);
+        }
     }
 }
@@ -12,11 +12,6 @@
 
 package org.carrot2.text.preprocessing.pipeline;
 
-import java.util.List;
-
-import org.carrot2.core.Document;
-import org.carrot2.core.LanguageCode;
-import org.carrot2.text.linguistic.LanguageModel;
 import org.carrot2.text.preprocessing.CaseNormalizer;
 import org.carrot2.text.preprocessing.DocumentAssigner;
 import org.carrot2.text.preprocessing.LabelFilterProcessor;
@@ -59,23 +54,11 @@ public class CompletePreprocessingPipeline extends BasicPreprocessingPipeline
     public final DocumentAssigner documentAssigner = new DocumentAssigner();
 
     @Override
-    public PreprocessingContext preprocess(List<Document> documents, String query,
-        LanguageCode language)
+    protected void processWords(PreprocessingContext context)
     {
-        final PreprocessingContext context = new PreprocessingContext(
-            LanguageModel.create(language, stemmerFactory, tokenizerFactory,
-                lexicalDataFactory), documents, query);
-
-        tokenizer.tokenize(context);
-        caseNormalizer.normalize(context);
-        languageModelStemmer.stem(context);
-        stopListMarker.mark(context);
+        super.processWords(context);
         phraseExtractor.extractPhrases(context);
         labelFilterProcessor.process(context);
         documentAssigner.assign(context);
-
-        context.preprocessingFinished();
-        return context;
-
     }
 }
@@ -0,0 +1,297 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.util;
+
+import java.util.Arrays;
+
+/**
+ * Linear-time construction of suffix arrays and longest common prefix arrays over
+ * integer alphabets.
+ */
+public final class SuffixArrays
+{
+    private SuffixArrays()
+    {
+        // No instances.
+    }
+
+    /**
+     * Builds the suffix array of <code>input</code> using the SA-IS algorithm (Nong,
+     * Zhang, Chan), which runs in <code>O(n + alphabetSize)</code> time.
+     *
+     * @param input the input sequence, all values must be in range
+     *            <code>[0, alphabetSize)</code>.
+     * @param alphabetSize the number of distinct symbols (an upper bound is sufficient).
+     * @return Start positions of the suffixes of <code>input</code> in ascending
+     *         lexicographic order. A suffix that is a proper prefix of another suffix
+     *         precedes it.
+     */
+    public static int [] suffixArray(int [] input, int alphabetSize)
+    {
+        final int n = input.length;
+
+        // Append a virtual sentinel, smaller than any other symbol.
+        final int [] s = new int [n + 1];
+        for (int i = 0; i < n; i++)
+        {
+            final int symbol = input[i];
+            if (symbol < 0 || symbol >= alphabetSize)
+            {
+                throw new IllegalArgumentException("Symbol out of range [0, "
+                    + alphabetSize + "): " + symbol);
+            }
+            s[i] = symbol + 1;
+        }
+
+        final int [] sa = new int [n + 1];
+        sais(s, sa, n + 1, alphabetSize + 1);
+
+        // The sentinel suffix always comes first.
+        return Arrays.copyOfRange(sa, 1, n + 1);
+    }
+
+    /**
+     * Computes the longest common prefix array using Kasai's algorithm in
+     * <code>O(n)</code> time. The suffix array may be ordered ascending or descending.
+     *
+     * @param input the input sequence
+     * @param suffixArray suffix array of <code>input</code>
+     * @return An array in which element <code>i</code> is the length of the common
+     *         prefix of suffixes <code>suffixArray[i - 1]</code> and
+     *         <code>suffixArray[i]</code>. Element <code>0</code> is always
+     *         <code>0</code>.
+     */
+    public static int [] lcp(int [] input, int [] suffixArray)
+    {
+        final int n = input.length;
+        final int [] rank = new int [n];
+        for (int i = 0; i < n; i++)
+        {
+            rank[suffixArray[i]] = i;
+        }
+
+        final int [] lcp = new int [n];
+        int h = 0;
+        for (int i = 0; i < n; i++)
+        {
+            final int r = rank[i];
+            if (r == 0)
+            {
+                h = 0;
+                continue;
+            }
+
+            final int j = suffixArray[r - 1];
+            while (i + h < n && j + h < n && input[i + h] == input[j + h])
+            {
+                h++;
+            }
+            lcp[r] = h;
+
+            // The suffix starting at i + 1 shares at least h - 1 symbols with its neighbor.
+            if (h > 0)
+            {
+                h--;
+            }
+        }
+
+        return lcp;
+    }
+
+    /**
+     * SA-IS for <code>s[0..n)</code> with symbols in <code>[0, k)</code> where
+     * <code>s[n - 1]</code> is a unique, smallest symbol.
+     */
+    private static void sais(int [] s, int [] sa, int n, int k)
+    {
+        if (n == 1)
+        {
+            sa[0] = 0;
+            return;
+        }
+
+        // Classify suffixes: true for S-type, false for L-type.
+        final boolean [] stype = new boolean [n];
+        stype[n - 1] = true;
+        for (int i = n - 2; i >= 0; i--)
+        {
+            stype[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && stype[i + 1]);
+        }
+
+        // Sort LMS substrings by inducing from LMS positions placed at bucket ends.
+        final int [] buckets = new int [k];
+        Arrays.fill(sa, 0, n, -1);
+        bucketEnds(s, n, buckets);
+        for (int i = 1; i < n; i++)
+        {
+            if (isLms(stype, i))
+            {
+                sa[--buckets[s[i]]] = i;
+            }
+        }
+        induceL(s, sa, n, stype, buckets);
+        induceS(s, sa, n, stype, buckets);
+
+        // Compact the sorted LMS positions to the front of the array.
+        int n1 = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (isLms(stype, sa[i]))
+            {
+                sa[n1++] = sa[i];
+            }
+        }
+
+        // Name LMS substrings. LMS positions are at least two apart, so pos / 2 is unique.
+        Arrays.fill(sa, n1, n, -1);
+        int name = 0;
+        int previous = -1;
+        for (int i = 0; i < n1; i++)
+        {
+            final int pos = sa[i];
+            boolean different = false;
+            for (int d = 0; d < n; d++)
+            {
+                if (previous < 0 || s[pos + d] != s[previous + d]
+                    || stype[pos + d] != stype[previous + d])
+                {
+                    different = true;
+                    break;
+                }
+                else if (d > 0 && (isLms(stype, pos + d) || isLms(stype, previous + d)))
+                {
+                    break;
+                }
+            }
+
+            if (different)
+            {
+                name++;
+                previous = pos;
+            }
+            sa[n1 + pos / 2] = name - 1;
+        }
+
+        // Reduced problem, in the order of LMS positions in the input.
+        final int [] s1 = new int [n1];
+        for (int i = n - 1, j = n1 - 1; i >= n1; i--)
+        {
+            if (sa[i] >= 0)
+            {
+                s1[j--] = sa[i];
+            }
+        }
+
+        final int [] sa1 = new int [n1];
+        if (name < n1)
+        {
+            sais(s1, sa1, n1, name);
+        }
+        else
+        {
+            for (int i = 0; i < n1; i++)
+            {
+                sa1[s1[i]] = i;
+            }
+        }
+
+        // Map the order of the reduced problem back to LMS positions.
+        for (int i = 1, j = 0; i < n; i++)
+        {
+            if (isLms(stype, i))
+            {
+                s1[j++] = i;
+            }
+        }
+        for (int i = 0; i < n1; i++)
+        {
+            sa1[i] = s1[sa1[i]];
+        }
+
+        // Induce the final order from sorted LMS suffixes.
+        Arrays.fill(sa, 0, n, -1);
+        bucketEnds(s, n, buckets);
+        for (int i = n1 - 1; i >= 0; i--)
+        {
+            final int j = sa1[i];
+            sa[--buckets[s[j]]] = j;
+        }
+        induceL(s, sa, n, stype, buckets);
+        induceS(s, sa, n, stype, buckets);
+    }
+
+    private static boolean isLms(boolean [] stype, int i)
+    {
+        return i > 0 && stype[i] && !stype[i - 1];
+    }
+
+    private static void induceL(int [] s, int [] sa, int n, boolean [] stype,
+        int [] buckets)
+    {
+        bucketStarts(s, n, buckets);
+        for (int i = 0; i < n; i++)
+        {
+            final int j = sa[i] - 1;
+            if (j >= 0 && !stype[j])
+            {
+                sa[buckets[s[j]]++] = j;
+            }
+        }
+    }
+
+    private static void induceS(int [] s, int [] sa, int n, boolean [] stype,
+        int [] buckets)
+    {
+        bucketEnds(s, n, buckets);
+        for (int i = n - 1; i >= 0; i--)
+        {
+            final int j = sa[i] - 1;
+            if (j >= 0 && stype[j])
+            {
+                sa[--buckets[s[j]]] = j;
+            }
+        }
+    }
+
+    private static void bucketStarts(int [] s, int n, int [] buckets)
+    {
+        countSymbols(s, n, buckets);
+        int sum = 0;
+        for (int i = 0; i < buckets.length; i++)
+        {
+            final int count = buckets[i];
+            buckets[i] = sum;
+            sum += count;
+        }
+    }
+
+    private static void bucketEnds(int [] s, int n, int [] buckets)
+    {
+        countSymbols(s, n, buckets);
+        int sum = 0;
+        for (int i = 0; i < buckets.length; i++)
+        {
+            sum += buckets[i];
+            buckets[i] = sum;
+        }
+    }
+
+    private static void countSymbols(int [] s, int n, int [] buckets)
+    {
+        Arrays.fill(buckets, 0);
+        for (int i = 0; i < n; i++)
+        {
+            buckets[s[i]]++;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+
+/*
+ * Carrot2 project.
+ *
+ * Copyright (C) 2002-2016, Dawid Weiss, Stanisław Osiński.
+ * All rights reserved.
+ *
+ * Refer to the full license file "carrot2.LICENSE"
+ * in the root folder of the repository checkout or at:
+ * http://www.carrot2.org/carrot2.LICENSE
+ */
+
+package org.carrot2.text.vsm;
+
+/**
+ * A term-document matrix stored as sparse document vectors (compressed columns). The
+ * non-zero elements of column (document) <code>d</code> are stored at indices from
+ * <code>columnStarts[d]</code> (inclusive) to <code>columnStarts[d + 1]</code>
+ * (exclusive) of {@link #rowIndices} and {@link #values}, in the ascending order of rows.
+ */
+public final class SparseTermDocumentMatrix
+{
+    /** The number of rows (terms). */
+    public final int rows;
+
+    /** Start of each column's elements, followed by the number of all elements. */
+    public final int [] columnStarts;
+
+    /** Row of each element. */
+    public final int [] rowIndices;
+
+    /** Value of each element. */
+    public final double [] values;
+
+    public SparseTermDocumentMatrix(int rows, int [] columnStarts, int [] rowIndices,
+        double [] values)
+    {
+        this.rows = rows;
+        this.columnStarts = columnStarts;
+        this.rowIndices = rowIndices;
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of columns (documents).
+     */
+    public int columns()
+    {
+        return columnStarts.length - 1;
+    }
+
+    /**
+     * Returns the value at the given row and column, <code>0</code> for elements that are
+     * not stored.
+     */
+    public double get(int row, int column)
+    {
+        for (int i = columnStarts[column]; i < columnStarts[column + 1]; i++)
+        {
+            if (rowIndices[i] == row)
+            {
+                return values[i];
+            }
+        }
+        return 0;
+    }
+}
@@ -12,6 +12,8 @@
 
 package org.carrot2.text.vsm;
 
+import java.util.Arrays;
+
 import org.carrot2.core.Document;
 import org.carrot2.core.attribute.Internal;
 import org.carrot2.core.attribute.Processing;
@@ -20,6 +22,7 @@ import org.carrot2.mahout.math.matrix.impl.DenseDoubleMatrix2D;
 import org.carrot2.mahout.math.matrix.impl.SparseDoubleMatrix2D;
 import org.carrot2.matrix.MatrixUtils;
 import org.carrot2.text.analysis.TokenTypeUtils;
+import org.carrot2.text.preprocessing.PackedIntArrays;
 import org.carrot2.text.preprocessing.PreprocessingContext;
 import org.carrot2.util.attribute.Attribute;
 import org.carrot2.util.attribute.AttributeLevel;
@@ -126,8 +129,9 @@ public class TermDocumentMatrixBuilder
         final PreprocessingContext preprocessingContext = vsmContext.preprocessingContext;
 
         final int documentCount = preprocessingContext.documents.size();
-        final int [] stemsTf = preprocessingContext.allStems.tf;
-        final int [][] stemsTfByDocument = preprocessingContext.allStems.tfByDocument;
+        final PackedIntArrays stemsTfByDocument = preprocessingContext.allStems
+            .getPackedTfByDocument();
+        final int [] stemsTfByDocumentData = stemsTfByDocument.data();
         final byte [] stemsFieldIndices = preprocessingContext.allStems.fieldIndices;
 
         if (documentCount == 0)
@@ -137,33 +141,12 @@ public class TermDocumentMatrixBuilder
             return;
         }
 
-        // Determine the index of the title field
-        int titleFieldIndex = -1;
-        final String [] fieldsName = preprocessingContext.allFields.name;
-        for (int i = 0; i < fieldsName.length; i++)
-        {
-            if (Document.TITLE.equals(fieldsName[i]))
-            {
-                titleFieldIndex = i;
-                break;
-            }
-        }
+        final int titleFieldIndex = getTitleFieldIndex(preprocessingContext);
 
         // Determine the stems we, ideally, should include in the matrix
         int [] stemsToInclude = computeRequiredStemIndices(preprocessingContext);
-
-        // Sort stems by weight, so that stems get included in the matrix in the order
-        // of frequency
-        final double [] stemsWeight = new double [stemsToInclude.length];
-        for (int i = 0; i < stemsToInclude.length; i++)
-        {
-            final int stemIndex = stemsToInclude[i];
-            stemsWeight[i] = termWeighting.calculateTermWeight(stemsTf[stemIndex],
-                stemsTfByDocument[stemIndex].length / 2, documentCount)
-                * getWeightBoost(titleFieldIndex, stemsFieldIndices[stemIndex]);
-        }
-        final int [] stemWeightOrder = IndirectSort.mergesort(0, stemsWeight.length,
-            new IndirectComparator.DescendingDoubleComparator(stemsWeight));
+        final int [] stemWeightOrder = computeStemWeightOrder(preprocessingContext,
+            stemsToInclude, titleFieldIndex);
 
         // Calculate the number of terms we can include to fulfill the max matrix size
         final int maxRows = maximumMatrixSize / documentCount;
@@ -173,16 +156,16 @@ public class TermDocumentMatrixBuilder
         for (int i = 0; i < stemWeightOrder.length && i < maxRows; i++)
         {
             final int stemIndex = stemsToInclude[stemWeightOrder[i]];
-            final int [] tfByDocument = stemsTfByDocument[stemIndex];
-            final int df = tfByDocument.length / 2;
+            final int start = stemsTfByDocument.start(stemIndex);
+            final int df = stemsTfByDocument.length(stemIndex) / 2;
             final byte fieldIndices = stemsFieldIndices[stemIndex];
 
             for (int j = 0; j < df; j++) {
                 double weight = termWeighting.calculateTermWeight(
-                    tfByDocument[j * 2 + 1], df, documentCount);
+                    stemsTfByDocumentData[start + j * 2 + 1], df, documentCount);
 
                 weight *= getWeightBoost(titleFieldIndex, fieldIndices);
-                tdMatrix.set(i, tfByDocument[j * 2], weight);
+                tdMatrix.set(i, stemsTfByDocumentData[start + j * 2], weight);
             }
         }
 
@@ -198,6 +181,118 @@ public class TermDocumentMatrixBuilder
         vsmContext.stemToRowIndex = stemToRowIndex;
     }
 
+    /**
+     * Builds a term-document matrix from data provided in the <code>context</code> in the
+     * form of sparse document vectors, with at most <code>maxRows</code> rows (stems
+     * included in the order of their weights). Unlike
+     * {@link #buildTermDocumentMatrix(VectorSpaceModelContext)}, the size of the matrix
+     * grows with the number of non-zero elements only, {@link #maximumMatrixSize} is not
+     * applied. The matrix is stored in
+     * {@link VectorSpaceModelContext#sparseTermDocumentMatrix}, together with
+     * {@link VectorSpaceModelContext#stemToRowIndex}.
+     */
+    public void buildSparseTermDocumentMatrix(VectorSpaceModelContext vsmContext,
+        int maxRows)
+    {
+        final PreprocessingContext preprocessingContext = vsmContext.preprocessingContext;
+
+        final int documentCount = preprocessingContext.documents.size();
+        final PackedIntArrays stemsTfByDocument = preprocessingContext.allStems
+            .getPackedTfByDocument();
+        final int [] stemsTfByDocumentData = stemsTfByDocument.data();
+        final byte [] stemsFieldIndices = preprocessingContext.allStems.fieldIndices;
+
+        final int titleFieldIndex = getTitleFieldIndex(preprocessingContext);
+        final int [] stemsToInclude = documentCount == 0 ? new int [0]
+            : computeRequiredStemIndices(preprocessingContext);
+        final int [] stemWeightOrder = computeStemWeightOrder(preprocessingContext,
+            stemsToInclude, titleFieldIndex);
+        final int rows = Math.min(maxRows, stemsToInclude.length);
+
+        // Count the elements of each document
+        final int [] columnStarts = new int [documentCount + 1];
+        for (int i = 0; i < rows; i++)
+        {
+            final int stemIndex = stemsToInclude[stemWeightOrder[i]];
+            final int start = stemsTfByDocument.start(stemIndex);
+            final int df = stemsTfByDocument.length(stemIndex) / 2;
+            for (int j = 0; j < df; j++)
+            {
+                columnStarts[stemsTfByDocumentData[start + j * 2] + 1]++;
+            }
+        }
+        for (int d = 0; d < documentCount; d++)
+        {
+            columnStarts[d + 1] += columnStarts[d];
+        }
+
+        // Fill in the weights, rows of each document in ascending order
+        final int [] rowIndices = new int [columnStarts[documentCount]];
+        final double [] values = new double [rowIndices.length];
+        final int [] next = Arrays.copyOf(columnStarts, documentCount);
+        final IntIntHashMap stemToRowIndex = new IntIntHashMap();
+        for (int i = 0; i < rows; i++)
+        {
+            final int stemIndex = stemsToInclude[stemWeightOrder[i]];
+            final int start = stemsTfByDocument.start(stemIndex);
+            final int df = stemsTfByDocument.length(stemIndex) / 2;
+            final double boost = getWeightBoost(titleFieldIndex, stemsFieldIndices[stemIndex]);
+            for (int j = 0; j < df; j++)
+            {
+                final int document = stemsTfByDocumentData[start + j * 2];
+                rowIndices[next[document]] = i;
+                values[next[document]++] = termWeighting.calculateTermWeight(
+                    stemsTfByDocumentData[start + j * 2 + 1], df, documentCount) * boost;
+            }
+            stemToRowIndex.put(stemIndex, i);
+        }
+
+        vsmContext.sparseTermDocumentMatrix = new SparseTermDocumentMatrix(rows,
+            columnStarts, rowIndices, values);
+        vsmContext.stemToRowIndex = stemToRowIndex;
+    }
+
+    /**
+     * Returns the index of the title field or -1 if there is no title field.
+     */
+    private static int getTitleFieldIndex(PreprocessingContext preprocessingContext)
+    {
+        final String [] fieldsName = preprocessingContext.allFields.name;
+        for (int i = 0; i < fieldsName.length; i++)
+        {
+            if (Document.TITLE.equals(fieldsName[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sorts stems by weight, so that stems get included in the matrix in the order of
+     * frequency. Returns indices of <code>stemsToInclude</code>.
+     */
+    private int [] computeStemWeightOrder(PreprocessingContext preprocessingContext,
+        int [] stemsToInclude, int titleFieldIndex)
+    {
+        final int documentCount = preprocessingContext.documents.size();
+        final int [] stemsTf = preprocessingContext.allStems.tf;
+        final PackedIntArrays stemsTfByDocument = preprocessingContext.allStems
+            .getPackedTfByDocument();
+        final byte [] stemsFieldIndices = preprocessingContext.allStems.fieldIndices;
+
+        final double [] stemsWeight = new double [stemsToInclude.length];
+        for (int i = 0; i < stemsToInclude.length; i++)
+        {
+            final int stemIndex = stemsToInclude[i];
+            stemsWeight[i] = termWeighting.calculateTermWeight(stemsTf[stemIndex],
+                stemsTfByDocument.length(stemIndex) / 2, documentCount)
+                * getWeightBoost(titleFieldIndex, stemsFieldIndices[stemIndex]);
+        }
+        return IndirectSort.mergesort(0, stemsWeight.length,
+            new IndirectComparator.DescendingDoubleComparator(stemsWeight));
+    }
+
     /**
      * Builds a term-phrase matrix in the same space as the main term-document matrix. If
      * the processing context contains no phrases,
@@ -253,7 +348,7 @@ public class TermDocumentMatrixBuilder
         final int [][] phrasesWordIndices = context.allPhrases.wordIndices;
         final int wordCount = wordsStemIndex.length;
 
-        final int [][] stemsTfByDocument = context.allStems.tfByDocument;
+        final PackedIntArrays stemsTfByDocument = context.allStems.getPackedTfByDocument();
         int documentCount = context.documents.size();
         final BitSet requiredStemIndices = new BitSet(labelsFeatureIndex.length);
 
@@ -287,11 +382,11 @@ public class TermDocumentMatrixBuilder
      * Adds stem index to the set with a check on the stem's document frequency.
      */
     private void addStemIndex(final int [] wordsStemIndex, int documentCount,
-        int [][] stemsTfByDocument, final BitSet requiredStemIndices,
+        PackedIntArrays stemsTfByDocument, final BitSet requiredStemIndices,
         final int featureIndex)
     {
         final int stemIndex = wordsStemIndex[featureIndex];
-        final int df = stemsTfByDocument[stemIndex].length / 2;
+        final int df = stemsTfByDocument.length(stemIndex) / 2;
         if (((double) df / documentCount) <= maxWordDf)
         {
             requiredStemIndices.set(stemIndex);
@@ -317,7 +412,8 @@ public class TermDocumentMatrixBuilder
         final PreprocessingContext preprocessingContext = vsmContext.preprocessingContext;
         final int [] wordsStemIndex = preprocessingContext.allWords.stemIndex;
         final int [] stemsTf = preprocessingContext.allStems.tf;
-        final int [][] stemsTfByDocument = preprocessingContext.allStems.tfByDocument;
+        final PackedIntArrays stemsTfByDocument = preprocessingContext.allStems
+            .getPackedTfByDocument();
         final int [][] phrasesWordIndices = preprocessingContext.allPhrases.wordIndices;
         final int documentCount = preprocessingContext.documents.size();
         final int wordCount = wordsStemIndex.length;
@@ -347,7 +443,7 @@ public class TermDocumentMatrixBuilder
                     final int rowIndex = stemToRowIndex.indexGet(index);
 
                     double weight = termWeighting.calculateTermWeight(stemsTf[stemIndex],
-                        stemsTfByDocument[stemIndex].length / 2, documentCount);
+                        stemsTfByDocument.length(stemIndex) / 2, documentCount);
 
                     phraseMatrix.setQuick(rowIndex, i, weight);
                 }
@@ -26,6 +26,7 @@ import org.carrot2.matrix.factorization.LocalNonnegativeMatrixFactorizationFacto
 import org.carrot2.matrix.factorization.NonnegativeMatrixFactorizationEDFactory;
 import org.carrot2.matrix.factorization.NonnegativeMatrixFactorizationKLFactory;
 import org.carrot2.matrix.factorization.PartialSingularValueDecompositionFactory;
+import org.carrot2.matrix.factorization.RandomizedSingularValueDecompositionFactory;
 import org.carrot2.util.attribute.Attribute;
 import org.carrot2.util.attribute.AttributeLevel;
 import org.carrot2.util.attribute.Bindable;
@@ -54,6 +55,7 @@ public class TermDocumentMatrixReducer
     @ImplementingClasses(classes =
     {
         PartialSingularValueDecompositionFactory.class,
+        RandomizedSingularValueDecompositionFactory.class,
         NonnegativeMatrixFactorizationEDFactory.class,
         NonnegativeMatrixFactorizationKLFactory.class,
         LocalNonnegativeMatrixFactorizationFactory.class,
@@ -99,6 +101,12 @@ public class TermDocumentMatrixReducer
                 (IterativeMatrixFactorizationFactory) factorizationFactory,
                 vsmContext.termDocumentMatrix, factorizationQuality);
         }
+        else if (factorizationFactory instanceof RandomizedSingularValueDecompositionFactory)
+        {
+            // Compute only the base vectors we need
+            ((RandomizedSingularValueDecompositionFactory) factorizationFactory)
+                .setK(dimensions);
+        }
 
         MatrixUtils.normalizeColumnL2(vsmContext.termDocumentMatrix, null);
         final IMatrixFactorization factorization = factorizationFactory
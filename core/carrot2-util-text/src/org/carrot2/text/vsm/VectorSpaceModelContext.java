@@ -49,6 +49,17 @@ public class VectorSpaceModelContext
      */
     public DoubleMatrix2D termPhraseMatrix;
 
+    /**
+     * Term-document matrix stored as sparse document vectors, an alternative to
+     * {@link #termDocumentMatrix} for large numbers of documents. For mapping between
+     * rows of this matrix and {@link AllStems}, see {@link #stemToRowIndex}.
+     * <p>
+     * This matrix is produced by
+     * {@link TermDocumentMatrixBuilder#buildSparseTermDocumentMatrix(VectorSpaceModelContext, int)}.
+     * </p>
+     */
+    public SparseTermDocumentMatrix sparseTermDocumentMatrix;
+
     /**
      * Stem index to row index mapping for the <code>tdMatrix</code>. Keys in this map are
      * indices of entries in {@link AllStems} arrays, values are the indices of